@@ -20,9 +20,10 @@ import com.northwind.exceptions.InvalidLoggingLevelException;
 import com.northwind.settings.AppProperties;
 import com.northwind.settings.VersionCalculator;
 import com.northwind.utils.ArgumentParser;
+import com.northwind.utils.AsyncAppender;
+import com.northwind.utils.LogContext;
 import com.northwind.utils.Logger;
 import com.northwind.view.MainWindow;
-import java.time.Instant;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 import javax.swing.UIManager;
@@ -34,11 +35,11 @@ import javax.swing.UnsupportedLookAndFeelException;
  */
 public class Northwind {
     private static final Logger log = Logger.getInstance();
-    private static final LogRecord record;
+    private static final LogContext record;
     private static final AppProperties props = AppProperties.getInstance();
     
     static {
-        record = new LogRecord(Level.ALL, "Application Starting");
+        record = new LogContext(Level.ALL, "Application Starting");
     }
     
     private Northwind() { /* to allow access from outside the class. */ }
@@ -49,15 +50,19 @@ public class Northwind {
     public static void main(String[] args) {
         record.setSourceClassName(Northwind.class.getCanonicalName());
         record.setSourceMethodName("main");
-        record.setResourceBundleName("Basic Edition");
+        
+        // The welcome message carries the edition, build and version in the
+        //+ fields of a `LogRecord` of its own.
+        LogRecord about = new LogRecord(Level.ALL, "Application Starting");
+        about.setResourceBundleName("Basic Edition");
         String build = Long.valueOf(System.currentTimeMillis()).toString();
         build = build.substring(build.length() - 9);
-        record.setSequenceNumber(Long.valueOf(build));
-        record.setLoggerName("0.1.5");
+        about.setSequenceNumber(Long.valueOf(build));
+        about.setLoggerName("0.1.5");
         Object[] mods = new Object[]{ "Base Module", 
                 "Customer Management Module"};
-        record.setParameters(mods);
-        log.welcome(record);
+        about.setParameters(mods);
+        log.welcome(about);
         
         record.setParameters(args);
         log.enter(record);
@@ -69,7 +74,12 @@ public class Northwind {
         log.debug(record);
         int levelToSet = 0;
         String level = "";
-        if (parser.isSwitchPresent("--debug") || parser.isSwitchPresent("-d")) {
+        if (parser.isSwitchPresent("--trace")) {
+            props.setProperty("debugging", Boolean.TRUE.toString());
+            levelToSet = Logger.TRACE;
+            level = "TRACE";
+        } else if (parser.isSwitchPresent("--debug") 
+                || parser.isSwitchPresent("-d")) {
             props.setProperty("debugging", Boolean.TRUE.toString());
             levelToSet = Logger.DEBUG;
             level = "DEBUG";
@@ -79,6 +89,16 @@ public class Northwind {
             level = "CONFIG";
         }
         
+        // Set the level before anything else is logged, so that the debugging
+        //+ messages that follow are only built when they will be written.
+        try {
+            log.setLevel(levelToSet);
+        } catch (InvalidLoggingLevelException ex) {
+            record.setMessage("Exception while setting logging level");
+            record.setThrown(ex);
+            log.error(record);
+        }
+        
         record.setMessage("Calculating or getting the application version...");
         record.setSourceClassName(Northwind.class.getName());
         record.setSourceMethodName("main");
@@ -86,22 +106,30 @@ public class Northwind {
         log.debug(record);
         VersionCalculator version = new VersionCalculator();
         
-        record.setMessage("Setting logging level to: " + level + " (" 
-                + levelToSet + ")");
-        log.debug(record);
+        log.debug("Logging level set to: {} ({})", level, levelToSet);
+        log.debug("Application Version: {}", props.getVersion());
         
-        record.setMessage("Application Version: " + props.getVersion());
-        log.debug(record);
+        AsyncAppender appender = log.getAppender();
         
-        try {
-            log.setLevel(levelToSet);
-        } catch (InvalidLoggingLevelException ex) {
-            record.setInstant(Instant.now());
-            record.setMessage("Exception while setting logging level");
-            record.setThrown(ex);
-            log.error(record);
+        if ( appender != null ) {
+            appender.setOverflow(AsyncAppender.Overflow.forName(
+                    props.getLogOverflow()));
+            appender.setFlushMillis(props.getLogFlushMillis());
+            appender.setRollover(props.getLogMaxKilobytes() * 1024, 
+                    props.getLogRollDaily(), props.getLogRetain());
+            
+            record.setMessage("Log overflow policy: " 
+                    + appender.getOverflow());
+            log.config(record);
         }
         
+        log.setTraceClasses(props.getLogTraceClasses().isBlank() 
+                ? new String[0] 
+                : props.getLogTraceClasses().trim().split("\\s*,\\s*"));
+        log.setTraceSampling(props.getLogTraceSampling(), 
+                props.getLogTraceRate());
+        log.setFlightRecorder(props.getLogFlightRecorder());
+        
         String lafName;
         if (parser.isSwitchPresent("--laf") ) {
             lafName = parser.getSwitchValue("--laf");
@@ -122,13 +150,15 @@ public class Northwind {
         record.setMessage("For the record, we are going to list all installed "
                 + "Look and Feels:");
         log.debug(record);
-        int x = 0;
-        
-        for ( javax.swing.UIManager.LookAndFeelInfo info : 
-                javax.swing.UIManager.getInstalledLookAndFeels() ) {
-            record.setMessage("LaF #" + (++x) + ": " + info.getName() + " [ " 
-                    + info.getClassName() + " ]");
-            log.debug(record);
+        if ( log.isDebugEnabled() ) {
+            int x = 0;
+            
+            for ( javax.swing.UIManager.LookAndFeelInfo info : 
+                    javax.swing.UIManager.getInstalledLookAndFeels() ) {
+                record.setMessage("LaF #" + (++x) + ": " + info.getName() 
+                        + " [ " + info.getClassName() + " ]");
+                log.debug(record);
+            }
         }
         
         record.setMessage("Attempting to set the look and feel.");
@@ -141,9 +171,8 @@ public class Northwind {
 
                 if ( info.getName().equalsIgnoreCase(lafName) )
                     try {
-                        record.setMessage("Setting look and feel to " 
-                                + info.getName() + ".");
-                        log.debug(record);
+                        log.debug("Setting look and feel to {}.", 
+                                info.getName());
                         UIManager.setLookAndFeel(info.getClassName());
                         break;
                 } catch (ClassNotFoundException | 
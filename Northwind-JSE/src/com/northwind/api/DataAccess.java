@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api;
+
+import com.northwind.api.db.ConnectionPool;
+import com.northwind.api.db.QueryMonitor;
+import com.northwind.exceptions.DataStoreException;
+import com.northwind.settings.AppProperties;
+import com.northwind.utils.LogContext;
+import com.northwind.utils.Logger;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Runs data store calls in the background, so that the Swing event dispatch
+ * thread never waits on the data store. For example:
+ * <pre>
+ * DataAccess.submit(() -&gt; customers.fetchCustomer(id))
+ *         .onEdt(this::showCustomer, this::showError);
+ * </pre>
+ * <p>
+ * Calls run on virtual threads when the Java runtime has them, and otherwise
+ * on a pool of `db.async.threads` daemon threads. Either way, the number of
+ * calls using the data store at the same time is still limited by the size of
+ * the connection pool.</p>
+ * <p>
+ * A `Manager` is not safe to use from several threads at once, so a `Manager`
+ * handed to a background call must not be used elsewhere until the call has
+ * completed.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public final class DataAccess {
+
+    /**
+     * A call to the data store.
+     *
+     * @param <R> the type of the result of the call
+     */
+    @FunctionalInterface
+    public interface Call<R> {
+        R call() throws DataStoreException;
+    }
+
+    private static final ThreadLocal<DataFuture<?>> current
+            = new ThreadLocal<>();
+    private static boolean virtual;
+    private static final ExecutorService executor = createExecutor();
+
+    static {
+        ConnectionPool.addShutdownTask(executor::shutdownNow);
+    }
+
+    private DataAccess() {
+        /* to prevent instantiation */
+    }
+
+    /**
+     * Starts a call in the background.
+     *
+     * @param <R>  the type of the result of the call
+     * @param call the call
+     * @return the pending result of the call, which can be cancelled
+     */
+    public static <R> DataFuture<R> submit(Call<R> call) {
+        DataFuture<R> future = new DataFuture<>();
+
+        try {
+            executor.execute(() -> run(call, future));
+        } catch ( RejectedExecutionException ex ) {
+            future.completeExceptionally(new DataStoreException("The "
+                    + "application is shutting down.", ex));
+        }
+
+        return future;
+    }
+
+    /**
+     * Makes a plain statement cancellable and measured, taking its SQL from
+     * each `execute`. See `track(Statement, String)`.
+     *
+     * @param <S> the type of the statement
+     * @param st  the statement
+     * @return the statement, wrapped for measuring
+     * @throws SQLException if the call running on this thread has been
+     *                      cancelled
+     */
+    static <S extends Statement> S track(S st) throws SQLException {
+        return track(st, null);
+    }
+
+    /**
+     * Makes a statement cancellable through the `DataFuture` of the call that
+     * is running on this thread, if any, and has the `QueryMonitor` measure
+     * it. Every `Manager` passes its statements through here before running
+     * them.
+     *
+     * @param <S> the type of the statement
+     * @param st  the statement
+     * @param sql the SQL the statement was prepared with
+     * @return the statement, wrapped for measuring
+     * @throws SQLException if the call running on this thread has been
+     *                      cancelled
+     */
+    static <S extends Statement> S track(S st, String sql)
+            throws SQLException {
+        DataFuture<?> future = current.get();
+
+        if ( future != null )
+            future.running(st);
+
+        return QueryMonitor.monitor(st, sql);
+    }
+
+    /**
+     * @return `true` if background calls run on virtual threads
+     */
+    public static boolean isVirtual() {
+        return virtual;
+    }
+
+    private static <R> void run(Call<R> call, DataFuture<R> future) {
+        if ( future.isDone() )
+            return;
+
+        current.set(future);
+
+        try {
+            future.complete(call.call());
+        } catch ( Throwable ex ) {
+            future.completeExceptionally(ex);
+        } finally {
+            future.finished();
+            current.remove();
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        // `Executors.newVirtualThreadPerTaskExecutor` only exists on newer
+        //+ runtimes than the one Northwind is built for.
+        try {
+            ExecutorService ret = (ExecutorService) Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor").invoke(null);
+            virtual = true;
+            return ret;
+        } catch ( ReflectiveOperationException | RuntimeException ex ) {
+            LogContext record = new LogContext(Level.CONFIG, "Virtual threads "
+                    + "are not available. Using a thread pool for data store "
+                    + "calls.");
+            record.setSourceClassName(DataAccess.class.getName());
+            record.setSourceMethodName("createExecutor");
+            Logger.getInstance().config(record);
+        }
+
+        AtomicInteger count = new AtomicInteger();
+
+        return Executors.newFixedThreadPool(Math.max(1,
+                AppProperties.getInstance().getDbAsyncThreads()), r -> {
+                    Thread t = new Thread(r, "Northwind-Data-"
+                            + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+}
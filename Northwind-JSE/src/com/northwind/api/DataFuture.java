@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * The pending result of a data store call submitted to `DataAccess`.
+ * <p>
+ * Cancelling a `DataFuture` also cancels the statement the call is running in
+ * the data store, if any, so that a long query stops using the data store
+ * straight away instead of running to completion in the background.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ * @param <R> the type of the result of the call
+ */
+public class DataFuture<R> extends CompletableFuture<R> {
+
+    private volatile Statement running;
+
+    DataFuture() {
+    }
+
+    /**
+     * Cancels the call. If the call is running a statement in the data store,
+     * that statement is cancelled as well.
+     *
+     * @param mayInterruptIfRunning ignored, as with any `CompletableFuture`
+     * @return `true` if the call is now cancelled
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean ret = super.cancel(mayInterruptIfRunning);
+        Statement st = running;
+
+        if ( ret && st != null ) {
+            try {
+                st.cancel();
+            } catch ( SQLException ex ) {
+                // The statement has already finished, or cannot be cancelled;
+                //+ either way, its result is discarded.
+            }
+        }
+
+        return ret;
+    }
+
+    /**
+     * Hands the result of the call, or the reason it failed, to the given
+     * action on the Swing event dispatch thread. Nothing is handed over if the
+     * call was cancelled.
+     *
+     * @param action receives the result, or `null` if the call failed, and
+     *               the exception the call failed with, or `null` if it
+     *               completed normally
+     * @return a future that completes once the action has run
+     */
+    public CompletableFuture<R> onEdt(
+            BiConsumer<? super R, ? super Throwable> action) {
+        return whenCompleteAsync((result, error) -> {
+            if ( !isCancelled() )
+                action.accept(result, unwrap(error));
+        }, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Hands the result of the call to one action, or the reason it failed to
+     * another, on the Swing event dispatch thread. Nothing is handed over if
+     * the call was cancelled.
+     *
+     * @param onResult  receives the result of the call
+     * @param onFailure receives the exception the call failed with
+     * @return a future that completes once the action has run
+     */
+    public CompletableFuture<R> onEdt(Consumer<? super R> onResult,
+            Consumer<? super Throwable> onFailure) {
+        return onEdt((result, error) -> {
+            if ( error == null )
+                onResult.accept(result);
+            else
+                onFailure.accept(error);
+        });
+    }
+
+    /**
+     * Records the statement the call is about to run, so that it can be
+     * cancelled.
+     *
+     * @param st the statement
+     * @throws SQLException if the call has already been cancelled
+     */
+    void running(Statement st) throws SQLException {
+        running = st;
+
+        if ( isCancelled() )
+            throw new SQLException("The call was cancelled.", "HY008");
+    }
+
+    void finished() {
+        running = null;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        // Errors reach dependent stages wrapped in a `CompletionException`.
+        if ( error instanceof CompletionException && error.getCause() != null )
+            return error.getCause();
+
+        return error;
+    }
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A least-recently-used cache of whole records, by ID, for one table of one
+ * data store. Every `Manager` for that table shares the same cache, so a
+ * record read by one dialog is served from memory when another dialog reads
+ * it moments later.
+ * <p>
+ * The cache never serves stale data written through a `Manager`: every update
+ * and insert invalidates the affected records. A record read from the data
+ * store while an invalidation is taking place is not cached, as it may
+ * already be out of date.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class EntityCache {
+
+    private static final Map<String, EntityCache> caches
+            = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final int maxEntries;
+    private final LinkedHashMap<Integer, Row> rows;
+    private long stamp;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long estimatedBytes;
+
+    private EntityCache(String name, int maxEntries) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+        this.rows = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Retrieves the cache for a table, creating it on first use.
+     *
+     * @param url        the JDBC URL of the data store
+     * @param table      the table
+     * @param maxEntries the largest number of records to keep, used only when
+     *                   the cache is created
+     * @return the cache shared by every `Manager` for the table
+     */
+    public static EntityCache forTable(String url, String table,
+            int maxEntries) {
+        return caches.computeIfAbsent(url + "|" + table.toUpperCase(),
+                k -> new EntityCache(table, Math.max(1, maxEntries)));
+    }
+
+    /**
+     * Retrieves the cache for a table, if one has been created.
+     *
+     * @param url   the JDBC URL of the data store
+     * @param table the table
+     * @return the cache for the table, or `null` if there is none
+     */
+    public static EntityCache find(String url, String table) {
+        return caches.get(url + "|" + table.toUpperCase());
+    }
+
+    /**
+     * Empties every entity cache. This is required when the data store is
+     * changed outside of the `Manager`s, such as by restoring a backup.
+     */
+    public static void clearAll() {
+        for ( EntityCache cache : caches.values() ) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Looks up a record, counting the lookup as a hit or a miss.
+     *
+     * @param id the ID of the record
+     * @return the cached record, or `null` if it is not cached
+     */
+    public synchronized Row get(int id) {
+        Row row = rows.get(id);
+
+        if ( row == null )
+            misses++;
+        else
+            hits++;
+
+        return row;
+    }
+
+    /**
+     * Takes a stamp to be handed to `put` once a record has been read from
+     * the data store.
+     *
+     * @return the current invalidation stamp
+     */
+    public synchronized long stamp() {
+        return stamp;
+    }
+
+    /**
+     * Caches a record that was read from the data store, unless anything was
+     * invalidated after `readStamp` was taken.
+     *
+     * @param id        the ID of the record
+     * @param row       the record
+     * @param readStamp the stamp taken before the record was read
+     */
+    public synchronized void put(int id, Row row, long readStamp) {
+        if ( readStamp != stamp )
+            return;
+
+        Row prior = rows.put(id, row);
+
+        if ( prior != null )
+            estimatedBytes -= prior.estimateSize();
+
+        estimatedBytes += row.estimateSize();
+
+        if ( rows.size() > maxEntries ) {
+            Iterator<Row> eldest = rows.values().iterator();
+            estimatedBytes -= eldest.next().estimateSize();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops a record from the cache, because it has been changed.
+     *
+     * @param id the ID of the record
+     */
+    public synchronized void invalidate(int id) {
+        stamp++;
+        Row prior = rows.remove(id);
+
+        if ( prior != null )
+            estimatedBytes -= prior.estimateSize();
+    }
+
+    /**
+     * Drops every record from the cache, because changes were made that
+     * cannot be tied to particular records.
+     */
+    public synchronized void clear() {
+        stamp++;
+        rows.clear();
+        estimatedBytes = 0;
+    }
+
+    /**
+     * @return the name of the table this cache is for
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the number of records currently cached
+     */
+    public synchronized int size() {
+        return rows.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the fraction of lookups served from the cache, from zero to one
+     */
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return the number of records dropped to make room for others
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return a rough estimate, in bytes, of the memory held by the cached
+     *         records
+     */
+    public synchronized long getEstimatedMemory() {
+        return estimatedBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EntityCache[" + name + ", size=" + rows.size() + ", hitRatio="
+                + String.format("%.3f", getHitRatio()) + ", evictions="
+                + evictions + ", estimatedBytes=" + estimatedBytes + "]";
+    }
+
+}
@@ -16,27 +16,62 @@
  */
 package com.northwind.api;
 
+import com.northwind.api.StatementTemplate.Operation;
+import com.northwind.api.db.Catalog;
+import com.northwind.api.db.ChangeFeed;
+import com.northwind.api.db.ConnectionPool;
 import com.northwind.api.db.DbConnection;
+import com.northwind.api.db.Dialect;
+import com.northwind.api.db.Dialects;
+import com.northwind.api.db.QueryMonitor;
+import com.northwind.api.db.SchemaRegistry;
+import com.northwind.api.db.StatementCache;
+import com.northwind.api.db.TableSchema;
+import com.northwind.exceptions.ConcurrentUpdateException;
 import com.northwind.exceptions.DataStoreException;
+import com.northwind.exceptions.UncheckedDataStoreException;
 import com.northwind.settings.AppProperties;
+import com.northwind.utils.LogContext;
 import com.northwind.utils.Logger;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.logging.Level;
-import java.util.logging.LogRecord;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
+ * The base of the classes that map a table of the data store to records.
+ * <p>
+ * A `Manager` borrows a connection from the `ConnectionPool` for each
+ * operation and hands it back in `cleanUp`, so that an idle `Manager` does not
+ * keep a connection from anybody else. A `Manager` that is no longer needed
+ * should still be closed, in case it holds a connection from `reconnect`.</p>
  *
  * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ * @param <T> the type of the records this `Manager` maps its table to
  */
-public abstract class Manager {
+public abstract class Manager<T> implements AutoCloseable {
+    
+    /**
+     * The paging indexes already known to exist, by data store and name.
+     */
+    private static final Set<String> pageIndexes 
+            = ConcurrentHashMap.newKeySet();
     
     protected AppProperties props;
     protected Logger log;
-    protected LogRecord record;
+    protected LogContext record;
     
     protected Connection con;
     protected Statement stmt;
@@ -48,7 +83,14 @@ public abstract class Manager {
     protected char[] password;
     protected String tableName;
     
-    protected List<?> model;
+    protected List<T> model;
+    
+    private EntityCache entityCache;
+    private WriteBehindBuffer writeBehind;
+    private WriteBehindBuffer suspendedWriteBehind;
+    private UnitOfWork unitOfWork;
+    private Boolean versioned;
+    private boolean tableReady;
     
     /**
      * Creates a new `Manager` object for accessing and managing the data for a
@@ -64,7 +106,7 @@ public abstract class Manager {
      *                  error occurs while connecting or using the database
      */
     public Manager(String name, char[] pWord,
-            String table, List<?> model) throws DataStoreException {
+            String table, List<T> model) throws DataStoreException {
         props = AppProperties.getInstance();
         log = Logger.getInstance();
         
@@ -74,11 +116,13 @@ public abstract class Manager {
         else
             lvl = Level.INFO;
         
-        record = new LogRecord(lvl, "Initializing the Manager object");
+        record = new LogContext(lvl, "Initializing the Manager object");
         record.setSourceClassName(Manager.class.getName());
         record.setSourceMethodName("Manger");
-        record.setParameters(new Object[]{name, pWord, table, model});
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{name, pWord, table, model});
+            log.enter(record);
+        }
         
         this.dbName = props.getDbName();
         this.dbURL = props.getDbUrl() + this.dbName + props.getDbOptions();
@@ -87,6 +131,8 @@ public abstract class Manager {
         this.tableName = table;
         this.userName = name;
         
+        setWriteBehind(props.isDbWriteBehind());
+        
         ////////////////////////////////////////////////////////////////////////
         // LEAVE THE FOLLOWING AT THE END OF THE METHOD!                      //
         ////////////////////////////////////////////////////////////////////////
@@ -109,9 +155,11 @@ public abstract class Manager {
      */
     public void reconnect(String db) throws DataStoreException {
         record.setSourceMethodName("reconnect");
-        record.setParameters(new Object[]{db});
-        record.setMessage("Attempting to reconnect to the data store...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{db});
+            record.setMessage("Attempting to reconnect to the data store...");
+            log.enter(record);
+        }
         
         record.setMessage("First, we will attempt to disconnect.");
         disconnect();
@@ -178,11 +226,7 @@ public abstract class Manager {
             record.setMessage("Connection succeeded! Checking the table.");
             log.debug(record);
             
-            if ( !checkTable() ) 
-                record.setSourceMethodName("connect");
-                record.setMessage("Table did not exist. Creating the table...");
-                log.debug(record);
-                createTable();
+            openTable();
         } catch ( DataStoreException ex ) {
             record.setSourceMethodName("connect");
             record.setMessage("Could not initialize the table. Throwing new "
@@ -197,6 +241,32 @@ public abstract class Manager {
         }
     }
     
+    /**
+     * Makes sure this `Manager`'s table exists and is up to date, through the
+     * connection held in `con`, creating or migrating it if need be.
+     * 
+     * @throws DataStoreException in the event the table cannot be created or
+     *                            migrated
+     */
+    private void openTable() throws DataStoreException {
+        if ( !checkTable() ) {
+            record.setSourceMethodName("openTable");
+            record.setMessage("Table did not exist. Creating the table...");
+            log.debug(record);
+            createTable();
+        }
+        
+        migrateTable();
+        tableReady = true;
+    }
+    
+    /**
+     * Checks whether this `Manager`'s table exists, by looking it up in the
+     * catalog snapshot of the data store. The snapshot is only taken the first
+     * time any table of the data store is checked.
+     * 
+     * @return `true` if the table exists
+     */
     protected boolean checkTable() {
         record.setSourceMethodName("checkTable");
         record.setMessage("Checking the data store table.");
@@ -205,66 +275,187 @@ public abstract class Manager {
         boolean ret = false;
         
         try {
-            String sql = "SELECT COUNT(*) FROM customers";
-            stmt = con.createStatement();
-            rs = stmt.executeQuery(sql);
+            ret = Catalog.getInstance(dbURL).hasTable(con, tableName);
             
-            record.setMessage("Table has been successfully initialized. "
-                    + "Returning true.");
-            log.debug(record);
-            ret = true;
+            if ( log.isDebugEnabled() ) {
+                record.setMessage("Table " + tableName + (ret ? " exists." 
+                        : " does not exist."));
+                log.debug(record);
+            }
         } catch ( SQLException ex ) {
-            record.setMessage("Could not initialize the table. Returning false");
+            record.setMessage("Could not read the catalog. Returning false");
             record.setThrown(ex);
             log.error(record);
             ret = false;
-        } finally {
-            record.setMessage("Completed checking the data store table. "
-                    + "Performing housekeeping...");
-            log.debug(record);
-            cleanUp();
-            
-            record.setSourceMethodName("checkTable");
-            record.setMessage("Housekeeping complete. Exiting...");
-            log.exit(record, ret);
-            return ret;
         }
+        
+        record.setSourceMethodName("checkTable");
+        record.setMessage("Completed checking the data store table.");
+        log.exit(record, ret);
+        return ret;
     }
     
+    /**
+     * Creates this `Manager`'s table at the current version of its schema,
+     * along with its secondary indexes.
+     * 
+     * @throws DataStoreException in the event the table has no registered 
+     *                            schema, or cannot be created
+     */
     protected void createTable() throws DataStoreException {
         record.setSourceMethodName("createTable");
         record.setMessage("Attempting to create the data table...");
         log.enter(record);
         
-        update( "CREATE TABLE " + tableName + "("
-                + "id IDENTITY, "
-                + "companName VARCHAR(40) NOT NULL, "
-                + "streetAddress VARCHAR(30) NOT NULL, "
-                + "suiteNumber VARCHAR(15), "
-                + "city VARCHAR(30) NOT NULL, "
-                + "state VARCHAR(2) NOT NULL, "
-                + "zipCode VARCHAR(10) NOT NULL, "
-                + "phoneNumber VARCHAR(14), "
-                + "faxNumber VARCHAR(14), "
-                + "emailAddress VARCHAR(50), "
-                + "contactName VARCHAR(30), "
-                + "notes LONGVARCHAR, "
-                + "active BOOLEAN DEFAULT=FALSE)");
+        try {
+            SchemaRegistry.getInstance(dbURL).create(con, getSchema());
+        } catch ( SQLException ex ) {
+            record.setMessage("Could not create the table " + tableName 
+                    + ". Throwing new DataStoreException...");
+            record.setThrown(ex);
+            log.error(record);
+            throw new DataStoreException("Could not create the table " 
+                    + tableName, ex);
+        }
         
         record.setSourceMethodName("createTable");
         record.setMessage("Returning from whence we came...");
         log.exit(record, null);
     }
     
+    /**
+     * Brings this `Manager`'s table up to the current version of its schema.
+     * This is only done the first time the table is opened in a session.
+     * 
+     * @throws DataStoreException in the event the table has no registered 
+     *                            schema, or a migration fails
+     */
+    protected void migrateTable() throws DataStoreException {
+        record.setSourceMethodName("migrateTable");
+        record.setMessage("Making sure the data table is up to date...");
+        log.enter(record);
+        
+        try {
+            SchemaRegistry.getInstance(dbURL).migrate(con, getSchema());
+        } catch ( SQLException ex ) {
+            record.setMessage("Could not migrate the table " + tableName 
+                    + ". Throwing new DataStoreException...");
+            record.setThrown(ex);
+            log.error(record);
+            throw new DataStoreException("Could not migrate the table " 
+                    + tableName, ex);
+        }
+        
+        record.setSourceMethodName("migrateTable");
+        record.setMessage("Returning from whence we came...");
+        log.exit(record, null);
+    }
+    
+    /**
+     * Retrieves the schema of this `Manager`'s table, as registered with the
+     * `SchemaRegistry` by the entity the table holds.
+     * 
+     * @return the schema of the table
+     * @throws DataStoreException in the event no schema is registered for the
+     *                            table
+     */
+    protected TableSchema getSchema() throws DataStoreException {
+        TableSchema schema = SchemaRegistry.getSchema(tableName);
+        
+        if ( schema == null )
+            throw new DataStoreException("No schema is registered for the "
+                    + "table " + tableName);
+        
+        return schema;
+    }
+    
+    /**
+     * Retrieves the dialect of the data store this `Manager`'s table is kept
+     * in, for the SQL that differs between database engines.
+     * 
+     * @return the dialect of the data store
+     */
+    protected Dialect getDialect() {
+        return Dialects.forUrl(dbURL);
+    }
+
+    /**
+     * Tells whether this `Manager`'s table has a `version` column. When it
+     * does, every update raises the version of the record it changes, so that
+     * `updateAllFields` with an expected version can tell when a record has
+     * been changed since it was read.
+     * 
+     * @return `true` if the table's records are versioned
+     * @throws SQLException in the event the columns of the table cannot be
+     *                      read
+     * @throws DataStoreException in the event that the data store cannot be 
+     *                            opened
+     */
+    protected boolean isVersioned() throws SQLException, DataStoreException {
+        if ( versioned == null )
+            versioned = Catalog.getInstance(dbURL).hasColumn(getConnection(), 
+                    tableName, "version");
+        
+        return versioned;
+    }
+    
+    /**
+     * @return the single-field update that suits this `Manager`'s table
+     * @throws SQLException in the event the columns of the table cannot be
+     *                      read
+     * @throws DataStoreException in the event that the data store cannot be 
+     *                            opened
+     */
+    private Operation updateOperation() 
+            throws SQLException, DataStoreException {
+        return isVersioned() ? Operation.VERSIONED_UPDATE : Operation.UPDATE;
+    }
+    
+    /**
+     * Reads a whole record straight from the data store, bypassing the entity
+     * cache and the statement cache.
+     * 
+     * @param id    the ID of the record
+     * @return      the record, or `null` if there is no record with this ID
+     * @throws SQLException in the event the record cannot be read
+     * @throws DataStoreException in the event that the data store cannot be 
+     *                            opened
+     */
+    protected Row readRow(int id) throws SQLException, DataStoreException {
+        String sql = StatementTemplate.forRow(tableName);
+        
+        // A statement of its own, so as not to disturb one already prepared.
+        try ( PreparedStatement ps = DataAccess.track(
+                getConnection().prepareStatement(sql), sql) ) {
+            ps.setInt(1, id);
+            
+            try ( ResultSet row = ps.executeQuery() ) {
+                if ( !row.next() )
+                    return null;
+                
+                QueryMonitor.rowsRead(sql, 1);
+                return Row.read(RowShape.of(sql, row.getMetaData()), row);
+            }
+        }
+    }
+    
     protected void addNew(String sql) throws DataStoreException {
         record.setSourceMethodName("addNew");
-        record.setParameters(new Object[]{sql});
-        record.setMessage("Attempting to execute the SQL provided...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{sql});
+            record.setMessage("Attempting to execute the SQL provided...");
+            log.enter(record);
+        }
         
         try {
-            stmt = con.createStatement();
+            stmt = DataAccess.track(getConnection().createStatement());
             stmt.executeUpdate(sql);
+            invalidateAll();
+            
+            if ( isDdl(sql) ) {
+                Catalog.getInstance(dbURL).invalidate();
+                versioned = null;
+            }
         } catch ( SQLException ex ) {
             record.setMessage("Could not modify the table. Throwing new "
                     + "DataStoreException...");
@@ -278,22 +469,32 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("addNew");
-            record.setParameters(new Object[]{sql});
-            record.setMessage("Housekeeping complete. Returning from whence we "
-                    + "came...");
-            log.exit(record, null);
+            if ( log.isTraceEnabled(record) ) {
+                record.setParameters(new Object[]{sql});
+                record.setMessage("Housekeeping complete. Returning from "
+                        + "whence we came...");
+                log.exit(record, null);
+            }
         }
     }
     
     protected void update(String sql) throws DataStoreException {
         record.setSourceMethodName("update");
-        record.setParameters(new Object[]{sql});
-        record.setMessage("Attempting to execute the SQL provided...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{sql});
+            record.setMessage("Attempting to execute the SQL provided...");
+            log.enter(record);
+        }
         
         try {
-            stmt = con.createStatement();
+            stmt = DataAccess.track(getConnection().createStatement());
             stmt.executeUpdate(sql);
+            invalidateAll();
+            
+            if ( isDdl(sql) ) {
+                Catalog.getInstance(dbURL).invalidate();
+                versioned = null;
+            }
         } catch ( SQLException ex ) {
             record.setMessage("Could not modify the table. Throwing new "
                     + "DataStoreException...");
@@ -307,10 +508,12 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("update");
-            record.setParameters(new Object[]{sql});
-            record.setMessage("Housekeeping complete. Returning from whence we "
-                    + "came...");
-            log.exit(record, null);
+            if ( log.isTraceEnabled(record) ) {
+                record.setParameters(new Object[]{sql});
+                record.setMessage("Housekeeping complete. Returning from "
+                        + "whence we came...");
+                log.exit(record, null);
+            }
         }
     }
     
@@ -322,7 +525,7 @@ public abstract class Manager {
         ResultSet ret = null;
         
         try {
-            stmt = con.createStatement();
+            stmt = DataAccess.track(getConnection().createStatement());
             ret = stmt.executeQuery(sql);
             
             record.setMessage("Record has been successfully fetched. "
@@ -346,6 +549,293 @@ public abstract class Manager {
         }
     }
     
+    /**
+     * Retrieves the connection this `Manager` uses, borrowing one from the
+     * connection pool if it does not hold one already. The table is checked
+     * the first time; after that, the connection is simply borrowed. The
+     * connection is handed back to the pool by the next call to `cleanUp`.
+     * 
+     * @return the connection to the data store
+     * @throws DataStoreException in the event that the data store cannot be 
+     *                            opened
+     */
+    protected Connection getConnection() throws DataStoreException {
+        if ( unitOfWork != null )
+            return unitOfWork.getConnection();
+        
+        if ( con == null ) {
+            if ( tableReady )
+                con = ConnectionPool.getInstance(dbURL).borrow();
+            else
+                connect();
+        }
+        
+        return con;
+    }
+    
+    /**
+     * Retrieves a `PreparedStatement` for the provided parameterized SQL. When
+     * the connection came from the connection pool, the statement is taken 
+     * from the statement cache of that connection, so it is only parsed by the
+     * data store the first time it is used. Such a statement must 
+     * <strong>not</strong> be closed by the caller.
+     * <p>
+     * Otherwise, a new statement is prepared and stored in `stmt`, so that it
+     * is closed by the next call to `cleanUp`.</p>
+     * 
+     * @param sql   the parameterized SQL
+     * @return      a statement ready to have its parameters set
+     * @throws SQLException in the event the statement cannot be prepared
+     * @throws DataStoreException in the event that the data store cannot be 
+     *                            opened
+     */
+    protected PreparedStatement prepare(String sql) 
+            throws SQLException, DataStoreException {
+        Connection conn = getConnection();
+        StatementCache cache = ConnectionPool.getStatementCache(conn);
+        
+        if ( cache != null )
+            return DataAccess.track(cache.prepare(sql), sql);
+        
+        PreparedStatement ps = conn.prepareStatement(sql);
+        stmt = ps;
+        
+        return DataAccess.track(ps, sql);
+    }
+    
+    /**
+     * Prepares a `PreparedStatement` for SQL that is built for one call, such
+     * as a query with the caller's own condition, without taking a place in
+     * the statement cache of the connection. Such SQL would seldom be run
+     * again, and would push out the statements that are. The statement is 
+     * stored in `stmt`, so that it is closed by the next call to `cleanUp`.
+     * 
+     * @param sql   the parameterized SQL
+     * @return      a statement ready to have its parameters set
+     * @throws SQLException in the event the statement cannot be prepared
+     * @throws DataStoreException in the event that the data store cannot be 
+     *                            opened
+     */
+    protected PreparedStatement prepareOnce(String sql) 
+            throws SQLException, DataStoreException {
+        PreparedStatement ps = getConnection().prepareStatement(sql);
+        
+        if ( stmt != null )
+            stmt.close();
+        stmt = ps;
+        
+        return DataAccess.track(ps, sql);
+    }
+    
+    /**
+     * Retrieves the cache of whole records for this `Manager`'s table, which is
+     * shared with every other `Manager` for the same table. The size of the
+     * cache is set by the `db.entity.cache.size` property; a size of zero 
+     * turns the cache off.
+     * 
+     * @return the entity cache, or `null` if entity caching is turned off
+     */
+    public EntityCache getEntityCache() {
+        // Records read within a unit of work may never be committed.
+        if ( unitOfWork != null )
+            return null;
+        
+        if ( entityCache == null && props.getDbEntityCacheSize() > 0 )
+            entityCache = EntityCache.forTable(dbURL, tableName, 
+                    props.getDbEntityCacheSize());
+        
+        return entityCache;
+    }
+    
+    /**
+     * Retrieves a whole record from the entity cache, reading it from the data
+     * store and caching it when it is not already cached.
+     * 
+     * @param cache the entity cache for this table
+     * @param id    the ID of the record
+     * @return      the record, or `null` if there is no record with this ID
+     * @throws SQLException in the event the record cannot be read
+     * @throws DataStoreException in the event that the data store cannot be 
+     *                            opened
+     */
+    protected Row readThrough(EntityCache cache, int id) 
+            throws SQLException, DataStoreException {
+        Row row = cache.get(id);
+        
+        if ( row == null ) {
+            long stamp = cache.stamp();
+            String sql = StatementTemplate.forRow(tableName);
+            PreparedStatement ps = prepare(sql);
+            ps.setInt(1, id);
+            rs = ps.executeQuery();
+            
+            if ( rs.next() ) {
+                row = Row.read(RowShape.of(sql, rs.getMetaData()), rs);
+                cache.put(id, row, stamp);
+                QueryMonitor.rowsRead(sql, 1);
+            }
+        }
+        
+        return row;
+    }
+    
+    /**
+     * Drops a record from the entity cache after it has been changed.
+     * 
+     * @param id    the ID of the changed record
+     */
+    protected void invalidate(int id) {
+        EntityCache cache = getEntityCache();
+        
+        if ( cache != null )
+            cache.invalidate(id);
+        
+        // Within a unit of work, the change is only published once committed.
+        if ( unitOfWork != null )
+            unitOfWork.rowChanged(tableName, id);
+        else
+            ChangeFeed.rowChanged(dbURL, tableName, id);
+    }
+    
+    /**
+     * Empties the entity cache after changes that cannot be tied to particular
+     * records.
+     */
+    protected void invalidateAll() {
+        EntityCache cache = getEntityCache();
+        
+        if ( cache != null )
+            cache.clear();
+        
+        if ( unitOfWork != null )
+            unitOfWork.tableChanged(tableName);
+        else
+            ChangeFeed.tableChanged(dbURL, tableName);
+    }
+    
+    /**
+     * Turns write-behind mode on or off for this `Manager`. In write-behind
+     * mode, the single-field updates and `updateAllFields` do not write to 
+     * the data store straight away. Instead, the changes are buffered and 
+     * merged into a single `UPDATE` per record, which is written when the 
+     * buffer is next flushed: after `db.write.behind.delay` milliseconds, 
+     * when `flush` is called, before the record is next read, or when the 
+     * application exits.
+     * <p>
+     * The default is taken from the `db.write.behind` property. Turning the
+     * mode off flushes any changes still buffered for this table.</p>
+     * 
+     * @param enabled   `true` to buffer updates, `false` to write them straight
+     *                  away
+     * @throws IllegalStateException in the event that buffered changes could
+     *                  not be written when turning the mode off
+     */
+    public void setWriteBehind(boolean enabled) {
+        if ( unitOfWork != null ) {
+            suspendedWriteBehind = enabled 
+                    ? WriteBehindBuffer.forTable(dbURL, tableName) : null;
+        } else if ( enabled ) {
+            writeBehind = WriteBehindBuffer.forTable(dbURL, tableName);
+        } else if ( writeBehind != null ) {
+            try {
+                flush();
+            } catch ( DataStoreException ex ) {
+                throw new IllegalStateException(ex.getMessage(), ex);
+            }
+            
+            writeBehind = null;
+        }
+    }
+    
+    /**
+     * Makes this `Manager` work within a unit of work. Called by 
+     * `UnitOfWork.enlist`.
+     * 
+     * @param uow   the unit of work
+     * @throws DataStoreException in the event the table cannot be opened, or
+     *                            the buffered updates cannot be written
+     */
+    void join(UnitOfWork uow) throws DataStoreException {
+        if ( unitOfWork != null )
+            throw new IllegalStateException("This Manager is already enlisted "
+                    + "in a unit of work.");
+        if ( !dbURL.equals(uow.getUrl()) )
+            throw new IllegalArgumentException("This Manager works on a "
+                    + "different data store than the unit of work.");
+        
+        // The unit of work has a connection of its own, and the pool may have
+        //+ no other to lend, so the table is checked through that one.
+        disconnect();
+        
+        if ( !tableReady ) {
+            con = uow.getConnection();
+            
+            try {
+                openTable();
+            } finally {
+                con = null;
+            }
+        }
+        
+        // Write anything still buffered before the transaction begins.
+        flush();
+        
+        suspendedWriteBehind = writeBehind;
+        writeBehind = null;
+        unitOfWork = uow;
+    }
+    
+    /**
+     * Makes this `Manager` work on its own again. Called when a unit of work
+     * is closed.
+     * 
+     * @param uow   the unit of work being closed
+     */
+    void leave(UnitOfWork uow) {
+        if ( unitOfWork == uow ) {
+            unitOfWork = null;
+            writeBehind = suspendedWriteBehind;
+            suspendedWriteBehind = null;
+        }
+    }
+    
+    /**
+     * @return `true` if this `Manager` buffers its updates
+     */
+    public boolean isWriteBehind() {
+        return writeBehind != null;
+    }
+    
+    /**
+     * Writes every update buffered for this table to the data store. Does 
+     * nothing unless write-behind mode is on.
+     * 
+     * @throws DataStoreException in the event the buffered updates could not
+     *                            be written. They stay buffered, to be retried
+     */
+    public void flush() throws DataStoreException {
+        if ( writeBehind != null )
+            writeBehind.flush();
+    }
+    
+    /**
+     * Writes the updates buffered for this table, if any of them are for the
+     * given record, so that the record can be read with its latest values.
+     * 
+     * @param id    the ID of the record about to be read
+     * @throws DataStoreException in the event the buffered updates could not
+     *                            be written
+     */
+    protected void flushIfDirty(int id) throws DataStoreException {
+        if ( writeBehind != null && writeBehind.isDirty(id) )
+            writeBehind.flush();
+    }
+    
+    /**
+     * Closes the `ResultSet` and `Statement` of the last operation, and hands
+     * the connection back to the connection pool, unless this `Manager` is
+     * working within a unit of work, which owns the connection.
+     */
     protected void cleanUp() {
         record.setSourceMethodName("cleanUp");
         record.setMessage("Performing housekeeping tasks");
@@ -369,12 +859,28 @@ public abstract class Manager {
             record.setThrown(ex);
             log.error(record);
         } finally {
+            if ( unitOfWork == null )
+                disconnect();
+            
+            record.setSourceMethodName("cleanUp");
             record.setMessage("Housekeeping complete. Returning from whence we "
                     + "came...");
             log.exit(record, null);
         }
     }
     
+    /**
+     * Hands any connection this `Manager` still holds back to the connection
+     * pool. The `Manager` can still be used afterward, as the next operation
+     * simply borrows another connection, but it should be closed once it is
+     * no longer needed, such as when the window using it is disposed of.
+     */
+    @Override
+    public void close() {
+        cleanUp();
+        disconnect();
+    }
+    
     /**
      * This is a convenience method to allow the calling procedure to update a
      * field that holds an integer value, without needing to do the conversions
@@ -391,26 +897,38 @@ public abstract class Manager {
     public boolean updateInt(String field, int value , int id) 
             throws DataStoreException {
         record.setSourceMethodName("updateInt");
-        record.setParameters(new Object[]{field, value, id});
-        record.setMessage("Attempting to update field (" + field + ") "
-                + "identified by " + id + "...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{field, value, id});
+            record.setMessage("Attempting to update field (" + field + ") "
+                    + "identified by " + id + "...");
+            log.enter(record);
+        }
         
         boolean ret = false;
         
         try {
-            update("UPDATE " + tableName + " SET " + field + " = " + value 
-                    + " WHERE id = " + id);
-            
-            ret = true;
-        } catch ( DataStoreException ex ) {
+            if ( writeBehind != null ) {
+                writeBehind.stage(id, field, value);
+                invalidate(id);
+                ret = true;
+            } else {
+                PreparedStatement ps = prepare(StatementTemplate.forField(
+                        tableName, field, updateOperation()));
+                ps.setInt(1, value);
+                ps.setInt(2, id);
+                
+                ret = ps.executeUpdate() > 0;
+                invalidate(id);
+            }
+        } catch ( SQLException | IllegalArgumentException ex ) {
             record.setSourceMethodName("updateInt");
             record.setThrown(ex);
             record.setMessage(ex.getMessage());
             log.error(record);
             ret = false;
             
-            throw ex;
+            throw new DataStoreException("Could not update the field (" 
+                    + field + ") identified by " + id, ex);
         } finally {
             record.setSourceMethodName("updateInt");
             record.setMessage("Performing housekeeping before we leave...");
@@ -419,11 +937,14 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("updateInt");
-            record.setMessage("Returning from whence we came and returning " 
-                    + ret + " to the calling procedure");
-            log.exit(record, new Object[]{ret});
-            return ret;
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
         }
+        
+        return ret;
     }
     
     
@@ -439,28 +960,44 @@ public abstract class Manager {
      */
     public int getInt(String field, int id) throws DataStoreException {
         record.setSourceMethodName("getInt");
-        record.setParameters(new Object[]{field, id});
-        record.setMessage("Attempting to retrieve the field (" + field + ") "
-                + "identified by " + id + "...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{field, id});
+            record.setMessage("Attempting to retrieve the field "
+                    + "(" + field + ") identified by " + id + "...");
+            log.enter(record);
+        }
         
         int ret = 0;
         
         try {
-            String sql = "SELECT * FROM " + tableName + " WHERE id = " + id;
-            rs = fetch(sql);
-            
-            if ( rs != null ) {
-                ret = rs.getInt(field);
+            flushIfDirty(id);
+            
+            EntityCache cache = getEntityCache();
+            
+            if ( cache != null ) {
+                Row row = readThrough(cache, id);
+                
+                if ( row != null )
+                    ret = row.getInt(field);
+            } else {
+                PreparedStatement ps = prepare(StatementTemplate.forField(
+                        tableName, field, Operation.SELECT));
+                ps.setInt(1, id);
+                rs = ps.executeQuery();
+                
+                if ( rs.next() ) {
+                    ret = rs.getInt(1);
+                }
             }
-        } catch ( DataStoreException ex ) {
+        } catch ( SQLException | IllegalArgumentException ex ) {
             record.setSourceMethodName("getInt");
             record.setThrown(ex);
             record.setMessage(ex.getMessage());
             log.error(record);
             ret = 0;
             
-            throw ex;
+            throw new DataStoreException("Could not retrieve the field (" 
+                    + field + ") identified by " + id, ex);
         } finally {
             record.setSourceMethodName("getInt");
             record.setMessage("Performing housekeeping before we leave...");
@@ -469,11 +1006,14 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("getInt");
-            record.setMessage("Returning from whence we came and returning " 
-                    + ret + " to the calling procedure");
-            log.exit(record, new Object[]{ret});
-            return ret;
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
         }
+        
+        return ret;
     }
     
     /**
@@ -489,28 +1029,41 @@ public abstract class Manager {
      * @throws DataStoreException in the event that an error is encountered 
      *                            during the update process
      */
-    public boolean updateLong(String field, long value, int id) {
+    public boolean updateLong(String field, long value, int id) 
+            throws DataStoreException {
         record.setSourceMethodName("updateLong");
-        record.setParameters(new Object[]{field, value, id});
-        record.setMessage("Attempting to update field (" + field + ") "
-                + "identified by " + id + "...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{field, value, id});
+            record.setMessage("Attempting to update field (" + field + ") "
+                    + "identified by " + id + "...");
+            log.enter(record);
+        }
         
         boolean ret = false;
         
         try {
-            update("UPDATE " + tableName + " SET " + field + " = " + value 
-                    + " WHERE id = " + id);
-            
-            ret = true;
-        } catch ( DataStoreException ex ) {
+            if ( writeBehind != null ) {
+                writeBehind.stage(id, field, value);
+                invalidate(id);
+                ret = true;
+            } else {
+                PreparedStatement ps = prepare(StatementTemplate.forField(
+                        tableName, field, updateOperation()));
+                ps.setLong(1, value);
+                ps.setInt(2, id);
+                
+                ret = ps.executeUpdate() > 0;
+                invalidate(id);
+            }
+        } catch ( SQLException | IllegalArgumentException ex ) {
             record.setSourceMethodName("updateLong");
             record.setThrown(ex);
             record.setMessage(ex.getMessage());
             log.error(record);
             ret = false;
             
-            throw ex;
+            throw new DataStoreException("Could not update the field (" 
+                    + field + ") identified by " + id, ex);
         } finally {
             record.setSourceMethodName("updateLong");
             record.setMessage("Performing housekeeping before we leave...");
@@ -519,11 +1072,14 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("updateLong");
-            record.setMessage("Returning from whence we came and returning " 
-                    + ret + " to the calling procedure");
-            log.exit(record, new Object[]{ret});
-            return ret;
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
         }
+        
+        return ret;
     }
     
     /**
@@ -538,28 +1094,44 @@ public abstract class Manager {
      */
     public long getLong(String field, int id) throws DataStoreException {
         record.setSourceMethodName("getLong");
-        record.setParameters(new Object[]{field, id});
-        record.setMessage("Attempting to retrieve the field (" + field + ") "
-                + "identified by " + id + "...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{field, id});
+            record.setMessage("Attempting to retrieve the field "
+                    + "(" + field + ") identified by " + id + "...");
+            log.enter(record);
+        }
         
         long ret = 0;
         
         try {
-            String sql = "SELECT * FROM " + tableName + " WHERE id = " + id;
-            rs = fetch(sql);
-            
-            if ( rs != null ) {
-                ret = rs.getLong(field);
+            flushIfDirty(id);
+            
+            EntityCache cache = getEntityCache();
+            
+            if ( cache != null ) {
+                Row row = readThrough(cache, id);
+                
+                if ( row != null )
+                    ret = row.getLong(field);
+            } else {
+                PreparedStatement ps = prepare(StatementTemplate.forField(
+                        tableName, field, Operation.SELECT));
+                ps.setInt(1, id);
+                rs = ps.executeQuery();
+                
+                if ( rs.next() ) {
+                    ret = rs.getLong(1);
+                }
             }
-        } catch ( DataStoreException ex ) {
+        } catch ( SQLException | IllegalArgumentException ex ) {
             record.setSourceMethodName("getLong");
             record.setThrown(ex);
             record.setMessage(ex.getMessage());
             log.error(record);
             ret = 0;
             
-            throw ex;
+            throw new DataStoreException("Could not retrieve the field (" 
+                    + field + ") identified by " + id, ex);
         } finally {
             record.setSourceMethodName("getLong");
             record.setMessage("Performing housekeeping before we leave...");
@@ -568,11 +1140,14 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("getLong");
-            record.setMessage("Returning from whence we came and returning " 
-                    + ret + " to the calling procedure");
-            log.exit(record, new Object[]{ret});
-            return ret;
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
         }
+        
+        return ret;
     }
     
     /**
@@ -591,26 +1166,38 @@ public abstract class Manager {
     public boolean updateDouble(String field, double value, int id) 
             throws DataStoreException {
         record.setSourceMethodName("updateDouble");
-        record.setParameters(new Object[]{field, value, id});
-        record.setMessage("Attempting to update field (" + field + ") "
-                + "identified by " + id + "...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{field, value, id});
+            record.setMessage("Attempting to update field (" + field + ") "
+                    + "identified by " + id + "...");
+            log.enter(record);
+        }
         
         boolean ret = false;
         
         try {
-            update("UPDATE " + tableName + " SET " + field + " = " + value 
-                    + " WHERE id = " + id);
-            
-            ret = true;
-        } catch ( DataStoreException ex ) {
+            if ( writeBehind != null ) {
+                writeBehind.stage(id, field, value);
+                invalidate(id);
+                ret = true;
+            } else {
+                PreparedStatement ps = prepare(StatementTemplate.forField(
+                        tableName, field, updateOperation()));
+                ps.setDouble(1, value);
+                ps.setInt(2, id);
+                
+                ret = ps.executeUpdate() > 0;
+                invalidate(id);
+            }
+        } catch ( SQLException | IllegalArgumentException ex ) {
             record.setSourceMethodName("updateDouble");
             record.setThrown(ex);
             record.setMessage(ex.getMessage());
             log.error(record);
             ret = false;
             
-            throw ex;
+            throw new DataStoreException("Could not update the field (" 
+                    + field + ") identified by " + id, ex);
         } finally {
             record.setSourceMethodName("updateDouble");
             record.setMessage("Performing housekeeping before we leave...");
@@ -619,11 +1206,14 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("updateDouble");
-            record.setMessage("Returning from whence we came and returning " 
-                    + ret + " to the calling procedure");
-            log.exit(record, new Object[]{ret});
-            return ret;
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
         }
+        
+        return ret;
     }
 
     /**
@@ -638,28 +1228,44 @@ public abstract class Manager {
      */
     public double getDouble(String field, int id) throws DataStoreException {
         record.setSourceMethodName("getDouble");
-        record.setParameters(new Object[]{field, id});
-        record.setMessage("Attempting to retrieve the field (" + field + ") "
-                + "identified by " + id + "...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{field, id});
+            record.setMessage("Attempting to retrieve the field "
+                    + "(" + field + ") identified by " + id + "...");
+            log.enter(record);
+        }
         
         double ret = 0;
         
         try {
-            String sql = "SELECT * FROM " + tableName + " WHERE id = " + id;
-            rs = fetch(sql);
-            
-            if ( rs != null ) {
-                ret = rs.getDouble(field);
+            flushIfDirty(id);
+            
+            EntityCache cache = getEntityCache();
+            
+            if ( cache != null ) {
+                Row row = readThrough(cache, id);
+                
+                if ( row != null )
+                    ret = row.getDouble(field);
+            } else {
+                PreparedStatement ps = prepare(StatementTemplate.forField(
+                        tableName, field, Operation.SELECT));
+                ps.setInt(1, id);
+                rs = ps.executeQuery();
+                
+                if ( rs.next() ) {
+                    ret = rs.getDouble(1);
+                }
             }
-        } catch ( DataStoreException ex ) {
+        } catch ( SQLException | IllegalArgumentException ex ) {
             record.setSourceMethodName("getDouble");
             record.setThrown(ex);
             record.setMessage(ex.getMessage());
             log.error(record);
             ret = 0;
             
-            throw ex;
+            throw new DataStoreException("Could not retrieve the field (" 
+                    + field + ") identified by " + id, ex);
         } finally {
             record.setSourceMethodName("getDouble");
             record.setMessage("Performing housekeeping before we leave...");
@@ -668,11 +1274,14 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("getDouble");
-            record.setMessage("Returning from whence we came and returning " 
-                    + ret + " to the calling procedure");
-            log.exit(record, new Object[]{ret});
-            return ret;
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
         }
+        
+        return ret;
     }
     
     /**
@@ -691,26 +1300,38 @@ public abstract class Manager {
     public boolean updateFloat(String field, float value, int id) 
             throws DataStoreException {
         record.setSourceMethodName("updateFloat");
-        record.setParameters(new Object[]{field, value, id});
-        record.setMessage("Attempting to update field (" + field + ") "
-                + "identified by " + id + "...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{field, value, id});
+            record.setMessage("Attempting to update field (" + field + ") "
+                    + "identified by " + id + "...");
+            log.enter(record);
+        }
         
         boolean ret = false;
         
         try {
-            update("UPDATE " + tableName + " SET " + field + " = " + value 
-                    + " WHERE id = " + id);
-            
-            ret = true;
-        } catch ( DataStoreException ex ) {
+            if ( writeBehind != null ) {
+                writeBehind.stage(id, field, value);
+                invalidate(id);
+                ret = true;
+            } else {
+                PreparedStatement ps = prepare(StatementTemplate.forField(
+                        tableName, field, updateOperation()));
+                ps.setFloat(1, value);
+                ps.setInt(2, id);
+                
+                ret = ps.executeUpdate() > 0;
+                invalidate(id);
+            }
+        } catch ( SQLException | IllegalArgumentException ex ) {
             record.setSourceMethodName("updateFloat");
             record.setThrown(ex);
             record.setMessage(ex.getMessage());
             log.error(record);
             ret = false;
             
-            throw ex;
+            throw new DataStoreException("Could not update the field (" 
+                    + field + ") identified by " + id, ex);
         } finally {
             record.setSourceMethodName("updateFloat");
             record.setMessage("Performing housekeeping before we leave...");
@@ -719,11 +1340,14 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("updateFloat");
-            record.setMessage("Returning from whence we came and returning " 
-                    + ret + " to the calling procedure");
-            log.exit(record, new Object[]{ret});
-            return ret;
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
         }
+        
+        return ret;
     }
 
     /**
@@ -738,28 +1362,44 @@ public abstract class Manager {
      */
     public float getFloat(String field, int id) throws DataStoreException {
         record.setSourceMethodName("getFloat");
-        record.setParameters(new Object[]{field, id});
-        record.setMessage("Attempting to retrieve the field (" + field + ") "
-                + "identified by " + id + "...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{field, id});
+            record.setMessage("Attempting to retrieve the field "
+                    + "(" + field + ") identified by " + id + "...");
+            log.enter(record);
+        }
         
         float ret = 0;
         
         try {
-            String sql = "SELECT * FROM " + tableName + " WHERE id = " + id;
-            rs = fetch(sql);
-            
-            if ( rs != null ) {
-                ret = rs.getLong(field);
+            flushIfDirty(id);
+            
+            EntityCache cache = getEntityCache();
+            
+            if ( cache != null ) {
+                Row row = readThrough(cache, id);
+                
+                if ( row != null )
+                    ret = row.getFloat(field);
+            } else {
+                PreparedStatement ps = prepare(StatementTemplate.forField(
+                        tableName, field, Operation.SELECT));
+                ps.setInt(1, id);
+                rs = ps.executeQuery();
+                
+                if ( rs.next() ) {
+                    ret = rs.getFloat(1);
+                }
             }
-        } catch ( DataStoreException ex ) {
+        } catch ( SQLException | IllegalArgumentException ex ) {
             record.setSourceMethodName("getFloat");
             record.setThrown(ex);
             record.setMessage(ex.getMessage());
             log.error(record);
             ret = 0;
             
-            throw ex;
+            throw new DataStoreException("Could not retrieve the field (" 
+                    + field + ") identified by " + id, ex);
         } finally {
             record.setSourceMethodName("getFloat");
             record.setMessage("Performing housekeeping before we leave...");
@@ -768,11 +1408,14 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("getFloat");
-            record.setMessage("Returning from whence we came and returning " 
-                    + ret + " to the calling procedure");
-            log.exit(record, new Object[]{ret});
-            return ret;
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
         }
+        
+        return ret;
     }
 
     /**
@@ -790,26 +1433,38 @@ public abstract class Manager {
     public boolean udpateString(String field, String value, int id) 
             throws DataStoreException {
         record.setSourceMethodName("udpateString");
-        record.setParameters(new Object[]{field, value, id});
-        record.setMessage("Attempting to update field (" + field + ") "
-                + "identified by " + id + "...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{field, value, id});
+            record.setMessage("Attempting to update field (" + field + ") "
+                    + "identified by " + id + "...");
+            log.enter(record);
+        }
         
         boolean ret = false;
         
         try {
-            update("UPDATE " + tableName + " SET " + field + " = " + value 
-                    + " WHERE id = " + id);
-            
-            ret = true;
-        } catch ( DataStoreException ex ) {
+            if ( writeBehind != null ) {
+                writeBehind.stage(id, field, value);
+                invalidate(id);
+                ret = true;
+            } else {
+                PreparedStatement ps = prepare(StatementTemplate.forField(
+                        tableName, field, updateOperation()));
+                ps.setString(1, value);
+                ps.setInt(2, id);
+                
+                ret = ps.executeUpdate() > 0;
+                invalidate(id);
+            }
+        } catch ( SQLException | IllegalArgumentException ex ) {
             record.setSourceMethodName("udpateString");
             record.setThrown(ex);
             record.setMessage(ex.getMessage());
             log.error(record);
             ret = false;
             
-            throw ex;
+            throw new DataStoreException("Could not update the field (" 
+                    + field + ") identified by " + id, ex);
         } finally {
             record.setSourceMethodName("udpateString");
             record.setMessage("Performing housekeeping before we leave...");
@@ -818,11 +1473,14 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("udpateString");
-            record.setMessage("Returning from whence we came and returning " 
-                    + ret + " to the calling procedure");
-            log.exit(record, new Object[]{ret});
-            return ret;
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
         }
+        
+        return ret;
     }
 
     /**
@@ -837,28 +1495,44 @@ public abstract class Manager {
      */
     public String getString(String field, int id) throws DataStoreException {
         record.setSourceMethodName("getString");
-        record.setParameters(new Object[]{field, id});
-        record.setMessage("Attempting to retrieve the field (" + field + ") "
-                + "identified by " + id + "...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{field, id});
+            record.setMessage("Attempting to retrieve the field "
+                    + "(" + field + ") identified by " + id + "...");
+            log.enter(record);
+        }
         
         String ret = null;
         
         try {
-            String sql = "SELECT * FROM " + tableName + " WHERE id = " + id;
-            rs = fetch(sql);
-            
-            if ( rs != null ) {
-                ret = rs.getString(field);
+            flushIfDirty(id);
+            
+            EntityCache cache = getEntityCache();
+            
+            if ( cache != null ) {
+                Row row = readThrough(cache, id);
+                
+                if ( row != null )
+                    ret = row.getString(field);
+            } else {
+                PreparedStatement ps = prepare(StatementTemplate.forField(
+                        tableName, field, Operation.SELECT));
+                ps.setInt(1, id);
+                rs = ps.executeQuery();
+                
+                if ( rs.next() ) {
+                    ret = rs.getString(1);
+                }
             }
-        } catch ( DataStoreException ex ) {
+        } catch ( SQLException | IllegalArgumentException ex ) {
             record.setSourceMethodName("getString");
             record.setThrown(ex);
             record.setMessage(ex.getMessage());
             log.error(record);
             ret = null;
             
-            throw ex;
+            throw new DataStoreException("Could not retrieve the field (" 
+                    + field + ") identified by " + id, ex);
         } finally {
             record.setSourceMethodName("getString");
             record.setMessage("Performing housekeeping before we leave...");
@@ -867,11 +1541,14 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("getString");
-            record.setMessage("Returning from whence we came and returning " 
-                    + ret + " to the calling procedure");
-            log.exit(record, new Object[]{ret});
-            return ret;
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
         }
+        
+        return ret;
     }
 
     /**
@@ -890,26 +1567,38 @@ public abstract class Manager {
     public boolean updateBoolean(String field, boolean value, int id) 
             throws DataStoreException {
         record.setSourceMethodName("updateBoolean");
-        record.setParameters(new Object[]{field, value, id});
-        record.setMessage("Attempting to update field (" + field + ") "
-                + "identified by " + id + "...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{field, value, id});
+            record.setMessage("Attempting to update field (" + field + ") "
+                    + "identified by " + id + "...");
+            log.enter(record);
+        }
         
         boolean ret = false;
         
         try {
-            update("UPDATE " + tableName + " SET " + field + " = " + value 
-                    + " WHERE id = " + id);
-            
-            ret = true;
-        } catch ( DataStoreException ex ) {
+            if ( writeBehind != null ) {
+                writeBehind.stage(id, field, value);
+                invalidate(id);
+                ret = true;
+            } else {
+                PreparedStatement ps = prepare(StatementTemplate.forField(
+                        tableName, field, updateOperation()));
+                ps.setBoolean(1, value);
+                ps.setInt(2, id);
+                
+                ret = ps.executeUpdate() > 0;
+                invalidate(id);
+            }
+        } catch ( SQLException | IllegalArgumentException ex ) {
             record.setSourceMethodName("updateBoolean");
             record.setThrown(ex);
             record.setMessage(ex.getMessage());
             log.error(record);
             ret = false;
             
-            throw ex;
+            throw new DataStoreException("Could not update the field (" 
+                    + field + ") identified by " + id, ex);
         } finally {
             record.setSourceMethodName("updateBoolean");
             record.setMessage("Performing housekeeping before we leave...");
@@ -918,11 +1607,14 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("updateBoolean");
-            record.setMessage("Returning from whence we came and returning " 
-                    + ret + " to the calling procedure");
-            log.exit(record, new Object[]{ret});
-            return ret;
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
         }
+        
+        return ret;
     }
 
     /**
@@ -937,28 +1629,44 @@ public abstract class Manager {
      */
     public boolean getBoolean(String field, int id) throws DataStoreException {
         record.setSourceMethodName("getBoolean");
-        record.setParameters(new Object[]{field, id});
-        record.setMessage("Attempting to retrieve the field (" + field + ") "
-                + "identified by " + id + "...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{field, id});
+            record.setMessage("Attempting to retrieve the field "
+                    + "(" + field + ") identified by " + id + "...");
+            log.enter(record);
+        }
         
         boolean ret = false;
         
         try {
-            String sql = "SELECT * FROM " + tableName + " WHERE id = " + id;
-            rs = fetch(sql);
-            
-            if ( rs != null ) {
-                ret = rs.getBoolean(field);
+            flushIfDirty(id);
+            
+            EntityCache cache = getEntityCache();
+            
+            if ( cache != null ) {
+                Row row = readThrough(cache, id);
+                
+                if ( row != null )
+                    ret = row.getBoolean(field);
+            } else {
+                PreparedStatement ps = prepare(StatementTemplate.forField(
+                        tableName, field, Operation.SELECT));
+                ps.setInt(1, id);
+                rs = ps.executeQuery();
+                
+                if ( rs.next() ) {
+                    ret = rs.getBoolean(1);
+                }
             }
-        } catch ( DataStoreException ex ) {
+        } catch ( SQLException | IllegalArgumentException ex ) {
             record.setSourceMethodName("getBoolean");
             record.setThrown(ex);
             record.setMessage(ex.getMessage());
             log.error(record);
             ret = false;
             
-            throw ex;
+            throw new DataStoreException("Could not retrieve the field (" 
+                    + field + ") identified by " + id, ex);
         } finally {
             record.setSourceMethodName("getBoolean");
             record.setMessage("Performing housekeeping before we leave...");
@@ -967,11 +1675,117 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("getBoolean");
-            record.setMessage("Returning from whence we came and returning " 
-                    + ret + " to the calling procedure");
-            log.exit(record, new Object[]{ret});
-            return ret;
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
         }
+        
+        return ret;
+    }
+    
+    /**
+     * Retrieves several fields of a single record in one round trip to the 
+     * data store. This should be preferred over calling the individual getters
+     * one field at a time, each of which is a separate query.
+     * <p>
+     * The values are returned in a `Row`, in the order the fields were given,
+     * and can be read by position or by name. Numeric, boolean and date values
+     * are not boxed.</p>
+     * 
+     * @param id        the ID for the record of interest
+     * @param columns   the fields of interest
+     * @return          the values of the requested fields, or `null` if there
+     *                  is no record with the provided ID
+     * @throws DataStoreException in the event there is an error accessing the
+     *                            data store
+     */
+    public Row fetchColumns(int id, String... columns) 
+            throws DataStoreException {
+        return fetchProjection("fetchColumns", 
+                StatementTemplate.forColumns(tableName, columns), id);
+    }
+    
+    /**
+     * Retrieves every field of a single record in one round trip to the data
+     * store.
+     * 
+     * @param id    the ID for the record of interest
+     * @return      the values of all fields of the record, or `null` if there
+     *              is no record with the provided ID
+     * @throws DataStoreException in the event there is an error accessing the
+     *                            data store
+     * @see #fetchColumns(int, java.lang.String...) 
+     */
+    public Row fetchRow(int id) throws DataStoreException {
+        EntityCache cache = getEntityCache();
+        
+        if ( cache == null )
+            return fetchProjection("fetchRow", 
+                    StatementTemplate.forRow(tableName), id);
+        
+        Row ret = cache.get(id);
+        
+        if ( ret == null ) {
+            long stamp = cache.stamp();
+            ret = fetchProjection("fetchRow", 
+                    StatementTemplate.forRow(tableName), id);
+            
+            if ( ret != null )
+                cache.put(id, ret, stamp);
+        }
+        
+        return ret;
+    }
+    
+    private Row fetchProjection(String method, String sql, int id) 
+            throws DataStoreException {
+        record.setSourceMethodName(method);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{sql, id});
+            record.setMessage("Attempting to retrieve the record identified by "
+                    + id + "...");
+            log.enter(record);
+        }
+        
+        Row ret = null;
+        
+        try {
+            flushIfDirty(id);
+            
+            PreparedStatement ps = prepare(sql);
+            ps.setInt(1, id);
+            rs = ps.executeQuery();
+            
+            if ( rs.next() ) {
+                ret = Row.read(RowShape.of(sql, rs.getMetaData()), rs);
+                QueryMonitor.rowsRead(sql, 1);
+            }
+        } catch ( SQLException ex ) {
+            record.setSourceMethodName(method);
+            record.setThrown(ex);
+            record.setMessage(ex.getMessage());
+            log.error(record);
+            
+            throw new DataStoreException("Could not retrieve the record "
+                    + "identified by " + id, ex);
+        } finally {
+            record.setSourceMethodName(method);
+            record.setMessage("Performing housekeeping before we leave...");
+            log.debug(record);
+            
+            cleanUp();
+            
+            record.setSourceMethodName(method);
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
+        }
+        
+        return ret;
     }
     
     /**
@@ -1004,36 +1818,69 @@ public abstract class Manager {
     public boolean updateAllFields(HashMap fieldsValues, int id) 
             throws DataStoreException {
         record.setSourceMethodName("updateAllFields");
-        record.setParameters(new Object[]{fieldsValues, id});
-        record.setMessage("Attempting to update all fields "
-                + "identified by " + id + "...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{fieldsValues, id});
+            record.setMessage("Attempting to update all fields "
+                    + "identified by " + id + "...");
+            log.enter(record);
+        }
         
         boolean ret = false;
         
         try {
-            String sql = "UPDATE " + tableName + " SET ";
-            
-            Iterator it = fieldsValues.entrySet().iterator();
+            // The map is untyped, so each key is read by its string form.
+            Map<?, ?> fields = fieldsValues;
+            StringBuilder sql = new StringBuilder("UPDATE ").append(tableName)
+                    .append(" SET ");
+            Object[] values = new Object[fields.size()];
+            int idx = 0;
+            
+            for ( Map.Entry<?, ?> element : fields.entrySet() ) {
+                String field = element.getKey().toString();
+                
+                if ( writeBehind != null ) {
+                    writeBehind.stage(id, field, element.getValue());
+                } else {
+                    if ( idx > 0 )
+                        sql.append(", ");
+                    
+                    sql.append(StatementTemplate.checkIdentifier(field))
+                            .append(" = ?");
+                    values[idx++] = element.getValue();
+                }
+            }
             
-            while ( it.hasNext() ) {
-                Map.Entry element = (Map.Entry)it.next();
-                sql += element.getKey() + " = " + element.getValue() + ", ";
+            if ( writeBehind != null ) {
+                invalidate(id);
+                ret = true;
+                
+                return ret;
             }
             
-            sql += "WHERE id = " + id;
+            if ( isVersioned() && !fieldsValues.containsKey("version") )
+                sql.append(", version = version + 1");
             
-            update(sql);
+            sql.append(" WHERE id = ?");
             
-            ret = true;
-        } catch ( DataStoreException ex ) {
+            PreparedStatement ps = prepareOnce(sql.toString());
+            
+            for ( idx = 0; idx < values.length; idx++ ) {
+                ps.setObject(idx + 1, values[idx]);
+            }
+            
+            ps.setInt(values.length + 1, id);
+            
+            ret = ps.executeUpdate() > 0;
+            invalidate(id);
+        } catch ( SQLException | IllegalArgumentException ex ) {
             record.setSourceMethodName("updateAllFields");
             record.setThrown(ex);
             record.setMessage(ex.getMessage());
             log.error(record);
             ret = false;
             
-            throw ex;
+            throw new DataStoreException("Could not update the record "
+                    + "identified by " + id, ex);
         } finally {
             record.setSourceMethodName("updateAllFields");
             record.setMessage("Performing housekeeping before we leave...");
@@ -1042,18 +1889,150 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("updateAllFields");
-            record.setMessage("Returning from whence we came and returning " 
-                    + ret + " to the calling procedure");
-            log.exit(record, new Object[]{ret});
-            return ret;
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
+        }
+        
+        return ret;
+    }
+    
+    /**
+     * Updates the given fields of a record, but only if nobody else has
+     * changed the record since it was read. The update is made only while the
+     * record's `version` is still the version it was read at, and raises the
+     * version by one; so of two users editing the same record, the first to
+     * save wins, and the second is told rather than overwriting the first
+     * user's changes.
+     * <p>
+     * Read the version along with the rest of the record, with `getVersion`
+     * or from the `version` field of a `Row`. The update is written straight
+     * away, even in write-behind mode.</p>
+     * 
+     * @param fieldsValues  the field names of the table as the keys, with
+     *                      their new values as the values
+     * @param id            the id of the record to update
+     * @param version       the version of the record the changes are based on
+     * @return              the new version of the record
+     * @throws ConcurrentUpdateException in the event the record has been 
+     *                      changed or removed since it was read at `version`;
+     *                      the exception holds the record as it now is
+     * @throws DataStoreException in the event that the table has no `version`
+     *                      column, or an error is encountered during the 
+     *                      update process
+     */
+    public int updateAllFields(Map<String, ?> fieldsValues, int id, 
+            int version) throws DataStoreException {
+        record.setSourceMethodName("updateAllFields");
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{fieldsValues, id, version});
+            record.setMessage("Attempting to update all fields identified by " 
+                    + id + " at version " + version + "...");
+            log.enter(record);
+        }
+        
+        int ret = -1;
+        
+        try {
+            if ( !isVersioned() )
+                throw new DataStoreException("The table " + tableName 
+                        + " has no version column.");
+            
+            // Buffered changes raise the version, too.
+            if ( writeBehind != null )
+                flush();
+            
+            StringBuilder sql = new StringBuilder("UPDATE ").append(tableName)
+                    .append(" SET ");
+            List<Object> values = new ArrayList<>();
+            
+            for ( Map.Entry<String, ?> element : fieldsValues.entrySet() ) {
+                if ( element.getKey().equalsIgnoreCase("version") )
+                    continue;
+                
+                sql.append(StatementTemplate.checkIdentifier(element.getKey()))
+                        .append(" = ?, ");
+                values.add(element.getValue());
+            }
+            
+            sql.append("version = version + 1 WHERE id = ? AND version = ?");
+            
+            PreparedStatement ps = prepareOnce(sql.toString());
+            int idx = 1;
+            
+            for ( Object value : values ) {
+                ps.setObject(idx++, value);
+            }
+            
+            ps.setInt(idx++, id);
+            ps.setInt(idx, version);
+            
+            if ( ps.executeUpdate() == 0 ) {
+                Row current = readRow(id);
+                
+                if ( log.isDebugEnabled() ) {
+                    record.setMessage("The record identified by " + id + " is "
+                            + "no longer at version " + version + ".");
+                    log.debug(record);
+                }
+                
+                throw new ConcurrentUpdateException(tableName, id, version, 
+                        current);
+            }
+            
+            invalidate(id);
+            ret = version + 1;
+        } catch ( SQLException | IllegalArgumentException ex ) {
+            record.setSourceMethodName("updateAllFields");
+            record.setThrown(ex);
+            record.setMessage(ex.getMessage());
+            log.error(record);
+            
+            throw new DataStoreException("Could not update the record "
+                    + "identified by " + id, ex);
+        } finally {
+            record.setSourceMethodName("updateAllFields");
+            record.setMessage("Performing housekeeping before we leave...");
+            log.debug(record);
+            
+            cleanUp();
+            
+            record.setSourceMethodName("updateAllFields");
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Returning from whence we came and returning "
+                        + ret + " to the calling procedure");
+                log.exit(record, new Object[]{ret});
+            }
         }
+        
+        return ret;
+    }
+    
+    /**
+     * Retrieves the version of a record, for a later `updateAllFields` that
+     * must not overwrite changes made by anybody else in the meantime.
+     * 
+     * @param id    the ID for the record of interest
+     * @return      the version of the record, which starts at zero and is
+     *              raised by every update
+     * @throws DataStoreException in the event there is an error accessing the
+     *                            data store, or the table has no `version`
+     *                            column
+     */
+    public int getVersion(int id) throws DataStoreException {
+        return getInt("version", id);
     }
     
     public boolean add(List<String> records) throws DataStoreException {
         record.setSourceMethodName("add");
-        record.setParameters(new Object[]{records});
-        record.setMessage("Attempting to add a new record to the data store.");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{records});
+            record.setMessage("Attempting to add a new record to the data "
+                    + "store.");
+            log.enter(record);
+        }
         
         boolean ret = false;
         
@@ -1082,14 +2061,748 @@ public abstract class Manager {
             cleanUp();
             
             record.setSourceMethodName("add");
-            record.setMessage("Housekeeping complete. Return from whence we "
-                    + "came.");
-            log.exit(record, new Object[]{ret});
-            return ret;
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Housekeeping complete. Return from whence "
+                        + "we came.");
+                log.exit(record, new Object[]{ret});
+            }
+        }
+        
+        return ret;
+    }
+    
+    /**
+     * Adds many records to the data store at once. The records are sent to the
+     * data store in batches of `db.batch.size` records, and each batch is 
+     * committed as a single transaction, which is far faster than adding the
+     * records one at a time.
+     * <p>
+     * If a batch fails, that batch is rolled back and a `DataStoreException`
+     * is thrown, but the batches before it remain committed.</p>
+     * 
+     * @param records   the records to add
+     * @return          the IDs the data store generated for the new records, in
+     *                  the same order as `records`
+     * @throws DataStoreException in the event that an error is encountered 
+     *                            while adding the records
+     */
+    public long[] addAll(Collection<? extends T> records) 
+            throws DataStoreException {
+        record.setSourceMethodName("addAll");
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{records.size()});
+            record.setMessage("Attempting to add " + records.size() + " new "
+                    + "records to the data store.");
+            log.enter(record);
+        }
+        
+        long[] ret = new long[records.size()];
+        int batchSize = Math.max(1, props.getDbBatchSize());
+        int added = 0;
+        Connection conn = getConnection();
+        // Within a unit of work, the unit commits or rolls back the inserts.
+        boolean ownTransaction = unitOfWork == null;
+        // Some engines only return the key of the last row of a batch, so
+        //+ their rows are sent one at a time, still within one transaction.
+        boolean batchKeys = getDialect().returnsBatchKeys();
+        PreparedStatement ps = null;
+        
+        try {
+            if ( ownTransaction )
+                conn.setAutoCommit(false);
+            
+            String insert = StatementTemplate.forInsert(tableName, 
+                    getInsertFields());
+            ps = DataAccess.track(conn.prepareStatement(insert, 
+                    Statement.RETURN_GENERATED_KEYS), insert);
+            
+            Iterator<? extends T> it = records.iterator();
+            
+            while ( it.hasNext() ) {
+                int pending = 0;
+                
+                while ( pending < batchSize && it.hasNext() ) {
+                    bindInsert(ps, it.next());
+                    
+                    if ( batchKeys ) {
+                        ps.addBatch();
+                    } else {
+                        ps.executeUpdate();
+                        readKeys(ps, ret, added + pending);
+                    }
+                    
+                    pending++;
+                }
+                
+                if ( batchKeys ) {
+                    ps.executeBatch();
+                    readKeys(ps, ret, added);
+                }
+                
+                if ( ownTransaction )
+                    conn.commit();
+                
+                for ( int idx = added; idx < added + pending; idx++ ) {
+                    invalidate((int) ret[idx]);
+                }
+                
+                added += pending;
+                
+                if ( log.isDebugEnabled() ) {
+                    record.setMessage("Committed " + added + " of " 
+                            + records.size() + " records.");
+                    log.debug(record);
+                }
+            }
+        } catch ( SQLException ex ) {
+            record.setSourceMethodName("addAll");
+            record.setThrown(ex);
+            record.setMessage(ex.getMessage());
+            log.error(record);
+            
+            try {
+                if ( ownTransaction )
+                    conn.rollback();
+            } catch ( SQLException e ) {
+                // The pool rolls the connection back when it is returned, so
+                //+ there is nothing more to do here.
+            }
+            
+            throw new DataStoreException("Could not add the records. " + added
+                    + " of " + records.size() + " records were added before "
+                    + "the error.", ex);
+        } finally {
+            record.setSourceMethodName("addAll");
+            record.setMessage("Performing housekeeping before we leave...");
+            log.debug(record);
+            
+            try {
+                if ( ps != null )
+                    ps.close();
+                if ( ownTransaction )
+                    conn.setAutoCommit(true);
+            } catch ( SQLException ex ) {
+                record.setMessage("An error occurred while closing the batch "
+                        + "statement. We are not throwing any Exceptions for "
+                        + "this, just noting it here.\n\nMessage: " 
+                        + ex.getMessage());
+                record.setThrown(ex);
+                log.error(record);
+            }
+            
+            cleanUp();
+            
+            record.setSourceMethodName("addAll");
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Housekeeping complete. Return from whence "
+                        + "we came.");
+                log.exit(record, new Object[]{added});
+            }
+        }
+        
+        return ret;
+    }
+    
+    /**
+     * Adds many records to the data store as quickly as the engine allows, for
+     * when the IDs the data store generates for them are not needed, such as
+     * when importing a file. The records are handed to `Dialect.bulkLoad`, so
+     * that each engine may use its fastest way of loading rows, and are added
+     * in a single transaction: if any record is refused, none of them are
+     * added.
+     * <p>
+     * Within a unit of work, the records are added in the transaction of the
+     * unit of work instead.</p>
+     * 
+     * @param records   the records to add
+     * @return          the number of records added
+     * @throws DataStoreException in the event that an error is encountered 
+     *                            while adding the records, in which case none
+     *                            of them were added
+     */
+    public long bulkAdd(Collection<? extends T> records) 
+            throws DataStoreException {
+        record.setSourceMethodName("bulkAdd");
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{records.size()});
+            record.setMessage("Attempting to load " + records.size() + " new "
+                    + "records into the data store.");
+            log.enter(record);
+        }
+        
+        long added = 0;
+        Iterator<? extends T> it = records.iterator();
+        Iterator<Object[]> rows = new Iterator<Object[]>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+            
+            @Override
+            public Object[] next() {
+                return getInsertValues(it.next());
+            }
+        };
+        
+        try {
+            added = getDialect().bulkLoad(getConnection(), tableName, 
+                    getInsertFields(), rows, 
+                    Math.max(1, props.getDbBatchSize()));
+            
+            // The new IDs are not known, so nothing can be invalidated by ID.
+            invalidateAll();
+        } catch ( SQLException ex ) {
+            record.setSourceMethodName("bulkAdd");
+            record.setThrown(ex);
+            record.setMessage(ex.getMessage());
+            log.error(record);
+            
+            throw new DataStoreException("Could not add the " + records.size()
+                    + " records. None of them were added.", ex);
+        } finally {
+            cleanUp();
+            
+            record.setSourceMethodName("bulkAdd");
+            if ( log.isTraceEnabled(record) ) {
+                record.setMessage("Housekeeping complete. Return from whence "
+                        + "we came.");
+                log.exit(record, new Object[]{added});
+            }
+        }
+        
+        return added;
+    }
+    
+    /**
+     * Retrieves the names of the fields that are given values when a record is
+     * added by `addAll` or `bulkAdd`. The ID is generated by the data store,
+     * so it should not be included.
+     * 
+     * @return the field names, in the order of `getInsertValues`
+     */
+    protected abstract String[] getInsertFields();
+    
+    /**
+     * Reads the keys generated by the last insert or batch of inserts into
+     * `ids`, starting at `from`.
+     * 
+     * @param ps    the insert statement
+     * @param ids   the generated IDs
+     * @param from  the index of the first row of the last insert or batch
+     * @throws SQLException in the event the keys cannot be read
+     */
+    private static void readKeys(PreparedStatement ps, long[] ids, int from) 
+            throws SQLException {
+        try ( ResultSet keys = ps.getGeneratedKeys() ) {
+            for ( int idx = from; keys.next() && idx < ids.length; idx++ ) {
+                ids[idx] = keys.getLong(1);
+            }
         }
     }
     
-    abstract public List<?> query(String fields, String where, String sort) 
+    /**
+     * Retrieves the values given to a single record when it is added, in the
+     * order of `getInsertFields`. Dates are given as `java.sql.Date`, and a
+     * missing value as `null`.
+     * 
+     * @param entity    the record to be added
+     * @return          the values of the insert fields
+     */
+    protected abstract Object[] getInsertValues(T entity);
+    
+    /**
+     * Sets the parameters of an insert statement from a single record, in the
+     * order of `getInsertFields`.
+     * 
+     * @param ps        the insert statement
+     * @param entity    the record to be added
+     * @throws SQLException in the event a parameter cannot be set
+     */
+    private void bindInsert(PreparedStatement ps, T entity) 
+            throws SQLException {
+        Object[] values = getInsertValues(entity);
+        
+        for ( int idx = 0; idx < values.length; idx++ ) {
+            ps.setObject(idx + 1, values[idx]);
+        }
+    }
+    
+    /**
+     * Retrieves the records matching the given criteria from the data store.
+     * 
+     * @param fields    a comma-separated list of the fields to retrieve, or
+     *                  `null` for all fields
+     * @param where     the SQL condition the records must meet, without the
+     *                  `WHERE` keyword, or `null` for all records
+     * @param sort      the SQL sort order, without the `ORDER BY` keywords, or
+     *                  `null` for no particular order
+     * @return          the matching records
+     * @throws DataStoreException in the event there is an error accessing the
+     *                            data store
+     */
+    abstract public List<T> query(String fields, String where, String sort) 
             throws DataStoreException;
     
+    /**
+     * Runs a query against this `Manager`'s table and maps the results with the
+     * provided mapper. This is intended as the implementation of `query` for 
+     * subclasses.
+     * 
+     * @param mapper    the mapper for the records of this table
+     * @param fields    a comma-separated list of the fields to retrieve, or
+     *                  `null` for all fields
+     * @param where     the SQL condition the records must meet, without the
+     *                  `WHERE` keyword, or `null` for all records
+     * @param sort      the SQL sort order, without the `ORDER BY` keywords, or
+     *                  `null` for no particular order
+     * @return          the matching records
+     * @throws DataStoreException in the event there is an error accessing the
+     *                            data store
+     */
+    protected List<T> select(RowMapper<T> mapper, String fields, String where,
+            String sort) throws DataStoreException {
+        record.setSourceMethodName("select");
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{fields, where, sort});
+            record.setMessage("Attempting to query the table " + tableName 
+                    + "...");
+            log.enter(record);
+        }
+        
+        List<T> ret = null;
+        String sql = buildSelect(fields, where, sort);
+        
+        try {
+            flush();
+            
+            PreparedStatement ps = prepareOnce(sql);
+            rs = ps.executeQuery();
+            ret = mapper.mapAll(sql, rs);
+            
+            if ( log.isDebugEnabled() ) {
+                record.setMessage("Mapped " + ret.size() + " records. Mapping "
+                        + "rate so far: " 
+                        + Math.round(mapper.getRowsPerSecond()) + " rows/sec.");
+                log.debug(record);
+            }
+        } catch ( SQLException ex ) {
+            record.setSourceMethodName("select");
+            record.setThrown(ex);
+            record.setMessage(ex.getMessage());
+            log.error(record);
+            
+            throw new DataStoreException("Could not query the table " 
+                    + tableName, ex);
+        } finally {
+            record.setSourceMethodName("select");
+            record.setMessage("Performing housekeeping before we leave...");
+            log.debug(record);
+            
+            cleanUp();
+            
+            record.setSourceMethodName("select");
+            record.setMessage("Returning from whence we came.");
+            log.exit(record, null);
+        }
+        
+        return ret;
+    }
+    
+    /**
+     * Walks the records matching the given criteria one at a time, without
+     * reading them all into memory first. The records are read from an open
+     * cursor as the stream is consumed, so reports over many years of records
+     * can run in constant memory.
+     * <p>
+     * The cursor holds a connection to the data store until the stream has
+     * been read to the end or is closed, so the stream should be used in a
+     * try-with-resources statement. An error reading the data store while the
+     * stream is consumed is thrown as an `UncheckedDataStoreException`.</p>
+     * 
+     * @param where     the SQL condition the records must meet, without the
+     *                  `WHERE` keyword, or `null` for all records
+     * @param sort      the SQL sort order, without the `ORDER BY` keywords, or
+     *                  `null` for no particular order
+     * @param fetchSize the number of rows to fetch from the data store at a
+     *                  time, or zero to let the driver decide
+     * @return          a stream of the matching records
+     * @throws DataStoreException in the event the query cannot be started
+     */
+    abstract public Stream<T> stream(String where, String sort, int fetchSize)
+            throws DataStoreException;
+    
+    /**
+     * Opens a cursor over this `Manager`'s table and streams its rows through
+     * the provided mapper. This is intended as the implementation of `stream`
+     * for subclasses.
+     * <p>
+     * The cursor uses a connection of its own, so this `Manager` can still be
+     * used while the stream is open. While this `Manager` is enlisted in a
+     * unit of work, the cursor uses the unit's connection instead, so the
+     * stream sees the unit's uncommitted changes, and the connection stays
+     * with the unit when the stream is closed.</p>
+     * 
+     * @param mapper    the mapper for the records of this table
+     * @param where     the SQL condition, or `null`
+     * @param sort      the SQL sort order, or `null`
+     * @param fetchSize the number of rows to fetch at a time, or zero
+     * @return          a stream of the matching records
+     * @throws DataStoreException in the event the query cannot be started
+     */
+    protected Stream<T> openStream(RowMapper<T> mapper, String where, 
+            String sort, int fetchSize) throws DataStoreException {
+        record.setSourceMethodName("openStream");
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{where, sort, fetchSize});
+            record.setMessage("Opening a cursor on the table " + tableName 
+                    + "...");
+            log.enter(record);
+        }
+        
+        // Makes sure the table exists before the cursor is opened.
+        getConnection();
+        cleanUp();
+        flush();
+        
+        String sql = buildSelect(null, where, sort);
+        boolean owned = unitOfWork == null;
+        Connection conn = owned ? ConnectionPool.getInstance(dbURL).borrow()
+                : getConnection();
+        Cursor<T> cursor = new Cursor<>(mapper, sql, conn, owned);
+        
+        try {
+            cursor.open(fetchSize);
+        } catch ( SQLException ex ) {
+            cursor.close();
+            
+            record.setSourceMethodName("openStream");
+            record.setThrown(ex);
+            record.setMessage(ex.getMessage());
+            log.error(record);
+            
+            throw new DataStoreException("Could not query the table " 
+                    + tableName, ex);
+        }
+        
+        record.setSourceMethodName("openStream");
+        record.setMessage("Cursor is open. Returning from whence we came.");
+        log.exit(record, null);
+        
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+    
+    /**
+     * A forward-only cursor over the results of a query, which maps each row
+     * only as it is requested. The cursor closes itself, and returns its 
+     * connection unless it belongs to a unit of work, as soon as the last row
+     * has been read.
+     * 
+     * @param <T> the model class rows are mapped to
+     */
+    private static class Cursor<T> extends Spliterators.AbstractSpliterator<T>
+            implements AutoCloseable {
+        
+        private final RowMapper<T> mapper;
+        private final String sql;
+        private final Connection conn;
+        private final boolean ownsConnection;
+        private PreparedStatement ps;
+        private ResultSet cursor;
+        private RowMapper.ColumnBinding<T>[] bindings;
+        private long rows;
+        private boolean closed;
+        
+        private Cursor(RowMapper<T> mapper, String sql, Connection conn,
+                boolean ownsConnection) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.mapper = mapper;
+            this.sql = sql;
+            this.conn = conn;
+            this.ownsConnection = ownsConnection;
+        }
+        
+        private void open(int fetchSize) throws SQLException {
+            ps = DataAccess.track(conn.prepareStatement(sql, 
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY), 
+                    sql);
+            ps.setFetchSize(Math.max(0, fetchSize));
+            cursor = ps.executeQuery();
+            bindings = mapper.bind(cursor);
+        }
+        
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if ( closed )
+                return false;
+            
+            try {
+                if ( !cursor.next() ) {
+                    close();
+                    return false;
+                }
+                
+                action.accept(mapper.mapRow(bindings, cursor));
+                rows++;
+                return true;
+            } catch ( SQLException ex ) {
+                close();
+                throw new UncheckedDataStoreException(new DataStoreException(
+                        "Could not read the next record", ex));
+            }
+        }
+        
+        @Override
+        public void close() {
+            if ( closed )
+                return;
+            
+            closed = true;
+            mapper.mapped(rows, -1);
+            QueryMonitor.rowsRead(sql, rows);
+            
+            try {
+                if ( cursor != null )
+                    cursor.close();
+                if ( ps != null )
+                    ps.close();
+            } catch ( SQLException ex ) {
+                // The cursor is finished with, so there is nothing more we can
+                //+ do with it.
+            } finally {
+                try {
+                    if ( ownsConnection )
+                        conn.close();
+                } catch ( SQLException ex ) {
+                    // As above.
+                }
+            }
+        }
+        
+    }
+    
+    /**
+     * Retrieves one page of records in the order of a sort key, starting just
+     * after (or before) a given record. This is keyset, or seek, paging: 
+     * rather than skipping over the records of the earlier pages, as `OFFSET` 
+     * does, the data store seeks straight to the key through an index on 
+     * `(sortKey, id)`, which is created the first time a sort key is used. 
+     * Fetching the hundredth page therefore costs the same as fetching the 
+     * first.
+     * <p>
+     * To fetch the first page, pass `null` as `afterKey` with 
+     * `Direction.FORWARD`; to fetch the last page, pass `null` with
+     * `Direction.BACKWARD`. After that, pass the `getLastKey` of the current
+     * page with `Direction.FORWARD` for the next page, or its `getFirstKey`
+     * with `Direction.BACKWARD` for the previous page.</p>
+     * <p>
+     * Records with a `NULL` sort key come before all others, in the order of
+     * their IDs.</p>
+     * 
+     * @param sortKey   the field to sort by
+     * @param afterKey  the key to start after, or `null` to start at the first
+     *                  record in the direction of travel
+     * @param limit     the largest number of records to return
+     * @param direction the direction to move from `afterKey`
+     * @return          the page of records
+     * @throws DataStoreException in the event there is an error accessing the
+     *                            data store
+     */
+    abstract public Page<T> page(String sortKey, Page.Key afterKey, int limit,
+            Page.Direction direction) throws DataStoreException;
+    
+    /**
+     * Fetches one page of records from this `Manager`'s table and maps them
+     * with the provided mapper. This is intended as the implementation of 
+     * `page` for subclasses.
+     * 
+     * @param mapper    the mapper for the records of this table
+     * @param sortKey   the field to sort by
+     * @param afterKey  the key to start after, or `null`
+     * @param limit     the largest number of records to return
+     * @param direction the direction to move from `afterKey`
+     * @return          the page of records
+     * @throws DataStoreException in the event there is an error accessing the
+     *                            data store
+     */
+    protected Page<T> seek(RowMapper<T> mapper, String sortKey, 
+            Page.Key afterKey, int limit, Page.Direction direction) 
+            throws DataStoreException {
+        record.setSourceMethodName("seek");
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{sortKey, afterKey, limit, 
+                    direction});
+            record.setMessage("Attempting to fetch a page of " + tableName 
+                    + " by " + sortKey + "...");
+            log.enter(record);
+        }
+        
+        if ( limit < 1 )
+            throw new IllegalArgumentException("The page limit must be at "
+                    + "least one.");
+        
+        boolean forward = direction != Page.Direction.BACKWARD;
+        boolean nullKey = afterKey != null && afterKey.getValue() == null;
+        String sql = StatementTemplate.forPage(getDialect(), tableName, 
+                sortKey, forward, afterKey != null, nullKey);
+        Page<T> ret = null;
+        
+        try {
+            flush();
+            ensurePageIndex(sortKey);
+            
+            PreparedStatement ps = prepare(sql);
+            int param = 1;
+            
+            if ( afterKey != null ) {
+                if ( !sortKey.equalsIgnoreCase("id") && !nullKey ) {
+                    ps.setObject(param++, afterKey.getValue());
+                    ps.setObject(param++, afterKey.getValue());
+                }
+                
+                ps.setLong(param++, afterKey.getId());
+            }
+            
+            // One extra row tells us whether there is another page.
+            ps.setInt(param, limit + 1);
+            rs = ps.executeQuery();
+            
+            int keyCol = rs.findColumn(sortKey);
+            int idCol = rs.findColumn("id");
+            RowMapper.ColumnBinding<T>[] bindings = mapper.bind(rs);
+            List<T> items = new ArrayList<>(limit);
+            Page.Key first = null;
+            Object lastValue = null;
+            long lastId = 0;
+            boolean more = false;
+            long start = System.nanoTime();
+            
+            while ( rs.next() ) {
+                if ( items.size() == limit ) {
+                    more = true;
+                    break;
+                }
+                
+                lastValue = rs.getObject(keyCol);
+                lastId = rs.getLong(idCol);
+                
+                if ( first == null )
+                    first = new Page.Key(lastValue, lastId);
+                
+                items.add(mapper.mapRow(bindings, rs));
+            }
+            
+            mapper.mapped(items.size(), System.nanoTime() - start);
+            QueryMonitor.rowsRead(sql, items.size());
+            
+            Page.Key last = first == null ? null 
+                    : new Page.Key(lastValue, lastId);
+            
+            if ( forward ) {
+                ret = new Page<>(items, first, last, more);
+            } else {
+                Collections.reverse(items);
+                ret = new Page<>(items, last, first, more);
+            }
+        } catch ( SQLException ex ) {
+            record.setSourceMethodName("seek");
+            record.setThrown(ex);
+            record.setMessage(ex.getMessage());
+            log.error(record);
+            
+            throw new DataStoreException("Could not fetch a page of the table "
+                    + tableName, ex);
+        } finally {
+            record.setSourceMethodName("seek");
+            record.setMessage("Performing housekeeping before we leave...");
+            log.debug(record);
+            
+            cleanUp();
+            
+            record.setSourceMethodName("seek");
+            record.setMessage("Returning from whence we came.");
+            log.exit(record, null);
+        }
+        
+        return ret;
+    }
+    
+    /**
+     * Makes sure that the index `seek` relies on for a sort key exists. The
+     * index is only created once; after that, this is a set lookup.
+     * 
+     * @param sortKey   the field to sort by
+     * @throws SQLException in the event the index cannot be created
+     * @throws DataStoreException in the event that the data store cannot be 
+     *                            opened
+     */
+    protected void ensurePageIndex(String sortKey) 
+            throws SQLException, DataStoreException {
+        // Creating an index would commit the unit of work.
+        if ( sortKey.equalsIgnoreCase("id") || unitOfWork != null )
+            return;
+        
+        // The schema's own index on the sort key serves just as well.
+        TableSchema schema = SchemaRegistry.getSchema(tableName);
+        
+        if ( schema != null && schema.isIndexed(sortKey) )
+            return;
+        
+        String name = "ix_" + tableName + "_" 
+                + StatementTemplate.checkIdentifier(sortKey);
+        String key = dbURL + "|" + name.toUpperCase();
+        
+        if ( pageIndexes.contains(key) )
+            return;
+        
+        getDialect().createIndex(getConnection(), name, tableName, 
+                sortKey + ", id");
+        pageIndexes.add(key);
+    }
+    
+    /**
+     * @param sql   a SQL statement
+     * @return      `true` if the statement changes the layout of the data 
+     *              store, rather than its data
+     */
+    private static boolean isDdl(String sql) {
+        String verb = sql.stripLeading();
+        int end = 0;
+        
+        while ( end < verb.length() && Character.isLetter(verb.charAt(end)) )
+            end++;
+        
+        verb = verb.substring(0, end);
+        
+        return verb.equalsIgnoreCase("CREATE") || verb.equalsIgnoreCase("ALTER")
+                || verb.equalsIgnoreCase("DROP");
+    }
+    
+    /**
+     * Builds the SQL for a query against this `Manager`'s table.
+     * 
+     * @param fields    a comma-separated list of the fields to retrieve, or
+     *                  `null` for all fields
+     * @param where     the SQL condition, or `null`
+     * @param sort      the SQL sort order, or `null`
+     * @return          the query
+     */
+    protected String buildSelect(String fields, String where, String sort) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        
+        if ( fields == null || fields.isBlank() )
+            sql.append('*');
+        else
+            sql.append(fields);
+        
+        sql.append(" FROM ").append(tableName);
+        
+        if ( where != null && !where.isBlank() )
+            sql.append(" WHERE ").append(where);
+        
+        if ( sort != null && !sort.isBlank() )
+            sql.append(" ORDER BY ").append(sort);
+        
+        return sql.toString();
+    }
+    
 }
\ No newline at end of file
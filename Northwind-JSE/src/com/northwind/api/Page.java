@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * One page of records returned by `Manager.page`. Besides the records
+ * themselves, a page carries the keys of its first and last records, which
+ * are handed back to `Manager.page` to fetch the page before or after this
+ * one.
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ * @param <T> the model class of the records
+ */
+public final class Page<T> {
+
+    /**
+     * The direction to move through the records from a key.
+     */
+    public enum Direction {
+        /**
+         * Towards larger sort keys: the page after the key.
+         */
+        FORWARD,
+        /**
+         * Towards smaller sort keys: the page before the key.
+         */
+        BACKWARD
+    }
+
+    /**
+     * The position of a record in the sort order of a page: the value of its
+     * sort key, with its ID to break ties between records that have the same
+     * sort key value.
+     */
+    public static final class Key {
+
+        private final Object value;
+        private final long id;
+
+        public Key(Object value, long id) {
+            this.value = value;
+            this.id = id;
+        }
+
+        /**
+         * @return the value of the sort key
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * @return the ID of the record
+         */
+        public long getId() {
+            return id;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if ( !(obj instanceof Key) )
+                return false;
+
+            Key other = (Key) obj;
+            return id == other.id && Objects.equals(value, other.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(value, id);
+        }
+
+        @Override
+        public String toString() {
+            return "Key[" + value + ", " + id + "]";
+        }
+
+    }
+
+    private final List<T> items;
+    private final Key first;
+    private final Key last;
+    private final boolean more;
+
+    Page(List<T> items, Key first, Key last, boolean more) {
+        this.items = Collections.unmodifiableList(items);
+        this.first = first;
+        this.last = last;
+        this.more = more;
+    }
+
+    /**
+     * @return the records of this page, always in ascending sort order, even
+     *         when the page was fetched moving backward
+     */
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return the key of the first record on this page, which fetches the
+     *         previous page when passed with `Direction.BACKWARD`, or `null` if
+     *         this page is empty
+     */
+    public Key getFirstKey() {
+        return first;
+    }
+
+    /**
+     * @return the key of the last record on this page, which fetches the next
+     *         page when passed with `Direction.FORWARD`, or `null` if this page
+     *         is empty
+     */
+    public Key getLastKey() {
+        return last;
+    }
+
+    /**
+     * @return `true` if there are more records beyond this page, in the
+     *         direction this page was fetched
+     */
+    public boolean hasMore() {
+        return more;
+    }
+
+    /**
+     * @return `true` if this page holds no records
+     */
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+}
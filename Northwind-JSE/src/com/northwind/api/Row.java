@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * A single record read from the data store, holding only the columns that were
+ * asked for. Integral, boolean and date columns are kept in a `long[]`,
+ * floating point columns in a `double[]`, and only the remaining columns, such
+ * as character data, as objects. Reading a `Row` therefore does not box any
+ * primitive values.
+ * <p>
+ * Columns may be read either by their zero-based position in the projection,
+ * which is the fastest way, or by their name, ignoring case. Each getter
+ * converts between the numeric types where that makes sense, and returns the
+ * same default value for SQL `NULL` that `ResultSet` does.</p>
+ * <p>
+ * A `Row` is a snapshot: it does not change when the data store does, and it
+ * is safe to hand to other threads once it has been read.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public final class Row {
+
+    private final RowShape shape;
+    private final long[] longs;
+    private final double[] doubles;
+    private final Object[] objects;
+    private final long[] nulls;
+    private int estimatedSize;
+
+    private Row(RowShape shape) {
+        this.shape = shape;
+        this.longs = new long[shape.getLongCount()];
+        this.doubles = new double[shape.getDoubleCount()];
+        this.objects = new Object[shape.getObjectCount()];
+        this.nulls = new long[(shape.getColumnCount() + 63) >>> 6];
+    }
+
+    /**
+     * Copies the current row of the `ResultSet` into a new `Row`.
+     *
+     * @param shape the shape of the results
+     * @param rs    the results, positioned on the row to be read
+     * @return the row
+     * @throws SQLException if the values cannot be read
+     */
+    static Row read(RowShape shape, ResultSet rs) throws SQLException {
+        Row row = new Row(shape);
+
+        for ( int col = 0; col < shape.getColumnCount(); col++ ) {
+            int slot = shape.getSlot(col);
+
+            switch ( shape.getKind(col) ) {
+                case RowShape.LONG:
+                    row.longs[slot] = rs.getLong(col + 1);
+                    break;
+                case RowShape.BOOLEAN:
+                    row.longs[slot] = rs.getBoolean(col + 1) ? 1 : 0;
+                    break;
+                case RowShape.DOUBLE:
+                    row.doubles[slot] = rs.getDouble(col + 1);
+                    break;
+                case RowShape.DATE:
+                    Date date = rs.getDate(col + 1);
+                    row.longs[slot] = date == null ? 0
+                            : date.toLocalDate().toEpochDay();
+                    break;
+                default:
+                    row.objects[slot] = rs.getObject(col + 1);
+            }
+
+            if ( rs.wasNull() )
+                row.nulls[col >>> 6] |= 1L << col;
+        }
+
+        return row;
+    }
+
+    /**
+     * @return the number of columns in this row
+     */
+    public int getColumnCount() {
+        return shape.getColumnCount();
+    }
+
+    /**
+     * @param col the zero-based position of the column
+     * @return the name of the column, as reported by the data store
+     */
+    public String getColumnName(int col) {
+        return shape.getName(col);
+    }
+
+    /**
+     * Finds the position of a column by name.
+     *
+     * @param name the name of the column, in any case
+     * @return the zero-based position of the column
+     * @throws IllegalArgumentException if this row has no such column
+     */
+    public int indexOf(String name) {
+        return shape.indexOf(name);
+    }
+
+    /**
+     * @param col the zero-based position of the column
+     * @return `true` if the column holds SQL `NULL`
+     */
+    public boolean isNull(int col) {
+        return (nulls[col >>> 6] & (1L << col)) != 0;
+    }
+
+    public boolean isNull(String name) {
+        return isNull(shape.indexOf(name));
+    }
+
+    /**
+     * @param col the zero-based position of the column
+     * @return the value of the column as a `long`, or zero if it is `NULL`
+     * @throws IllegalArgumentException if the column is not numeric
+     */
+    public long getLong(int col) {
+        int slot = shape.getSlot(col);
+
+        switch ( shape.getKind(col) ) {
+            case RowShape.LONG:
+            case RowShape.BOOLEAN:
+            case RowShape.DATE:
+                return longs[slot];
+            case RowShape.DOUBLE:
+                return (long) doubles[slot];
+            default:
+                return numeric(col).longValue();
+        }
+    }
+
+    public long getLong(String name) {
+        return getLong(shape.indexOf(name));
+    }
+
+    public int getInt(int col) {
+        return (int) getLong(col);
+    }
+
+    public int getInt(String name) {
+        return getInt(shape.indexOf(name));
+    }
+
+    /**
+     * @param col the zero-based position of the column
+     * @return the value of the column as a `double`, or zero if it is `NULL`
+     * @throws IllegalArgumentException if the column is not numeric
+     */
+    public double getDouble(int col) {
+        int slot = shape.getSlot(col);
+
+        switch ( shape.getKind(col) ) {
+            case RowShape.DOUBLE:
+                return doubles[slot];
+            case RowShape.LONG:
+            case RowShape.BOOLEAN:
+            case RowShape.DATE:
+                return longs[slot];
+            default:
+                return numeric(col).doubleValue();
+        }
+    }
+
+    public double getDouble(String name) {
+        return getDouble(shape.indexOf(name));
+    }
+
+    public float getFloat(int col) {
+        return (float) getDouble(col);
+    }
+
+    public float getFloat(String name) {
+        return getFloat(shape.indexOf(name));
+    }
+
+    /**
+     * @param col the zero-based position of the column
+     * @return `true` if the column holds a non-zero value, or the text "true"
+     */
+    public boolean getBoolean(int col) {
+        if ( shape.getKind(col) == RowShape.OBJECT ) {
+            Object value = objects[shape.getSlot(col)];
+
+            if ( value instanceof Boolean )
+                return (Boolean) value;
+            else if ( value instanceof Number )
+                return ((Number) value).longValue() != 0;
+            else
+                return value != null && Boolean.parseBoolean(value.toString());
+        }
+
+        return getLong(col) != 0;
+    }
+
+    public boolean getBoolean(String name) {
+        return getBoolean(shape.indexOf(name));
+    }
+
+    /**
+     * @param col the zero-based position of the column
+     * @return the value of the column as text, or `null` if it is `NULL`
+     */
+    public String getString(int col) {
+        if ( isNull(col) )
+            return null;
+
+        int slot = shape.getSlot(col);
+
+        switch ( shape.getKind(col) ) {
+            case RowShape.LONG:
+                return String.valueOf(longs[slot]);
+            case RowShape.BOOLEAN:
+                return String.valueOf(longs[slot] != 0);
+            case RowShape.DOUBLE:
+                return String.valueOf(doubles[slot]);
+            case RowShape.DATE:
+                return LocalDate.ofEpochDay(longs[slot]).toString();
+            default:
+                return objects[slot].toString();
+        }
+    }
+
+    public String getString(String name) {
+        return getString(shape.indexOf(name));
+    }
+
+    /**
+     * @param col the zero-based position of the column
+     * @return the value of the column as a date, or `null` if it is `NULL`
+     * @throws IllegalArgumentException if the column does not hold a date
+     */
+    public LocalDate getDate(int col) {
+        if ( isNull(col) )
+            return null;
+
+        if ( shape.getKind(col) == RowShape.DATE )
+            return LocalDate.ofEpochDay(longs[shape.getSlot(col)]);
+
+        throw new IllegalArgumentException("Column " + shape.getName(col)
+                + " does not hold a date.");
+    }
+
+    public LocalDate getDate(String name) {
+        return getDate(shape.indexOf(name));
+    }
+
+    /**
+     * Retrieves the value of a column as an object. Unlike the typed getters,
+     * this boxes primitive values, so it should be kept for generic code, such
+     * as table models.
+     *
+     * @param col the zero-based position of the column
+     * @return the value of the column, or `null` if it is `NULL`
+     */
+    public Object getObject(int col) {
+        if ( isNull(col) )
+            return null;
+
+        int slot = shape.getSlot(col);
+
+        switch ( shape.getKind(col) ) {
+            case RowShape.LONG:
+                return longs[slot];
+            case RowShape.BOOLEAN:
+                return longs[slot] != 0;
+            case RowShape.DOUBLE:
+                return doubles[slot];
+            case RowShape.DATE:
+                return LocalDate.ofEpochDay(longs[slot]);
+            default:
+                return objects[slot];
+        }
+    }
+
+    public Object getObject(String name) {
+        return getObject(shape.indexOf(name));
+    }
+
+    /**
+     * Makes a rough estimate of the memory held by this row, not counting its
+     * shape, which is shared with every other row of the same query.
+     *
+     * @return the estimated size of this row, in bytes
+     */
+    int estimateSize() {
+        if ( estimatedSize == 0 ) {
+            long size = 32 + 16 * 4 + 8L * (longs.length + doubles.length
+                    + nulls.length) + 4L * objects.length;
+
+            for ( Object value : objects ) {
+                if ( value instanceof String )
+                    size += 40 + 2L * ((String) value).length();
+                else if ( value != null )
+                    size += 24;
+            }
+
+            estimatedSize = (int) Math.min(size, Integer.MAX_VALUE);
+        }
+
+        return estimatedSize;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Row[");
+
+        for ( int col = 0; col < shape.getColumnCount(); col++ ) {
+            if ( col > 0 )
+                sb.append(", ");
+
+            sb.append(shape.getName(col)).append('=').append(getString(col));
+        }
+
+        return sb.append(']').toString();
+    }
+
+    private Number numeric(int col) {
+        Object value = objects[shape.getSlot(col)];
+
+        if ( value == null )
+            return 0;
+        else if ( value instanceof Number )
+            return (Number) value;
+
+        throw new IllegalArgumentException("Column " + shape.getName(col)
+                + " is not numeric.");
+    }
+
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api;
+
+import com.northwind.api.db.QueryMonitor;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Maps the rows of a `ResultSet` onto model objects. A mapper is declared once
+ * per model class, by naming each field and handing over the setter that
+ * receives it, for example:
+ * <pre>
+ * RowMapper&lt;Customer&gt; mapper = RowMapper.builder(Customer::new)
+ *         .intField("id", Customer::setId)
+ *         .stringField("city", Customer::setCity)
+ *         .booleanField("active", Customer::setActive)
+ *         .build();
+ * </pre>
+ * <p>
+ * The first time results with a given set of columns are mapped, the columns
+ * are matched to the declared fields, and the resulting column positions are
+ * kept for any results with the same columns. Results read a row at a time,
+ * such as those of a cursor, look the positions up once, when they are
+ * opened. Every row after that is mapped
+ * by calling the setters directly with the typed value read from each column
+ * position, without any reflection, column name lookups or boxing. Columns
+ * that have no declared field are skipped, so that a query may select any
+ * subset of the fields.</p>
+ * <p>
+ * A mapper is safe to share between threads.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ * @param <T> the model class rows are mapped to
+ */
+public final class RowMapper<T> {
+
+    /**
+     * Receives an `int` value for a model object.
+     *
+     * @param <T> the model class
+     */
+    @FunctionalInterface
+    public interface IntSetter<T> {
+        void set(T target, int value);
+    }
+
+    /**
+     * Receives a `long` value for a model object.
+     *
+     * @param <T> the model class
+     */
+    @FunctionalInterface
+    public interface LongSetter<T> {
+        void set(T target, long value);
+    }
+
+    /**
+     * Receives a `double` value for a model object.
+     *
+     * @param <T> the model class
+     */
+    @FunctionalInterface
+    public interface DoubleSetter<T> {
+        void set(T target, double value);
+    }
+
+    /**
+     * Receives a `boolean` value for a model object.
+     *
+     * @param <T> the model class
+     */
+    @FunctionalInterface
+    public interface BooleanSetter<T> {
+        void set(T target, boolean value);
+    }
+
+    /**
+     * Copies the value of one column of the current row into a model object.
+     *
+     * @param <T> the model class
+     */
+    @FunctionalInterface
+    interface ColumnBinding<T> {
+        void map(ResultSet rs, T target) throws SQLException;
+    }
+
+    /**
+     * Creates a `ColumnBinding` for a field, once its column position is known.
+     *
+     * @param <T> the model class
+     */
+    @FunctionalInterface
+    interface Field<T> {
+        ColumnBinding<T> bind(int column);
+    }
+
+    private final Supplier<T> factory;
+    private final Map<String, Field<T>> fields;
+    private final Map<String, ColumnBinding<T>[]> compiled;
+    private final AtomicLong rowsMapped = new AtomicLong();
+    private final AtomicLong timedRows = new AtomicLong();
+    private final AtomicLong mappingNanos = new AtomicLong();
+
+    private RowMapper(Builder<T> builder) {
+        this.factory = builder.factory;
+        this.fields = new HashMap<>(builder.fields);
+        this.compiled = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Starts the declaration of a mapper.
+     *
+     * @param <T>     the model class
+     * @param factory creates a new, empty model object for each row
+     * @return a builder for declaring the mapped fields
+     */
+    public static <T> Builder<T> builder(Supplier<T> factory) {
+        return new Builder<>(factory);
+    }
+
+    /**
+     * Maps every remaining row of a `ResultSet`, and reports the number of
+     * rows read to the `QueryMonitor`.
+     *
+     * @param sql the query the results came from, which identifies the shape
+     *            of the results
+     * @param rs  the results
+     * @return one model object per row, in the order of the results
+     * @throws SQLException if the results cannot be read
+     */
+    public List<T> mapAll(String sql, ResultSet rs) throws SQLException {
+        ColumnBinding<T>[] bindings = compile(rs.getMetaData());
+        List<T> ret = new ArrayList<>();
+        long start = System.nanoTime();
+
+        while ( rs.next() ) {
+            ret.add(map(bindings, rs));
+        }
+
+        mapped(ret.size(), System.nanoTime() - start);
+        QueryMonitor.rowsRead(sql, ret.size());
+
+        return ret;
+    }
+
+    /**
+     * Looks up the column positions of results that are to be mapped a row at
+     * a time with `mapRow`, so that it is done once for all of their rows.
+     *
+     * @param rs the results
+     * @return the bindings of the columns of the results
+     * @throws SQLException if the metadata of the results cannot be read
+     */
+    ColumnBinding<T>[] bind(ResultSet rs) throws SQLException {
+        return compile(rs.getMetaData());
+    }
+
+    /**
+     * Maps the current row of a `ResultSet`, with the bindings `bind` looked
+     * up for it. Nothing is timed or counted here; the caller reports the
+     * rows it mapped with `mapped` once it is done.
+     *
+     * @param bindings the bindings of the columns of the results
+     * @param rs       the results, positioned on the row to be mapped
+     * @return the model object
+     * @throws SQLException if the row cannot be read
+     */
+    T mapRow(ColumnBinding<T>[] bindings, ResultSet rs) throws SQLException {
+        return map(bindings, rs);
+    }
+
+    /**
+     * Adds rows mapped with `mapRow` to the statistics of this mapper.
+     *
+     * @param rows  the number of rows mapped
+     * @param nanos the time taken to read and map them, or a negative number
+     *              if it was not measured, as when the rows were handed out
+     *              one at a time
+     */
+    void mapped(long rows, long nanos) {
+        rowsMapped.addAndGet(rows);
+
+        if ( nanos >= 0 ) {
+            timedRows.addAndGet(rows);
+            mappingNanos.addAndGet(nanos);
+        }
+    }
+
+    /**
+     * @return the number of rows this mapper has mapped
+     */
+    public long getRowsMapped() {
+        return rowsMapped.get();
+    }
+
+    /**
+     * @return the time spent reading and mapping rows, in nanoseconds,
+     *         excluding the time spent working out the column positions, for
+     *         the rows whose mapping was timed
+     */
+    public long getMappingNanos() {
+        return mappingNanos.get();
+    }
+
+    /**
+     * @return the average rate at which this mapper has mapped rows, in rows
+     *         per second, over the rows whose mapping was timed, or zero if
+     *         none have been yet. The rows of a cursor are not timed, as the
+     *         time between them is spent by the caller.
+     */
+    public double getRowsPerSecond() {
+        long nanos = mappingNanos.get();
+
+        return nanos == 0 ? 0 : timedRows.get() * 1_000_000_000.0 / nanos;
+    }
+
+    private T map(ColumnBinding<T>[] bindings, ResultSet rs)
+            throws SQLException {
+        T target = factory.get();
+
+        for ( ColumnBinding<T> binding : bindings ) {
+            binding.map(rs, target);
+        }
+
+        return target;
+    }
+
+    // The bindings are kept by the labels of the columns, rather than by the
+    //+ query, as queries that differ only in their `WHERE` clause have the
+    //+ same columns, and there would otherwise be no end to them.
+    private ColumnBinding<T>[] compile(ResultSetMetaData md)
+            throws SQLException {
+        int count = md.getColumnCount();
+        String[] labels = new String[count];
+
+        for ( int col = 1; col <= count; col++ ) {
+            labels[col - 1] = md.getColumnLabel(col).toUpperCase(Locale.ROOT);
+        }
+
+        String key = String.join(",", labels);
+        ColumnBinding<T>[] bindings = compiled.get(key);
+
+        if ( bindings == null ) {
+            List<ColumnBinding<T>> list = new ArrayList<>();
+
+            for ( int col = 1; col <= count; col++ ) {
+                Field<T> field = fields.get(labels[col - 1]);
+
+                if ( field != null )
+                    list.add(field.bind(col));
+            }
+
+            @SuppressWarnings("unchecked")
+            ColumnBinding<T>[] array = (ColumnBinding<T>[]) list.toArray(
+                    new ColumnBinding<?>[list.size()]);
+            bindings = array;
+            compiled.putIfAbsent(key, bindings);
+        }
+
+        return bindings;
+    }
+
+    /**
+     * Declares the fields of a `RowMapper`.
+     *
+     * @param <T> the model class
+     */
+    public static final class Builder<T> {
+
+        private final Supplier<T> factory;
+        private final Map<String, Field<T>> fields = new HashMap<>();
+
+        private Builder(Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        /**
+         * Declares a field read with `ResultSet.getInt`.
+         *
+         * @param name   the column the field is read from
+         * @param setter receives an `int` value
+         * @return this builder
+         * @throws IllegalArgumentException if `name` is not a plain SQL
+         *                                  identifier
+         */
+        public Builder<T> intField(String name, IntSetter<T> setter) {
+            return field(name, col -> (rs, t) -> setter.set(t, rs.getInt(col)));
+        }
+
+        /**
+         * Declares a field read with `ResultSet.getLong`.
+         *
+         * @param name   the column the field is read from
+         * @param setter receives a `long` value
+         * @return this builder
+         * @throws IllegalArgumentException if `name` is not a plain SQL
+         *                                  identifier
+         */
+        public Builder<T> longField(String name, LongSetter<T> setter) {
+            return field(name, col -> (rs, t) -> setter.set(t,
+                    rs.getLong(col)));
+        }
+
+        /**
+         * Declares a field read with `ResultSet.getDouble`.
+         *
+         * @param name   the column the field is read from
+         * @param setter receives a `double` value
+         * @return this builder
+         * @throws IllegalArgumentException if `name` is not a plain SQL
+         *                                  identifier
+         */
+        public Builder<T> doubleField(String name, DoubleSetter<T> setter) {
+            return field(name, col -> (rs, t) -> setter.set(t,
+                    rs.getDouble(col)));
+        }
+
+        /**
+         * Declares a field read with `ResultSet.getBoolean`.
+         *
+         * @param name   the column the field is read from
+         * @param setter receives a `boolean` value
+         * @return this builder
+         * @throws IllegalArgumentException if `name` is not a plain SQL
+         *                                  identifier
+         */
+        public Builder<T> booleanField(String name, BooleanSetter<T> setter) {
+            return field(name, col -> (rs, t) -> setter.set(t,
+                    rs.getBoolean(col)));
+        }
+
+        /**
+         * Declares a field read with `ResultSet.getString`.
+         *
+         * @param name   the column the field is read from
+         * @param setter receives a `String` value
+         * @return this builder
+         * @throws IllegalArgumentException if `name` is not a plain SQL
+         *                                  identifier
+         */
+        public Builder<T> stringField(String name,
+                BiConsumer<T, String> setter) {
+            return field(name, col -> (rs, t) -> setter.accept(t,
+                    rs.getString(col)));
+        }
+
+        /**
+         * Declares a field read with `ResultSet.getDate`.
+         *
+         * @param name   the column the field is read from
+         * @param setter receives a `LocalDate` value, or `null` for a `NULL`
+         *               date
+         * @return this builder
+         * @throws IllegalArgumentException if `name` is not a plain SQL
+         *                                  identifier
+         */
+        public Builder<T> dateField(String name,
+                BiConsumer<T, LocalDate> setter) {
+            return field(name, col -> (rs, t) -> {
+                Date value = rs.getDate(col);
+                setter.accept(t, value == null ? null : value.toLocalDate());
+            });
+        }
+
+        /**
+         * @return the mapper for the declared fields
+         */
+        public RowMapper<T> build() {
+            return new RowMapper<>(this);
+        }
+
+        private Builder<T> field(String name, Field<T> field) {
+            fields.put(StatementTemplate.checkIdentifier(name)
+                    .toUpperCase(Locale.ROOT), field);
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api;
+
+import com.northwind.custmgr.controller.CustomerManager;
+import com.northwind.custmgr.model.Customer;
+import com.northwind.loadmgr.controller.LoadManager;
+import com.northwind.loadmgr.model.Load;
+import com.northwind.settings.AppProperties;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures how fast the `RowMapper`s of the customers and loads tables turn
+ * rows into model objects, in rows per second, on an in-memory data store of
+ * its own that is filled with made-up records first. Each table is read in
+ * full a number of times to warm up, and then measured over a number of
+ * further reads, timing `RowMapper.mapAll` alone, so that running the query
+ * itself is left out.
+ * <p>
+ * Run it from the command line, optionally with the number of records to add
+ * to each table:</p>
+ * <pre>
+ * java -cp Northwind-JSE.jar:hsqldb.jar com.northwind.api.RowMapperBenchmark 100000
+ * </pre>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class RowMapperBenchmark {
+
+    private static final int WARM_UP = 5;
+    private static final int ROUNDS = 20;
+
+    /**
+     * The measurements of one mapper.
+     */
+    public static final class Result {
+
+        private final String table;
+        private final long rows;
+        private final double bestRowsPerSecond;
+        private final double meanRowsPerSecond;
+
+        private Result(String table, long rows, double bestRowsPerSecond,
+                double meanRowsPerSecond) {
+            this.table = table;
+            this.rows = rows;
+            this.bestRowsPerSecond = bestRowsPerSecond;
+            this.meanRowsPerSecond = meanRowsPerSecond;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        /**
+         * @return the number of rows mapped in each round
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * @return the rate of the fastest round
+         */
+        public double getBestRowsPerSecond() {
+            return bestRowsPerSecond;
+        }
+
+        /**
+         * @return the rate over all of the measured rounds together
+         */
+        public double getMeanRowsPerSecond() {
+            return meanRowsPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-10s %8d rows  mean %,12.0f rows/s  best "
+                    + "%,12.0f rows/s", table, rows, meanRowsPerSecond,
+                    bestRowsPerSecond);
+        }
+
+    }
+
+    private RowMapperBenchmark() {
+        /* to prevent instantiation */
+    }
+
+    /**
+     * Fills the scratch data store, runs the benchmark for each mapper and
+     * prints the results.
+     *
+     * @param args the number of records to add to each table, 50,000 if not
+     *             given
+     * @throws Exception in the event the benchmark cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        AppProperties props = AppProperties.getInstance();
+
+        props.setDbURL("jdbc:hsqldb:");
+        props.setDbName("mem:mapbench");
+        props.setDbOptions("");
+
+        String url = props.getDbUrl() + props.getDbName()
+                + props.getDbOptions();
+
+        // Held open throughout, so that the data store outlives the managers'
+        //+ connections.
+        try ( Connection con = DriverManager.getConnection(url, "sa", "") ) {
+            try ( CustomerManager customers = new CustomerManager("sa",
+                    new char[0], "customers", new ArrayList<>());
+                    LoadManager loads = new LoadManager("sa", new char[0],
+                            "loads", new ArrayList<>()) ) {
+                customers.bulkAdd(makeCustomers(rows));
+                loads.bulkAdd(makeLoads(rows));
+            }
+
+            System.out.println(run(con, "customers",
+                    CustomerManager.getMapper()));
+            System.out.println(run(con, "loads", LoadManager.getMapper()));
+        }
+    }
+
+    /**
+     * Runs the benchmark for one mapper, by reading every row of its table.
+     *
+     * @param <T>    the model class of the mapper
+     * @param con    a connection to the data store
+     * @param table  the table the mapper reads
+     * @param mapper the mapper to measure
+     * @return the measurements
+     * @throws SQLException in the event the table cannot be read
+     */
+    public static <T> Result run(Connection con, String table,
+            RowMapper<T> mapper) throws SQLException {
+        String sql = "SELECT * FROM " + table;
+        long rows = 0;
+        long total = 0;
+        long best = Long.MAX_VALUE;
+
+        try ( PreparedStatement ps = con.prepareStatement(sql) ) {
+            for ( int round = 0; round < WARM_UP + ROUNDS; round++ ) {
+                try ( ResultSet rs = ps.executeQuery() ) {
+                    long start = System.nanoTime();
+                    rows = mapper.mapAll(sql, rs).size();
+                    long nanos = System.nanoTime() - start;
+
+                    if ( round >= WARM_UP ) {
+                        total += nanos;
+                        best = Math.min(best, nanos);
+                    }
+                }
+            }
+        }
+
+        return new Result(table, rows, rows * 1e9 / best,
+                rows * ROUNDS * 1e9 / total);
+    }
+
+    private static List<Customer> makeCustomers(int rows) {
+        List<Customer> ret = new ArrayList<>(rows);
+
+        for ( int idx = 0; idx < rows; idx++ ) {
+            ret.add(new Customer("Company " + idx, idx + " Main Street",
+                    idx % 5 == 0 ? "Suite " + idx : null, "Peoria", "IL",
+                    "61602", "309-555-" + (1000 + idx % 9000), null,
+                    "orders" + idx + "@example.com", "Contact " + idx,
+                    "Customer number " + idx, idx % 7 != 0));
+        }
+
+        return ret;
+    }
+
+    private static List<Load> makeLoads(int rows) {
+        List<Load> ret = new ArrayList<>(rows);
+        LocalDate day = LocalDate.of(2020, 1, 1);
+
+        for ( int idx = 0; idx < rows; idx++ ) {
+            Load load = new Load("O" + idx, "T" + idx);
+            load.setUnitAssigned("U" + idx % 40);
+            load.setCommodity(idx % 2 == 0 ? "Lumber" : "Steel, coils");
+            load.setWeight(5000 + idx % 40000);
+            load.setPieces(idx % 30);
+            load.setTarped(idx % 3 == 0);
+            load.setMiles(idx % 3000);
+            load.setRevenue(idx * 1.5);
+            load.setBroker("Broker " + idx % 100);
+            load.setBookedOn(day.plusDays(idx % 365));
+            ret.add(load);
+        }
+
+        return ret;
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Describes the columns of a query result and where each column is kept
+ * within a `Row`. The shape is worked out once from the `ResultSetMetaData`
+ * of the first execution of a query, and is then shared by every row that
+ * query ever returns, so that the rows themselves hold nothing but their
+ * values.
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+final class RowShape {
+
+    /** Integral values, kept in a `long` slot. */
+    static final byte LONG = 0;
+    /** Floating point values, kept in a `double` slot. */
+    static final byte DOUBLE = 1;
+    /** Everything else, kept as an object reference. */
+    static final byte OBJECT = 2;
+    /** Date values, kept in a `long` slot as the epoch day. */
+    static final byte DATE = 3;
+    /** Boolean values, kept in a `long` slot as zero or one. */
+    static final byte BOOLEAN = 4;
+
+    private static final Map<String, RowShape> shapes
+            = new ConcurrentHashMap<>();
+
+    private final String[] names;
+    private final byte[] kinds;
+    private final int[] slots;
+    private final int longCount;
+    private final int doubleCount;
+    private final int objectCount;
+    private final Map<String, Integer> index;
+
+    private RowShape(ResultSetMetaData md) throws SQLException {
+        int count = md.getColumnCount();
+        int longs = 0;
+        int doubles = 0;
+        int objects = 0;
+
+        names = new String[count];
+        kinds = new byte[count];
+        slots = new int[count];
+        index = new HashMap<>(count * 2);
+
+        for ( int col = 0; col < count; col++ ) {
+            names[col] = md.getColumnLabel(col + 1);
+            index.putIfAbsent(names[col].toUpperCase(Locale.ROOT), col);
+
+            switch ( md.getColumnType(col + 1) ) {
+                case Types.BIT:
+                case Types.BOOLEAN:
+                    kinds[col] = BOOLEAN;
+                    slots[col] = longs++;
+                    break;
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                    kinds[col] = LONG;
+                    slots[col] = longs++;
+                    break;
+                case Types.DATE:
+                    kinds[col] = DATE;
+                    slots[col] = longs++;
+                    break;
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    kinds[col] = DOUBLE;
+                    slots[col] = doubles++;
+                    break;
+                default:
+                    kinds[col] = OBJECT;
+                    slots[col] = objects++;
+            }
+        }
+
+        longCount = longs;
+        doubleCount = doubles;
+        objectCount = objects;
+    }
+
+    /**
+     * Retrieves the shape of the results of the given query, working it out
+     * from the metadata the first time the query is seen.
+     *
+     * @param sql the query the results came from
+     * @param md  the metadata of those results
+     * @return the shape shared by all rows of that query
+     * @throws SQLException if the metadata cannot be read
+     */
+    static RowShape of(String sql, ResultSetMetaData md) throws SQLException {
+        RowShape shape = shapes.get(sql);
+
+        if ( shape == null ) {
+            shape = new RowShape(md);
+            RowShape prior = shapes.putIfAbsent(sql, shape);
+
+            if ( prior != null )
+                shape = prior;
+        }
+
+        return shape;
+    }
+
+    /**
+     * Forgets every known shape. This is required after a change to the
+     * structure of a table, as `SELECT *` may then return different columns.
+     */
+    static void clear() {
+        shapes.clear();
+    }
+
+    int getColumnCount() {
+        return names.length;
+    }
+
+    String getName(int col) {
+        return names[col];
+    }
+
+    byte getKind(int col) {
+        return kinds[col];
+    }
+
+    int getSlot(int col) {
+        return slots[col];
+    }
+
+    int getLongCount() {
+        return longCount;
+    }
+
+    int getDoubleCount() {
+        return doubleCount;
+    }
+
+    int getObjectCount() {
+        return objectCount;
+    }
+
+    /**
+     * Finds the position of a column by name, ignoring case.
+     *
+     * @param name the column name
+     * @return the zero-based position of the column
+     * @throws IllegalArgumentException if there is no such column
+     */
+    int indexOf(String name) {
+        Integer col = index.get(name.toUpperCase(Locale.ROOT));
+
+        if ( col == null )
+            throw new IllegalArgumentException("No such column: " + name);
+
+        return col;
+    }
+
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api;
+
+import com.northwind.api.db.Dialect;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Builds the parameterized SQL used by the single-record accessors of
+ * `Manager`. Each (table, column, operation) combination, and each projection
+ * of columns, is turned into its SQL text exactly once; after that, the same
+ * `String` instance is returned every time, so that it can be used as the key
+ * into a `StatementCache` without building a new string on every call.
+ * <p>
+ * Only the values are passed as parameters. Table and column names cannot be,
+ * so they are checked to be plain SQL identifiers before they are placed into
+ * the statement text.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public final class StatementTemplate {
+
+    /**
+     * The kinds of single-field statements that can be built.
+     */
+    public enum Operation {
+        /**
+         * `SELECT column FROM table WHERE id = ?`
+         */
+        SELECT,
+        /**
+         * `UPDATE table SET column = ? WHERE id = ?`
+         */
+        UPDATE,
+        /**
+         * `UPDATE table SET column = ?, version = version + 1 WHERE id = ?`,
+         * for tables with a row version
+         */
+        VERSIONED_UPDATE
+    }
+
+    private static final Pattern IDENTIFIER
+            = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final Map<String, Map<String, String[]>> templates
+            = new ConcurrentHashMap<>();
+    private static final Map<String, Map<List<String>, String>> projections
+            = new ConcurrentHashMap<>();
+    private static final Map<String, Map<List<String>, String>> inserts
+            = new ConcurrentHashMap<>();
+    private static final Map<String, Map<String, String[]>> pages
+            = new ConcurrentHashMap<>();
+
+    private StatementTemplate() {
+        // Privatized to prevent this class from being instantiated.
+    }
+
+    /**
+     * Retrieves the parameterized SQL for an operation on a single field of a
+     * single record.
+     *
+     * @param table the table holding the record
+     * @param column the field of interest
+     * @param op    the operation to perform
+     * @return the SQL for the operation, with the record ID as the last
+     *         parameter
+     * @throws IllegalArgumentException if `table` or `column` is not a valid
+     *                                  SQL identifier
+     */
+    public static String forField(String table, String column, Operation op) {
+        String[] byOp = templates
+                .computeIfAbsent(table, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(column, c -> build(table, c));
+
+        return byOp[op.ordinal()];
+    }
+
+    /**
+     * Retrieves the parameterized SQL for reading several fields of a single
+     * record in one query.
+     *
+     * @param table   the table holding the record
+     * @param columns the fields of interest, in the order they should be
+     *                returned
+     * @return `SELECT columns FROM table WHERE id = ?`
+     * @throws IllegalArgumentException if no columns are given, or `table` or
+     *                                  any column is not a valid SQL identifier
+     */
+    public static String forColumns(String table, String... columns) {
+        if ( columns.length == 0 )
+            throw new IllegalArgumentException("At least one column is "
+                    + "required.");
+
+        return projections
+                .computeIfAbsent(table, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(List.of(columns), c -> project(table, c));
+    }
+
+    /**
+     * Retrieves the parameterized SQL for reading every field of a single
+     * record.
+     *
+     * @param table the table holding the record
+     * @return `SELECT * FROM table WHERE id = ?`
+     * @throws IllegalArgumentException if `table` is not a valid SQL
+     *                                  identifier
+     */
+    public static String forRow(String table) {
+        return projections
+                .computeIfAbsent(table, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(List.of(), c -> project(table, c));
+    }
+
+    /**
+     * Retrieves the parameterized SQL for inserting a record.
+     *
+     * @param table   the table to insert into
+     * @param columns the fields to be given values, in the order their
+     *                parameters will be set
+     * @return `INSERT INTO table (columns) VALUES (?, ...)`
+     * @throws IllegalArgumentException if no columns are given, or `table` or
+     *                                  any column is not a valid SQL identifier
+     */
+    public static String forInsert(String table, String... columns) {
+        if ( columns.length == 0 )
+            throw new IllegalArgumentException("At least one column is "
+                    + "required.");
+
+        return inserts
+                .computeIfAbsent(table, t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(List.of(columns), c -> insert(table, c));
+    }
+
+    /**
+     * Retrieves the parameterized SQL for one page of a keyset (seek) query,
+     * ordered by the sort key, with the record ID breaking ties. Records with
+     * a `NULL` sort key come before all others.
+     * <p>
+     * When `seek` is `true`, the parameters are the sort key value (twice),
+     * the record ID and the row limit, or, when `nullKey` is `true`, the
+     * record ID and the row limit; otherwise the row limit alone. When the
+     * sort key is the ID itself, the parameters are the ID and the row limit,
+     * or the row limit alone.</p>
+     *
+     * @param dialect the dialect of the data store, which limits the rows
+     * @param table   the table to page through
+     * @param sortKey the field to sort by
+     * @param forward `true` to move towards larger keys, `false` for smaller
+     * @param seek    `true` to start after a key, `false` to start at the
+     *                first record in the direction of travel
+     * @param nullKey `true` if the key to start after is `NULL`
+     * @return the SQL for the page
+     * @throws IllegalArgumentException if `table` or `sortKey` is not a valid
+     *                                  SQL identifier
+     */
+    public static String forPage(Dialect dialect, String table, String sortKey,
+            boolean forward, boolean seek, boolean nullKey) {
+        String[] variants = pages
+                .computeIfAbsent(dialect.getName() + "|" + table, 
+                        t -> new ConcurrentHashMap<>())
+                .computeIfAbsent(sortKey, k -> page(dialect, table, k));
+
+        return variants[(forward ? 0 : 3) + (seek ? (nullKey ? 2 : 1) : 0)];
+    }
+
+    /**
+     * Makes sure that the given name can safely be placed into SQL text as a
+     * table or column name.
+     *
+     * @param name the name to check
+     * @return `name`, unchanged
+     * @throws IllegalArgumentException if `name` is not a valid SQL identifier
+     */
+    public static String checkIdentifier(String name) {
+        if ( name == null || !IDENTIFIER.matcher(name).matches() )
+            throw new IllegalArgumentException("Not a valid table or column "
+                    + "name: " + name);
+
+        return name;
+    }
+
+    private static String[] build(String table, String column) {
+        checkIdentifier(table);
+        checkIdentifier(column);
+
+        String[] byOp = new String[OPERATIONS.length];
+        byOp[Operation.SELECT.ordinal()] = "SELECT " + column + " FROM "
+                + table + " WHERE id = ?";
+        byOp[Operation.UPDATE.ordinal()] = "UPDATE " + table + " SET "
+                + column + " = ? WHERE id = ?";
+        byOp[Operation.VERSIONED_UPDATE.ordinal()] = "UPDATE " + table
+                + " SET " + column + " = ?, version = version + 1 WHERE id = ?";
+
+        return byOp;
+    }
+
+    private static String project(String table, List<String> columns) {
+        checkIdentifier(table);
+
+        StringBuilder sql = new StringBuilder("SELECT ");
+
+        if ( columns.isEmpty() )
+            sql.append('*');
+
+        for ( int idx = 0; idx < columns.size(); idx++ ) {
+            if ( idx > 0 )
+                sql.append(", ");
+
+            sql.append(checkIdentifier(columns.get(idx)));
+        }
+
+        return sql.append(" FROM ").append(table).append(" WHERE id = ?")
+                .toString();
+    }
+
+    private static String[] page(Dialect dialect, String table, 
+            String sortKey) {
+        checkIdentifier(table);
+        checkIdentifier(sortKey);
+
+        boolean byId = sortKey.equalsIgnoreCase("id");
+        String select = "SELECT * FROM " + table;
+        String[] variants = new String[6];
+
+        // `NULL` keys sort first, so they are only reached going forward from
+        //+ another `NULL` key, and are always reached going backward.
+        for ( int idx = 0; idx < variants.length; idx++ ) {
+            boolean forward = idx < 3;
+            int seek = idx % 3;
+            String gt = forward ? " > " : " < ";
+            String ge = forward ? " >= " : " <= ";
+            String order = forward ? "" : " DESC";
+            StringBuilder sql = new StringBuilder(select);
+
+            if ( seek > 0 && byId ) {
+                sql.append(" WHERE id").append(gt).append('?');
+            } else if ( seek == 1 ) {
+                sql.append(" WHERE (").append(sortKey).append(ge)
+                        .append("? AND (").append(sortKey).append(gt)
+                        .append("? OR id").append(gt).append("?))");
+
+                if ( !forward )
+                    sql.append(" OR ").append(sortKey).append(" IS NULL");
+            } else if ( seek == 2 ) {
+                sql.append(" WHERE (").append(sortKey)
+                        .append(" IS NULL AND id").append(gt).append("?)");
+
+                if ( forward )
+                    sql.append(" OR ").append(sortKey).append(" IS NOT NULL");
+            }
+
+            sql.append(" ORDER BY ");
+
+            if ( !byId )
+                sql.append(sortKey).append(order).append(forward 
+                        ? " NULLS FIRST, " : " NULLS LAST, ");
+
+            sql.append("id").append(order).append(dialect.getLimitClause());
+            variants[idx] = sql.toString();
+        }
+
+        return variants;
+    }
+
+    private static String insert(String table, List<String> columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ")
+                .append(checkIdentifier(table)).append(" (");
+        StringBuilder params = new StringBuilder(") VALUES (");
+
+        for ( int idx = 0; idx < columns.size(); idx++ ) {
+            if ( idx > 0 ) {
+                sql.append(", ");
+                params.append(", ");
+            }
+
+            sql.append(checkIdentifier(columns.get(idx)));
+            params.append('?');
+        }
+
+        return sql.append(params).append(')').toString();
+    }
+
+}
@@ -0,0 +1,406 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api;
+
+import com.northwind.api.db.ChangeFeed;
+import com.northwind.api.db.ConnectionPool;
+import com.northwind.exceptions.DataStoreException;
+import com.northwind.settings.AppProperties;
+import com.northwind.utils.LogContext;
+import com.northwind.utils.Logger;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * A single transaction spanning any number of `Manager`s. Every `Manager`
+ * enlisted in a unit of work uses the unit's connection, so that all of their
+ * changes become visible together, with a single commit, and so a single log
+ * sync, or are all rolled back together.
+ * <p>
+ * The usual way to use a unit of work is through `execute`, which commits if
+ * the work completes and rolls back if it throws:</p>
+ * <pre>
+ * UnitOfWork.execute(uow -&gt; {
+ *     uow.enlist(loads).addAll(newLoads);
+ *     uow.enlist(customers).updateBoolean("active", true, customerId);
+ *     return null;
+ * });
+ * </pre>
+ * <p>
+ * While enlisted, a `Manager` does not use the entity cache or write-behind
+ * mode, and does not create paging indexes, since creating an index would
+ * commit the transaction. Streams opened by an enlisted `Manager` read through
+ * the unit's connection, and so see its uncommitted changes.</p>
+ * <p>
+ * Data stores kept in files run under `MVCC` transaction control, so other
+ * connections reading a table written by the unit of work see the records as
+ * they were before it began, rather than waiting for it to end; only another
+ * writer to the same record waits. Work done inside `execute` must still read
+ * through enlisted `Manager`s, to see its own changes. Where two users may
+ * edit the same record, use `Manager.updateAllFields` with the version the
+ * record was read at, so that the second save is refused rather than
+ * overwriting the first.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class UnitOfWork implements AutoCloseable {
+
+    /**
+     * The work to be done within a unit of work.
+     *
+     * @param <R> the type of the result of the work
+     */
+    @FunctionalInterface
+    public interface Work<R> {
+        R perform(UnitOfWork uow) throws DataStoreException;
+    }
+
+    private final Logger log;
+    private final LogContext record;
+
+    private final String url;
+    private final Connection con;
+    private final List<Manager<?>> enlisted = new ArrayList<>();
+    private final Map<String, Set<Integer>> changedRows = new HashMap<>();
+    private final Set<String> changedTables = new HashSet<>();
+    private boolean dirty;
+    private boolean closed;
+
+    /**
+     * Starts a unit of work on the application's data store.
+     *
+     * @throws DataStoreException in the event the data store cannot be opened
+     */
+    public UnitOfWork() throws DataStoreException {
+        this(null);
+    }
+
+    /**
+     * Starts a unit of work on the given data store.
+     *
+     * @param url the complete JDBC URL of the data store, or `null` for the
+     *            application's data store
+     * @throws DataStoreException in the event the data store cannot be opened
+     */
+    public UnitOfWork(String url) throws DataStoreException {
+        AppProperties props = AppProperties.getInstance();
+        log = Logger.getInstance();
+
+        Level lvl;
+        if ( props.getPropertyAsBoolean("debugging", "true") )
+            lvl = Level.FINEST;
+        else
+            lvl = Level.INFO;
+
+        record = new LogContext(lvl, "Starting a unit of work.");
+        record.setSourceClassName(UnitOfWork.class.getName());
+        record.setSourceMethodName("UnitOfWork");
+        record.setParameters(new Object[]{url});
+        log.enter(record);
+
+        if ( url == null )
+            url = props.getDbUrl() + props.getDbName() + props.getDbOptions();
+
+        this.url = url;
+        this.con = ConnectionPool.getInstance(url).borrow();
+
+        try {
+            con.setAutoCommit(false);
+        } catch ( SQLException ex ) {
+            closeConnection();
+            throw new DataStoreException("Could not start a transaction", ex);
+        }
+
+        record.setMessage("Unit of work started.");
+        log.exit(record, null);
+    }
+
+    /**
+     * Runs the given work in a new unit of work, committing it if the work
+     * completes, and rolling it back if the work throws any exception.
+     *
+     * @param <R>  the type of the result of the work
+     * @param work the work to do
+     * @return the result of the work
+     * @throws DataStoreException in the event the work fails, or the unit of
+     *                            work cannot be committed
+     */
+    public static <R> R execute(Work<R> work) throws DataStoreException {
+        try ( UnitOfWork uow = new UnitOfWork() ) {
+            R ret = work.perform(uow);
+            uow.commit();
+
+            return ret;
+        }
+    }
+
+    /**
+     * Makes a `Manager` do all of its work within this unit of work, until
+     * this unit of work is closed. Any updates the `Manager` had buffered in
+     * write-behind mode are written first.
+     * <p>
+     * The first time a `Manager` is used, its table is checked, and created or
+     * migrated if need be, through the connection of this unit of work. Since
+     * changing a table commits the transaction in most data stores, enlist
+     * every `Manager` before doing any work.</p>
+     *
+     * @param <M>     the type of the `Manager`
+     * @param manager the `Manager` to enlist
+     * @return `manager`, for chaining
+     * @throws DataStoreException in the event the `Manager` cannot connect to
+     *                            the data store, or its buffered updates
+     *                            cannot be written
+     * @throws IllegalStateException if the `Manager` is already enlisted in
+     *                               another unit of work, or this unit of
+     *                               work is closed
+     */
+    public <M extends Manager<?>> M enlist(M manager)
+            throws DataStoreException {
+        checkOpen();
+
+        if ( !enlisted.contains(manager) ) {
+            manager.join(this);
+            enlisted.add(manager);
+        }
+
+        return manager;
+    }
+
+    /**
+     * Marks a point within this unit of work that can be rolled back to,
+     * without rolling back the work done before it.
+     *
+     * @param name the name of the savepoint
+     * @return the savepoint
+     * @throws DataStoreException in the event the savepoint cannot be set
+     */
+    public Savepoint savepoint(String name) throws DataStoreException {
+        checkOpen();
+
+        try {
+            return con.setSavepoint(name);
+        } catch ( SQLException ex ) {
+            throw new DataStoreException("Could not set the savepoint "
+                    + name, ex);
+        }
+    }
+
+    /**
+     * Undoes the work done since a savepoint was set.
+     *
+     * @param savepoint the savepoint to roll back to
+     * @throws DataStoreException in the event the rollback fails
+     */
+    public void rollback(Savepoint savepoint) throws DataStoreException {
+        checkOpen();
+
+        try {
+            con.rollback(savepoint);
+            dirty = true;
+        } catch ( SQLException ex ) {
+            throw new DataStoreException("Could not roll back to the "
+                    + "savepoint", ex);
+        }
+    }
+
+    /**
+     * Makes every change since the unit of work started, or was last
+     * committed, permanent. The unit of work remains open for further work.
+     *
+     * @throws DataStoreException in the event the commit fails, in which case
+     *                            the work is rolled back
+     */
+    public void commit() throws DataStoreException {
+        checkOpen();
+
+        record.setSourceMethodName("commit");
+        record.setMessage("Committing the unit of work.");
+        log.enter(record);
+
+        try {
+            con.commit();
+            publishChanges();
+        } catch ( SQLException ex ) {
+            record.setMessage("Could not commit the unit of work. Rolling "
+                    + "back...");
+            record.setThrown(ex);
+            log.error(record);
+
+            rollback();
+            throw new DataStoreException("Could not commit the unit of work",
+                    ex);
+        } finally {
+            invalidateCaches();
+        }
+
+        record.setSourceMethodName("commit");
+        record.setMessage("Unit of work committed.");
+        log.exit(record, null);
+    }
+
+    /**
+     * Undoes every change since the unit of work started, or was last
+     * committed. The unit of work remains open for further work.
+     *
+     * @throws DataStoreException in the event the rollback fails
+     */
+    public void rollback() throws DataStoreException {
+        checkOpen();
+
+        try {
+            con.rollback();
+        } catch ( SQLException ex ) {
+            throw new DataStoreException("Could not roll back the unit of "
+                    + "work", ex);
+        } finally {
+            changedRows.clear();
+            changedTables.clear();
+            invalidateCaches();
+        }
+    }
+
+    /**
+     * Ends the unit of work. Anything not yet committed is rolled back, every
+     * enlisted `Manager` goes back to working on its own, and the connection
+     * is returned to the pool.
+     *
+     * @throws DataStoreException in the event the uncommitted work cannot be
+     *                            rolled back
+     */
+    @Override
+    public void close() throws DataStoreException {
+        if ( closed )
+            return;
+
+        try {
+            rollback();
+        } finally {
+            closed = true;
+
+            for ( Manager<?> manager : enlisted ) {
+                manager.leave(this);
+            }
+
+            enlisted.clear();
+            closeConnection();
+        }
+    }
+
+    /**
+     * @return the JDBC URL of the data store this unit of work is on
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return `true` if this unit of work has been closed
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return the connection shared by the enlisted `Manager`s
+     */
+    Connection getConnection() {
+        checkOpen();
+        dirty = true;
+
+        return con;
+    }
+
+    /**
+     * Records a change to a record, to be published to the `ChangeFeed` once
+     * it has been committed.
+     * 
+     * @param table the table of the record
+     * @param id    the ID of the record
+     */
+    void rowChanged(String table, int id) {
+        changedRows.computeIfAbsent(table, t -> new HashSet<>()).add(id);
+    }
+
+    /**
+     * Records changes to a table that cannot be tied to particular records,
+     * to be published to the `ChangeFeed` once they have been committed.
+     * 
+     * @param table the table
+     */
+    void tableChanged(String table) {
+        changedTables.add(table);
+    }
+
+    private void publishChanges() {
+        for ( String table : changedTables ) {
+            ChangeFeed.tableChanged(url, table);
+        }
+
+        for ( Map.Entry<String, Set<Integer>> rows : changedRows.entrySet() ) {
+            if ( changedTables.contains(rows.getKey()) )
+                continue;
+
+            for ( Integer id : rows.getValue() ) {
+                ChangeFeed.rowChanged(url, rows.getKey(), id);
+            }
+        }
+
+        changedRows.clear();
+        changedTables.clear();
+    }
+
+    private void checkOpen() {
+        if ( closed )
+            throw new IllegalStateException("The unit of work is closed.");
+    }
+
+    private void invalidateCaches() {
+        // Records read by other `Manager`s while this work was in progress
+        //+ may no longer match the data store.
+        if ( !dirty )
+            return;
+
+        for ( Manager<?> manager : enlisted ) {
+            EntityCache cache = EntityCache.find(url, manager.tableName);
+
+            if ( cache != null )
+                cache.clear();
+        }
+
+        dirty = false;
+    }
+
+    private void closeConnection() {
+        try {
+            con.close();
+        } catch ( SQLException ex ) {
+            record.setSourceMethodName("close");
+            record.setMessage("Could not return the connection to the pool.");
+            record.setThrown(ex);
+            log.error(record);
+        }
+    }
+
+}
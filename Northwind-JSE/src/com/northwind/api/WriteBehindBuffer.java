@@ -0,0 +1,497 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api;
+
+import com.northwind.api.db.Catalog;
+import com.northwind.api.db.ChangeFeed;
+import com.northwind.api.db.ConnectionPool;
+import com.northwind.api.db.QueryMonitor;
+import com.northwind.api.db.StatementCache;
+import com.northwind.exceptions.DataStoreException;
+import com.northwind.settings.AppProperties;
+import com.northwind.utils.LogContext;
+import com.northwind.utils.Logger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+/**
+ * Collects the single-field updates made to the records of one table and
+ * writes them to the data store later, merged into one `UPDATE` per record.
+ * Saving a record field by field then costs one statement, and all of the
+ * records changed since the last flush share a single transaction, and so a
+ * single log sync.
+ * <p>
+ * The buffer is flushed:</p>
+ * <ul>
+ *  <li>every `db.write.behind.delay` milliseconds, by a background thread;
+ *      </li>
+ *  <li>whenever `flush` is called, such as by `Manager.flush`;</li>
+ *  <li>before a record with pending changes is read through a `Manager`, so
+ *      that readers always see their own writes; and</li>
+ *  <li>when the application exits, before the data stores are shut down.
+ *      </li>
+ * </ul>
+ * <p>
+ * If the shared transaction fails, the records are written again one at a
+ * time, so that one bad record, such as one that breaks a constraint, does
+ * not hold up the others. Records that still cannot be written are dropped
+ * and logged. If the data store itself cannot be reached, the changes not yet
+ * written are put back into the buffer, underneath any newer changes to the
+ * same fields, to be retried.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class WriteBehindBuffer {
+
+    private static final Map<String, WriteBehindBuffer> buffers
+            = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService flusher
+            = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "Northwind-Write-Behind");
+                t.setDaemon(true);
+                return t;
+            });
+
+    static {
+        ConnectionPool.addShutdownTask(WriteBehindBuffer::flushAllQuietly);
+    }
+
+    private final Logger log;
+    private final LogContext record;
+
+    private final String url;
+    private final String table;
+    private final Object flushLock = new Object();
+
+    // Guarded by `this`.
+    private Map<Integer, Map<String, Object>> dirty = new LinkedHashMap<>();
+    private Map<Integer, Map<String, Object>> inFlight
+            = Collections.emptyMap();
+    private long rowsWritten;
+    private long rowsRejected;
+    private long fieldsCoalesced;
+    private long flushes;
+
+    private WriteBehindBuffer(String url, String table) {
+        AppProperties props = AppProperties.getInstance();
+        log = Logger.getInstance();
+
+        Level lvl;
+        if ( props.getPropertyAsBoolean("debugging", "true") )
+            lvl = Level.FINEST;
+        else
+            lvl = Level.INFO;
+
+        record = new LogContext(lvl, "Creating the write-behind buffer.");
+        record.setSourceClassName(WriteBehindBuffer.class.getName());
+
+        this.url = url;
+        this.table = StatementTemplate.checkIdentifier(table);
+
+        long delay = Math.max(10, props.getDbWriteBehindDelay());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, delay, delay,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Retrieves the buffer for a table, creating it on first use.
+     *
+     * @param url   the JDBC URL of the data store
+     * @param table the table
+     * @return the buffer shared by every `Manager` for the table
+     */
+    public static WriteBehindBuffer forTable(String url, String table) {
+        return buffers.computeIfAbsent(url + "|" + table.toUpperCase(),
+                k -> new WriteBehindBuffer(url, table));
+    }
+
+    /**
+     * Flushes the buffers of every table.
+     *
+     * @throws DataStoreException if any buffer could not be flushed; the
+     *                            remaining buffers are still flushed
+     */
+    public static void flushAll() throws DataStoreException {
+        DataStoreException failure = null;
+
+        for ( WriteBehindBuffer buffer : buffers.values() ) {
+            try {
+                buffer.flush();
+            } catch ( DataStoreException ex ) {
+                failure = ex;
+            }
+        }
+
+        if ( failure != null )
+            throw failure;
+    }
+
+    /**
+     * Records a change to one field of one record, replacing any earlier
+     * change to the same field that has not been written yet.
+     *
+     * @param id    the ID of the record
+     * @param field the field
+     * @param value the new value
+     */
+    public synchronized void stage(int id, String field, Object value) {
+        StatementTemplate.checkIdentifier(field);
+
+        Map<String, Object> fields = dirty.computeIfAbsent(id,
+                k -> new LinkedHashMap<>());
+
+        if ( fields.put(field, value) != null || fields.size() > 1 )
+            fieldsCoalesced++;
+    }
+
+    /**
+     * @param id the ID of a record
+     * @return `true` if the record has changes that have not been written, or
+     *         are being written right now
+     */
+    public synchronized boolean isDirty(int id) {
+        return dirty.containsKey(id) || inFlight.containsKey(id);
+    }
+
+    /**
+     * @return the number of records with changes that have not been written
+     */
+    public synchronized int size() {
+        return dirty.size();
+    }
+
+    /**
+     * Writes every buffered change to the data store, as one `UPDATE` per
+     * record, in a single transaction. Records that cannot be written even on
+     * their own are dropped, and logged.
+     *
+     * @throws DataStoreException if the data store could not be reached; the
+     *                            changes not yet written are kept in the
+     *                            buffer to be retried
+     */
+    public void flush() throws DataStoreException {
+        // Only one flush at a time, so that a failed flush can put its changes
+        //+ back before the next flush takes them.
+        synchronized ( flushLock ) {
+            Map<Integer, Map<String, Object>> pending;
+
+            synchronized ( this ) {
+                if ( dirty.isEmpty() )
+                    return;
+
+                pending = dirty;
+                inFlight = pending;
+                dirty = new LinkedHashMap<>();
+            }
+
+            try {
+                write(pending);
+            } catch ( SQLException | DataStoreException ex ) {
+                restore(pending);
+
+                record.setSourceMethodName("flush");
+                record.setMessage("Could not write the buffered changes to "
+                        + table + ". They will be retried.");
+                record.setThrown(ex);
+                log.error(record);
+
+                throw new DataStoreException("Could not write the buffered "
+                        + "changes to " + table, ex);
+            } finally {
+                synchronized ( this ) {
+                    inFlight = Collections.emptyMap();
+                }
+            }
+        }
+    }
+
+    public synchronized long getRowsWritten() {
+        return rowsWritten;
+    }
+
+    /**
+     * @return the number of records whose changes were dropped, because they
+     *         could not be written even on their own
+     */
+    public synchronized long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    /**
+     * @return the number of field changes that did not need a statement of
+     *         their own, because they were merged with another change to the
+     *         same record
+     */
+    public synchronized long getFieldsCoalesced() {
+        return fieldsCoalesced;
+    }
+
+    public synchronized long getFlushes() {
+        return flushes;
+    }
+
+    private void write(Map<Integer, Map<String, Object>> pending)
+            throws SQLException, DataStoreException {
+        // Records that changed the same fields share a statement, and so a
+        //+ batch.
+        Map<List<String>, List<Integer>> groups = new LinkedHashMap<>();
+
+        for ( Map.Entry<Integer, Map<String, Object>> e : pending.entrySet() ) {
+            groups.computeIfAbsent(new ArrayList<>(e.getValue().keySet()),
+                    k -> new ArrayList<>()).add(e.getKey());
+        }
+
+        Map<Integer, SQLException> rejected = Collections.emptyMap();
+
+        try ( Connection con = ConnectionPool.getInstance(url).borrow() ) {
+            StatementCache cache = ConnectionPool.getStatementCache(con);
+            boolean versioned = Catalog.getInstance(url).hasColumn(con, table,
+                    "version");
+
+            try {
+                writeBatches(con, cache, groups, pending, versioned);
+            } catch ( SQLException ex ) {
+                if ( isConnectionLost(con, ex) )
+                    throw ex;
+
+                // One bad record must not hold up all of the others, so they
+                //+ are written one at a time to find it.
+                rejected = writeEach(con, cache, groups, pending, versioned);
+            }
+        }
+
+        // Only the records that were written are left in `pending`.
+        synchronized ( this ) {
+            rowsWritten += pending.size();
+            rowsRejected += rejected.size();
+            flushes++;
+        }
+
+        // A record read while this flush was running may have been cached with
+        //+ its old values.
+        EntityCache cache = EntityCache.find(url, table);
+
+        for ( Integer id : pending.keySet() ) {
+            if ( cache != null )
+                cache.invalidate(id);
+
+            ChangeFeed.rowChanged(url, table, id);
+        }
+
+        if ( !rejected.isEmpty() ) {
+            StringBuilder msg = new StringBuilder("Dropped the buffered "
+                    + "changes to ").append(rejected.size()).append(" records "
+                    + "of ").append(table).append(" that could not be "
+                    + "written:");
+
+            for ( Map.Entry<Integer, SQLException> e : rejected.entrySet() ) {
+                msg.append("\n\tid ").append(e.getKey()).append(": ")
+                        .append(e.getValue().getMessage());
+            }
+
+            record.setSourceMethodName("write");
+            record.setMessage(msg.toString());
+            record.setThrown(rejected.values().iterator().next());
+            log.error(record);
+        }
+
+        record.setSourceMethodName("write");
+        record.setMessage("Wrote " + pending.size() + " buffered records to "
+                + table + ".");
+        log.debug(record);
+    }
+
+    private void writeBatches(Connection con, StatementCache cache,
+            Map<List<String>, List<Integer>> groups,
+            Map<Integer, Map<String, Object>> pending, boolean versioned)
+            throws SQLException {
+        con.setAutoCommit(false);
+
+        try {
+            for ( Map.Entry<List<String>, List<Integer>> group
+                    : groups.entrySet() ) {
+                List<String> fields = group.getKey();
+                String sql = buildUpdate(fields, versioned);
+                PreparedStatement ps = QueryMonitor.monitor(cache != null
+                        ? cache.prepare(sql) : con.prepareStatement(sql), sql);
+
+                try {
+                    for ( Integer id : group.getValue() ) {
+                        bind(ps, fields, pending.get(id), id);
+                        ps.addBatch();
+                    }
+
+                    ps.executeBatch();
+                } finally {
+                    if ( cache == null )
+                        ps.close();
+                    else
+                        ps.clearBatch();
+                }
+            }
+
+            con.commit();
+        } catch ( SQLException ex ) {
+            con.rollback();
+            throw ex;
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Writes the records one at a time, each in a transaction of its own, and
+     * takes the ones that could not be written out of `pending`.
+     *
+     * @return the records that could not be written, with the reason why
+     * @throws SQLException if the data store can no longer be reached, in
+     *                      which case only the records not yet written are
+     *                      left in `pending`
+     */
+    private Map<Integer, SQLException> writeEach(Connection con,
+            StatementCache cache, Map<List<String>, List<Integer>> groups,
+            Map<Integer, Map<String, Object>> pending, boolean versioned)
+            throws SQLException {
+        Map<Integer, SQLException> rejected = new LinkedHashMap<>();
+        List<Integer> written = new ArrayList<>();
+
+        try {
+            for ( Map.Entry<List<String>, List<Integer>> group
+                    : groups.entrySet() ) {
+                List<String> fields = group.getKey();
+                String sql = buildUpdate(fields, versioned);
+                PreparedStatement ps = QueryMonitor.monitor(cache != null
+                        ? cache.prepare(sql) : con.prepareStatement(sql), sql);
+
+                try {
+                    for ( Integer id : group.getValue() ) {
+                        bind(ps, fields, pending.get(id), id);
+
+                        try {
+                            ps.executeUpdate();
+                            written.add(id);
+                        } catch ( SQLException ex ) {
+                            if ( isConnectionLost(con, ex) )
+                                throw ex;
+
+                            rejected.put(id, ex);
+                        }
+                    }
+                } finally {
+                    if ( cache == null )
+                        ps.close();
+                }
+            }
+        } catch ( SQLException ex ) {
+            synchronized ( this ) {
+                pending.keySet().removeAll(written);
+            }
+
+            throw ex;
+        }
+
+        synchronized ( this ) {
+            pending.keySet().removeAll(rejected.keySet());
+        }
+
+        return rejected;
+    }
+
+    private static void bind(PreparedStatement ps, List<String> fields,
+            Map<String, Object> values, int id) throws SQLException {
+        int param = 1;
+
+        for ( String field : fields ) {
+            ps.setObject(param++, values.get(field));
+        }
+
+        ps.setInt(param, id);
+    }
+
+    /**
+     * Tells a failure of the data store itself, after which nothing can be
+     * written, from a failure of one record.
+     */
+    private static boolean isConnectionLost(Connection con, SQLException ex) {
+        String state = ex.getSQLState();
+
+        if ( state != null && state.startsWith("08") )
+            return true;
+
+        try {
+            return con.isClosed();
+        } catch ( SQLException e ) {
+            return true;
+        }
+    }
+
+    private String buildUpdate(List<String> fields, boolean versioned) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table)
+                .append(" SET ");
+
+        for ( int idx = 0; idx < fields.size(); idx++ ) {
+            if ( idx > 0 )
+                sql.append(", ");
+
+            sql.append(fields.get(idx)).append(" = ?");
+        }
+
+        if ( versioned && !fields.contains("version") )
+            sql.append(", version = version + 1");
+
+        return sql.append(" WHERE id = ?").toString();
+    }
+
+    private synchronized void restore(
+            Map<Integer, Map<String, Object>> pending) {
+        for ( Map.Entry<Integer, Map<String, Object>> e : pending.entrySet() ) {
+            Map<String, Object> newer = dirty.get(e.getKey());
+            Map<String, Object> merged = new LinkedHashMap<>(e.getValue());
+
+            if ( newer != null )
+                merged.putAll(newer);
+
+            dirty.put(e.getKey(), merged);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch ( DataStoreException ex ) {
+            // Already logged by `flush`; the changes will be retried.
+        }
+    }
+
+    private static void flushAllQuietly() {
+        for ( WriteBehindBuffer buffer : buffers.values() ) {
+            buffer.flushQuietly();
+        }
+    }
+
+}
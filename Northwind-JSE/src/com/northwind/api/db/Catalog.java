@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import com.northwind.settings.AppProperties;
+import com.northwind.utils.LogContext;
+import com.northwind.utils.Logger;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * A snapshot of the tables and columns of one data store, read once from its
+ * `DatabaseMetaData`. Checking whether a table or column exists is then a map
+ * lookup, instead of a query against the table.
+ * <p>
+ * The snapshot is taken the first time it is needed, and thrown away by
+ * `invalidate` whenever the layout of the data store changes, such as when a
+ * table is created or migrated. The next lookup then takes a new snapshot.
+ * </p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class Catalog {
+
+    private static final Map<String, Catalog> catalogs
+            = new ConcurrentHashMap<>();
+
+    private final Logger log;
+    private final LogContext record;
+
+    private final String url;
+    private volatile Map<String, Set<String>> tables;
+    private long snapshots;
+
+    private Catalog(String url) {
+        AppProperties props = AppProperties.getInstance();
+        log = Logger.getInstance();
+
+        Level lvl;
+        if ( props.getPropertyAsBoolean("debugging", "true") )
+            lvl = Level.FINEST;
+        else
+            lvl = Level.INFO;
+
+        record = new LogContext(lvl, "Creating the catalog.");
+        record.setSourceClassName(Catalog.class.getName());
+
+        this.url = url;
+    }
+
+    /**
+     * Retrieves the catalog of a data store, creating it on first use.
+     *
+     * @param url the complete JDBC URL of the data store
+     * @return the catalog of the data store
+     */
+    public static Catalog getInstance(String url) {
+        return catalogs.computeIfAbsent(url, Catalog::new);
+    }
+
+    /**
+     * Throws away the snapshot of every data store. This is required when a
+     * data store is changed outside of the application, such as by restoring
+     * a backup.
+     */
+    public static void invalidateAll() {
+        for ( Catalog catalog : catalogs.values() ) {
+            catalog.invalidate();
+        }
+    }
+
+    /**
+     * @param con   a connection to the data store, used only if a new snapshot
+     *              has to be taken
+     * @param table the name of a table
+     * @return `true` if the table exists
+     * @throws SQLException in the event a snapshot cannot be taken
+     */
+    public boolean hasTable(Connection con, String table) throws SQLException {
+        return snapshot(con).containsKey(key(table));
+    }
+
+    /**
+     * @param con    a connection to the data store, used only if a new
+     *               snapshot has to be taken
+     * @param table  the name of a table
+     * @param column the name of a column
+     * @return `true` if the table exists and has the column
+     * @throws SQLException in the event a snapshot cannot be taken
+     */
+    public boolean hasColumn(Connection con, String table, String column)
+            throws SQLException {
+        Set<String> columns = snapshot(con).get(key(table));
+
+        return columns != null && columns.contains(key(column));
+    }
+
+    /**
+     * @param con   a connection to the data store, used only if a new snapshot
+     *              has to be taken
+     * @param table the name of a table
+     * @return the names of the columns of the table, in upper case, or an
+     *         empty set if the table does not exist
+     * @throws SQLException in the event a snapshot cannot be taken
+     */
+    public Set<String> getColumns(Connection con, String table)
+            throws SQLException {
+        Set<String> columns = snapshot(con).get(key(table));
+
+        return columns == null ? Collections.emptySet() : columns;
+    }
+
+    /**
+     * Throws away the snapshot, because the layout of the data store has
+     * changed.
+     */
+    public void invalidate() {
+        tables = null;
+    }
+
+    /**
+     * @return the number of snapshots taken of the data store
+     */
+    public synchronized long getSnapshotCount() {
+        return snapshots;
+    }
+
+    /**
+     * @return the JDBC URL of the data store this catalog is for
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    private Map<String, Set<String>> snapshot(Connection con)
+            throws SQLException {
+        Map<String, Set<String>> ret = tables;
+
+        if ( ret != null )
+            return ret;
+
+        synchronized ( this ) {
+            if ( tables == null )
+                tables = read(con);
+
+            return tables;
+        }
+    }
+
+    private Map<String, Set<String>> read(Connection con) throws SQLException {
+        record.setSourceMethodName("read");
+        record.setMessage("Taking a snapshot of the data store catalog.");
+        log.enter(record);
+
+        DatabaseMetaData md = con.getMetaData();
+        String schema = con.getSchema();
+        Map<String, Set<String>> ret = new HashMap<>();
+
+        try ( ResultSet rs = md.getTables(null, schema, "%",
+                new String[]{"TABLE"}) ) {
+            while ( rs.next() ) {
+                ret.put(key(rs.getString("TABLE_NAME")), new HashSet<>());
+            }
+        }
+
+        try ( ResultSet rs = md.getColumns(null, schema, "%", "%") ) {
+            while ( rs.next() ) {
+                Set<String> columns = ret.get(key(rs.getString("TABLE_NAME")));
+
+                if ( columns != null )
+                    columns.add(key(rs.getString("COLUMN_NAME")));
+            }
+        }
+
+        for ( Map.Entry<String, Set<String>> e : ret.entrySet() ) {
+            e.setValue(Collections.unmodifiableSet(e.getValue()));
+        }
+
+        snapshots++;
+
+        record.setMessage("Snapshot taken of " + ret.size() + " tables.");
+        log.exit(record, null);
+
+        return Collections.unmodifiableMap(ret);
+    }
+
+    private static String key(String name) {
+        return name.toUpperCase(Locale.ROOT);
+    }
+
+}
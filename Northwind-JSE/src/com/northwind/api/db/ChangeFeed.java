@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tells interested parties about changes to the data of a data store once they
+ * have been committed. The `Manager`s, the write-behind buffers and the units
+ * of work publish their changes here; copies of the data, such as the
+ * `ReportMirror`, listen for them to stay up to date.
+ * <p>
+ * Listeners are called on the thread that committed the change, so they must
+ * be quick, and must not use the data store themselves.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public final class ChangeFeed {
+
+    /**
+     * Receives the committed changes to a data store.
+     */
+    public interface Listener {
+
+        /**
+         * A record was added, changed or removed.
+         *
+         * @param table the table of the record
+         * @param id    the ID of the record
+         */
+        void rowChanged(String table, int id);
+
+        /**
+         * Records of the table were changed in ways that cannot be tied to
+         * particular records.
+         *
+         * @param table the table
+         */
+        void tableChanged(String table);
+
+    }
+
+    private static final Map<String, List<Listener>> listeners
+            = new ConcurrentHashMap<>();
+
+    private ChangeFeed() {
+        /* to prevent instantiation */
+    }
+
+    /**
+     * @param url      the complete JDBC URL of a data store
+     * @param listener receives the committed changes to the data store
+     */
+    public static void addListener(String url, Listener listener) {
+        listeners.computeIfAbsent(url, u -> new CopyOnWriteArrayList<>())
+                .add(listener);
+    }
+
+    /**
+     * @param url      the complete JDBC URL of a data store
+     * @param listener the listener to stop calling
+     */
+    public static void removeListener(String url, Listener listener) {
+        List<Listener> list = listeners.get(url);
+
+        if ( list != null )
+            list.remove(listener);
+    }
+
+    /**
+     * Publishes a committed change to a record.
+     *
+     * @param url   the complete JDBC URL of the data store
+     * @param table the table of the record
+     * @param id    the ID of the record
+     */
+    public static void rowChanged(String url, String table, int id) {
+        List<Listener> list = listeners.get(url);
+
+        if ( list != null ) {
+            for ( Listener listener : list ) {
+                listener.rowChanged(table, id);
+            }
+        }
+    }
+
+    /**
+     * Publishes committed changes to a table that cannot be tied to
+     * particular records.
+     *
+     * @param url   the complete JDBC URL of the data store
+     * @param table the table
+     */
+    public static void tableChanged(String url, String table) {
+        List<Listener> list = listeners.get(url);
+
+        if ( list != null ) {
+            for ( Listener listener : list ) {
+                listener.tableChanged(table);
+            }
+        }
+    }
+
+}
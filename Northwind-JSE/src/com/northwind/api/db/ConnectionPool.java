@@ -0,0 +1,532 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import com.northwind.exceptions.DataStoreException;
+import com.northwind.settings.AppProperties;
+import com.northwind.utils.LogContext;
+import com.northwind.utils.Logger;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * A bounded pool of connections to a single data store URL.
+ * <p>
+ * The embedded HSQLDB data store is opened with `;shutdown=true`, which shuts
+ * the database down as soon as its last connection is closed. Closing and
+ * reopening a connection for every `Manager` or dialog therefore forces the
+ * engine to replay the whole `.script` and `.log` files every time. The pool
+ * avoids that by keeping physical connections open and handing out leases on
+ * them instead:</p>
+ * <ul>
+ *  <li>at most `db.pool.size` physical connections are lent out at any one
+ *      time. Further callers wait up to `db.pool.borrow.timeout` milliseconds
+ *      for a connection to be returned;</li>
+ *  <li>every idle connection is validated when it is borrowed, and discarded
+ *      if it has gone bad;</li>
+ *  <li>connections that have sat idle longer than `db.pool.idle.timeout`
+ *      milliseconds are closed by a background evictor;</li>
+ *  <li>when `db.pool.warm` is set (the default), the pool holds one extra
+ *      connection of its own for the life of the session, so the data store
+ *      stays open even after the evictor has closed every idle connection.
+ *      </li>
+ * </ul>
+ * <p>
+ * Callers return a connection to the pool by simply closing it.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class ConnectionPool {
+
+    private static final Map<String, ConnectionPool> pools
+            = new ConcurrentHashMap<>();
+    private static final List<Runnable> shutdownTasks
+            = new CopyOnWriteArrayList<>();
+    private static final ScheduledExecutorService evictor
+            = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "Northwind-Pool-Evictor");
+                t.setDaemon(true);
+                return t;
+            });
+
+    static {
+        // The main window simply disposes itself, so make sure the data store
+        //+ is still shut down cleanly if `AppProperties.exit` is never called.
+        Runtime.getRuntime().addShutdownHook(new Thread(
+                ConnectionPool::shutdownAll, "Northwind-Pool-Shutdown"));
+    }
+
+    private final Logger log;
+    private final LogContext record;
+
+    private final String url;
+    private final int maxSize;
+    private final long idleTimeoutNanos;
+    private final long borrowTimeoutNanos;
+    private final boolean warm;
+    private final int statementCacheSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReentrantLock warmLock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> lent = new HashSet<>();
+    private final ScheduledFuture<?> evictionTask;
+
+    // All of the following are guarded by `lock`.
+    private Connection keeper;
+    private boolean shutdown;
+    private int openCount;
+    private int peakOpenCount;
+    private long borrowCount;
+    private long totalBorrowWaitNanos;
+    private long maxBorrowWaitNanos;
+    private long physicalOpens;
+    private long validationFailures;
+    private long evictions;
+    private long borrowTimeouts;
+
+    private ConnectionPool(String url) {
+        AppProperties props = AppProperties.getInstance();
+        log = Logger.getInstance();
+
+        Level lvl;
+        if ( props.getPropertyAsBoolean("debugging", "true") )
+            lvl = Level.FINEST;
+        else
+            lvl = Level.INFO;
+
+        record = new LogContext(lvl, "Creating the connection pool.");
+        record.setSourceClassName(ConnectionPool.class.getName());
+
+        this.url = url;
+        this.maxSize = Math.max(1, props.getDbPoolSize());
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+                props.getDbPoolIdleTimeout());
+        this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+                props.getDbPoolBorrowTimeout());
+        this.warm = props.isDbPoolWarm();
+        this.statementCacheSize = Math.max(1, props.getDbStatementCacheSize());
+
+        long period = Math.max(1000, props.getDbPoolIdleTimeout() / 2);
+        evictionTask = evictor.scheduleWithFixedDelay(this::evictIdle, period,
+                period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Retrieves the pool for the given data store URL, creating it the first
+     * time it is asked for.
+     *
+     * @param url the complete JDBC URL, including any connection options
+     * @return the pool for `url`
+     */
+    public static ConnectionPool getInstance(String url) {
+        return pools.computeIfAbsent(url, ConnectionPool::new);
+    }
+
+    /**
+     * Shuts down every pool that has been created. This should be called as
+     * the application exits, so that the embedded data store is shut down
+     * cleanly.
+     */
+    public static void shutdownAll() {
+        for ( Runnable task : shutdownTasks ) {
+            try {
+                task.run();
+            } catch ( RuntimeException ex ) {
+                // A failed task must not stop the data stores being shut down.
+            }
+        }
+
+        for ( ConnectionPool pool : new ArrayList<>(pools.values()) ) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Registers a task to be run by `shutdownAll` before any pool is shut down,
+     * while the data stores can still be written to. Tasks may be run more
+     * than once, as `shutdownAll` is called both on a normal exit and by the
+     * shutdown hook.
+     *
+     * @param task the task, such as flushing buffered writes
+     */
+    public static void addShutdownTask(Runnable task) {
+        shutdownTasks.add(task);
+    }
+
+    /**
+     * Retrieves the prepared statement cache of the physical connection behind
+     * a pooled connection.
+     *
+     * @param con a connection borrowed from any `ConnectionPool`
+     * @return the statement cache for `con`, or `null` if `con` did not come
+     *         from a pool, or has already been returned to it
+     */
+    public static StatementCache getStatementCache(Connection con) {
+        PooledConnection pc = PooledConnection.of(con);
+        return pc == null ? null : pc.getStatementCache();
+    }
+
+    /**
+     * @return the JDBC URL this pool connects to
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Borrows a connection from the pool. An idle connection is reused when
+     * one is available; otherwise a new physical connection is opened, as long
+     * as the pool is not already at its maximum size. When it is, this method
+     * waits for another caller to return a connection.
+     * <p>
+     * The connection is returned to the pool by closing it.</p>
+     *
+     * @return a validated connection to the data store
+     * @throws DataStoreException if no connection could be opened, if none
+     *                            became free within the borrow timeout, or if
+     *                            the pool has been shut down
+     */
+    public Connection borrow() throws DataStoreException {
+        long start = System.nanoTime();
+
+        while ( true ) {
+            PooledConnection pc = takeIdleOrReserve(start + borrowTimeoutNanos);
+
+            if ( pc == null ) {
+                pc = open();
+            } else if ( !validate(pc) ) {
+                discard(pc, true);
+                continue;
+            }
+
+            long waited = System.nanoTime() - start;
+
+            lock.lock();
+            try {
+                lent.add(pc);
+                borrowCount++;
+                totalBorrowWaitNanos += waited;
+                maxBorrowWaitNanos = Math.max(maxBorrowWaitNanos, waited);
+            } finally {
+                lock.unlock();
+            }
+
+            return pc.lease();
+        }
+    }
+
+    /**
+     * Takes a snapshot of the pool's counters.
+     *
+     * @return the current statistics for this pool
+     */
+    public PoolStatistics getStatistics() {
+        lock.lock();
+        try {
+            return new PoolStatistics(openCount + (keeper == null ? 0 : 1),
+                    idle.size(), peakOpenCount, borrowCount,
+                    totalBorrowWaitNanos, maxBorrowWaitNanos, physicalOpens,
+                    validationFailures, evictions, borrowTimeouts);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes every connection of this pool, including those that are still
+     * lent out, and lastly the warm connection, if any. This is only meant
+     * for when the application is exiting: a lent connection that is not
+     * returned would otherwise keep the embedded data store open, so that
+     * changes still waiting in its write delay would be lost.
+     */
+    public void shutdown() {
+        List<PooledConnection> toClose;
+        Connection warmCon;
+
+        lock.lock();
+        try {
+            if ( shutdown )
+                return;
+
+            shutdown = true;
+            toClose = new ArrayList<>(idle);
+            toClose.addAll(lent);
+            openCount -= toClose.size();
+            idle.clear();
+            lent.clear();
+            warmCon = keeper;
+            keeper = null;
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        pools.remove(url, this);
+        evictionTask.cancel(false);
+
+        for ( PooledConnection pc : toClose ) {
+            pc.closePhysical();
+        }
+
+        // The warm connection must be the last one closed, as closing it is
+        //+ what lets the embedded engine shut the data store down.
+        if ( warmCon != null ) {
+            try {
+                warmCon.close();
+            } catch ( SQLException ex ) {
+                record.setSourceMethodName("shutdown");
+                record.setMessage("Could not close the warm connection to "
+                        + url);
+                record.setThrown(ex);
+                log.error(record);
+            }
+        }
+    }
+
+    /**
+     * Called by a lease when its `Connection` is closed.
+     *
+     * @param pc the pooled connection being returned
+     */
+    void release(PooledConnection pc) {
+        lock.lock();
+        try {
+            // A connection still lent out at shutdown has already been closed.
+            if ( !lent.remove(pc) )
+                return;
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            pc.reset();
+        } catch ( SQLException ex ) {
+            discard(pc, false);
+            return;
+        }
+
+        boolean close = false;
+
+        lock.lock();
+        try {
+            if ( shutdown ) {
+                openCount--;
+                close = true;
+            } else {
+                // Most recently used first, so the warmest connection is the
+                //+ next one lent out and the coldest ones age out.
+                idle.offerFirst(pc);
+                available.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if ( close )
+            pc.closePhysical();
+    }
+
+    private PooledConnection takeIdleOrReserve(long deadline)
+            throws DataStoreException {
+        lock.lock();
+        try {
+            while ( true ) {
+                if ( shutdown )
+                    throw new DataStoreException("The connection pool for "
+                            + url + " has been shut down.");
+
+                PooledConnection pc = idle.pollFirst();
+
+                if ( pc != null )
+                    return pc;
+
+                if ( openCount < maxSize ) {
+                    // Reserve the slot now; `open` gives it back on failure.
+                    openCount++;
+                    peakOpenCount = Math.max(peakOpenCount, openCount);
+                    return null;
+                }
+
+                long remaining = deadline - System.nanoTime();
+
+                if ( remaining <= 0 ) {
+                    borrowTimeouts++;
+                    throw new DataStoreException("Timed out waiting for a "
+                            + "free connection to " + url);
+                }
+
+                available.awaitNanos(remaining);
+            }
+        } catch ( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+            throw new DataStoreException("Interrupted while waiting for a "
+                    + "free connection to " + url, ex);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private PooledConnection open() throws DataStoreException {
+        record.setSourceMethodName("open");
+        record.setMessage("Opening a new physical connection to the data "
+                + "store.");
+        log.debug(record);
+
+        try {
+            if ( warm )
+                ensureWarm();
+
+            Connection physical = DriverManager.getConnection(url);
+
+            lock.lock();
+            try {
+                physicalOpens++;
+            } finally {
+                lock.unlock();
+            }
+
+            return new PooledConnection(this, physical, statementCacheSize);
+        } catch ( SQLException ex ) {
+            lock.lock();
+            try {
+                openCount--;
+                available.signal();
+            } finally {
+                lock.unlock();
+            }
+
+            record.setSourceMethodName("open");
+            record.setMessage("Could not open the data store. Throwing new "
+                    + "DataStoreException...");
+            record.setThrown(ex);
+            log.error(record);
+            throw new DataStoreException("Could not open the data store: "
+                    + ex.getMessage(), ex);
+        }
+    }
+
+    private void ensureWarm() throws SQLException {
+        // Opening the data store replays its script and log, which can take a
+        //+ long time, so only the callers opening connections wait for it,
+        //+ not every borrow and release.
+        warmLock.lock();
+        try {
+            lock.lock();
+            try {
+                if ( keeper != null || shutdown )
+                    return;
+            } finally {
+                lock.unlock();
+            }
+
+            Connection warmCon = DriverManager.getConnection(url);
+            boolean close = false;
+
+            lock.lock();
+            try {
+                if ( shutdown ) {
+                    close = true;
+                } else {
+                    keeper = warmCon;
+                    physicalOpens++;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if ( close )
+                warmCon.close();
+        } finally {
+            warmLock.unlock();
+        }
+    }
+
+    private boolean validate(PooledConnection pc) {
+        try {
+            return pc.getPhysical().isValid(5);
+        } catch ( SQLException ex ) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pc, boolean failedValidation) {
+        lock.lock();
+        try {
+            openCount--;
+
+            if ( failedValidation )
+                validationFailures++;
+
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+
+        pc.closePhysical();
+    }
+
+    private void evictIdle() {
+        List<PooledConnection> expired = new ArrayList<>();
+        long now = System.nanoTime();
+
+        lock.lock();
+        try {
+            // The oldest connections are at the tail of the deque.
+            Iterator<PooledConnection> it = idle.descendingIterator();
+
+            while ( it.hasNext() ) {
+                PooledConnection pc = it.next();
+
+                if ( now - pc.getLastReleased() < idleTimeoutNanos )
+                    break;
+
+                it.remove();
+                expired.add(pc);
+            }
+
+            openCount -= expired.size();
+            evictions += expired.size();
+        } finally {
+            lock.unlock();
+        }
+
+        for ( PooledConnection pc : expired ) {
+            pc.closePhysical();
+        }
+    }
+
+}
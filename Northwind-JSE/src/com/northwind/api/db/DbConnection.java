@@ -18,12 +18,15 @@ package com.northwind.api.db;
 
 import com.northwind.exceptions.DataStoreException;
 import com.northwind.settings.AppProperties;
+import com.northwind.utils.LogContext;
 import com.northwind.utils.Logger;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
-import java.util.logging.LogRecord;
 
 /**
  *
@@ -31,8 +34,10 @@ import java.util.logging.LogRecord;
  */
 public class DbConnection {
     
+    private static final Set<String> profiled = ConcurrentHashMap.newKeySet();
+    
     private Logger log;
-    private LogRecord record;
+    private LogContext record;
     private AppProperties props;
     private Connection con;
     
@@ -46,7 +51,7 @@ public class DbConnection {
         else
             lvl = Level.INFO;
         
-        record = new LogRecord(lvl, "Configuring the data store "
+        record = new LogContext(lvl, "Configuring the data store "
                 + "connection.");
         
     }
@@ -54,9 +59,13 @@ public class DbConnection {
     /**
      * Performs a disconnect and reconnect to the backing data store. This is
      * the proper way to make a connection to the data store, so that only one
-     * connection is open at a time. Furthermore, this method prevents memory
-     * leaks by making sure that all objects are set up for garbage collection
-     * once they are done being used.
+     * connection is held by this object at a time. Furthermore, this method 
+     * prevents memory leaks by making sure that all objects are set up for 
+     * garbage collection once they are done being used.
+     * <p>
+     * Connections are borrowed from the `ConnectionPool` for the data store, 
+     * so reconnecting hands the previous connection back to the pool instead
+     * of closing it, and the data store is not reopened each time.</p>
      * 
      * @param db    the name of the data store to use. If no data store name is
      *              provided, the default data store is used. If the provided
@@ -66,9 +75,11 @@ public class DbConnection {
      */
     public Connection reconnect(String db) throws DataStoreException {
         record.setSourceMethodName("reconnect");
-        record.setParameters(new Object[]{db});
-        record.setMessage("Attempting to reconnect to the data store...");
-        log.enter(record);
+        if ( log.isTraceEnabled(record) ) {
+            record.setParameters(new Object[]{db});
+            record.setMessage("Attempting to reconnect to the data store...");
+            log.enter(record);
+        }
         
         record.setMessage("First, we will attempt to disconnect.");
         disconnect();
@@ -104,10 +115,12 @@ public class DbConnection {
     
     private void disconnect() {
         record.setSourceMethodName("disconnect");
-        record.setMessage("Attempting to disconnect from the data store...");
+        record.setMessage("Returning our connection to the connection pool...");
         log.enter(record);
         
         try {
+            // Closing a pooled connection only hands it back to the pool, so
+            //+ the data store itself stays open for the next caller.
             if ( con != null )
                 con.close();
             con = null;
@@ -137,34 +150,147 @@ public class DbConnection {
         String dbOpts = props.getDbOptions();
         
         try {
-            Class.forName("org.hsqldb.jdbcDriver");
             String url = dbURL + db + dbOpts;
-            con = DriverManager.getConnection(url);
+            Dialect dialect = Dialects.forUrl(url);
+            loadDriver(dialect);
+            con = ConnectionPool.getInstance(url).borrow();
             
+            if ( dialect instanceof HsqldbDialect )
+                applyStorageProfile(url, con);
+            
+            record.setSourceMethodName("connect");
             record.setMessage("Connection succeeded! Checking the table.");
             log.debug(record);
-        } catch ( ClassNotFoundException ex ) {
-            record.setSourceMethodName("connect");
-            record.setMessage("Could not load the driver. Throwing new "
-                    + "DataStoreException...");
-            record.setThrown(ex);
-            log.error(record);
-            con = null;
-            throw new DataStoreException("Could not load the driver");
-        } catch ( SQLException ex ) {
+        } catch ( DataStoreException ex ) {
             record.setSourceMethodName("connect");
             record.setMessage("Could not open the data store. Throwing new "
                     + "DataStoreException...");
             record.setThrown(ex);
             log.error(record);
             con = null;
-            throw new DataStoreException("Could not open the data store: " 
-                    + ex.getMessage());
+            throw ex;
         } finally {
             record.setSourceMethodName("connect");
             record.setMessage("Connection establishment complete.");
             log.exit(record, con);
-            return con;
         }
+        
+        return con;
+    }
+    
+    /**
+     * Loads the JDBC driver of a dialect. Drivers that are packaged as JDBC 4
+     * services register themselves when first needed, so a driver class that
+     * cannot be found is only noted here; if the driver really is missing,
+     * opening the data store fails with a clearer message.
+     * 
+     * @param dialect   the dialect of the data store
+     */
+    private void loadDriver(Dialect dialect) {
+        try {
+            Class.forName(dialect.getDriverClass());
+        } catch ( ClassNotFoundException ex ) {
+            record.setSourceMethodName("loadDriver");
+            if ( log.isDebugEnabled() ) {
+                record.setMessage("Could not load the " + dialect.getName() 
+                        + " driver class " + dialect.getDriverClass() + ". "
+                        + "Relying on the driver registering itself.");
+                log.debug(record);
+            }
+        }
+    }
+    
+    /**
+     * Sets up a data store the first time it is opened in this session. Only
+     * data stores kept in files are set up; in-memory and server data stores
+     * are left alone.
+     * <p>
+     * Every such data store runs under `MVCC` transaction control. The storage
+     * profile named by the `db.storage.profile` property is only applied when
+     * that property has been set, as applying a profile may convert every
+     * table of an existing data store. Otherwise the data store keeps its own
+     * settings, and the profile `StorageAdvisor` suggests is only logged.</p>
+     * 
+     * @param url   the complete JDBC URL of the data store
+     * @param conn  a connection to the data store
+     */
+    private void applyStorageProfile(String url, Connection conn) {
+        String path = url.substring(url.indexOf(':', 5) + 1);
+        
+        if ( path.startsWith("mem:") || path.startsWith("res:") 
+                || path.startsWith("hsql") || path.startsWith("http") 
+                || !profiled.add(url) )
+            return;
+        
+        String name = props.getDbStorageProfile();
+        StorageProfile profile = StorageProfile.forName(name, null);
+        
+        record.setSourceMethodName("applyStorageProfile");
+        if ( log.isTraceEnabled(record) ) {
+            record.setMessage("Setting up the data store with the " 
+                    + (profile == null ? "existing" : profile.toString())
+                    + " storage settings.");
+            log.enter(record);
+        }
+        
+        try ( Statement st = conn.createStatement() ) {
+            // Readers see the last committed version of a record rather than
+            //+ waiting on writers; edits that clash are caught by the record
+            //+ versions instead.
+            st.execute("SET DATABASE TRANSACTION CONTROL MVCC");
+        } catch ( SQLException ex ) {
+            record.setMessage("Could not switch the data store to MVCC "
+                    + "transaction control.");
+            record.setThrown(ex);
+            log.error(record);
+        }
+        
+        try {
+            if ( profile == null ) {
+                if ( name != null ) {
+                    record.setMessage("There is no storage profile named \""
+                            + name + "\". Keeping the data store settings.");
+                    log.warning(record);
+                }
+                
+                if ( path.startsWith("file:") )
+                    path = path.substring(5);
+                if ( path.indexOf(';') >= 0 )
+                    path = path.substring(0, path.indexOf(';'));
+                
+                record.setMessage("No storage profile is set, so the data "
+                        + "store keeps its settings. Suggested profile: "
+                        + StorageAdvisor.suggest(conn, path));
+                log.info(record);
+            } else {
+                List<String> converted = profile.apply(conn);
+                
+                if ( !converted.isEmpty() ) {
+                    record.setMessage("Converted the tables " + converted 
+                            + " to " + profile.getTableType() + " tables.");
+                    log.info(record);
+                }
+            }
+        } catch ( SQLException ex ) {
+            // The data store still works with its previous settings.
+            record.setMessage("Could not apply the storage profile.");
+            record.setThrown(ex);
+            log.error(record);
+        }
+        
+        record.setSourceMethodName("applyStorageProfile");
+        record.setMessage("Storage profile applied.");
+        log.exit(record, null);
+    }
+    
+    /**
+     * Retrieves the statistics of the connection pool for the data store that
+     * is currently configured in the application properties.
+     * 
+     * @return the borrow-wait and open-count statistics of the pool
+     */
+    public PoolStatistics getPoolStatistics() {
+        String url = props.getDbUrl() + props.getDbName() + props.getDbOptions();
+        return ConnectionPool.getInstance(url).getStatistics();
     }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * The dialect of Apache Derby, embedded.
+ * <p>
+ * Derby has no `IF NOT EXISTS`, so an index that already exists is recognized
+ * by its error instead. It only returns the key of the last row of a batch,
+ * so rows whose keys are needed are inserted one at a time. Its fastest
+ * bulk-load route is the `SYSCS_UTIL.SYSCS_IMPORT_DATA` procedure, which reads
+ * the rows from a file written for the purpose.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class DerbyDialect implements Dialect {
+
+    /**
+     * The SQL state of the error Derby reports when an object already exists.
+     */
+    private static final String ALREADY_EXISTS = "X0Y32";
+
+    @Override
+    public String getName() {
+        return "Derby";
+    }
+
+    @Override
+    public boolean accepts(String url) {
+        return url.startsWith("jdbc:derby:");
+    }
+
+    @Override
+    public String getDriverClass() {
+        return "org.apache.derby.jdbc.EmbeddedDriver";
+    }
+
+    @Override
+    public String getIdentityDefinition() {
+        return "INTEGER GENERATED BY DEFAULT AS IDENTITY (START WITH 0) "
+                + "PRIMARY KEY";
+    }
+
+    @Override
+    public void createIndex(Connection con, String name, String table,
+            String columns) throws SQLException {
+        try ( Statement st = con.createStatement() ) {
+            st.execute("CREATE INDEX " + name + " ON " + table + " ("
+                    + columns + ")");
+        } catch ( SQLException ex ) {
+            if ( !ALREADY_EXISTS.equals(ex.getSQLState()) )
+                throw ex;
+        }
+    }
+
+    @Override
+    public boolean returnsBatchKeys() {
+        return false;
+    }
+
+    @Override
+    public String renameColumnSql(String table, String from, String to) {
+        return "RENAME COLUMN " + table + "." + from + " TO " + to;
+    }
+
+    @Override
+    public long bulkLoad(Connection con, String table, String[] columns,
+            Iterator<Object[]> rows, int batchSize) throws SQLException {
+        File data;
+        long count = 0;
+
+        try {
+            data = File.createTempFile("northwind-import", ".csv");
+        } catch ( IOException ex ) {
+            throw new SQLException("Could not create the import file", ex);
+        }
+
+        try {
+            try ( Writer out = Files.newBufferedWriter(data.toPath(),
+                    StandardCharsets.UTF_8) ) {
+                while ( rows.hasNext() ) {
+                    writeRow(out, rows.next(), columns.length);
+                    count++;
+                }
+            } catch ( IOException ex ) {
+                throw new SQLException("Could not write the import file", ex);
+            }
+
+            StringBuilder names = new StringBuilder();
+
+            for ( int idx = 0; idx < columns.length; idx++ ) {
+                names.append(idx > 0 ? "," : "")
+                        .append(columns[idx].toUpperCase(Locale.ROOT));
+            }
+
+            Dialects.inTransaction(con, () -> {
+                try ( CallableStatement cs = con.prepareCall("CALL "
+                        + "SYSCS_UTIL.SYSCS_IMPORT_DATA(?, ?, ?, NULL, ?, "
+                        + "NULL, NULL, 'UTF-8', 0)") ) {
+                    cs.setString(1, con.getSchema());
+                    cs.setString(2, table.toUpperCase(Locale.ROOT));
+                    cs.setString(3, names.toString());
+                    cs.setString(4, data.getAbsolutePath());
+                    cs.execute();
+                }
+
+                return null;
+            });
+        } finally {
+            data.delete();
+        }
+
+        return count;
+    }
+
+    private static void writeRow(Writer out, Object[] row, int columns)
+            throws IOException {
+        for ( int idx = 0; idx < columns; idx++ ) {
+            if ( idx > 0 )
+                out.write(',');
+
+            Object value = row[idx];
+
+            // An empty field is imported as NULL; a quoted one as text.
+            if ( value instanceof Number || value instanceof Boolean )
+                out.write(value.toString());
+            else if ( value != null )
+                out.write('"' + value.toString().replace("\"", "\"\"") + '"');
+        }
+
+        out.write('\n');
+    }
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import com.northwind.api.StatementTemplate;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+
+/**
+ * The SQL and JDBC differences between the database engines Northwind can
+ * keep its data in. Everything above the `com.northwind.api.db` package is
+ * written against the portable subset of SQL, and asks the dialect of the
+ * data store for anything that differs between engines:
+ * <ul>
+ *  <li>the JDBC driver to load;</li>
+ *  <li>column types in DDL, such as `IDENTITY` and `LONGVARCHAR`, and how to
+ *      create an index that may already exist;</li>
+ *  <li>how to limit the rows of a query, for paging;</li>
+ *  <li>whether generated keys come back from a batch of inserts;</li>
+ *  <li>how to insert a row or update it if it already exists; and</li>
+ *  <li>the fastest way to load many rows at once.</li>
+ * </ul>
+ * <p>
+ * The defaults suit any engine that follows the SQL standard closely. Dialects
+ * are found through `java.util.ServiceLoader`, so an engine can be supported by
+ * adding its dialect to `META-INF/services/com.northwind.api.db.Dialect`; see
+ * `Dialects`.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public interface Dialect {
+
+    /**
+     * @return the name of the database engine
+     */
+    String getName();
+
+    /**
+     * @param url a JDBC URL
+     * @return `true` if this dialect is for the data store at `url`
+     */
+    boolean accepts(String url);
+
+    /**
+     * @return the class name of the engine's JDBC driver
+     */
+    String getDriverClass();
+
+    /**
+     * @return the column definition of an integer ID the engine generates
+     *         for each new row, which is also the primary key
+     */
+    String getIdentityDefinition();
+
+    /**
+     * @return the type of a column holding text of any length
+     */
+    default String getLongTextType() {
+        return "CLOB";
+    }
+
+    /**
+     * Translates a column definition, as declared in a `TableSchema`, into the
+     * engine's own syntax. Schemas declare an ID column as `IDENTITY`, and long
+     * text as `LONGVARCHAR`.
+     *
+     * @param definition the declared definition, such as `VARCHAR(30) NOT NULL`
+     * @return the definition for this engine
+     */
+    default String columnDefinition(String definition) {
+        if ( definition.trim().equalsIgnoreCase("IDENTITY") )
+            return getIdentityDefinition();
+
+        return definition.replaceAll("(?i)\\bLONGVARCHAR\\b",
+                getLongTextType());
+    }
+
+    /**
+     * @return the clause appended to a query to limit it to the number of rows
+     *         given by its last parameter
+     */
+    default String getLimitClause() {
+        return " FETCH FIRST ? ROWS ONLY";
+    }
+
+    /**
+     * Creates an index, unless an index by the same name already exists.
+     *
+     * @param con     a connection to the data store
+     * @param name    the name of the index
+     * @param table   the table to index
+     * @param columns the comma-separated columns of the index
+     * @throws SQLException in the event the index cannot be created
+     */
+    default void createIndex(Connection con, String name, String table,
+            String columns) throws SQLException {
+        try ( Statement st = con.createStatement() ) {
+            st.execute("CREATE INDEX IF NOT EXISTS " + name + " ON " + table
+                    + " (" + columns + ")");
+        }
+    }
+
+    /**
+     * @return `true` if `Statement.getGeneratedKeys` returns the key of every
+     *         row inserted by a batch, rather than only the last one
+     */
+    default boolean returnsBatchKeys() {
+        return true;
+    }
+
+    /**
+     * Inserts a row, or updates the row that has the same key.
+     *
+     * @param con     a connection to the data store
+     * @param table   the table
+     * @param keys    the number of leading `columns` that form the key
+     * @param columns the columns to set, key columns first
+     * @param values  the values of `columns`, in the same order
+     * @throws SQLException in the event the row cannot be written
+     */
+    default void upsert(Connection con, String table, int keys,
+            String[] columns, Object[] values) throws SQLException {
+        StringBuilder update = new StringBuilder("UPDATE ").append(table)
+                .append(" SET ");
+
+        for ( int idx = keys; idx < columns.length; idx++ ) {
+            update.append(idx > keys ? ", " : "").append(columns[idx])
+                    .append(" = ?");
+        }
+
+        update.append(" WHERE ");
+
+        for ( int idx = 0; idx < keys; idx++ ) {
+            update.append(idx > 0 ? " AND " : "").append(columns[idx])
+                    .append(" = ?");
+        }
+
+        try ( PreparedStatement ps = con.prepareStatement(
+                update.toString()) ) {
+            int param = 1;
+
+            for ( int idx = keys; idx < columns.length; idx++ ) {
+                ps.setObject(param++, values[idx]);
+            }
+
+            for ( int idx = 0; idx < keys; idx++ ) {
+                ps.setObject(param++, values[idx]);
+            }
+
+            if ( ps.executeUpdate() > 0 )
+                return;
+        }
+
+        try ( PreparedStatement ps = con.prepareStatement(
+                StatementTemplate.forInsert(table, columns)) ) {
+            for ( int idx = 0; idx < columns.length; idx++ ) {
+                ps.setObject(idx + 1, values[idx]);
+            }
+
+            ps.executeUpdate();
+        }
+    }
+
+    /**
+     * Adds many rows to a table as quickly as the engine allows. The rows are
+     * added in a single transaction, which is committed unless the connection
+     * is already in a transaction of the caller's.
+     * <p>
+     * The default sends the rows as batches of one prepared `INSERT`.</p>
+     *
+     * @param con       a connection to the data store
+     * @param table     the table
+     * @param columns   the columns to set
+     * @param rows      the values of each row, in the order of `columns`
+     * @param batchSize the number of rows to send to the engine at once
+     * @return the number of rows added
+     * @throws SQLException in the event the rows cannot be added, in which
+     *                      case none of them are
+     */
+    default long bulkLoad(Connection con, String table, String[] columns,
+            Iterator<Object[]> rows, int batchSize) throws SQLException {
+        return Dialects.inTransaction(con, () -> {
+            long count = 0;
+
+            try ( PreparedStatement ps = con.prepareStatement(
+                    StatementTemplate.forInsert(table, columns)) ) {
+                int pending = 0;
+
+                while ( rows.hasNext() ) {
+                    Object[] row = rows.next();
+
+                    for ( int idx = 0; idx < columns.length; idx++ ) {
+                        ps.setObject(idx + 1, row[idx]);
+                    }
+
+                    ps.addBatch();
+                    count++;
+
+                    if ( ++pending == batchSize ) {
+                        ps.executeBatch();
+                        pending = 0;
+                    }
+                }
+
+                if ( pending > 0 )
+                    ps.executeBatch();
+            }
+
+            return count;
+        });
+    }
+
+    /**
+     * @param table the table
+     * @param from  the old name of the column
+     * @param to    the new name of the column
+     * @return the statement that renames a column
+     */
+    default String renameColumnSql(String table, String from, String to) {
+        return "ALTER TABLE " + table + " RENAME COLUMN " + from + " TO " + to;
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the `Dialect` of a data store from its JDBC URL.
+ * <p>
+ * Dialects are loaded with `java.util.ServiceLoader`, from every
+ * `META-INF/services/com.northwind.api.db.Dialect` file on the class path.
+ * The dialects for HSQLDB, Derby and SQLite are always available, even if the
+ * service file has been left out of the build, and are consulted after any
+ * others. A URL no dialect accepts is taken to be HSQLDB, which is the engine
+ * Northwind ships with.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public final class Dialects {
+
+    /**
+     * Work done within a transaction by `inTransaction`.
+     *
+     * @param <R> the type of the result of the work
+     */
+    @FunctionalInterface
+    interface SqlWork<R> {
+        R run() throws SQLException;
+    }
+
+    private static final Dialect DEFAULT = new HsqldbDialect();
+    private static final List<Dialect> dialects = load();
+    private static final Map<String, Dialect> byUrl
+            = new ConcurrentHashMap<>();
+
+    private Dialects() {
+        /* to prevent instantiation */
+    }
+
+    /**
+     * @param url a JDBC URL
+     * @return the dialect of the data store at `url`
+     */
+    public static Dialect forUrl(String url) {
+        return byUrl.computeIfAbsent(url, u -> {
+            for ( Dialect dialect : dialects ) {
+                if ( dialect.accepts(u) )
+                    return dialect;
+            }
+
+            return DEFAULT;
+        });
+    }
+
+    /**
+     * @return every known dialect, in the order they are consulted
+     */
+    public static List<Dialect> getDialects() {
+        return dialects;
+    }
+
+    /**
+     * Runs work in a single transaction. If the connection is in auto-commit
+     * mode, the transaction is committed when the work completes, or rolled
+     * back if it fails. Otherwise the work joins the caller's transaction.
+     *
+     * @param <R>  the type of the result of the work
+     * @param con  the connection
+     * @param work the work
+     * @return the result of the work
+     * @throws SQLException in the event the work fails
+     */
+    static <R> R inTransaction(Connection con, SqlWork<R> work)
+            throws SQLException {
+        if ( !con.getAutoCommit() )
+            return work.run();
+
+        con.setAutoCommit(false);
+
+        try {
+            R ret = work.run();
+            con.commit();
+            return ret;
+        } catch ( SQLException | RuntimeException ex ) {
+            con.rollback();
+            throw ex;
+        } finally {
+            con.setAutoCommit(true);
+        }
+    }
+
+    private static List<Dialect> load() {
+        List<Dialect> ret = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+
+        for ( Dialect dialect : ServiceLoader.load(Dialect.class) ) {
+            ret.add(dialect);
+            names.add(dialect.getClass().getName());
+        }
+
+        Dialect[] builtIn = {DEFAULT, new DerbyDialect(), new SqliteDialect()};
+
+        for ( Dialect dialect : builtIn ) {
+            if ( !names.contains(dialect.getClass().getName()) )
+                ret.add(dialect);
+        }
+
+        return List.copyOf(ret);
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The dialect of HSQLDB, the engine Northwind ships with.
+ * <p>
+ * HSQLDB returns the key of every row of a batch, and upserts with a single
+ * `MERGE`. Its fastest bulk-load route, embedded, is the default one: batches
+ * of a prepared `INSERT` in one transaction, so the log is only synced once.
+ * </p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class HsqldbDialect implements Dialect {
+
+    @Override
+    public String getName() {
+        return "HSQLDB";
+    }
+
+    @Override
+    public boolean accepts(String url) {
+        return url.startsWith("jdbc:hsqldb:");
+    }
+
+    @Override
+    public String getDriverClass() {
+        return "org.hsqldb.jdbcDriver";
+    }
+
+    @Override
+    public String getIdentityDefinition() {
+        return "IDENTITY";
+    }
+
+    @Override
+    public String getLongTextType() {
+        return "LONGVARCHAR";
+    }
+
+    @Override
+    public String getLimitClause() {
+        return " LIMIT ?";
+    }
+
+    @Override
+    public void upsert(Connection con, String table, int keys,
+            String[] columns, Object[] values) throws SQLException {
+        StringBuilder sql = new StringBuilder("MERGE INTO ").append(table)
+                .append(" USING (VALUES (");
+        StringBuilder names = new StringBuilder();
+
+        for ( int idx = 0; idx < columns.length; idx++ ) {
+            sql.append(idx > 0 ? ", ?" : "?");
+            names.append(idx > 0 ? ", " : "").append(columns[idx]);
+        }
+
+        sql.append(")) AS v (").append(names).append(") ON ");
+
+        for ( int idx = 0; idx < keys; idx++ ) {
+            sql.append(idx > 0 ? " AND " : "").append(table).append('.')
+                    .append(columns[idx]).append(" = v.").append(columns[idx]);
+        }
+
+        if ( keys < columns.length ) {
+            sql.append(" WHEN MATCHED THEN UPDATE SET ");
+
+            for ( int idx = keys; idx < columns.length; idx++ ) {
+                sql.append(idx > keys ? ", " : "").append(table).append('.')
+                        .append(columns[idx]).append(" = v.")
+                        .append(columns[idx]);
+            }
+        }
+
+        sql.append(" WHEN NOT MATCHED THEN INSERT (").append(names)
+                .append(") VALUES (");
+
+        for ( int idx = 0; idx < columns.length; idx++ ) {
+            sql.append(idx > 0 ? ", " : "").append("v.").append(columns[idx]);
+        }
+
+        try ( PreparedStatement ps = con.prepareStatement(sql.append(')')
+                .toString()) ) {
+            for ( int idx = 0; idx < columns.length; idx++ ) {
+                ps.setObject(idx + 1, values[idx]);
+            }
+
+            ps.executeUpdate();
+        }
+    }
+
+    @Override
+    public String renameColumnSql(String table, String from, String to) {
+        return "ALTER TABLE " + table + " ALTER COLUMN " + from + " RENAME TO "
+                + to;
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often durations of each size occur, in microseconds, so that
+ * percentiles can be read back without keeping every duration.
+ * <p>
+ * Durations are counted in buckets whose width grows with their size: below
+ * 16 microseconds each microsecond has its own bucket, and each doubling
+ * above that is split into 16 buckets. A percentile is therefore never off by
+ * more than about 6%, whatever the duration, while the whole range up to many
+ * days takes less than a thousand counters.</p>
+ * <p>
+ * Recording takes no locks, so any number of threads can record at once.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param micros a duration, in microseconds; negative durations are
+     *               counted as zero
+     */
+    public void record(long micros) {
+        long value = Math.max(0, micros);
+
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * @return the number of durations recorded
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the sum of the durations recorded, in microseconds
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * @return the longest duration recorded, in microseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return the average duration recorded, in microseconds
+     */
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) getTotal() / n;
+    }
+
+    /**
+     * Retrieves the duration that the given share of the recorded durations
+     * did not exceed. For example, `getPercentile(99)` is the duration 99% of
+     * the calls finished within.
+     *
+     * @param percentile the percentile, from 0 to 100
+     * @return the duration, in microseconds, or zero when nothing has been
+     *         recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long n = 0;
+
+        for ( int idx = 0; idx < BUCKETS; idx++ ) {
+            snapshot[idx] = counts.get(idx);
+            n += snapshot[idx];
+        }
+
+        if ( n == 0 )
+            return 0;
+
+        long rank = Math.max(1,
+                (long) Math.ceil(Math.min(100, percentile) / 100.0 * n));
+        long seen = 0;
+
+        for ( int idx = 0; idx < BUCKETS; idx++ ) {
+            seen += snapshot[idx];
+
+            if ( seen >= rank )
+                return Math.min(highestIn(idx), getMax());
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Forgets every duration recorded so far.
+     */
+    public void reset() {
+        for ( int idx = 0; idx < BUCKETS; idx++ ) {
+            counts.set(idx, 0);
+        }
+
+        count.reset();
+        total.reset();
+        max.reset();
+    }
+
+    private static int indexOf(long value) {
+        if ( value < SUB_BUCKETS )
+            return (int) value;
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long highestIn(int index) {
+        if ( index < SUB_BUCKETS )
+            return index;
+
+        int shift = index / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+
+        return lowest + (1L << shift) - 1;
+    }
+
+}
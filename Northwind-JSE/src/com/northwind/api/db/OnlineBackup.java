@@ -0,0 +1,526 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import com.northwind.exceptions.DataStoreException;
+import com.northwind.settings.AppProperties;
+import com.northwind.utils.LogContext;
+import com.northwind.utils.Logger;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+/**
+ * Backs up the open HSQLDB data store while it is in use, with HSQLDB's
+ * `BACKUP DATABASE ... NOT BLOCKING`, so that a daily backup never locks the
+ * users out. For example:
+ * <pre>
+ * DataAccess.submit(() -&gt; new OnlineBackup(url).run(progress))
+ *         .onEdt(this::backedUp, this::showError);
+ * </pre>
+ * <p>
+ * Each backup is kept in a folder of its own, named for the time it was taken,
+ * under `db.backup.folder`, with a `checksums.sha256` file listing the
+ * checksum of each file in it. A file whose checksum matches the same file in
+ * the previous backup is replaced by a hard link to that file, so the data
+ * that has not changed since the last backup takes no more disk space. Only
+ * the newest `db.backup.keep` backups are kept.</p>
+ * <p>
+ * The `SET FILES BACKUP INCREMENT TRUE` setting of the storage profiles keeps
+ * the checkpoints of the live data store incremental as well.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class OnlineBackup {
+
+    /**
+     * The name of the file listing the checksum of each file of a backup. A
+     * backup folder without one is incomplete.
+     */
+    public static final String MANIFEST = "checksums.sha256";
+
+    private static final DateTimeFormatter STAMP
+            = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final Pattern BACKUP_NAME
+            = Pattern.compile("\\d{8}-\\d{6}");
+    private static final String[] EXTENSIONS = {".properties", ".script",
+        ".data", ".backup", ".log", ".lobs"};
+
+    /**
+     * Receives the progress of a backup, on the thread running it.
+     */
+    @FunctionalInterface
+    public interface Progress {
+
+        /**
+         * @param step    what the backup is doing
+         * @param percent how far along the whole backup is, from 0 to 100
+         */
+        void update(String step, int percent);
+
+    }
+
+    /**
+     * What a backup did.
+     */
+    public static final class Result {
+
+        private final Path folder;
+        private long bytes;
+        private long linkedBytes;
+        private int files;
+        private int linkedFiles;
+        private final List<Path> removed = new ArrayList<>();
+
+        private Result(Path folder) {
+            this.folder = folder;
+        }
+
+        /**
+         * @return the folder holding the backup
+         */
+        public Path getFolder() {
+            return folder;
+        }
+
+        /**
+         * @return the number of files in the backup
+         */
+        public int getFiles() {
+            return files;
+        }
+
+        /**
+         * @return the size of the backup, in bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the number of files that were unchanged since the previous
+         *         backup, and so are shared with it
+         */
+        public int getLinkedFiles() {
+            return linkedFiles;
+        }
+
+        /**
+         * @return the bytes shared with the previous backup, which take no
+         *         more disk space
+         */
+        public long getLinkedBytes() {
+            return linkedBytes;
+        }
+
+        /**
+         * @return the older backups that were removed
+         */
+        public List<Path> getRemoved() {
+            return Collections.unmodifiableList(removed);
+        }
+
+        @Override
+        public String toString() {
+            return "Backed up " + files + " files (" + bytes / 1024 + " KB) to "
+                    + folder + "; " + linkedFiles + " unchanged files ("
+                    + linkedBytes / 1024 + " KB) shared with the previous "
+                    + "backup, " + removed.size() + " old backups removed.";
+        }
+
+    }
+
+    private final Logger log;
+    private final LogContext record;
+
+    private final String url;
+    private final Path source;
+    private Path target;
+    private int keep;
+
+    /**
+     * @param url the complete JDBC URL of an HSQLDB data store kept in files
+     * @throws IllegalArgumentException if the data store is not an HSQLDB
+     *                                  data store kept in files
+     */
+    public OnlineBackup(String url) {
+        AppProperties props = AppProperties.getInstance();
+        log = Logger.getInstance();
+
+        Level lvl;
+        if ( props.getPropertyAsBoolean("debugging", "true") )
+            lvl = Level.FINEST;
+        else
+            lvl = Level.INFO;
+
+        record = new LogContext(lvl, "Configuring an online backup.");
+        record.setSourceClassName(OnlineBackup.class.getName());
+
+        this.url = url;
+        this.source = sourceOf(url);
+        this.target = Paths.get(props.getDbBackupFolder(),
+                source.getFileName().toString());
+        this.keep = Math.max(1, props.getDbBackupKeep());
+    }
+
+    /**
+     * @param folder the folder to keep the backups of this data store in
+     * @return this backup
+     */
+    public OnlineBackup setTarget(Path folder) {
+        this.target = folder;
+        return this;
+    }
+
+    /**
+     * @param keep the number of backups to keep, counting the new one
+     * @return this backup
+     */
+    public OnlineBackup setKeep(int keep) {
+        this.keep = Math.max(1, keep);
+        return this;
+    }
+
+    /**
+     * Takes a backup, then removes the backups that are no longer kept.
+     *
+     * @param progress receives the progress of the backup, or `null`
+     * @return what the backup did
+     * @throws DataStoreException in the event the backup cannot be taken; a
+     *                            partial backup is removed
+     */
+    public Result run(Progress progress) throws DataStoreException {
+        record.setSourceMethodName("run");
+        record.setParameters(new Object[]{target});
+        record.setMessage("Backing up the data store " + source);
+        log.enter(record);
+
+        Progress report = progress == null ? (step, percent) -> { }
+                : progress;
+        List<Path> previous = listBackups();
+        Path folder = target.resolve(LocalDateTime.now().format(STAMP));
+        Result ret = new Result(folder);
+
+        if ( Files.exists(folder) )
+            throw new DataStoreException("A backup was already taken at "
+                    + folder.getFileName());
+
+        try {
+            Files.createDirectories(target);
+            copy(folder, report);
+            report.update("Checking for unchanged files", 70);
+            share(folder, previous.isEmpty() ? null
+                    : previous.get(previous.size() - 1), ret, report);
+            report.update("Removing old backups", 95);
+            rotate(previous, ret);
+            report.update("Backup complete", 100);
+        } catch ( IOException | SQLException ex ) {
+            record.setSourceMethodName("run");
+            record.setMessage("The backup failed. Removing the partial "
+                    + "backup.");
+            record.setThrown(ex);
+            log.error(record);
+
+            delete(folder);
+
+            throw new DataStoreException("Could not back up the data store: "
+                    + ex.getMessage(), ex);
+        }
+
+        record.setSourceMethodName("run");
+        record.setMessage(ret.toString());
+        log.exit(record, ret);
+
+        return ret;
+    }
+
+    /**
+     * @return the complete backups of this data store, oldest first
+     */
+    public List<Path> listBackups() {
+        List<Path> ret = new ArrayList<>();
+
+        if ( !Files.isDirectory(target) )
+            return ret;
+
+        try ( DirectoryStream<Path> dirs = Files.newDirectoryStream(target) ) {
+            for ( Path dir : dirs ) {
+                if ( BACKUP_NAME.matcher(dir.getFileName().toString())
+                        .matches() && Files.exists(dir.resolve(MANIFEST)) )
+                    ret.add(dir);
+            }
+        } catch ( IOException ex ) {
+            record.setSourceMethodName("listBackups");
+            record.setMessage("Could not list the backups in " + target);
+            record.setThrown(ex);
+            log.error(record);
+        }
+
+        Collections.sort(ret);
+
+        return ret;
+    }
+
+    /**
+     * Copies the data store into the folder, reporting the progress by the
+     * size of the copy against the size of the data store files.
+     */
+    private void copy(Path folder, Progress report) throws SQLException,
+            DataStoreException {
+        long expected = 0;
+
+        for ( String ext : EXTENSIONS ) {
+            expected += new File(source + ext).length();
+        }
+
+        long total = Math.max(1, expected);
+        report.update("Backing up the data store", 0);
+
+        Thread watcher = new Thread(() -> {
+            try {
+                while ( !Thread.currentThread().isInterrupted() ) {
+                    Thread.sleep(250);
+                    long done = sizeOf(folder);
+                    report.update("Backing up the data store", (int) Math.min(
+                            69, done * 70 / total));
+                }
+            } catch ( InterruptedException ex ) {
+                // The copy is done.
+            }
+        }, "Northwind-Backup-Progress");
+        watcher.setDaemon(true);
+        watcher.start();
+
+        // Backups take a connection of their own, so that a long one holds
+        //+ up nobody else's work.
+        try ( Connection con = ConnectionPool.getInstance(url).borrow();
+                Statement st = con.createStatement() ) {
+            st.execute("BACKUP DATABASE TO '" + folder.toAbsolutePath()
+                    .toString().replace("'", "''") + File.separator
+                    + "' NOT BLOCKING AS FILES");
+        } finally {
+            watcher.interrupt();
+        }
+    }
+
+    /**
+     * Writes the checksums of the backup, and replaces each file that is
+     * unchanged since the previous backup by a link to the previous copy.
+     */
+    private void share(Path folder, Path previous, Result ret,
+            Progress report) throws IOException {
+        Map<String, String> before = previous == null
+                ? Collections.emptyMap() : readManifest(previous);
+        StringBuilder manifest = new StringBuilder();
+        List<Path> files = new ArrayList<>();
+        long total = 0;
+
+        try ( DirectoryStream<Path> dir = Files.newDirectoryStream(folder) ) {
+            for ( Path file : dir ) {
+                files.add(file);
+                total += Files.size(file);
+            }
+        }
+
+        Collections.sort(files);
+        long done = 0;
+
+        for ( Path file : files ) {
+            String name = file.getFileName().toString();
+            long size = Files.size(file);
+            String sum = checksum(file);
+
+            manifest.append(sum).append("  ").append(name).append('\n');
+            ret.files++;
+            ret.bytes += size;
+
+            if ( sum.equals(before.get(name)) && link(file,
+                    previous.resolve(name)) ) {
+                ret.linkedFiles++;
+                ret.linkedBytes += size;
+            }
+
+            done += size;
+            report.update("Checking for unchanged files", 70 + (int) (done
+                    * 25 / Math.max(1, total)));
+        }
+
+        // Written last, as the mark of a complete backup.
+        Files.write(folder.resolve(MANIFEST), manifest.toString()
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Removes the backups past the number to keep, oldest first, along with
+     * any incomplete backups left by earlier failures.
+     */
+    private void rotate(List<Path> previous, Result ret) throws IOException {
+        int excess = previous.size() + 1 - keep;
+
+        for ( int idx = 0; idx < excess; idx++ ) {
+            delete(previous.get(idx));
+            ret.removed.add(previous.get(idx));
+        }
+
+        try ( DirectoryStream<Path> dirs = Files.newDirectoryStream(target) ) {
+            for ( Path dir : dirs ) {
+                if ( BACKUP_NAME.matcher(dir.getFileName().toString())
+                        .matches() && !Files.exists(dir.resolve(MANIFEST))
+                        && !dir.equals(ret.folder) ) {
+                    delete(dir);
+                    ret.removed.add(dir);
+                }
+            }
+        }
+    }
+
+    private boolean link(Path file, Path existing) {
+        Path temp = file.resolveSibling(file.getFileName() + ".link");
+
+        try {
+            Files.createLink(temp, existing);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            return true;
+        } catch ( IOException | UnsupportedOperationException ex ) {
+            // The file system has no hard links, so the copy is kept.
+            try {
+                Files.deleteIfExists(temp);
+            } catch ( IOException e ) {
+                // Removed with the backup, if ever.
+            }
+
+            return false;
+        }
+    }
+
+    private static Map<String, String> readManifest(Path folder)
+            throws IOException {
+        Map<String, String> ret = new HashMap<>();
+
+        for ( String line : Files.readAllLines(folder.resolve(MANIFEST),
+                StandardCharsets.UTF_8) ) {
+            int split = line.indexOf("  ");
+
+            if ( split > 0 )
+                ret.put(line.substring(split + 2), line.substring(0, split));
+        }
+
+        return ret;
+    }
+
+    private static String checksum(Path file) throws IOException {
+        MessageDigest digest;
+
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch ( NoSuchAlgorithmException ex ) {
+            throw new IOException("SHA-256 is not available", ex);
+        }
+
+        byte[] buf = new byte[64 * 1024];
+
+        try ( InputStream in = Files.newInputStream(file) ) {
+            for ( int n = in.read(buf); n > 0; n = in.read(buf) ) {
+                digest.update(buf, 0, n);
+            }
+        }
+
+        StringBuilder ret = new StringBuilder();
+
+        for ( byte b : digest.digest() ) {
+            ret.append(String.format("%02x", b));
+        }
+
+        return ret.toString();
+    }
+
+    private static long sizeOf(Path folder) {
+        long ret = 0;
+        File[] files = folder.toFile().listFiles();
+
+        if ( files != null ) {
+            for ( File file : files ) {
+                ret += file.length();
+            }
+        }
+
+        return ret;
+    }
+
+    private void delete(Path path) {
+        File[] children = path.toFile().listFiles();
+
+        if ( children != null ) {
+            for ( File child : children ) {
+                delete(child.toPath());
+            }
+        }
+
+        try {
+            Files.deleteIfExists(path);
+        } catch ( IOException ex ) {
+            record.setSourceMethodName("delete");
+            record.setMessage("Could not remove " + path);
+            record.setThrown(ex);
+            log.error(record);
+        }
+    }
+
+    /**
+     * @param url the JDBC URL of a data store
+     * @return the path of its files, without an extension
+     */
+    private static Path sourceOf(String url) {
+        if ( !(Dialects.forUrl(url) instanceof HsqldbDialect) )
+            throw new IllegalArgumentException("Only HSQLDB data stores can "
+                    + "be backed up online: " + url);
+
+        String path = url.substring("jdbc:hsqldb:".length());
+        int opts = path.indexOf(';');
+
+        if ( opts >= 0 )
+            path = path.substring(0, opts);
+        if ( path.startsWith("file:") )
+            path = path.substring("file:".length());
+        else if ( path.matches("^(mem|res|hsqls?|https?):.*") )
+            throw new IllegalArgumentException("Only data stores kept in "
+                    + "files on this computer can be backed up: " + url);
+
+        return Paths.get(path).toAbsolutePath();
+    }
+
+}
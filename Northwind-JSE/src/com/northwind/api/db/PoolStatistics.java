@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+/**
+ * A point-in-time snapshot of the counters kept by a `ConnectionPool`. The
+ * snapshot is immutable, so it may be handed to any thread, or kept around to
+ * compare against a later snapshot.
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public final class PoolStatistics {
+
+    private final int openCount;
+    private final int idleCount;
+    private final int peakOpenCount;
+    private final long borrowCount;
+    private final long totalBorrowWaitNanos;
+    private final long maxBorrowWaitNanos;
+    private final long physicalOpens;
+    private final long validationFailures;
+    private final long evictions;
+    private final long borrowTimeouts;
+
+    PoolStatistics(int openCount, int idleCount, int peakOpenCount,
+            long borrowCount, long totalBorrowWaitNanos,
+            long maxBorrowWaitNanos, long physicalOpens,
+            long validationFailures, long evictions, long borrowTimeouts) {
+        this.openCount = openCount;
+        this.idleCount = idleCount;
+        this.peakOpenCount = peakOpenCount;
+        this.borrowCount = borrowCount;
+        this.totalBorrowWaitNanos = totalBorrowWaitNanos;
+        this.maxBorrowWaitNanos = maxBorrowWaitNanos;
+        this.physicalOpens = physicalOpens;
+        this.validationFailures = validationFailures;
+        this.evictions = evictions;
+        this.borrowTimeouts = borrowTimeouts;
+    }
+
+    /**
+     * @return the number of physical connections currently open, whether they
+     *         are lent out or sitting idle in the pool
+     */
+    public int getOpenCount() {
+        return openCount;
+    }
+
+    /**
+     * @return the number of physical connections sitting idle in the pool
+     */
+    public int getIdleCount() {
+        return idleCount;
+    }
+
+    /**
+     * @return the highest number of physical connections that have been open
+     *         at the same time
+     */
+    public int getPeakOpenCount() {
+        return peakOpenCount;
+    }
+
+    /**
+     * @return the number of times a connection has been borrowed
+     */
+    public long getBorrowCount() {
+        return borrowCount;
+    }
+
+    /**
+     * @return the average time, in nanoseconds, a caller waited to borrow a
+     *         connection
+     */
+    public long getAverageBorrowWaitNanos() {
+        return borrowCount == 0 ? 0 : totalBorrowWaitNanos / borrowCount;
+    }
+
+    /**
+     * @return the longest time, in nanoseconds, a caller waited to borrow a
+     *         connection
+     */
+    public long getMaxBorrowWaitNanos() {
+        return maxBorrowWaitNanos;
+    }
+
+    /**
+     * @return the number of physical connections opened over the life of the
+     *         pool. When this keeps climbing, the pool is too small or the idle
+     *         timeout too short.
+     */
+    public long getPhysicalOpens() {
+        return physicalOpens;
+    }
+
+    /**
+     * @return the number of idle connections that failed validation when they
+     *         were borrowed and were thrown away
+     */
+    public long getValidationFailures() {
+        return validationFailures;
+    }
+
+    /**
+     * @return the number of idle connections closed by the idle evictor
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of borrow attempts that gave up waiting for a free
+     *         connection
+     */
+    public long getBorrowTimeouts() {
+        return borrowTimeouts;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStatistics[open=" + openCount + ", idle=" + idleCount
+                + ", peakOpen=" + peakOpenCount + ", borrows=" + borrowCount
+                + ", avgWaitNanos=" + getAverageBorrowWaitNanos()
+                + ", maxWaitNanos=" + maxBorrowWaitNanos
+                + ", physicalOpens=" + physicalOpens
+                + ", validationFailures=" + validationFailures
+                + ", evictions=" + evictions
+                + ", borrowTimeouts=" + borrowTimeouts + "]";
+    }
+
+}
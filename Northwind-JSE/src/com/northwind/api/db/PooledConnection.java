@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Holds one physical `Connection` on behalf of a `ConnectionPool`. Every time
+ * the connection is borrowed, a fresh lease proxy is handed out, so that a
+ * caller who closes its `Connection` twice, or keeps using it after closing
+ * it, cannot hand the same physical connection back to the pool twice or use
+ * it while another caller holds it.
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+class PooledConnection {
+
+    private final ConnectionPool pool;
+    private final Connection physical;
+    private final StatementCache statements;
+    private volatile long lastReleased;
+
+    PooledConnection(ConnectionPool pool, Connection physical,
+            int statementCacheSize) {
+        this.pool = pool;
+        this.physical = physical;
+        this.statements = new StatementCache(physical, statementCacheSize);
+        this.lastReleased = System.nanoTime();
+    }
+
+    Connection getPhysical() {
+        return physical;
+    }
+
+    StatementCache getStatementCache() {
+        return statements;
+    }
+
+    long getLastReleased() {
+        return lastReleased;
+    }
+
+    /**
+     * Restores the physical connection to the state the pool hands it out in
+     * and records the time it was returned, for the idle evictor.
+     *
+     * @throws SQLException if the connection can no longer be reset, in which
+     *                      case the pool discards it
+     */
+    void reset() throws SQLException {
+        if ( !physical.getAutoCommit() ) {
+            physical.rollback();
+            physical.setAutoCommit(true);
+        }
+
+        physical.clearWarnings();
+        lastReleased = System.nanoTime();
+    }
+
+    /**
+     * Quietly closes the physical connection. Used when the connection fails
+     * validation, sits idle too long, or the pool is shut down.
+     */
+    void closePhysical() {
+        statements.clear();
+
+        try {
+            physical.close();
+        } catch ( SQLException ex ) {
+            // The connection is being thrown away, so there is nothing more we
+            //+ can do with it.
+        }
+    }
+
+    /**
+     * Creates the proxy for a single lease of this connection.
+     *
+     * @return a `Connection` whose `close` method returns this connection to
+     *         its pool
+     */
+    Connection lease() {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{ Connection.class },
+                new Lease(this));
+    }
+
+    /**
+     * Finds the pooled connection behind a lease proxy.
+     *
+     * @param con a `Connection` handed out by a `ConnectionPool`
+     * @return the `PooledConnection` behind it, or `null` if `con` did not come
+     *         from a pool, or its lease has already been closed
+     */
+    static PooledConnection of(Connection con) {
+        if ( con != null && Proxy.isProxyClass(con.getClass()) ) {
+            InvocationHandler handler = Proxy.getInvocationHandler(con);
+
+            if ( handler instanceof Lease && !((Lease) handler).closed )
+                return ((Lease) handler).owner;
+        }
+
+        return null;
+    }
+
+    private static class Lease implements InvocationHandler {
+
+        private final PooledConnection owner;
+        private volatile boolean closed;
+
+        private Lease(PooledConnection owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+            switch ( method.getName() ) {
+                case "close":
+                    if ( !closed ) {
+                        closed = true;
+                        owner.pool.release(owner);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || owner.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + owner.physical.toString();
+                default:
+                    if ( closed )
+                        throw new SQLException("Connection has already been "
+                                + "returned to the pool.");
+            }
+
+            try {
+                return method.invoke(owner.physical, args);
+            } catch ( InvocationTargetException ex ) {
+                throw ex.getCause();
+            }
+        }
+
+    }
+
+}
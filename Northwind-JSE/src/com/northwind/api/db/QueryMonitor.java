@@ -0,0 +1,542 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import com.northwind.settings.AppProperties;
+import com.northwind.utils.LogContext;
+import com.northwind.utils.Logger;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+/**
+ * Measures every statement the `Manager`s run, by the template of its SQL: the
+ * SQL with its literal values replaced by `?`, so that the same query for
+ * different records is counted as one. For each template, it keeps the number
+ * of runs and failures, the rows returned or changed, and a
+ * `LatencyHistogram` of how long the statements took to run.
+ * <p>
+ * A statement is timed from the start to the end of its `execute`. The rows
+ * changed by an update are known from its result, but the rows of a query are
+ * only known once they have been read, so they are reported with `rowsRead`
+ * by whatever reads them, such as the `RowMapper`.</p>
+ * <p>
+ * Statements that take longer than `db.slow.query.millis` are also written to
+ * `slow-queries.log` in the logs folder, along with the types of their
+ * parameters. The values of the parameters are never written, since they may
+ * hold customer details.</p>
+ * <p>
+ * The statistics are read with `getSnapshot`, or written to a CSV file with
+ * `export`. Measuring is turned off altogether by setting
+ * `db.statement.stats` to `false`.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public final class QueryMonitor {
+
+    /**
+     * The statistics of one template, as they were when the snapshot was
+     * taken. All durations are in microseconds.
+     */
+    public static final class Snapshot {
+
+        private final String sql;
+        private final long count;
+        private final long errors;
+        private final long rows;
+        private final long total;
+        private final double mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long max;
+
+        private Snapshot(String sql, Statistics stats) {
+            LatencyHistogram latency = stats.latency;
+
+            this.sql = sql;
+            this.count = latency.getCount();
+            this.errors = stats.errors.sum();
+            this.rows = stats.rows.sum();
+            this.total = latency.getTotal();
+            this.mean = latency.getMean();
+            this.p50 = latency.getPercentile(50);
+            this.p90 = latency.getPercentile(90);
+            this.p99 = latency.getPercentile(99);
+            this.max = latency.getMax();
+        }
+
+        /**
+         * @return the SQL template
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return the number of statements run, including failed ones
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the number of statements that failed
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * @return the rows read from the results of queries, as reported to
+         *         `rowsRead`, or changed by updates
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * @return the time taken by all of the statements together
+         */
+        public long getTotalMicros() {
+            return total;
+        }
+
+        /**
+         * @return the average time taken
+         */
+        public double getMeanMicros() {
+            return mean;
+        }
+
+        /**
+         * @return the time half of the statements finished within
+         */
+        public long getP50Micros() {
+            return p50;
+        }
+
+        /**
+         * @return the time 90% of the statements finished within
+         */
+        public long getP90Micros() {
+            return p90;
+        }
+
+        /**
+         * @return the time 99% of the statements finished within
+         */
+        public long getP99Micros() {
+            return p99;
+        }
+
+        /**
+         * @return the longest time taken
+         */
+        public long getMaxMicros() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d runs, %d errors, %d rows, p50 %d us, "
+                    + "p99 %d us, max %d us: %s", count, errors, rows, p50, p99,
+                    max, sql);
+        }
+
+    }
+
+    private static final class Statistics {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+    }
+
+    /**
+     * The most templates whose normalized form is remembered, so that SQL
+     * built with literal values cannot fill the memory.
+     */
+    private static final int MAX_TEMPLATES = 2048;
+    private static final Pattern IN_LIST
+            = Pattern.compile("(?i)\\bIN \\(\\?(?: ?, ?\\?)+\\)");
+    private static final String SLOW_LOG = "slow-queries.log";
+
+    private static final Map<String, String> templates
+            = new ConcurrentHashMap<>();
+    private static final Map<String, Statistics> statistics
+            = new ConcurrentHashMap<>();
+    private static volatile boolean enabled;
+    private static volatile long slowMicros;
+
+    static {
+        AppProperties props = AppProperties.getInstance();
+        enabled = props.isDbStatementStats();
+        slowMicros = props.getDbSlowQueryMillis() * 1000;
+    }
+
+    private QueryMonitor() {
+        /* to prevent instantiation */
+    }
+
+    /**
+     * Wraps a statement so that each time it is run, it is measured. The
+     * statement is returned unwrapped when measuring is turned off, and as it
+     * is when it is already wrapped, so that a statement kept by the
+     * `StatementCache` is only ever wrapped once.
+     *
+     * @param <S> the type of the statement
+     * @param st  the statement
+     * @param sql the SQL the statement was prepared with, or `null` for a
+     *            plain `Statement`, whose SQL is taken from each `execute`
+     * @return the wrapped statement
+     */
+    @SuppressWarnings("unchecked")
+    public static <S extends Statement> S monitor(S st, String sql) {
+        if ( !enabled || (Proxy.isProxyClass(st.getClass())
+                && Proxy.getInvocationHandler(st) instanceof StatementHandler) )
+            return st;
+
+        Class<?> type = st instanceof CallableStatement
+                ? CallableStatement.class
+                : st instanceof PreparedStatement ? PreparedStatement.class
+                : Statement.class;
+
+        return (S) Proxy.newProxyInstance(QueryMonitor.class.getClassLoader(),
+                new Class<?>[]{type}, new StatementHandler(st, sql));
+    }
+
+    /**
+     * Adds rows read from the results of a query to the statistics of its
+     * template.
+     *
+     * @param sql  the SQL of the query
+     * @param rows the number of rows read
+     */
+    public static void rowsRead(String sql, long rows) {
+        if ( enabled && rows > 0 )
+            statisticsFor(sql).rows.add(rows);
+    }
+
+    /**
+     * Reduces SQL to its template: literal strings and numbers become `?`,
+     * runs of white space become a single space, and lists of parameters
+     * after `IN` become `IN (?...)`, however long they are.
+     *
+     * @param sql the SQL
+     * @return the template of the SQL
+     */
+    public static String normalize(String sql) {
+        if ( sql == null )
+            return "?";
+
+        String ret = templates.get(sql);
+
+        if ( ret == null ) {
+            ret = strip(sql);
+
+            if ( templates.size() < MAX_TEMPLATES )
+                templates.put(sql, ret);
+        }
+
+        return ret;
+    }
+
+    /**
+     * Copies the statistics of every template measured so far, the templates
+     * that took the most time altogether first.
+     *
+     * @return the statistics
+     */
+    public static List<Snapshot> getSnapshot() {
+        List<Snapshot> ret = new ArrayList<>();
+
+        for ( Map.Entry<String, Statistics> e : statistics.entrySet() ) {
+            ret.add(new Snapshot(e.getKey(), e.getValue()));
+        }
+
+        ret.sort((a, b) -> Long.compare(b.total, a.total));
+
+        return ret;
+    }
+
+    /**
+     * Writes a snapshot of the statistics to a CSV file, the templates that
+     * took the most time altogether first. Durations are in microseconds.
+     *
+     * @param file the file to write
+     * @throws IOException in the event the file cannot be written
+     */
+    public static void export(Path file) throws IOException {
+        try ( Writer out = Files.newBufferedWriter(file,
+                StandardCharsets.UTF_8) ) {
+            out.write("sql,count,errors,rows,total,mean,p50,p90,p99,max\n");
+
+            for ( Snapshot s : getSnapshot() ) {
+                out.write(String.format("\"%s\",%d,%d,%d,%d,%.1f,%d,%d,%d,%d%n",
+                        s.sql.replace("\"", "\"\""), s.count, s.errors, s.rows,
+                        s.total, s.mean, s.p50, s.p90, s.p99, s.max));
+            }
+        }
+    }
+
+    /**
+     * Forgets the statistics gathered so far.
+     */
+    public static void reset() {
+        statistics.clear();
+    }
+
+    /**
+     * @return `true` if statements are being measured
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns measuring on or off for the statements prepared from now on.
+     *
+     * @param value `true` to measure statements
+     */
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * @param millis the time a statement may take before it is written to the
+     *               slow-query log, where zero turns the log off
+     */
+    public static void setSlowQueryMillis(long millis) {
+        slowMicros = Math.max(0, millis) * 1000;
+    }
+
+    private static Statistics statisticsFor(String sql) {
+        return statistics.computeIfAbsent(normalize(sql),
+                t -> new Statistics());
+    }
+
+    private static String strip(String sql) {
+        StringBuilder ret = new StringBuilder(sql.length());
+        int len = sql.length();
+        int idx = 0;
+
+        while ( idx < len ) {
+            char c = sql.charAt(idx);
+
+            if ( c == '\'' ) {
+                // Skip the literal, including any doubled quotes inside it.
+                idx++;
+
+                while ( idx < len ) {
+                    if ( sql.charAt(idx) == '\'' ) {
+                        if ( idx + 1 < len && sql.charAt(idx + 1) == '\'' )
+                            idx++;
+                        else
+                            break;
+                    }
+
+                    idx++;
+                }
+
+                ret.append('?');
+                idx++;
+            } else if ( c == '"' ) {
+                int end = sql.indexOf('"', idx + 1);
+                end = end < 0 ? len : end + 1;
+                ret.append(sql, idx, end);
+                idx = end;
+            } else if ( Character.isDigit(c) && !inWord(ret) ) {
+                while ( idx < len && (Character.isDigit(sql.charAt(idx))
+                        || sql.charAt(idx) == '.') ) {
+                    idx++;
+                }
+
+                ret.append('?');
+            } else if ( Character.isWhitespace(c) ) {
+                while ( idx < len && Character.isWhitespace(sql.charAt(idx)) ) {
+                    idx++;
+                }
+
+                if ( ret.length() > 0 && idx < len )
+                    ret.append(' ');
+            } else {
+                ret.append(c);
+                idx++;
+            }
+        }
+
+        return IN_LIST.matcher(ret).replaceAll("IN (?...)");
+    }
+
+    private static boolean inWord(StringBuilder sb) {
+        if ( sb.length() == 0 )
+            return false;
+
+        char last = sb.charAt(sb.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_';
+    }
+
+    private static synchronized void logSlow(String sql, long micros,
+            String binds) {
+        AppProperties props = AppProperties.getInstance();
+        Path file = Paths.get(props.getLogHome(), SLOW_LOG);
+
+        try ( Writer out = Files.newBufferedWriter(file,
+                StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND) ) {
+            out.write(String.format("%s %8.1f ms [%s] %s%s%n",
+                    LocalDateTime.now(), micros / 1000.0,
+                    Thread.currentThread().getName(), normalize(sql),
+                    binds.isEmpty() ? "" : " binds: " + binds));
+        } catch ( IOException ex ) {
+            LogContext record = new LogContext(Level.WARNING, "Could not write "
+                    + "to the slow-query log.");
+            record.setSourceClassName(QueryMonitor.class.getName());
+            record.setSourceMethodName("logSlow");
+            record.setThrown(ex);
+            Logger.getInstance().error(record);
+        }
+    }
+
+    /**
+     * Times each `execute` of a statement, and notes the type of each
+     * parameter set on it for the slow-query log.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String sql;
+        private String[] binds;
+
+        StatementHandler(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+            String name = method.getName();
+
+            if ( name.startsWith("execute") )
+                return execute(method, args);
+
+            if ( args != null && args.length >= 2 && name.startsWith("set")
+                    && args[0] instanceof Integer )
+                bind((Integer) args[0], name, args[1]);
+            else if ( name.equals("clearParameters") )
+                binds = null;
+
+            try {
+                return method.invoke(target, args);
+            } catch ( InvocationTargetException ex ) {
+                throw ex.getCause();
+            }
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            String text = args != null && args.length > 0
+                    && args[0] instanceof String ? (String) args[0] : sql;
+            Statistics stats = statisticsFor(text);
+            Object ret;
+            long start = System.nanoTime();
+
+            try {
+                ret = method.invoke(target, args);
+            } catch ( InvocationTargetException ex ) {
+                stats.errors.increment();
+                stats.latency.record((System.nanoTime() - start) / 1000);
+                throw ex.getCause();
+            }
+
+            long micros = (System.nanoTime() - start) / 1000;
+            stats.latency.record(micros);
+
+            if ( ret instanceof Integer || ret instanceof Long ) {
+                stats.rows.add(Math.max(0, ((Number) ret).longValue()));
+            } else if ( ret instanceof int[] ) {
+                for ( int rows : (int[]) ret ) {
+                    stats.rows.add(Math.max(0, rows));
+                }
+            } else if ( ret instanceof long[] ) {
+                for ( long rows : (long[]) ret ) {
+                    stats.rows.add(Math.max(0, rows));
+                }
+            }
+
+            if ( slowMicros > 0 && micros >= slowMicros )
+                logSlow(text, micros, describeBinds());
+
+            return ret;
+        }
+
+        private void bind(int index, String method, Object value) {
+            if ( index < 1 || index > 10_000 )
+                return;
+
+            if ( binds == null || binds.length < index )
+                binds = Arrays.copyOf(binds == null ? new String[0]
+                        : binds, Math.max(index, 8));
+
+            binds[index - 1] = method.equals("setNull") || value == null
+                    ? "NULL"
+                    : value instanceof CharSequence
+                    ? "String(" + ((CharSequence) value).length() + ")"
+                    : value.getClass().getSimpleName();
+        }
+
+        private String describeBinds() {
+            if ( binds == null )
+                return "";
+
+            StringBuilder ret = new StringBuilder();
+
+            for ( int idx = 0; idx < binds.length; idx++ ) {
+                if ( binds[idx] != null ) {
+                    ret.append(ret.length() > 0 ? ", " : "")
+                            .append(idx + 1).append('=').append(binds[idx]);
+                }
+            }
+
+            return ret.toString();
+        }
+
+    }
+
+}
@@ -0,0 +1,493 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import com.northwind.api.StatementTemplate;
+import com.northwind.exceptions.DataStoreException;
+import com.northwind.settings.AppProperties;
+import com.northwind.utils.LogContext;
+import com.northwind.utils.Logger;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * A copy of the tables of a data store, held in an in-memory HSQLDB data
+ * store, for running reports without holding up the work on the data store
+ * itself. For example:
+ * <pre>
+ * ReportMirror mirror = ReportMirror.open(url);
+ *
+ * try ( Connection con = mirror.getConnection();
+ *         Statement st = con.createStatement();
+ *         ResultSet rs = st.executeQuery("SELECT unitAssigned, SUM(revenue) "
+ *                 + "FROM loads GROUP BY unitAssigned") ) {
+ *     ...
+ * }
+ * </pre>
+ * <p>
+ * The first time a mirror is opened, every table with a registered
+ * `TableSchema` is copied into it, along with its indexes. After that, the
+ * mirror listens to the `ChangeFeed` for the changes committed to the data
+ * store, and before handing out each connection it copies just the records
+ * that have changed. Reports therefore see every change committed before they
+ * started, and only ever read the data store itself for those few records.
+ * </p>
+ * <p>
+ * The mirror uses `MVCC` transaction control, so reports never wait on it
+ * being brought up to date, nor on each other. It holds a full copy of the
+ * tables in memory; close it when the reports are done with.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class ReportMirror implements ChangeFeed.Listener, AutoCloseable {
+
+    /**
+     * The most records read from the data store with one query.
+     */
+    private static final int CHUNK = 500;
+
+    private static final Map<String, ReportMirror> mirrors
+            = new ConcurrentHashMap<>();
+    private static final AtomicInteger count = new AtomicInteger();
+
+    private final Logger log;
+    private final LogContext record;
+
+    private final String url;
+    private final String mirrorUrl;
+    private final Dialect dialect = new HsqldbDialect();
+    private final Set<String> tables = ConcurrentHashMap.newKeySet();
+    private Connection mirror;
+
+    // Filled by the threads committing changes; emptied by `refresh`.
+    private final Object pendingLock = new Object();
+    private Map<String, Set<Integer>> pendingRows = new HashMap<>();
+    private Set<String> pendingTables = new HashSet<>();
+
+    private long rowsCopied;
+    private long rowsRefreshed;
+    private long refreshes;
+
+    private ReportMirror(String url) {
+        AppProperties props = AppProperties.getInstance();
+        log = Logger.getInstance();
+
+        Level lvl;
+        if ( props.getPropertyAsBoolean("debugging", "true") )
+            lvl = Level.FINEST;
+        else
+            lvl = Level.INFO;
+
+        record = new LogContext(lvl, "Creating a report mirror.");
+        record.setSourceClassName(ReportMirror.class.getName());
+
+        this.url = url;
+        this.mirrorUrl = "jdbc:hsqldb:mem:northwindReport"
+                + count.incrementAndGet();
+    }
+
+    /**
+     * Opens the mirror of a data store, copying the data store into it if
+     * it is not open already.
+     *
+     * @param url the complete JDBC URL of the data store
+     * @return the mirror, brought up to date
+     * @throws DataStoreException in the event the data store cannot be copied
+     */
+    public static ReportMirror open(String url) throws DataStoreException {
+        synchronized ( mirrors ) {
+            ReportMirror ret = mirrors.get(url);
+
+            if ( ret == null ) {
+                ret = new ReportMirror(url);
+                ret.load();
+                mirrors.put(url, ret);
+            }
+
+            return ret;
+        }
+    }
+
+    /**
+     * Brings the mirror up to date, and opens a read-only connection to it.
+     * Close the connection when the report is done.
+     *
+     * @return a connection to the mirror
+     * @throws DataStoreException in the event the mirror cannot be brought up
+     *                            to date, or opened
+     */
+    public Connection getConnection() throws DataStoreException {
+        refresh();
+
+        try {
+            Connection ret = DriverManager.getConnection(mirrorUrl, "SA", "");
+            ret.setReadOnly(true);
+            return ret;
+        } catch ( SQLException ex ) {
+            throw new DataStoreException("Could not open the report mirror",
+                    ex);
+        }
+    }
+
+    /**
+     * Copies the records that have changed in the data store since the last
+     * refresh into the mirror.
+     *
+     * @throws DataStoreException in the event the changed records cannot be
+     *                            copied; they are copied at the next refresh
+     */
+    public synchronized void refresh() throws DataStoreException {
+        checkOpen();
+
+        Map<String, Set<Integer>> rows;
+        Set<String> reload;
+
+        synchronized ( pendingLock ) {
+            if ( pendingRows.isEmpty() && pendingTables.isEmpty() )
+                return;
+
+            rows = pendingRows;
+            reload = pendingTables;
+            pendingRows = new HashMap<>();
+            pendingTables = new HashSet<>();
+        }
+
+        record.setSourceMethodName("refresh");
+        record.setParameters(new Object[]{reload, rows.size()});
+        record.setMessage("Bringing the report mirror up to date.");
+        log.enter(record);
+
+        try ( Connection src = ConnectionPool.getInstance(url).borrow() ) {
+            for ( String table : reload ) {
+                copyTable(src, table);
+            }
+
+            for ( Map.Entry<String, Set<Integer>> changed : rows.entrySet() ) {
+                if ( !reload.contains(changed.getKey()) )
+                    copyRows(src, changed.getKey(), changed.getValue());
+            }
+
+            mirror.commit();
+            refreshes++;
+        } catch ( SQLException ex ) {
+            rollbackMirror();
+
+            // Try these changes again at the next refresh.
+            synchronized ( pendingLock ) {
+                pendingTables.addAll(reload);
+
+                for ( Map.Entry<String, Set<Integer>> changed
+                        : rows.entrySet() ) {
+                    pendingRows.computeIfAbsent(changed.getKey(),
+                            t -> new HashSet<>()).addAll(changed.getValue());
+                }
+            }
+
+            record.setSourceMethodName("refresh");
+            record.setMessage("Could not bring the report mirror up to date.");
+            record.setThrown(ex);
+            log.error(record);
+
+            throw new DataStoreException("Could not bring the report mirror up "
+                    + "to date", ex);
+        }
+
+        record.setSourceMethodName("refresh");
+        record.setMessage("Report mirror up to date.");
+        log.exit(record, null);
+    }
+
+    /**
+     * Stops keeping the mirror up to date, and frees the memory it holds.
+     * The next `open` copies the data store again.
+     */
+    @Override
+    public synchronized void close() {
+        if ( mirror == null )
+            return;
+
+        ChangeFeed.removeListener(url, this);
+        mirrors.remove(url, this);
+
+        try ( Statement st = mirror.createStatement() ) {
+            st.execute("SHUTDOWN");
+        } catch ( SQLException ex ) {
+            record.setSourceMethodName("close");
+            record.setMessage("Could not shut down the report mirror.");
+            record.setThrown(ex);
+            log.error(record);
+        }
+
+        mirror = null;
+    }
+
+    @Override
+    public void rowChanged(String table, int id) {
+        String key = key(table);
+
+        if ( !tables.contains(key) )
+            return;
+
+        synchronized ( pendingLock ) {
+            if ( !pendingTables.contains(key) )
+                pendingRows.computeIfAbsent(key, t -> new HashSet<>()).add(id);
+        }
+    }
+
+    @Override
+    public void tableChanged(String table) {
+        String key = key(table);
+
+        if ( !tables.contains(key) )
+            return;
+
+        synchronized ( pendingLock ) {
+            pendingTables.add(key);
+            pendingRows.remove(key);
+        }
+    }
+
+    /**
+     * @return the JDBC URL of the data store this is a mirror of
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * @return the tables copied into the mirror
+     */
+    public synchronized Set<String> getTables() {
+        return new HashSet<>(tables);
+    }
+
+    /**
+     * @return the records copied into the mirror by whole-table copies
+     */
+    public synchronized long getRowsCopied() {
+        return rowsCopied;
+    }
+
+    /**
+     * @return the changed records copied into the mirror by refreshes
+     */
+    public synchronized long getRowsRefreshed() {
+        return rowsRefreshed;
+    }
+
+    /**
+     * @return the number of refreshes that had changes to copy
+     */
+    public synchronized long getRefreshes() {
+        return refreshes;
+    }
+
+    /**
+     * @return `true` if there are committed changes not yet in the mirror
+     */
+    public boolean isStale() {
+        synchronized ( pendingLock ) {
+            return !pendingRows.isEmpty() || !pendingTables.isEmpty();
+        }
+    }
+
+    private synchronized void load() throws DataStoreException {
+        record.setSourceMethodName("load");
+        record.setParameters(new Object[]{url});
+        record.setMessage("Copying the data store into " + mirrorUrl);
+        log.enter(record);
+
+        // Listening first means nothing committed during the copy is missed;
+        //+ copying a record twice does no harm.
+        ChangeFeed.addListener(url, this);
+
+        try ( Connection src = ConnectionPool.getInstance(url).borrow() ) {
+            Class.forName(dialect.getDriverClass());
+            mirror = DriverManager.getConnection(mirrorUrl, "SA", "");
+
+            try ( Statement st = mirror.createStatement() ) {
+                st.execute("SET DATABASE TRANSACTION CONTROL MVCC");
+            }
+
+            mirror.setAutoCommit(false);
+            Catalog catalog = Catalog.getInstance(url);
+
+            for ( TableSchema schema : SchemaRegistry.getSchemas() ) {
+                if ( !catalog.hasTable(src, schema.getTable()) )
+                    continue;
+
+                try ( Statement st = mirror.createStatement() ) {
+                    st.execute(schema.getCreateSql(dialect));
+                }
+
+                for ( String column : schema.getIndexes() ) {
+                    dialect.createIndex(mirror, schema.getIndexName(column),
+                            schema.getTable(), column);
+                }
+
+                tables.add(key(schema.getTable()));
+                copyTable(src, key(schema.getTable()));
+                mirror.commit();
+            }
+        } catch ( SQLException | ClassNotFoundException ex ) {
+            ChangeFeed.removeListener(url, this);
+            close();
+
+            record.setSourceMethodName("load");
+            record.setMessage("Could not copy the data store.");
+            record.setThrown(ex);
+            log.error(record);
+
+            throw new DataStoreException("Could not copy the data store into "
+                    + "the report mirror", ex);
+        }
+
+        record.setSourceMethodName("load");
+        record.setMessage("Copied " + rowsCopied + " records of " + tables
+                + " into the report mirror.");
+        log.exit(record, null);
+    }
+
+    private void copyTable(Connection src, String table) throws SQLException {
+        try ( Statement st = mirror.createStatement() ) {
+            st.execute("DELETE FROM " + table);
+        }
+
+        try ( Statement st = src.createStatement() ) {
+            st.setFetchSize(CHUNK);
+
+            try ( ResultSet rs = st.executeQuery("SELECT * FROM " + table) ) {
+                rowsCopied += insert(table, rs);
+            }
+        }
+    }
+
+    private void copyRows(Connection src, String table, Set<Integer> ids)
+            throws SQLException {
+        Iterator<Integer> it = ids.iterator();
+
+        while ( it.hasNext() ) {
+            List<Integer> chunk = new ArrayList<>(CHUNK);
+
+            while ( it.hasNext() && chunk.size() < CHUNK ) {
+                chunk.add(it.next());
+            }
+
+            String in = inList(chunk.size());
+
+            // Records removed from the data store are removed here, too.
+            try ( PreparedStatement ps = mirror.prepareStatement("DELETE FROM "
+                    + table + " WHERE id IN " + in) ) {
+                bindIds(ps, chunk);
+                ps.executeUpdate();
+            }
+
+            try ( PreparedStatement ps = src.prepareStatement("SELECT * FROM "
+                    + table + " WHERE id IN " + in) ) {
+                bindIds(ps, chunk);
+
+                try ( ResultSet rs = ps.executeQuery() ) {
+                    rowsRefreshed += insert(table, rs);
+                }
+            }
+        }
+    }
+
+    private int insert(String table, ResultSet rs) throws SQLException {
+        ResultSetMetaData md = rs.getMetaData();
+        String[] columns = new String[md.getColumnCount()];
+
+        for ( int idx = 0; idx < columns.length; idx++ ) {
+            columns[idx] = md.getColumnName(idx + 1);
+        }
+
+        int ret = 0;
+
+        try ( PreparedStatement ps = mirror.prepareStatement(
+                StatementTemplate.forInsert(table, columns)) ) {
+            while ( rs.next() ) {
+                for ( int idx = 0; idx < columns.length; idx++ ) {
+                    ps.setObject(idx + 1, rs.getObject(idx + 1));
+                }
+
+                ps.addBatch();
+
+                if ( ++ret % CHUNK == 0 )
+                    ps.executeBatch();
+            }
+
+            if ( ret % CHUNK != 0 )
+                ps.executeBatch();
+        }
+
+        return ret;
+    }
+
+    private void rollbackMirror() {
+        try {
+            mirror.rollback();
+        } catch ( SQLException ex ) {
+            record.setSourceMethodName("rollbackMirror");
+            record.setMessage("Could not roll back the report mirror.");
+            record.setThrown(ex);
+            log.error(record);
+        }
+    }
+
+    private void checkOpen() throws DataStoreException {
+        if ( mirror == null )
+            throw new DataStoreException("The report mirror is closed.");
+    }
+
+    private static String inList(int size) {
+        StringBuilder ret = new StringBuilder("(");
+
+        for ( int idx = 0; idx < size; idx++ ) {
+            ret.append(idx > 0 ? ", ?" : "?");
+        }
+
+        return ret.append(')').toString();
+    }
+
+    private static void bindIds(PreparedStatement ps, List<Integer> ids)
+            throws SQLException {
+        for ( int idx = 0; idx < ids.size(); idx++ ) {
+            ps.setInt(idx + 1, ids.get(idx));
+        }
+    }
+
+    private static String key(String table) {
+        return table.toUpperCase(Locale.ROOT);
+    }
+
+}
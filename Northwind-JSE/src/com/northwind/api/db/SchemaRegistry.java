@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import com.northwind.settings.AppProperties;
+import com.northwind.utils.LogContext;
+import com.northwind.utils.Logger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+/**
+ * Keeps the tables of a data store in step with their `TableSchema`s.
+ * <p>
+ * Every entity registers its schema once, with `register`. The first time a
+ * `Manager` opens a table in a data store, the registry for that data store
+ * brings the table up to the current version of its schema:</p>
+ * <ul>
+ *  <li>a table that does not exist yet is created at the current version;</li>
+ *  <li>a table at an older version has each newer migration applied in turn,
+ *      recording the new version after each one, so that a migration that
+ *      fails is retried the next time the data store is opened; and</li>
+ *  <li>the declared secondary indexes are created, if they do not exist.</li>
+ * </ul>
+ * <p>
+ * The version of each table is kept in the `schema_version` table. A table
+ * that was created before versions were recorded is taken to be at version
+ * one. After a table has been brought up to date, opening it again in the
+ * same session costs a set lookup.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class SchemaRegistry {
+
+    /**
+     * The table holding the version of every other table.
+     */
+    public static final String VERSION_TABLE = "schema_version";
+
+    private static final Map<String, TableSchema> schemas
+            = new ConcurrentHashMap<>();
+    private static final Map<String, SchemaRegistry> registries
+            = new ConcurrentHashMap<>();
+
+    private final Logger log;
+    private final LogContext record;
+
+    private final String url;
+    private final Dialect dialect;
+    private final Set<String> current = new HashSet<>();
+    private boolean versionTableReady;
+
+    private SchemaRegistry(String url) {
+        AppProperties props = AppProperties.getInstance();
+        log = Logger.getInstance();
+
+        Level lvl;
+        if ( props.getPropertyAsBoolean("debugging", "true") )
+            lvl = Level.FINEST;
+        else
+            lvl = Level.INFO;
+
+        record = new LogContext(lvl, "Creating the schema registry.");
+        record.setSourceClassName(SchemaRegistry.class.getName());
+
+        this.url = url;
+        this.dialect = Dialects.forUrl(url);
+    }
+
+    /**
+     * Registers the schema of a table, replacing any schema registered for a
+     * table of the same name.
+     *
+     * @param schema the schema
+     */
+    public static void register(TableSchema schema) {
+        schemas.put(key(schema.getTable()), schema);
+    }
+
+    /**
+     * @param table the name of a table
+     * @return the schema registered for the table, or `null` if there is none
+     */
+    public static TableSchema getSchema(String table) {
+        return schemas.get(key(table));
+    }
+
+    /**
+     * @return the schema of every registered table
+     */
+    public static Collection<TableSchema> getSchemas() {
+        return Collections.unmodifiableCollection(schemas.values());
+    }
+
+    /**
+     * Retrieves the registry for a data store, creating it on first use.
+     *
+     * @param url the complete JDBC URL of the data store
+     * @return the registry for the data store
+     */
+    public static SchemaRegistry getInstance(String url) {
+        return registries.computeIfAbsent(url, SchemaRegistry::new);
+    }
+
+    /**
+     * Creates a table at the current version of its schema, along with its
+     * secondary indexes.
+     *
+     * @param con    a connection to the data store
+     * @param schema the schema of the table
+     * @throws SQLException in the event the table cannot be created
+     */
+    public synchronized void create(Connection con, TableSchema schema)
+            throws SQLException {
+        record.setSourceMethodName("create");
+        record.setParameters(new Object[]{schema});
+        record.setMessage("Creating the table " + schema.getTable() + " at "
+                + "version " + schema.getVersion());
+        log.enter(record);
+
+        try ( Statement st = con.createStatement() ) {
+            st.execute(schema.getCreateSql(dialect));
+        } finally {
+            Catalog.getInstance(url).invalidate();
+        }
+
+        setVersion(con, schema.getTable(), schema.getVersion());
+        createIndexes(con, schema);
+        current.add(key(schema.getTable()));
+
+        record.setSourceMethodName("create");
+        record.setMessage("Table " + schema.getTable() + " created.");
+        log.exit(record, null);
+    }
+
+    /**
+     * Brings an existing table up to the current version of its schema, and
+     * creates any of its secondary indexes that are missing. This does nothing
+     * if the table has already been brought up to date in this session.
+     *
+     * @param con    a connection to the data store
+     * @param schema the schema of the table
+     * @throws SQLException in the event a migration fails; the versions
+     *                      already reached are kept
+     */
+    public synchronized void migrate(Connection con, TableSchema schema)
+            throws SQLException {
+        String table = schema.getTable();
+
+        if ( current.contains(key(table)) )
+            return;
+
+        record.setSourceMethodName("migrate");
+        record.setParameters(new Object[]{schema});
+        record.setMessage("Checking the version of the table " + table);
+        log.enter(record);
+
+        int version = getVersion(con, table);
+
+        if ( version == 0 ) {
+            // Tables created before versions were recorded.
+            version = 1;
+            setVersion(con, table, version);
+        }
+
+        for ( Map.Entry<Integer, TableSchema.Migration> migration
+                : schema.getMigrations().entrySet() ) {
+            if ( migration.getKey() <= version )
+                continue;
+
+            record.setSourceMethodName("migrate");
+            record.setMessage("Migrating the table " + table + " from version "
+                    + version + " to version " + migration.getKey());
+            log.info(record);
+
+            try {
+                migration.getValue().apply(con, dialect, table);
+            } finally {
+                Catalog.getInstance(url).invalidate();
+            }
+
+            version = migration.getKey();
+            setVersion(con, table, version);
+        }
+
+        if ( version < schema.getVersion() )
+            setVersion(con, table, schema.getVersion());
+
+        createIndexes(con, schema);
+        current.add(key(table));
+
+        record.setSourceMethodName("migrate");
+        record.setMessage("Table " + table + " is at version "
+                + schema.getVersion());
+        log.exit(record, null);
+    }
+
+    /**
+     * @param con   a connection to the data store
+     * @param table the name of a table
+     * @return the recorded version of the table, or zero if no version has
+     *         been recorded for it
+     * @throws SQLException in the event the version cannot be read
+     */
+    public synchronized int getVersion(Connection con, String table)
+            throws SQLException {
+        ensureVersionTable(con);
+
+        try ( PreparedStatement ps = con.prepareStatement("SELECT version "
+                + "FROM " + VERSION_TABLE + " WHERE tableName = ?") ) {
+            ps.setString(1, key(table));
+
+            try ( ResultSet rs = ps.executeQuery() ) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    /**
+     * @return the dialect of the data store this registry is for
+     */
+    public Dialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * @return the JDBC URL of the data store this registry is for
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    private void setVersion(Connection con, String table, int version)
+            throws SQLException {
+        ensureVersionTable(con);
+
+        dialect.upsert(con, VERSION_TABLE, 1,
+                new String[]{"tableName", "version"},
+                new Object[]{key(table), version});
+    }
+
+    private void createIndexes(Connection con, TableSchema schema)
+            throws SQLException {
+        for ( String column : schema.getIndexes() ) {
+            dialect.createIndex(con, schema.getIndexName(column),
+                    schema.getTable(), column);
+        }
+    }
+
+    private void ensureVersionTable(Connection con) throws SQLException {
+        if ( versionTableReady )
+            return;
+
+        Catalog catalog = Catalog.getInstance(url);
+
+        if ( !catalog.hasTable(con, VERSION_TABLE) ) {
+            try ( Statement st = con.createStatement() ) {
+                st.execute("CREATE TABLE " + VERSION_TABLE + " ("
+                        + "tableName VARCHAR(128) PRIMARY KEY, "
+                        + "version INTEGER NOT NULL)");
+            } finally {
+                catalog.invalidate();
+            }
+        }
+
+        versionTableReady = true;
+    }
+
+    private static String key(String table) {
+        return table.toUpperCase(Locale.ROOT);
+    }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+
+/**
+ * The dialect of SQLite.
+ * <p>
+ * SQLite only returns the key of the last row inserted, so rows whose keys are
+ * needed are inserted one at a time. It upserts with `ON CONFLICT DO UPDATE`.
+ * Its fastest bulk-load route is a multi-row `INSERT`, as many rows per
+ * statement as its limit on parameters allows, in one transaction.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class SqliteDialect implements Dialect {
+
+    /**
+     * The most parameters SQLite allows in one statement, by default.
+     */
+    private static final int MAX_PARAMETERS = 999;
+
+    @Override
+    public String getName() {
+        return "SQLite";
+    }
+
+    @Override
+    public boolean accepts(String url) {
+        return url.startsWith("jdbc:sqlite:");
+    }
+
+    @Override
+    public String getDriverClass() {
+        return "org.sqlite.JDBC";
+    }
+
+    @Override
+    public String getIdentityDefinition() {
+        return "INTEGER PRIMARY KEY AUTOINCREMENT";
+    }
+
+    @Override
+    public String getLongTextType() {
+        return "TEXT";
+    }
+
+    @Override
+    public String getLimitClause() {
+        return " LIMIT ?";
+    }
+
+    @Override
+    public boolean returnsBatchKeys() {
+        return false;
+    }
+
+    @Override
+    public void upsert(Connection con, String table, int keys,
+            String[] columns, Object[] values) throws SQLException {
+        StringBuilder sql = new StringBuilder(insert(table, columns, 1))
+                .append(" ON CONFLICT (");
+
+        for ( int idx = 0; idx < keys; idx++ ) {
+            sql.append(idx > 0 ? ", " : "").append(columns[idx]);
+        }
+
+        sql.append(")");
+
+        if ( keys == columns.length ) {
+            sql.append(" DO NOTHING");
+        } else {
+            sql.append(" DO UPDATE SET ");
+
+            for ( int idx = keys; idx < columns.length; idx++ ) {
+                sql.append(idx > keys ? ", " : "").append(columns[idx])
+                        .append(" = excluded.").append(columns[idx]);
+            }
+        }
+
+        try ( PreparedStatement ps = con.prepareStatement(sql.toString()) ) {
+            for ( int idx = 0; idx < columns.length; idx++ ) {
+                ps.setObject(idx + 1, values[idx]);
+            }
+
+            ps.executeUpdate();
+        }
+    }
+
+    @Override
+    public long bulkLoad(Connection con, String table, String[] columns,
+            Iterator<Object[]> rows, int batchSize) throws SQLException {
+        int perStatement = Math.max(1, Math.min(batchSize,
+                MAX_PARAMETERS / columns.length));
+
+        return Dialects.inTransaction(con, () -> {
+            long count = 0;
+            Object[][] chunk = new Object[perStatement][];
+
+            try ( PreparedStatement full = con.prepareStatement(
+                    insert(table, columns, perStatement)) ) {
+                int pending = 0;
+
+                while ( rows.hasNext() ) {
+                    chunk[pending++] = rows.next();
+                    count++;
+
+                    if ( pending == perStatement ) {
+                        bind(full, chunk, pending, columns.length);
+                        full.executeUpdate();
+                        pending = 0;
+                    }
+                }
+
+                if ( pending > 0 ) {
+                    try ( PreparedStatement rest = con.prepareStatement(
+                            insert(table, columns, pending)) ) {
+                        bind(rest, chunk, pending, columns.length);
+                        rest.executeUpdate();
+                    }
+                }
+            }
+
+            return count;
+        });
+    }
+
+    private static String insert(String table, String[] columns, int rows) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table)
+                .append(" (").append(String.join(", ", columns))
+                .append(") VALUES ");
+
+        for ( int row = 0; row < rows; row++ ) {
+            sql.append(row > 0 ? ", (" : "(");
+
+            for ( int idx = 0; idx < columns.length; idx++ ) {
+                sql.append(idx > 0 ? ", ?" : "?");
+            }
+
+            sql.append(')');
+        }
+
+        return sql.toString();
+    }
+
+    private static void bind(PreparedStatement ps, Object[][] chunk, int rows,
+            int columns) throws SQLException {
+        int param = 1;
+
+        for ( int row = 0; row < rows; row++ ) {
+            for ( int idx = 0; idx < columns; idx++ ) {
+                ps.setObject(param++, chunk[row][idx]);
+            }
+        }
+    }
+
+}
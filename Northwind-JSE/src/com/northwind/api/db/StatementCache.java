@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A least-recently-used cache of `PreparedStatement`s for one pooled physical
+ * connection. Because a pooled connection stays open across many leases, a
+ * statement prepared once is parsed and planned by the data store only once,
+ * no matter how many times it is executed afterwards.
+ * <p>
+ * A statement is wrapped by the `QueryMonitor` when it is prepared, and the
+ * wrapper is kept in its place, so that a statement served from the cache is
+ * not wrapped again.</p>
+ * <p>
+ * Statements handed out by this cache belong to the cache. Callers must close
+ * any `ResultSet` they open on them, but must <strong>never</strong> close the
+ * statements themselves.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class StatementCache {
+
+    private static final AtomicLong totalHits = new AtomicLong();
+    private static final AtomicLong totalMisses = new AtomicLong();
+
+    private final Connection con;
+    private final int maxSize;
+    private final Map<String, PreparedStatement> statements;
+    private long hits;
+    private long misses;
+
+    StatementCache(Connection con, int maxSize) {
+        this.con = con;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Retrieves the prepared statement for the given SQL, preparing it on the
+     * first request.
+     *
+     * @param sql the parameterized SQL statement
+     * @return the cached statement, with its parameters cleared
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public synchronized PreparedStatement prepare(String sql)
+            throws SQLException {
+        PreparedStatement ps = statements.get(sql);
+
+        if ( ps != null && !ps.isClosed() ) {
+            hits++;
+            totalHits.incrementAndGet();
+            ps.clearParameters();
+            return ps;
+        }
+
+        misses++;
+        totalMisses.incrementAndGet();
+        ps = QueryMonitor.monitor(con.prepareStatement(sql), sql);
+        statements.put(sql, ps);
+
+        if ( statements.size() > maxSize ) {
+            Iterator<PreparedStatement> eldest = statements.values().iterator();
+            close(eldest.next());
+            eldest.remove();
+        }
+
+        return ps;
+    }
+
+    /**
+     * Closes and forgets every cached statement. This is required after a
+     * change to the structure of a table, as statements prepared against the
+     * old structure may no longer be valid.
+     */
+    public synchronized void clear() {
+        for ( PreparedStatement ps : statements.values() ) {
+            close(ps);
+        }
+
+        statements.clear();
+    }
+
+    /**
+     * @return the number of requests served from this cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of requests that had to prepare a new statement
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of statements currently held by this cache
+     */
+    public synchronized int size() {
+        return statements.size();
+    }
+
+    /**
+     * @return the number of requests served from all statement caches since
+     *         the application started
+     */
+    public static long getTotalHits() {
+        return totalHits.get();
+    }
+
+    /**
+     * @return the number of requests, across all statement caches, that had
+     *         to prepare a new statement since the application started
+     */
+    public static long getTotalMisses() {
+        return totalMisses.get();
+    }
+
+    private void close(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch ( SQLException ex ) {
+            // Nothing to be done; the statement is being discarded.
+        }
+    }
+
+}
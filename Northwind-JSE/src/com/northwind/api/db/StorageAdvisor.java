@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Suggests a `StorageProfile` for a data store from the amount of data it
+ * holds. A data store small enough to sit comfortably in memory is best served
+ * by `SMALL_FLEET`; anything larger by `LARGE_HISTORY`. `DURABLE` is never
+ * suggested, as it is a choice about how much risk is acceptable rather than
+ * about the size of the data.
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class StorageAdvisor {
+
+    /**
+     * The most rows, across every table, that `SMALL_FLEET` is suggested for.
+     */
+    public static final long MEMORY_ROW_LIMIT = 250_000;
+
+    /**
+     * The largest size of the data store files, in bytes, that `SMALL_FLEET`
+     * is suggested for.
+     */
+    public static final long MEMORY_BYTE_LIMIT = 64L * 1024 * 1024;
+
+    /**
+     * A suggested profile, with the figures it was based on.
+     */
+    public static final class Advice {
+
+        private final StorageProfile profile;
+        private final long rows;
+        private final long bytes;
+
+        private Advice(StorageProfile profile, long rows, long bytes) {
+            this.profile = profile;
+            this.rows = rows;
+            this.bytes = bytes;
+        }
+
+        /**
+         * @return the suggested profile
+         */
+        public StorageProfile getProfile() {
+            return profile;
+        }
+
+        /**
+         * @return the number of rows across every table
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * @return the size of the data store files, in bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public String toString() {
+            return profile + " (" + rows + " rows, " + bytes / 1024
+                    + " KB on disk)";
+        }
+
+    }
+
+    private StorageAdvisor() {
+        /* to prevent instantiation */
+    }
+
+    /**
+     * Suggests a profile for a data store.
+     *
+     * @param con  a connection to the data store
+     * @param path the path of the data store files, without an extension, as
+     *             given in its JDBC URL, or `null` to judge by rows alone
+     * @return the advice
+     * @throws SQLException in the event the row counts cannot be read
+     */
+    public static Advice suggest(Connection con, String path)
+            throws SQLException {
+        return suggest(countRows(con), path == null ? 0 : sizeOf(path));
+    }
+
+    /**
+     * Suggests a profile for the given amount of data.
+     *
+     * @param rows  the number of rows across every table
+     * @param bytes the size of the data store files, in bytes
+     * @return the advice
+     */
+    public static Advice suggest(long rows, long bytes) {
+        StorageProfile profile = rows <= MEMORY_ROW_LIMIT
+                && bytes <= MEMORY_BYTE_LIMIT ? StorageProfile.SMALL_FLEET
+                : StorageProfile.LARGE_HISTORY;
+
+        return new Advice(profile, rows, bytes);
+    }
+
+    private static long countRows(Connection con) throws SQLException {
+        try ( Statement st = con.createStatement();
+                ResultSet rs = st.executeQuery("SELECT SUM(cardinality) "
+                        + "FROM information_schema.system_tablestats "
+                        + "WHERE table_schema = CURRENT_SCHEMA") ) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    private static long sizeOf(String path) {
+        long ret = 0;
+
+        for ( String ext : new String[]{".script", ".data", ".log",
+            ".backup", ".lobs"} ) {
+            ret += new File(path + ext).length();
+        }
+
+        return ret;
+    }
+
+}
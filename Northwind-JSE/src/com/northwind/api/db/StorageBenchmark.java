@@ -0,0 +1,275 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures what each `StorageProfile` costs, on a scratch data store of its
+ * own, so that the choice of profile is made on numbers from the machine it
+ * will run on. For each profile it measures:
+ * <ul>
+ *  <li>the latency of committing a single new row, as the median and 99th
+ *      percentile;</li>
+ *  <li>the throughput of adding rows in batches;</li>
+ *  <li>the time of a full scan and the average time of a lookup by ID; and
+ *      </li>
+ *  <li>the time to reopen the data store, which for `MEMORY` tables includes
+ *      reading every row back in.</li>
+ * </ul>
+ * <p>
+ * Run it from the command line, optionally with the number of rows to add:
+ * </p>
+ * <pre>
+ * java -cp Northwind-JSE.jar:hsqldb.jar com.northwind.api.db.StorageBenchmark 100000
+ * </pre>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class StorageBenchmark {
+
+    private static final int COMMITS = 200;
+    private static final int LOOKUPS = 2000;
+    private static final int BATCH = 500;
+
+    /**
+     * The measurements of one profile.
+     */
+    public static final class Result {
+
+        private final StorageProfile profile;
+        private long commitP50Nanos;
+        private long commitP99Nanos;
+        private double rowsPerSecond;
+        private long scanNanos;
+        private long lookupNanos;
+        private long reopenNanos;
+
+        private Result(StorageProfile profile) {
+            this.profile = profile;
+        }
+
+        public StorageProfile getProfile() {
+            return profile;
+        }
+
+        public long getCommitP50Nanos() {
+            return commitP50Nanos;
+        }
+
+        public long getCommitP99Nanos() {
+            return commitP99Nanos;
+        }
+
+        public double getRowsPerSecond() {
+            return rowsPerSecond;
+        }
+
+        public long getScanNanos() {
+            return scanNanos;
+        }
+
+        /**
+         * @return the average time of a lookup by ID
+         */
+        public long getLookupNanos() {
+            return lookupNanos;
+        }
+
+        public long getReopenNanos() {
+            return reopenNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-14s commit p50 %8.3f ms  p99 %8.3f ms  "
+                    + "batch %9.0f rows/s  scan %8.2f ms  lookup %7.1f us  "
+                    + "reopen %8.1f ms", profile, commitP50Nanos / 1e6,
+                    commitP99Nanos / 1e6, rowsPerSecond, scanNanos / 1e6,
+                    lookupNanos / 1e3, reopenNanos / 1e6);
+        }
+
+    }
+
+    private StorageBenchmark() {
+        /* to prevent instantiation */
+    }
+
+    /**
+     * Runs the benchmark for every profile and prints the results.
+     *
+     * @param args the number of rows to add, 50,000 if not given
+     * @throws Exception in the event the benchmark cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        File dir = Files.createTempDirectory("northwind-bench").toFile();
+
+        try {
+            for ( StorageProfile profile : StorageProfile.values() ) {
+                System.out.println(run(profile, dir, rows));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Runs the benchmark for one profile, on a new data store.
+     *
+     * @param profile the profile to measure
+     * @param dir     the folder to create the scratch data store in
+     * @param rows    the number of rows to add in batches
+     * @return the measurements
+     * @throws SQLException in the event the scratch data store fails
+     */
+    public static Result run(StorageProfile profile, File dir, int rows)
+            throws SQLException {
+        String url = "jdbc:hsqldb:file:" + new File(dir, profile.name()
+                .toLowerCase()).getAbsolutePath() + "/bench";
+        Result ret = new Result(profile);
+
+        try ( Connection con = DriverManager.getConnection(url, "sa", "");
+                Statement st = con.createStatement() ) {
+            profile.apply(con);
+            st.execute("CREATE TABLE bench (id IDENTITY, unit VARCHAR(15), "
+                    + "miles INTEGER, revenue DOUBLE, notes VARCHAR(200))");
+
+            try ( PreparedStatement ps = con.prepareStatement("INSERT INTO "
+                    + "bench (unit, miles, revenue, notes) VALUES (?, ?, ?, ?)")
+                    ) {
+                measureCommits(ps, ret);
+                measureBatches(con, ps, rows, ret);
+            }
+
+            long start = System.nanoTime();
+
+            try ( ResultSet rs = st.executeQuery("SELECT SUM(miles) "
+                    + "FROM bench") ) {
+                rs.next();
+            }
+
+            ret.scanNanos = System.nanoTime() - start;
+            measureLookups(con, rows + COMMITS, ret);
+            st.execute("SHUTDOWN");
+        }
+
+        long start = System.nanoTime();
+
+        try ( Connection con = DriverManager.getConnection(url, "sa", "");
+                Statement st = con.createStatement() ) {
+            try ( ResultSet rs = st.executeQuery("SELECT COUNT(*) "
+                    + "FROM bench") ) {
+                rs.next();
+            }
+
+            ret.reopenNanos = System.nanoTime() - start;
+            st.execute("SHUTDOWN");
+        }
+
+        return ret;
+    }
+
+    private static void measureCommits(PreparedStatement ps, Result ret)
+            throws SQLException {
+        long[] nanos = new long[COMMITS];
+
+        for ( int idx = 0; idx < COMMITS; idx++ ) {
+            long start = System.nanoTime();
+            bind(ps, idx);
+            ps.executeUpdate();
+            nanos[idx] = System.nanoTime() - start;
+        }
+
+        Arrays.sort(nanos);
+        ret.commitP50Nanos = nanos[COMMITS / 2];
+        ret.commitP99Nanos = nanos[COMMITS * 99 / 100];
+    }
+
+    private static void measureBatches(Connection con, PreparedStatement ps,
+            int rows, Result ret) throws SQLException {
+        long start = System.nanoTime();
+        con.setAutoCommit(false);
+
+        try {
+            for ( int idx = 0; idx < rows; idx++ ) {
+                bind(ps, idx);
+                ps.addBatch();
+
+                if ( (idx + 1) % BATCH == 0 || idx == rows - 1 ) {
+                    ps.executeBatch();
+                    con.commit();
+                }
+            }
+        } finally {
+            con.setAutoCommit(true);
+        }
+
+        ret.rowsPerSecond = rows * 1e9 / (System.nanoTime() - start);
+    }
+
+    private static void measureLookups(Connection con, int rows, Result ret)
+            throws SQLException {
+        Random random = new Random(42);
+
+        try ( PreparedStatement ps = con.prepareStatement("SELECT * "
+                + "FROM bench WHERE id = ?") ) {
+            long start = System.nanoTime();
+
+            for ( int idx = 0; idx < LOOKUPS; idx++ ) {
+                ps.setInt(1, random.nextInt(rows));
+
+                try ( ResultSet rs = ps.executeQuery() ) {
+                    rs.next();
+                }
+            }
+
+            ret.lookupNanos = (System.nanoTime() - start) / LOOKUPS;
+        }
+    }
+
+    private static void bind(PreparedStatement ps, int idx)
+            throws SQLException {
+        ps.setString(1, "T" + (idx % 40));
+        ps.setInt(2, idx % 3000);
+        ps.setDouble(3, idx * 1.5);
+        ps.setString(4, "Load number " + idx + " delivered on time");
+    }
+
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+
+        if ( children != null ) {
+            for ( File child : children ) {
+                delete(child);
+            }
+        }
+
+        Files.deleteIfExists(file.toPath());
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The ways the HSQLDB data store can keep its files, each trading memory,
+ * speed and durability differently. The profile in use is chosen with the
+ * `db.storage.profile` property, and applied by `DbConnection` when the data
+ * store is opened; while that property is not set, the data store keeps the
+ * settings it already has. `StorageAdvisor` suggests a profile from the size
+ * of the data, and `StorageBenchmark` measures what each profile costs.
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public enum StorageProfile {
+
+    /**
+     * For an owner-operator or a small fleet. Every table is held in memory,
+     * and only written out to the `.script` file at checkpoints, so reads never
+     * touch the disk. Commits reach the disk within half a second.
+     */
+    SMALL_FLEET("MEMORY", 500, 50000, 10000, 256, 50),
+
+    /**
+     * For years of load history. Tables are `CACHED`, so only the most used
+     * rows are held in memory, with a larger row cache and memory-mapped
+     * `.data` file, and a larger log between checkpoints. Commits reach the
+     * disk within a second.
+     */
+    LARGE_HISTORY("CACHED", 1000, 200000, 65536, 1024, 200),
+
+    /**
+     * For when no committed change may ever be lost. Every commit is synced to
+     * the disk before it returns, and checkpoints are frequent, so that a crash
+     * replays little of the log. Commits are the slowest of all the profiles.
+     */
+    DURABLE("CACHED", 0, 50000, 10000, 256, 10);
+
+    private final String tableType;
+    private final int writeDelayMillis;
+    private final int cacheRows;
+    private final int cacheSizeKb;
+    private final int nioSizeMb;
+    private final int logSizeMb;
+
+    private StorageProfile(String tableType, int writeDelayMillis,
+            int cacheRows, int cacheSizeKb, int nioSizeMb, int logSizeMb) {
+        this.tableType = tableType;
+        this.writeDelayMillis = writeDelayMillis;
+        this.cacheRows = cacheRows;
+        this.cacheSizeKb = cacheSizeKb;
+        this.nioSizeMb = nioSizeMb;
+        this.logSizeMb = logSizeMb;
+    }
+
+    /**
+     * Looks up a profile by name, ignoring case.
+     *
+     * @param name the name of the profile
+     * @param def  the profile to return if `name` is not the name of a profile
+     * @return the profile
+     */
+    public static StorageProfile forName(String name, StorageProfile def) {
+        if ( name == null )
+            return def;
+
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch ( IllegalArgumentException ex ) {
+            return def;
+        }
+    }
+
+    /**
+     * @return `MEMORY` or `CACHED`: the type the tables are kept as
+     */
+    public String getTableType() {
+        return tableType;
+    }
+
+    /**
+     * @return the longest time, in milliseconds, a commit may wait before it
+     *         is written to the disk, where zero syncs every commit
+     */
+    public int getWriteDelayMillis() {
+        return writeDelayMillis;
+    }
+
+    /**
+     * @return the statements that set up the data store files for this
+     *         profile
+     */
+    public List<String> getSettings() {
+        List<String> ret = new ArrayList<>();
+
+        ret.add("SET DATABASE DEFAULT TABLE TYPE " + tableType);
+
+        if ( writeDelayMillis == 0 )
+            ret.add("SET FILES WRITE DELAY FALSE");
+        else
+            ret.add("SET FILES WRITE DELAY " + writeDelayMillis + " MILLIS");
+
+        ret.add("SET FILES CACHE ROWS " + cacheRows);
+        ret.add("SET FILES CACHE SIZE " + cacheSizeKb);
+        ret.add("SET FILES NIO SIZE " + nioSizeMb);
+        ret.add("SET FILES LOG SIZE " + logSizeMb);
+        // Checkpoints save only the changed blocks of the `.data` file to the
+        //+ `.backup` file, rather than all of it.
+        ret.add("SET FILES BACKUP INCREMENT TRUE");
+
+        return ret;
+    }
+
+    /**
+     * Sets up an open data store for this profile. Tables of the other type
+     * are converted, which rewrites them, so this takes a while the first time
+     * a data store is opened after its profile is changed.
+     *
+     * @param con a connection to the data store, as an administrator
+     * @return the tables that were converted
+     * @throws SQLException in the event the data store cannot be set up
+     */
+    public List<String> apply(Connection con) throws SQLException {
+        List<String> converted = new ArrayList<>();
+
+        try ( Statement st = con.createStatement() ) {
+            for ( String sql : getSettings() ) {
+                st.execute(sql);
+            }
+
+            try ( ResultSet rs = st.executeQuery("SELECT table_name "
+                    + "FROM information_schema.system_tablestats "
+                    + "WHERE table_schema = CURRENT_SCHEMA AND table_type = '"
+                    + (tableType.equals("MEMORY") ? "CACHED" : "MEMORY")
+                    + "'") ) {
+                while ( rs.next() ) {
+                    converted.add(rs.getString(1));
+                }
+            }
+
+            for ( String table : converted ) {
+                st.execute("SET TABLE \"" + table + "\" TYPE " + tableType);
+            }
+        }
+
+        return converted;
+    }
+
+}
@@ -0,0 +1,328 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.api.db;
+
+import com.northwind.api.StatementTemplate;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The declaration of one table: its columns, its secondary indexes, and the
+ * version of its layout, along with the migrations that bring a table created
+ * by an older version of Northwind up to date. For example:
+ * <pre>
+ * TableSchema schema = TableSchema.builder("customers", 2)
+ *         .column("id", "IDENTITY")
+ *         .column("companyName", "VARCHAR(40) NOT NULL")
+ *         .column("state", "VARCHAR(2) NOT NULL")
+ *         .index("state")
+ *         .migration(2, TableSchema.renameColumn("companName", "companyName"))
+ *         .build();
+ * </pre>
+ * <p>
+ * Column definitions are written in HSQLDB's SQL, with `IDENTITY` for the ID
+ * column and `LONGVARCHAR` for long text; the `Dialect` of the data store
+ * translates them when the table is created. Schemas are registered with the
+ * `SchemaRegistry`, which creates and migrates the tables when a `Manager`
+ * first opens them.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public final class TableSchema {
+
+    /**
+     * One step in bringing a table up to a newer version of its schema.
+     */
+    @FunctionalInterface
+    public interface Migration {
+        void apply(Connection con, Dialect dialect, String table)
+                throws SQLException;
+    }
+
+    private final String table;
+    private final int version;
+    private final Map<String, String> columns;
+    private final List<String> indexes;
+    private final Map<Integer, Migration> migrations;
+
+    private TableSchema(Builder builder) {
+        this.table = builder.table;
+        this.version = builder.version;
+        this.columns = Collections.unmodifiableMap(
+                new LinkedHashMap<>(builder.columns));
+        this.indexes = Collections.unmodifiableList(
+                new ArrayList<>(builder.indexes));
+        this.migrations = Collections.unmodifiableMap(
+                new TreeMap<>(builder.migrations));
+    }
+
+    /**
+     * Starts the declaration of a schema.
+     *
+     * @param table   the name of the table
+     * @param version the current version of the table's layout, starting at
+     *                one; raise it whenever a migration is added
+     * @return a builder for declaring the columns, indexes and migrations
+     */
+    public static Builder builder(String table, int version) {
+        return new Builder(table, version);
+    }
+
+    /**
+     * A migration that renames a column, if the table still has a column by
+     * the old name. Tables created after the rename are left alone.
+     *
+     * @param from the old name of the column
+     * @param to   the new name of the column
+     * @return the migration
+     */
+    public static Migration renameColumn(String from, String to) {
+        return (con, dialect, table) -> {
+            if ( hasColumn(con, table, from) && !hasColumn(con, table, to) ) {
+                try ( Statement st = con.createStatement() ) {
+                    st.execute(dialect.renameColumnSql(table, from, to));
+                }
+            }
+        };
+    }
+
+    /**
+     * A migration that adds a column, if the table does not have it yet.
+     * Tables created after the column was declared are left alone.
+     *
+     * @param column     the name of the column
+     * @param definition the type and constraints of the column, as declared
+     *                   with `Builder.column`; a `NOT NULL` column needs a
+     *                   `DEFAULT` for the records already in the table
+     * @return the migration
+     */
+    public static Migration addColumn(String column, String definition) {
+        return (con, dialect, table) -> {
+            if ( !hasColumn(con, table, column) ) {
+                try ( Statement st = con.createStatement() ) {
+                    st.execute("ALTER TABLE " + table + " ADD COLUMN " + column
+                            + " " + dialect.columnDefinition(definition));
+                }
+            }
+        };
+    }
+
+    /**
+     * A migration that runs the given statements, in order.
+     *
+     * @param statements the SQL statements
+     * @return the migration
+     */
+    public static Migration statements(String... statements) {
+        String[] copy = statements.clone();
+
+        return (con, dialect, table) -> {
+            try ( Statement st = con.createStatement() ) {
+                for ( String sql : copy ) {
+                    st.execute(sql);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return the name of the table
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return the current version of the table's layout
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the names of the columns, in the order they are created
+     */
+    public List<String> getColumns() {
+        return new ArrayList<>(columns.keySet());
+    }
+
+    /**
+     * @return the columns that have a secondary index
+     */
+    public List<String> getIndexes() {
+        return indexes;
+    }
+
+    /**
+     * @param column the name of a column
+     * @return `true` if the column has a secondary index declared
+     */
+    public boolean isIndexed(String column) {
+        for ( String index : indexes ) {
+            if ( index.equalsIgnoreCase(column) )
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param dialect the dialect of the data store
+     * @return the statement that creates the table at the current version
+     */
+    public String getCreateSql(Dialect dialect) {
+        StringBuilder sql = new StringBuilder("CREATE TABLE ").append(table)
+                .append(" (");
+        boolean first = true;
+
+        for ( Map.Entry<String, String> column : columns.entrySet() ) {
+            if ( !first )
+                sql.append(", ");
+
+            sql.append(column.getKey()).append(' ')
+                    .append(dialect.columnDefinition(column.getValue()));
+            first = false;
+        }
+
+        return sql.append(')').toString();
+    }
+
+    /**
+     * @param column a column with a secondary index
+     * @return the name of the index
+     */
+    public String getIndexName(String column) {
+        return "ix_" + table + "_" + column;
+    }
+
+    /**
+     * @return the migrations, by the version each one brings the table up to,
+     *         in ascending order of version
+     */
+    public Map<Integer, Migration> getMigrations() {
+        return migrations;
+    }
+
+    @Override
+    public String toString() {
+        return "TableSchema[" + table + ", version=" + version + "]";
+    }
+
+    static boolean hasColumn(Connection con, String table, String column)
+            throws SQLException {
+        // Engines differ in how they fold the case of names in the catalog,
+        //+ so the columns are read from an empty result instead.
+        try ( Statement st = con.createStatement();
+                ResultSet rs = st.executeQuery("SELECT * FROM " + table
+                        + " WHERE 1 = 0") ) {
+            ResultSetMetaData md = rs.getMetaData();
+
+            for ( int idx = 1; idx <= md.getColumnCount(); idx++ ) {
+                if ( md.getColumnName(idx).equalsIgnoreCase(column) )
+                    return true;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Declares the columns, indexes and migrations of a `TableSchema`.
+     */
+    public static final class Builder {
+
+        private final String table;
+        private final int version;
+        private final Map<String, String> columns = new LinkedHashMap<>();
+        private final List<String> indexes = new ArrayList<>();
+        private final Map<Integer, Migration> migrations = new TreeMap<>();
+
+        private Builder(String table, int version) {
+            if ( version < 1 )
+                throw new IllegalArgumentException("The version of a schema "
+                        + "starts at one.");
+
+            this.table = StatementTemplate.checkIdentifier(table);
+            this.version = version;
+        }
+
+        /**
+         * Declares a column.
+         *
+         * @param name       the name of the column
+         * @param definition the SQL type and constraints of the column, such
+         *                   as `VARCHAR(30) NOT NULL`
+         * @return this builder
+         */
+        public Builder column(String name, String definition) {
+            columns.put(StatementTemplate.checkIdentifier(name), definition);
+            return this;
+        }
+
+        /**
+         * Declares a secondary index on a column, for the columns that are
+         * often searched or sorted on.
+         *
+         * @param column the name of a declared column
+         * @return this builder
+         */
+        public Builder index(String column) {
+            if ( !columns.containsKey(StatementTemplate.checkIdentifier(column)) )
+                throw new IllegalArgumentException("The column " + column
+                        + " is not declared in " + table);
+
+            indexes.add(column);
+            return this;
+        }
+
+        /**
+         * Declares the migration that brings the table from the version before
+         * `toVersion` up to `toVersion`.
+         *
+         * @param toVersion the version the migration brings the table up to,
+         *                  from two up to the version of the schema
+         * @param migration the migration
+         * @return this builder
+         */
+        public Builder migration(int toVersion, Migration migration) {
+            if ( toVersion < 2 || toVersion > version )
+                throw new IllegalArgumentException("A migration of " + table
+                        + " must be to a version from 2 to " + version);
+
+            migrations.put(toVersion, migration);
+            return this;
+        }
+
+        /**
+         * @return the schema
+         */
+        public TableSchema build() {
+            return new TableSchema(this);
+        }
+
+    }
+
+}
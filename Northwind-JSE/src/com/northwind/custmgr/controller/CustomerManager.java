@@ -17,15 +17,94 @@
 package com.northwind.custmgr.controller;
 
 import com.northwind.api.Manager;
+import com.northwind.api.Page;
+import com.northwind.api.Row;
+import com.northwind.api.RowMapper;
+import com.northwind.api.db.SchemaRegistry;
+import com.northwind.api.db.TableSchema;
 import com.northwind.custmgr.model.Customer;
 import com.northwind.exceptions.DataStoreException;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  *
  * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
  */
-public class CustomerManager extends Manager {
+public class CustomerManager extends Manager<Customer> {
+    
+    /**
+     * The layout of the customers table. Version 2 corrected the name of the
+     * `companyName` column, which the first version misspelled. Version 3
+     * added the `version` column, for edits that must not overwrite each
+     * other.
+     */
+    public static final TableSchema SCHEMA 
+            = TableSchema.builder("customers", 3)
+                    .column("id", "IDENTITY")
+                    .column("companyName", "VARCHAR(40) NOT NULL")
+                    .column("streetAddress", "VARCHAR(30) NOT NULL")
+                    .column("suiteNumber", "VARCHAR(15)")
+                    .column("city", "VARCHAR(30) NOT NULL")
+                    .column("state", "VARCHAR(2) NOT NULL")
+                    .column("zipCode", "VARCHAR(10) NOT NULL")
+                    .column("phoneNumber", "VARCHAR(14)")
+                    .column("faxNumber", "VARCHAR(14)")
+                    .column("emailAddress", "VARCHAR(50)")
+                    .column("contactName", "VARCHAR(30)")
+                    .column("notes", "LONGVARCHAR")
+                    .column("active", "BOOLEAN DEFAULT FALSE")
+                    .column("version", "INTEGER DEFAULT 0 NOT NULL")
+                    .index("state")
+                    .index("companyName")
+                    .migration(2, TableSchema.renameColumn("companName", 
+                            "companyName"))
+                    .migration(3, TableSchema.addColumn("version", 
+                            "INTEGER DEFAULT 0 NOT NULL"))
+                    .build();
+    
+    static {
+        SchemaRegistry.register(SCHEMA);
+    }
+    
+    /**
+     * The fields of a `Customer`, in the order that `fetchCustomer` reads them.
+     */
+    private static final String[] CUSTOMER_FIELDS = {
+        "id", "companyName", "streetAddress", "suiteNumber", "city", "state",
+        "zipCode", "phoneNumber", "faxNumber", "emailAddress", "contactName",
+        "notes", "active"
+    };
+    
+    /**
+     * Maps the rows of the customers table onto `Customer` objects.
+     */
+    private static final RowMapper<Customer> MAPPER 
+            = RowMapper.builder(Customer::new)
+                    .intField("id", Customer::setId)
+                    .stringField("companyName", Customer::setCompanyName)
+                    .stringField("streetAddress", Customer::setStreetAddress)
+                    .stringField("suiteNumber", Customer::setSuiteNumber)
+                    .stringField("city", Customer::setCity)
+                    .stringField("state", Customer::setState)
+                    .stringField("zipCode", Customer::setZipCode)
+                    .stringField("phoneNumber", Customer::setPhoneNumber)
+                    .stringField("faxNumber", Customer::setFaxNumber)
+                    .stringField("emailAddress", Customer::setEmailAddress)
+                    .stringField("contactName", Customer::setContactName)
+                    .stringField("notes", Customer::setNotes)
+                    .booleanField("active", Customer::setActive)
+                    .build();
+    
+    /**
+     * The fields given values when a `Customer` is added, in the order that
+     * `getInsertValues` gives them.
+     */
+    private static final String[] INSERT_FIELDS = {
+        "companyName", "streetAddress", "suiteNumber", "city", "state",
+        "zipCode", "phoneNumber", "faxNumber", "emailAddress", "contactName",
+        "notes", "active"
+    };
 
     public CustomerManager(String name, char[] pWord,
             String table, List<Customer> model) throws DataStoreException {
@@ -33,10 +112,69 @@ public class CustomerManager extends Manager {
         
     }
     
+    /**
+     * Retrieves a single customer from the data store with one query, instead
+     * of one query per field.
+     * 
+     * @param id    the ID of the customer
+     * @return      the customer, or `null` if there is no customer with the 
+     *              provided ID
+     * @throws DataStoreException in the event there is an error accessing the
+     *                            data store
+     */
+    public Customer fetchCustomer(int id) throws DataStoreException {
+        Row row = fetchColumns(id, CUSTOMER_FIELDS);
+        
+        if ( row == null )
+            return null;
+        
+        return new Customer(row.getInt(0), row.getString(1), row.getString(2),
+                row.getString(3), row.getString(4), row.getString(5), 
+                row.getString(6), row.getString(7), row.getString(8), 
+                row.getString(9), row.getString(10), row.getString(11), 
+                row.getBoolean(12));
+    }
+    
+    @Override
+    protected String[] getInsertFields() {
+        return INSERT_FIELDS;
+    }
+    
     @Override
-    public List<?> query(String fields, String where, String sort) 
+    protected Object[] getInsertValues(Customer entity) {
+        return new Object[]{
+            entity.getCompanyName(), entity.getStreetAddress(),
+            entity.getSuiteNumber(), entity.getCity(), entity.getState(),
+            entity.getZipCode(), entity.getPhoneNumber(), entity.getFaxNumber(),
+            entity.getEmailAddress(), entity.getContactName(),
+            entity.getNotes(), entity.isActive()
+        };
+    }
+    
+    @Override
+    public List<Customer> query(String fields, String where, String sort) 
+            throws DataStoreException {
+        return select(MAPPER, fields, where, sort);
+    }
+    
+    @Override
+    public Stream<Customer> stream(String where, String sort, int fetchSize) 
             throws DataStoreException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+        return openStream(MAPPER, where, sort, fetchSize);
+    }
+    
+    @Override
+    public Page<Customer> page(String sortKey, Page.Key afterKey, int limit,
+            Page.Direction direction) throws DataStoreException {
+        return seek(MAPPER, sortKey, afterKey, limit, direction);
+    }
+    
+    /**
+     * @return the mapper used by `query`, `stream` and `page`, for reading its
+     *         mapping statistics
+     */
+    public static RowMapper<Customer> getMapper() {
+        return MAPPER;
     }
     
 }
@@ -16,6 +16,8 @@
  */
 package com.northwind.custmgr.view;
 
+import com.northwind.api.DataAccess;
+import com.northwind.api.DataFuture;
 import com.northwind.custmgr.controller.CustomerManager;
 import com.northwind.custmgr.model.Customer;
 import com.northwind.exceptions.DataStoreException;
@@ -35,6 +37,8 @@ public class CustomerEntryDlg extends javax.swing.JDialog {
     private Customer model;
     private List<Customer> list;
     private CustomerManager mgr;
+    private DataFuture<Customer> pending;
+    private boolean disposed;
     
     /**
      * Creates new form CustomerEntryDlg
@@ -53,12 +57,47 @@ public class CustomerEntryDlg extends javax.swing.JDialog {
         
         list = new ArrayList<>();
         
-        try {
+        // Open the data store in the background, so the dialog shows at once.
+        DataAccess.submit(this::getManager).onEdt(m -> {}, this::reportError);
+    }
+    
+    /**
+     * Retrieves the `CustomerManager` for this dialog, creating it the first
+     * time. This opens the data store, so it must only be called from a
+     * background call, never on the event dispatch thread.
+     * 
+     * @return the `CustomerManager`
+     * @throws DataStoreException in the event the data store cannot be opened
+     */
+    private synchronized CustomerManager getManager() 
+            throws DataStoreException {
+        if ( disposed )
+            throw new DataStoreException("The customer entry dialog has "
+                    + "already been closed.");
+        
+        if ( mgr == null )
             mgr = new CustomerManager("sa", new char[0], "customers", list);
-        } catch (DataStoreException ex) {
-            System.err.println(ex.getMessage());
-            ex.printStackTrace(System.err);
-        }
+        
+        return mgr;
+    }
+    
+    /**
+     * Closes the `CustomerManager`, so that it hands back any connection it
+     * still holds, and keeps a new one from being opened afterward.
+     */
+    private synchronized Void releaseManager() {
+        disposed = true;
+        
+        if ( mgr != null )
+            mgr.close();
+        mgr = null;
+        
+        return null;
+    }
+    
+    private void reportError(Throwable ex) {
+        System.err.println(ex.getMessage());
+        ex.printStackTrace(System.err);
     }
     
     public void setNewEntry(boolean nue) {
@@ -77,6 +116,60 @@ public class CustomerEntryDlg extends javax.swing.JDialog {
         return this.model;
     }
     
+    /**
+     * Loads the customer with the given ID from the data store, in a single
+     * query on a background thread, and displays it for editing once it 
+     * arrives. Loading a customer cancels the loading of any other customer
+     * that has not arrived yet.
+     * 
+     * @param id    the ID of the customer to edit
+     * @return      the pending customer, which is `null` if there is no 
+     *              customer with the given ID
+     */
+    public DataFuture<Customer> loadEntry(int id) {
+        if ( pending != null )
+            pending.cancel(true);
+        
+        pending = DataAccess.submit(() -> getManager().fetchCustomer(id));
+        pending.onEdt(c -> {
+            if ( c != null )
+                showEntry(c);
+        }, this::reportError);
+        
+        return pending;
+    }
+    
+    @Override
+    public void dispose() {
+        if ( pending != null )
+            pending.cancel(true);
+        
+        // The manager may still be opening the data store in the background,
+        //+ so it is released there too, rather than holding up the EDT.
+        DataAccess.submit(this::releaseManager);
+        
+        super.dispose();
+    }
+    
+    private void showEntry(Customer c) {
+        setEntry(c);
+        setNewEntry(false);
+        
+        idField.setText(String.valueOf(c.getId()));
+        companyNameFld.setText(c.getCompanyName());
+        streetAddressFld.setText(c.getStreetAddress());
+        suiteFld.setText(c.getSuiteNumber());
+        cityField.setText(c.getCity());
+        stateField.setText(c.getState());
+        zipCodeField.setText(c.getZipCode());
+        phoneField.setText(c.getPhoneNumber());
+        faxField.setText(c.getFaxNumber());
+        emailField.setText(c.getEmailAddress());
+        contactField.setText(c.getContactName());
+        notesField.setText(c.getNotes());
+        activeCheckbox.setSelected(c.isActive());
+    }
+    
     public void addActionListener(ActionListener listener) {
         this.addActionListener(listener);
     }
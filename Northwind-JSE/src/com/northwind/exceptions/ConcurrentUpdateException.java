@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.exceptions;
+
+import com.northwind.api.Row;
+
+/**
+ * Thrown when a record is updated on the strength of an old read: somebody
+ * else changed or removed the record after it was read, so the update was not
+ * made. The record as it now is comes along with the exception, so that the
+ * user can be shown what changed, and the edit merged or made again.
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class ConcurrentUpdateException extends DataStoreException {
+
+    private final String table;
+    private final int id;
+    private final int expectedVersion;
+    private final transient Row current;
+
+    /**
+     * Constructs an instance of <code>ConcurrentUpdateException</code> for
+     * the specified record.
+     *
+     * @param table           the table of the record
+     * @param id              the ID of the record
+     * @param expectedVersion the version of the record the update was based
+     *                        on
+     * @param current         the record as it now is, or `null` if it has
+     *                        been removed
+     */
+    public ConcurrentUpdateException(String table, int id, int expectedVersion,
+            Row current) {
+        super("The record identified by " + id + " in " + table + " was "
+                + (current == null ? "removed" : "changed") + " by somebody "
+                + "else after it was read.");
+        this.table = table;
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.current = current;
+    }
+
+    /**
+     * @return the table of the record
+     */
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return the ID of the record
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the version of the record the update was based on
+     */
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    /**
+     * @return the record as it now is, or `null` if it has been removed
+     */
+    public Row getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return the version of the record as it now is, or -1 if it has been
+     *         removed
+     */
+    public int getCurrentVersion() {
+        return current == null ? -1 : current.getInt("version");
+    }
+
+    /**
+     * @return `true` if the record has been removed
+     */
+    public boolean isRemoved() {
+        return current == null;
+    }
+}
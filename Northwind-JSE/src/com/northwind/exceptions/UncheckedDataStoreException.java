@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.exceptions;
+
+/**
+ * Wraps a `DataStoreException` where a checked exception cannot be thrown,
+ * such as while a `Stream` of records is being consumed.
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class UncheckedDataStoreException extends RuntimeException {
+
+    /**
+     * Constructs an instance of <code>UncheckedDataStoreException</code>
+     * wrapping the specified `DataStoreException`.
+     *
+     * @param cause the underlying exception
+     */
+    public UncheckedDataStoreException(DataStoreException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized DataStoreException getCause() {
+        return (DataStoreException) super.getCause();
+    }
+}
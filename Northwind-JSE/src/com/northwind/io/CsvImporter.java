@@ -0,0 +1,485 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.io;
+
+import com.northwind.api.Manager;
+import com.northwind.custmgr.controller.CustomerManager;
+import com.northwind.custmgr.model.Customer;
+import com.northwind.exceptions.DataStoreException;
+import com.northwind.exceptions.ValidationException;
+import com.northwind.loadmgr.controller.LoadManager;
+import com.northwind.loadmgr.model.Load;
+import com.northwind.settings.AppProperties;
+import com.northwind.utils.LogContext;
+import com.northwind.utils.Logger;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Imports the rows of a CSV file into a table, for bringing in the customers
+ * and loads of a new fleet all at once instead of keying them in by hand. For
+ * example:
+ * <pre>
+ * ImportReport report = CsvImporter.forLoads(loadManager)
+ *         .importFrom(Paths.get("loads.csv"));
+ * report.writeErrors(Paths.get("loads-rejected.csv"));
+ * </pre>
+ * <p>
+ * The first row of the file names the columns. The rest of the file flows
+ * through three stages, in chunks of `db.batch.size` rows:</p>
+ * <ol>
+ *  <li>one thread reads the file;</li>
+ *  <li>`import.threads` threads turn the rows into entities and check them,
+ *      using the `RecordParser`; and</li>
+ *  <li>the calling thread adds the valid entities to the data store with
+ *      `Manager.bulkAdd`, one transaction per chunk, in the order of the
+ *      file.</li>
+ * </ol>
+ * <p>
+ * Only a fixed number of chunks are in the pipeline at once, so the reader
+ * waits whenever the writer falls behind, and the file is never held in
+ * memory. A row that is not valid, or that the data store refuses, is left out
+ * and recorded in the `ImportReport`, and the import carries on.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ * @param <T> the type of the entities imported
+ */
+public class CsvImporter<T> {
+
+    /**
+     * A run of rows, as read and then as parsed.
+     */
+    private static final class Chunk<T> {
+
+        private final int seq;
+        private final List<String[]> rows;
+        private final int[] lines;
+        private final Object[] results;
+
+        Chunk(int seq, List<String[]> rows, int[] lines) {
+            this.seq = seq;
+            this.rows = rows;
+            this.lines = lines;
+            this.results = new Object[rows.size()];
+        }
+
+    }
+
+    /**
+     * Marks the end of the chunks for a parsing thread.
+     */
+    private static final Chunk<Object> END = new Chunk<>(-1,
+            Collections.emptyList(), new int[0]);
+
+    private static final AtomicInteger threads = new AtomicInteger();
+
+    private final Logger log;
+    private final LogContext record;
+
+    private final Manager<T> manager;
+    private final RecordParser<T> parser;
+    private final int batchSize;
+    private int workers;
+    private int chunkSize;
+    private int maxErrors = 10_000;
+    private Consumer<ImportReport> listener;
+    private volatile boolean cancelled;
+
+    /**
+     * @param manager the manager of the table to import into, which must not
+     *                be used elsewhere while an import is running
+     * @param parser  the parser for the rows of the file
+     */
+    public CsvImporter(Manager<T> manager, RecordParser<T> parser) {
+        AppProperties props = AppProperties.getInstance();
+        log = Logger.getInstance();
+
+        Level lvl;
+        if ( props.getPropertyAsBoolean("debugging", "true") )
+            lvl = Level.FINEST;
+        else
+            lvl = Level.INFO;
+
+        record = new LogContext(lvl, "Creating a CSV importer.");
+        record.setSourceClassName(CsvImporter.class.getName());
+
+        this.manager = manager;
+        this.parser = parser;
+
+        workers = props.getImportThreads();
+
+        if ( workers < 1 )
+            workers = Runtime.getRuntime().availableProcessors();
+
+        batchSize = Math.max(1, props.getDbBatchSize());
+        chunkSize = batchSize;
+    }
+
+    /**
+     * @param manager the manager of the customers table
+     * @return an importer of customers
+     */
+    public static CsvImporter<Customer> forCustomers(CustomerManager manager) {
+        return new CsvImporter<>(manager, new CustomerCsvParser());
+    }
+
+    /**
+     * @param manager the manager of the loads table
+     * @return an importer of loads
+     */
+    public static CsvImporter<Load> forLoads(LoadManager manager) {
+        return new CsvImporter<>(manager, new LoadCsvParser());
+    }
+
+    /**
+     * @param workers the number of threads that parse rows
+     * @return this importer
+     */
+    public CsvImporter<T> setWorkers(int workers) {
+        this.workers = Math.max(1, workers);
+        return this;
+    }
+
+    /**
+     * @param chunkSize the number of rows handed between the stages at once,
+     *                  which is also the number added to the data store in
+     *                  each transaction. It is held to `db.batch.size`, so
+     *                  that a chunk is never split across transactions
+     * @return this importer
+     */
+    public CsvImporter<T> setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, Math.min(chunkSize, batchSize));
+        return this;
+    }
+
+    /**
+     * @param maxErrors the most rejected rows to keep in the report; rows
+     *                  past this are still counted
+     * @return this importer
+     */
+    public CsvImporter<T> setMaxErrors(int maxErrors) {
+        this.maxErrors = Math.max(0, maxErrors);
+        return this;
+    }
+
+    /**
+     * @param listener called on the importing thread each time a chunk of rows
+     *                 has been written, with the report so far
+     * @return this importer
+     */
+    public CsvImporter<T> setProgressListener(
+            Consumer<ImportReport> listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Stops a running import after the chunk being written. The rows already
+     * written stay in the data store.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Imports a UTF-8 CSV file.
+     *
+     * @param file the file
+     * @return what became of the rows of the file
+     * @throws IOException        in the event the file cannot be read
+     * @throws DataStoreException in the event the data store fails, rather
+     *                            than refusing particular rows
+     */
+    public ImportReport importFrom(Path file) throws IOException,
+            DataStoreException {
+        try ( Reader in = Files.newBufferedReader(file,
+                StandardCharsets.UTF_8) ) {
+            return importFrom(in);
+        }
+    }
+
+    /**
+     * Imports CSV text. The reader is read to the end, or until the import is
+     * cancelled, but not closed.
+     *
+     * @param in the CSV text
+     * @return what became of the rows of the text
+     * @throws IOException        in the event the text cannot be read
+     * @throws DataStoreException in the event the data store fails, rather
+     *                            than refusing particular rows
+     */
+    public ImportReport importFrom(Reader in) throws IOException,
+            DataStoreException {
+        record.setSourceMethodName("importFrom");
+        record.setParameters(new Object[]{workers, chunkSize});
+        record.setMessage("Starting a CSV import.");
+        log.enter(record);
+
+        cancelled = false;
+        ImportReport report = new ImportReport(maxErrors);
+        CsvReader csv = new CsvReader(in);
+        String[] names = csv.next();
+
+        if ( names == null ) {
+            report.finish(false);
+            record.setMessage("The file is empty.");
+            log.exit(record, report);
+            return report;
+        }
+
+        Map<String, Integer> header = new HashMap<>();
+
+        for ( int idx = 0; idx < names.length; idx++ ) {
+            header.putIfAbsent(names[idx].trim().toLowerCase(Locale.ROOT), idx);
+        }
+
+        int permits = workers * 2 + 2;
+        Semaphore inFlight = new Semaphore(permits);
+        BlockingQueue<Chunk<T>> raw = new ArrayBlockingQueue<>(permits
+                + workers);
+        BlockingQueue<Chunk<T>> parsed = new ArrayBlockingQueue<>(permits);
+        AtomicInteger total = new AtomicInteger(-1);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        ExecutorService pool = Executors.newFixedThreadPool(workers + 1,
+                r -> {
+                    Thread t = new Thread(r, "Northwind-Import-"
+                            + threads.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+
+        try {
+            pool.execute(() -> read(csv, raw, inFlight, total, failure));
+
+            for ( int idx = 0; idx < workers; idx++ ) {
+                pool.execute(() -> parse(header, raw, parsed));
+            }
+
+            write(parsed, inFlight, total, failure, report);
+        } catch ( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        } catch ( DataStoreException ex ) {
+            record.setSourceMethodName("importFrom");
+            record.setMessage("The data store failed. Stopping the import "
+                    + "after " + report.getRowsImported() + " rows.");
+            record.setThrown(ex);
+            log.error(record);
+            throw ex;
+        } finally {
+            pool.shutdownNow();
+            report.finish(cancelled);
+        }
+
+        if ( failure.get() != null ) {
+            record.setSourceMethodName("importFrom");
+            record.setMessage("Could not read the file.");
+            record.setThrown(failure.get());
+            log.error(record);
+            throw failure.get();
+        }
+
+        record.setSourceMethodName("importFrom");
+        record.setMessage("Import complete: " + report);
+        log.exit(record, report);
+
+        return report;
+    }
+
+    /**
+     * The first stage: reads the file into chunks.
+     */
+    @SuppressWarnings("unchecked")
+    private void read(CsvReader csv, BlockingQueue<Chunk<T>> raw,
+            Semaphore inFlight, AtomicInteger total,
+            AtomicReference<IOException> failure) {
+        int seq = 0;
+
+        try {
+            String[] row = csv.next();
+
+            while ( row != null && !cancelled ) {
+                List<String[]> rows = new ArrayList<>(chunkSize);
+                int[] lines = new int[chunkSize];
+
+                while ( row != null && rows.size() < chunkSize ) {
+                    lines[rows.size()] = csv.getLineNumber();
+                    rows.add(row);
+                    row = csv.next();
+                }
+
+                inFlight.acquire();
+                raw.put(new Chunk<>(seq++, rows, lines));
+            }
+        } catch ( IOException ex ) {
+            failure.set(ex);
+        } catch ( InterruptedException ex ) {
+            return;
+        }
+
+        total.set(seq);
+
+        for ( int idx = 0; idx < workers; idx++ ) {
+            raw.offer((Chunk<T>) (Chunk<?>) END);
+        }
+    }
+
+    /**
+     * The second stage, run by each parsing thread: turns rows into entities.
+     */
+    private void parse(Map<String, Integer> header,
+            BlockingQueue<Chunk<T>> raw, BlockingQueue<Chunk<T>> parsed) {
+        try {
+            Chunk<T> chunk = raw.take();
+
+            while ( chunk != END ) {
+                for ( int idx = 0; idx < chunk.rows.size(); idx++ ) {
+                    try {
+                        chunk.results[idx] = parser.parse(new CsvRecord(header,
+                                chunk.rows.get(idx), chunk.lines[idx]));
+                    } catch ( ValidationException ex ) {
+                        chunk.results[idx] = ex;
+                    } catch ( RuntimeException ex ) {
+                        chunk.results[idx] = new ValidationException(
+                                "The row could not be read: " + ex);
+                    }
+                }
+
+                parsed.put(chunk);
+                chunk = raw.take();
+            }
+        } catch ( InterruptedException ex ) {
+            // The import is over.
+        }
+    }
+
+    /**
+     * The last stage: adds the entities to the data store, in the order of
+     * the file.
+     */
+    private void write(BlockingQueue<Chunk<T>> parsed, Semaphore inFlight,
+            AtomicInteger total, AtomicReference<IOException> failure,
+            ImportReport report) throws InterruptedException,
+            DataStoreException {
+        Map<Integer, Chunk<T>> waiting = new HashMap<>();
+        int next = 0;
+
+        while ( !cancelled && failure.get() == null
+                && next != total.get() ) {
+            Chunk<T> chunk = parsed.poll(100, TimeUnit.MILLISECONDS);
+
+            if ( chunk == null )
+                continue;
+
+            waiting.put(chunk.seq, chunk);
+
+            while ( (chunk = waiting.remove(next)) != null ) {
+                write(chunk, report);
+                next++;
+                inFlight.release();
+
+                if ( listener != null )
+                    listener.accept(report);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void write(Chunk<T> chunk, ImportReport report)
+            throws DataStoreException {
+        List<T> valid = new ArrayList<>(chunk.results.length);
+
+        for ( Object result : chunk.results ) {
+            if ( !(result instanceof ValidationException) )
+                valid.add((T) result);
+        }
+
+        report.read(chunk.results.length);
+        boolean written = valid.isEmpty();
+
+        if ( !written ) {
+            try {
+                // The chunk is added in one transaction, so if it is refused,
+                //+ none of its rows are in the data store.
+                manager.bulkAdd(valid);
+                report.imported(valid.size());
+                written = true;
+            } catch ( DataStoreException ex ) {
+                // Find the rows the data store refuses by adding them one at
+                //+ a time.
+                record.setSourceMethodName("write");
+                record.setMessage("The chunk starting on line "
+                        + chunk.lines[0] + " was refused. Retrying its rows "
+                        + "one at a time.");
+                log.debug(record);
+            }
+        }
+
+        DataStoreException last = null;
+        int added = 0;
+
+        for ( int idx = 0; idx < chunk.results.length; idx++ ) {
+            Object result = chunk.results[idx];
+
+            if ( result instanceof ValidationException ) {
+                report.reject(chunk.lines[idx],
+                        ((ValidationException) result).getMessage());
+            } else if ( !written ) {
+                try {
+                    manager.addAll(Collections.singletonList((T) result));
+                    report.imported(1);
+                    added++;
+                } catch ( DataStoreException ex ) {
+                    last = ex;
+                    report.reject(chunk.lines[idx], rootMessage(ex));
+                }
+            }
+        }
+
+        // If not one row can be added, it is the data store that is failing.
+        if ( last != null && added == 0 && valid.size() > 1 )
+            throw last;
+    }
+
+    private static String rootMessage(Throwable ex) {
+        while ( ex.getCause() != null ) {
+            ex = ex.getCause();
+        }
+
+        return ex.getMessage();
+    }
+
+}
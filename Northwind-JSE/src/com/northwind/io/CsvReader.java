@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the records of a CSV file one at a time, so that a file of any size
+ * can be read in a fixed amount of memory.
+ * <p>
+ * Fields are separated by commas. A field may be enclosed in double quotes,
+ * in which case it may hold commas, line breaks and doubled double quotes.
+ * Lines may end with `\n` or `\r\n`, blank lines are skipped, and a byte order
+ * mark at the start of the file is ignored.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader in;
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private boolean first = true;
+
+    private int line = 1;
+    private int recordLine;
+
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+
+    /**
+     * @param in the CSV text, which is read through a buffer of its own
+     */
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next record.
+     *
+     * @return the fields of the record, or `null` at the end of the file
+     * @throws IOException in the event the file cannot be read, or it ends
+     *                     inside a quoted field
+     */
+    public String[] next() throws IOException {
+        int c;
+
+        // Skip blank lines.
+        do {
+            c = read();
+
+            if ( c == '\r' )
+                c = read();
+            if ( c == '\n' )
+                line++;
+        } while ( c == '\n' );
+
+        if ( c < 0 )
+            return null;
+
+        recordLine = line;
+        fields.clear();
+        field.setLength(0);
+
+        boolean quoted = false;
+
+        while ( true ) {
+            if ( quoted ) {
+                if ( c < 0 )
+                    throw new IOException("The file ends inside the quoted "
+                            + "field that starts on line " + recordLine);
+
+                if ( c == '"' ) {
+                    c = read();
+
+                    if ( c == '"' ) {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        continue;
+                    }
+                } else {
+                    if ( c == '\n' )
+                        line++;
+
+                    field.append((char) c);
+                }
+            } else if ( c == '"' && field.length() == 0 ) {
+                quoted = true;
+            } else if ( c == ',' ) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if ( c < 0 || c == '\n' ) {
+                if ( c == '\n' )
+                    line++;
+
+                break;
+            } else if ( c == '\r' ) {
+                // Dropped here; a lone carriage return is not a line break.
+            } else {
+                field.append((char) c);
+            }
+
+            c = read();
+        }
+
+        fields.add(field.toString());
+
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * @return the line of the file that the last record read starts on,
+     *         counting from one
+     */
+    public int getLineNumber() {
+        return recordLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private int read() throws IOException {
+        if ( pos == limit ) {
+            limit = in.read(buf, 0, buf.length);
+            pos = 0;
+
+            if ( limit <= 0 ) {
+                limit = 0;
+                return -1;
+            }
+
+            if ( first ) {
+                first = false;
+
+                if ( buf[0] == '\uFEFF' )
+                    pos++;
+
+                if ( pos == limit )
+                    return read();
+            }
+        }
+
+        return buf[pos++];
+    }
+
+}
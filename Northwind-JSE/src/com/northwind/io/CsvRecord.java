@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.io;
+
+import com.northwind.exceptions.ValidationException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One record of a CSV file, with its fields looked up by the names in the
+ * header row of the file, ignoring case. The getters trim the values, treat a
+ * blank value the same as a missing column, and throw a `ValidationException`
+ * naming the column when a value is not valid.
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class CsvRecord {
+
+    private static final DateTimeFormatter US_DATE
+            = DateTimeFormatter.ofPattern("M/d/yyyy");
+
+    private final Map<String, Integer> header;
+    private final String[] values;
+    private final int line;
+
+    /**
+     * @param header the position of each column, by its name in lower case
+     * @param values the fields of the record
+     * @param line   the line of the file the record starts on
+     */
+    CsvRecord(Map<String, Integer> header, String[] values, int line) {
+        this.header = header;
+        this.values = values;
+        this.line = line;
+    }
+
+    /**
+     * @return the line of the file the record starts on, counting from one
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * @param column the name of a column
+     * @return the trimmed value of the column, or `null` if it is blank or the
+     *         file has no such column
+     */
+    public String get(String column) {
+        Integer idx = header.get(column.toLowerCase(Locale.ROOT));
+
+        if ( idx == null || idx >= values.length )
+            return null;
+
+        String value = values[idx].trim();
+
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * @param column    the name of a column
+     * @param maxLength the longest value the column may hold
+     * @param required  `true` if the column must have a value
+     * @return the trimmed value of the column, or `null` if it is blank
+     * @throws ValidationException if the value is required but blank, or is
+     *                             too long
+     */
+    public String getString(String column, int maxLength, boolean required)
+            throws ValidationException {
+        String value = get(column);
+
+        if ( value == null && required )
+            throw new ValidationException(column + " is required.");
+        if ( value != null && value.length() > maxLength )
+            throw new ValidationException(column + " is longer than "
+                    + maxLength + " characters.");
+
+        return value;
+    }
+
+    /**
+     * @param column the name of a column
+     * @param def    the value if the column is blank
+     * @return the value of the column as a whole number
+     * @throws ValidationException if the value is not a whole number
+     */
+    public int getInt(String column, int def) throws ValidationException {
+        String value = get(column);
+
+        if ( value == null )
+            return def;
+
+        try {
+            return Integer.parseInt(value.replace(",", ""));
+        } catch ( NumberFormatException ex ) {
+            throw new ValidationException(column + " is not a whole number: "
+                    + value);
+        }
+    }
+
+    /**
+     * @param column the name of a column
+     * @param def    the value if the column is blank
+     * @return the value of the column as a number, with any leading dollar
+     *         sign and thousands separators removed
+     * @throws ValidationException if the value is not a number
+     */
+    public double getDouble(String column, double def)
+            throws ValidationException {
+        String value = get(column);
+
+        if ( value == null )
+            return def;
+
+        try {
+            return Double.parseDouble(value.replace("$", "").replace(",", ""));
+        } catch ( NumberFormatException ex ) {
+            throw new ValidationException(column + " is not a number: "
+                    + value);
+        }
+    }
+
+    /**
+     * @param column the name of a column
+     * @param def    the value if the column is blank
+     * @return the value of the column as a yes or no answer, which may be
+     *         given as `true`, `yes`, `y` or `1`, or their opposites
+     * @throws ValidationException if the value is not a yes or no answer
+     */
+    public boolean getBoolean(String column, boolean def)
+            throws ValidationException {
+        String value = get(column);
+
+        if ( value == null )
+            return def;
+
+        switch ( value.toLowerCase(Locale.ROOT) ) {
+            case "true":
+            case "yes":
+            case "y":
+            case "1":
+                return true;
+            case "false":
+            case "no":
+            case "n":
+            case "0":
+                return false;
+            default:
+                throw new ValidationException(column + " is not yes or no: "
+                        + value);
+        }
+    }
+
+    /**
+     * @param column the name of a column
+     * @return the value of the column as a date, given either as `2020-12-31`
+     *         or as `12/31/2020`, or `null` if it is blank
+     * @throws ValidationException if the value is not a date
+     */
+    public LocalDate getDate(String column) throws ValidationException {
+        String value = get(column);
+
+        if ( value == null )
+            return null;
+
+        try {
+            return value.indexOf('/') > 0 ? LocalDate.parse(value, US_DATE)
+                    : LocalDate.parse(value);
+        } catch ( DateTimeParseException ex ) {
+            throw new ValidationException(column + " is not a date: " + value);
+        }
+    }
+
+}
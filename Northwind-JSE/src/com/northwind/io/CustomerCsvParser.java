@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.io;
+
+import com.northwind.custmgr.model.Customer;
+import com.northwind.exceptions.ValidationException;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Reads a `Customer` from a CSV record whose columns are named after the
+ * fields of the customers table: `companyName`, `streetAddress`,
+ * `suiteNumber`, `city`, `state`, `zipCode`, `phoneNumber`, `faxNumber`,
+ * `emailAddress`, `contactName`, `notes` and `active`. The columns the table
+ * declares `NOT NULL` are required, no value may be longer than its column,
+ * and a customer is active unless the file says otherwise.
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class CustomerCsvParser implements RecordParser<Customer> {
+
+    private static final Pattern STATE = Pattern.compile("[A-Z]{2}");
+    private static final Pattern ZIP = Pattern.compile("\\d{5}(-\\d{4})?");
+
+    @Override
+    public Customer parse(CsvRecord record) throws ValidationException {
+        String state = record.getString("state", 2, true)
+                .toUpperCase(Locale.ROOT);
+        String zip = record.getString("zipCode", 10, true);
+        String email = record.getString("emailAddress", 50, false);
+
+        if ( !STATE.matcher(state).matches() )
+            throw new ValidationException("state is not a state abbreviation: "
+                    + state);
+        if ( !ZIP.matcher(zip).matches() )
+            throw new ValidationException("zipCode is not a ZIP code: " + zip);
+        if ( email != null && email.indexOf('@') < 1 )
+            throw new ValidationException("emailAddress is not an email "
+                    + "address: " + email);
+
+        // The constructor that takes an ID leaves the shared counter alone,
+        //+ so records can be parsed on several threads at once.
+        return new Customer(0,
+                record.getString("companyName", 40, true),
+                record.getString("streetAddress", 30, true),
+                record.getString("suiteNumber", 15, false),
+                record.getString("city", 30, true),
+                state,
+                zip,
+                record.getString("phoneNumber", 14, false),
+                record.getString("faxNumber", 14, false),
+                email,
+                record.getString("contactName", 30, false),
+                record.get("notes"),
+                record.getBoolean("active", true));
+    }
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What became of the rows of a file imported by a `CsvImporter`: how many were
+ * read, imported and rejected, and why each rejected row was rejected.
+ * <p>
+ * While the import runs, the report is updated by the thread that writes to
+ * the data store, and handed to the progress listener after each chunk of
+ * rows is written.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class ImportReport {
+
+    /**
+     * A row that was not imported.
+     */
+    public static final class RowError {
+
+        private final int line;
+        private final String message;
+
+        RowError(int line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        /**
+         * @return the line of the file the row starts on
+         */
+        public int getLine() {
+            return line;
+        }
+
+        /**
+         * @return why the row was not imported
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + line + ": " + message;
+        }
+
+    }
+
+    private final int maxErrors;
+    private final List<RowError> errors = new ArrayList<>();
+    private final long started = System.nanoTime();
+    private long finished;
+    private long read;
+    private long imported;
+    private long rejected;
+    private boolean cancelled;
+
+    ImportReport(int maxErrors) {
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * @return the number of rows read from the file, not counting the header
+     */
+    public long getRowsRead() {
+        return read;
+    }
+
+    /**
+     * @return the number of rows added to the data store
+     */
+    public long getRowsImported() {
+        return imported;
+    }
+
+    /**
+     * @return the number of rows that were not valid, or that the data store
+     *         refused
+     */
+    public long getRowsRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return the rejected rows, in the order of the file, up to the most
+     *         errors the importer was set to keep
+     */
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * @return `true` if the import was cancelled before the end of the file
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return the time the import has taken so far, or took, in milliseconds
+     */
+    public long getElapsedMillis() {
+        long end = finished == 0 ? System.nanoTime() : finished;
+        return (end - started) / 1_000_000;
+    }
+
+    /**
+     * @return the rows read per minute, on average
+     */
+    public double getRowsPerMinute() {
+        long millis = Math.max(1, getElapsedMillis());
+        return read * 60_000.0 / millis;
+    }
+
+    /**
+     * Writes the rejected rows to a CSV file, with the columns `line` and
+     * `message`, for fixing and importing again.
+     *
+     * @param file the file to write
+     * @throws IOException in the event the file cannot be written
+     */
+    public void writeErrors(Path file) throws IOException {
+        try ( Writer out = Files.newBufferedWriter(file,
+                StandardCharsets.UTF_8) ) {
+            out.write("line,message\n");
+
+            for ( RowError error : errors ) {
+                out.write(error.getLine() + ",\""
+                        + error.getMessage().replace("\"", "\"\"") + "\"\n");
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d rows read, %d imported, %d rejected in %.1f "
+                + "seconds (%.0f rows per minute)%s", read, imported, rejected,
+                getElapsedMillis() / 1000.0, getRowsPerMinute(),
+                cancelled ? ", cancelled" : "");
+    }
+
+    void read(int rows) {
+        read += rows;
+    }
+
+    void imported(int rows) {
+        imported += rows;
+    }
+
+    void reject(int line, String message) {
+        rejected++;
+
+        if ( errors.size() < maxErrors )
+            errors.add(new RowError(line, message));
+    }
+
+    void finish(boolean cancelled) {
+        this.cancelled = cancelled;
+        finished = System.nanoTime();
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.io;
+
+import com.northwind.exceptions.ValidationException;
+import com.northwind.loadmgr.model.Load;
+
+/**
+ * Reads a `Load` from a CSV record whose columns are named after the fields
+ * of the loads table, such as `orderNumber`, `tripNumber`, `miles`, `revenue`
+ * and `bookedOn`. The order and trip numbers are required; every other column
+ * may be left out. No value may be longer than its column, and weights, piece
+ * counts and miles may not be negative.
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class LoadCsvParser implements RecordParser<Load> {
+
+    @Override
+    public Load parse(CsvRecord record) throws ValidationException {
+        Load load = new Load(record.getString("orderNumber", 20, true),
+                record.getString("tripNumber", 20, true));
+
+        load.setUnitAssigned(record.getString("unitAssigned", 15, false));
+        load.setReferenceNumber(record.getString("referenceNumber", 30,
+                false));
+        load.setPickupNumber(record.getString("pickupNumber", 30, false));
+        load.setTrailerType(record.getInt("trailerType", 0));
+        load.setCommodity(record.getString("commodity", 40, false));
+        load.setWeight(notNegative(record, "weight"));
+        load.setPieces(notNegative(record, "pieces"));
+        load.setBolNumber(record.getString("bolNumber", 30, false));
+        load.setTarped(record.getBoolean("tarped", false));
+        load.setTarpType(record.getInt("tarpType", 0));
+        load.setTeamLoad(record.getBoolean("teamLoad", false));
+        load.setHazMat(record.getBoolean("hazMat", false));
+        load.setCbd(record.getBoolean("cbd", false));
+        load.setLtl(record.getBoolean("ltl", false));
+        load.setTwic(record.getBoolean("twic", false));
+        load.setRampsRequired(record.getBoolean("rampsRequired", false));
+        load.setMiles(notNegative(record, "miles"));
+        load.setRevenue(record.getDouble("revenue", 0));
+        load.setBroker(record.getString("broker", 40, false));
+        load.setBrokerPhone(record.getString("brokerPhone", 14, false));
+        load.setDispatcher(record.getString("dispatcher", 30, false));
+        load.setDispatcherPhone(record.getString("dispatcherPhone", 14,
+                false));
+        load.setBookedOn(record.getDate("bookedOn"));
+
+        return load;
+    }
+
+    private static int notNegative(CsvRecord record, String column)
+            throws ValidationException {
+        int value = record.getInt(column, 0);
+
+        if ( value < 0 )
+            throw new ValidationException(column + " may not be negative: "
+                    + value);
+
+        return value;
+    }
+
+}
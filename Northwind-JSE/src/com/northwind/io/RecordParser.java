@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.io;
+
+import com.northwind.exceptions.ValidationException;
+
+/**
+ * Turns one record of a CSV file into an entity, checking that it is valid.
+ * A `CsvImporter` calls its parser from several threads at once, so a parser
+ * must not keep any state between records.
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ * @param <T> the type of the entity
+ */
+@FunctionalInterface
+public interface RecordParser<T> {
+
+    /**
+     * @param record a record of the file
+     * @return the entity the record describes
+     * @throws ValidationException if the record does not describe a valid
+     *                             entity, with a message saying why
+     */
+    T parse(CsvRecord record) throws ValidationException;
+
+}
@@ -17,15 +17,109 @@
 package com.northwind.loadmgr.controller;
 
 import com.northwind.api.Manager;
+import com.northwind.api.Page;
+import com.northwind.api.RowMapper;
+import com.northwind.api.db.SchemaRegistry;
+import com.northwind.api.db.TableSchema;
 import com.northwind.exceptions.DataStoreException;
 import com.northwind.loadmgr.model.Load;
+import java.sql.Date;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  *
  * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
  */
-public class LoadManager extends Manager {
+public class LoadManager extends Manager<Load> {
+    
+    /**
+     * The layout of the loads table. Version 2 added the `version` column, so
+     * that two dispatchers editing the same load cannot overwrite each other's
+     * changes.
+     */
+    public static final TableSchema SCHEMA = TableSchema.builder("loads", 2)
+            .column("id", "IDENTITY")
+            .column("orderNumber", "VARCHAR(20) NOT NULL")
+            .column("tripNumber", "VARCHAR(20) NOT NULL")
+            .column("unitAssigned", "VARCHAR(15)")
+            .column("referenceNumber", "VARCHAR(30)")
+            .column("pickupNumber", "VARCHAR(30)")
+            .column("trailerType", "INTEGER DEFAULT 0")
+            .column("commodity", "VARCHAR(40)")
+            .column("weight", "INTEGER DEFAULT 0")
+            .column("pieces", "INTEGER DEFAULT 0")
+            .column("bolNumber", "VARCHAR(30)")
+            .column("tarped", "BOOLEAN DEFAULT FALSE")
+            .column("tarpType", "INTEGER DEFAULT 0")
+            .column("teamLoad", "BOOLEAN DEFAULT FALSE")
+            .column("hazMat", "BOOLEAN DEFAULT FALSE")
+            .column("cbd", "BOOLEAN DEFAULT FALSE")
+            .column("ltl", "BOOLEAN DEFAULT FALSE")
+            .column("twic", "BOOLEAN DEFAULT FALSE")
+            .column("rampsRequired", "BOOLEAN DEFAULT FALSE")
+            .column("miles", "INTEGER DEFAULT 0")
+            .column("revenue", "DOUBLE DEFAULT 0")
+            .column("broker", "VARCHAR(40)")
+            .column("brokerPhone", "VARCHAR(14)")
+            .column("dispatcher", "VARCHAR(30)")
+            .column("dispatcherPhone", "VARCHAR(14)")
+            .column("bookedOn", "DATE")
+            .column("version", "INTEGER DEFAULT 0 NOT NULL")
+            .index("bookedOn")
+            .index("unitAssigned")
+            .migration(2, TableSchema.addColumn("version", 
+                    "INTEGER DEFAULT 0 NOT NULL"))
+            .build();
+    
+    static {
+        SchemaRegistry.register(SCHEMA);
+    }
+    
+    /**
+     * Maps the rows of the loads table onto `Load` objects.
+     */
+    private static final RowMapper<Load> MAPPER 
+            = RowMapper.builder(Load::new)
+                    .intField("id", Load::setId)
+                    .stringField("orderNumber", Load::setOrderNumber)
+                    .stringField("tripNumber", Load::setTripNumber)
+                    .stringField("unitAssigned", Load::setUnitAssigned)
+                    .stringField("referenceNumber", Load::setReferenceNumber)
+                    .stringField("pickupNumber", Load::setPickupNumber)
+                    .intField("trailerType", Load::setTrailerType)
+                    .stringField("commodity", Load::setCommodity)
+                    .intField("weight", Load::setWeight)
+                    .intField("pieces", Load::setPieces)
+                    .stringField("bolNumber", Load::setBolNumber)
+                    .booleanField("tarped", Load::setTarped)
+                    .intField("tarpType", Load::setTarpType)
+                    .booleanField("teamLoad", Load::setTeamLoad)
+                    .booleanField("hazMat", Load::setHazMat)
+                    .booleanField("cbd", Load::setCbd)
+                    .booleanField("ltl", Load::setLtl)
+                    .booleanField("twic", Load::setTwic)
+                    .booleanField("rampsRequired", Load::setRampsRequired)
+                    .intField("miles", Load::setMiles)
+                    .doubleField("revenue", Load::setRevenue)
+                    .stringField("broker", Load::setBroker)
+                    .stringField("brokerPhone", Load::setBrokerPhone)
+                    .stringField("dispatcher", Load::setDispatcher)
+                    .stringField("dispatcherPhone", Load::setDispatcherPhone)
+                    .dateField("bookedOn", Load::setBookedOn)
+                    .build();
+    
+    /**
+     * The fields given values when a `Load` is added, in the order that
+     * `getInsertValues` gives them.
+     */
+    private static final String[] INSERT_FIELDS = {
+        "orderNumber", "tripNumber", "unitAssigned", "referenceNumber",
+        "pickupNumber", "trailerType", "commodity", "weight", "pieces",
+        "bolNumber", "tarped", "tarpType", "teamLoad", "hazMat", "cbd", "ltl",
+        "twic", "rampsRequired", "miles", "revenue", "broker", "brokerPhone",
+        "dispatcher", "dispatcherPhone", "bookedOn"
+    };
     
     public LoadManager(String name, char[] pword, String table, 
             List<Load> model) throws DataStoreException {
@@ -33,8 +127,51 @@ public class LoadManager extends Manager {
     }
     
     @Override
-    public List<?> query(String fields, String where, String sort) throws DataStoreException {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    protected String[] getInsertFields() {
+        return INSERT_FIELDS;
+    }
+    
+    @Override
+    protected Object[] getInsertValues(Load entity) {
+        return new Object[]{
+            entity.getOrderNumber(), entity.getTripNumber(),
+            entity.getUnitAssigned(), entity.getReferenceNumber(),
+            entity.getPickupNumber(), entity.getTrailerType(),
+            entity.getCommodity(), entity.getWeight(), entity.getPieces(),
+            entity.getBolNumber(), entity.isTarped(), entity.getTarpType(),
+            entity.isTeamLoad(), entity.isHazMat(), entity.isCbd(),
+            entity.isLtl(), entity.isTwic(), entity.isRampsRequired(),
+            entity.getMiles(), entity.getRevenue(), entity.getBroker(),
+            entity.getBrokerPhone(), entity.getDispatcher(),
+            entity.getDispatcherPhone(), entity.getBookedOn() == null ? null
+                    : Date.valueOf(entity.getBookedOn())
+        };
+    }
+    
+    @Override
+    public List<Load> query(String fields, String where, String sort) 
+            throws DataStoreException {
+        return select(MAPPER, fields, where, sort);
+    }
+    
+    @Override
+    public Stream<Load> stream(String where, String sort, int fetchSize) 
+            throws DataStoreException {
+        return openStream(MAPPER, where, sort, fetchSize);
+    }
+    
+    @Override
+    public Page<Load> page(String sortKey, Page.Key afterKey, int limit,
+            Page.Direction direction) throws DataStoreException {
+        return seek(MAPPER, sortKey, afterKey, limit, direction);
+    }
+    
+    /**
+     * @return the mapper used by `query`, `stream` and `page`, for reading its
+     *         mapping statistics
+     */
+    public static RowMapper<Load> getMapper() {
+        return MAPPER;
     }
     
 }
@@ -23,6 +23,7 @@ import java.time.LocalDate;
  * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
  */
 public class Load {
+    private int id;
     private String orderNumber;
     private String tripNumber;
     private String unitAssigned;
@@ -58,6 +59,14 @@ public class Load {
         this.tripNumber = trip;
     }
     
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public String getOrderNumber() {
         return orderNumber;
     }
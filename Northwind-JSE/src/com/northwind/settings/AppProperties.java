@@ -5,7 +5,9 @@
  */
 package com.northwind.settings;
 
+import com.northwind.api.db.ConnectionPool;
 import com.northwind.enums.SysExits;
+import com.northwind.utils.LogContext;
 import com.northwind.utils.Logger;
 import java.io.File;
 import java.io.FileReader;
@@ -13,7 +15,6 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Properties;
 import java.util.logging.Level;
-import java.util.logging.LogRecord;
 
 /**
  *
@@ -40,7 +41,7 @@ public class AppProperties {
     
     private static final Properties props;
     private static final Logger log = Logger.getInstance();
-    private static final LogRecord record = new LogRecord(Level.FINE, 
+    private static final LogContext record = new LogContext(Level.FINE, 
             "Instantiating Logging");
     private static final AppProperties appProps = new AppProperties();
     
@@ -80,11 +81,10 @@ public class AppProperties {
             record.setSourceClassName(AppProperties.class.getName());
             record.setSourceMethodName("static {} initializer");
             log.enter(record);
-            record.setMessage("Exception while trying to read in the "
-                    + "configuration file:\n\t" + APP_DIR + 
-                    NAME.replace(' ', '_') + ".conf" + "\n\n-> Fixing the "
-                    + "problem by generating a setting and writing it.");
-            log.debug(record);
+            log.debug("Exception while trying to read in the configuration "
+                    + "file:\n\t{}{}.conf\n\n-> Fixing the problem by "
+                    + "generating a setting and writing it.", APP_DIR, 
+                    NAME.replace(' ', '_'));
             
             // Since this is the first time the system has been run, we are 
             //+ going to create the file structure right here.
@@ -209,7 +209,338 @@ public class AppProperties {
     public void setDbDriver(String value) {
         setProperty("db.driver", value);
     }
-    
+
+    /**
+     * Convenience method for getting the maximum number of connections the
+     * connection pool will lend out at the same time.
+     *
+     * @return the value in this property list for the connection pool size.
+     */
+    public int getDbPoolSize() {
+        return getPropertyAsInt("db.pool.size", "4");
+    }
+
+    /**
+     * Convenience method for setting the maximum number of connections the
+     * connection pool will lend out at the same time.
+     *
+     * @param value the new value for the connection pool size.
+     */
+    public void setDbPoolSize(int value) {
+        setPropertyAsInt("db.pool.size", value);
+    }
+
+    /**
+     * Convenience method for getting the number of milliseconds a connection
+     * may sit idle in the connection pool before it is closed.
+     *
+     * @return the value in this property list for the idle timeout.
+     */
+    public long getDbPoolIdleTimeout() {
+        return getPropertyAsLong("db.pool.idle.timeout", "300000");
+    }
+
+    /**
+     * Convenience method for setting the number of milliseconds a connection
+     * may sit idle in the connection pool before it is closed.
+     *
+     * @param value the new value for the idle timeout.
+     */
+    public void setDbPoolIdleTimeout(long value) {
+        setPropertyAsLong("db.pool.idle.timeout", value);
+    }
+
+    /**
+     * Convenience method for getting the number of milliseconds a caller will
+     * wait for a free connection before giving up.
+     *
+     * @return the value in this property list for the borrow timeout.
+     */
+    public long getDbPoolBorrowTimeout() {
+        return getPropertyAsLong("db.pool.borrow.timeout", "30000");
+    }
+
+    /**
+     * Convenience method for setting the number of milliseconds a caller will
+     * wait for a free connection before giving up.
+     *
+     * @param value the new value for the borrow timeout.
+     */
+    public void setDbPoolBorrowTimeout(long value) {
+        setPropertyAsLong("db.pool.borrow.timeout", value);
+    }
+
+    /**
+     * Convenience method for determining whether the connection pool keeps the
+     * data store open for the whole session, instead of letting it shut down
+     * whenever the last connection is closed.
+     *
+     * @return the value in this property list for the warm data store mode.
+     */
+    public boolean isDbPoolWarm() {
+        return getPropertyAsBoolean("db.pool.warm", "true");
+    }
+
+    /**
+     * Convenience method for setting whether the connection pool keeps the
+     * data store open for the whole session.
+     *
+     * @param value the new value for the warm data store mode.
+     */
+    public void setDbPoolWarm(boolean value) {
+        setPropertyAsBoolean("db.pool.warm", value);
+    }
+
+    /**
+     * Convenience method for getting the number of prepared statements kept
+     * open for each pooled connection.
+     *
+     * @return the value in this property list for the statement cache size.
+     */
+    public int getDbStatementCacheSize() {
+        return getPropertyAsInt("db.statement.cache.size", "64");
+    }
+
+    /**
+     * Convenience method for setting the number of prepared statements kept
+     * open for each pooled connection.
+     *
+     * @param value the new value for the statement cache size.
+     */
+    public void setDbStatementCacheSize(int value) {
+        setPropertyAsInt("db.statement.cache.size", value);
+    }
+
+    /**
+     * Convenience method for getting the number of records written to the
+     * data store in each batch, and committed in each transaction, by a bulk
+     * insert.
+     *
+     * @return the value in this property list for the batch size.
+     */
+    public int getDbBatchSize() {
+        return getPropertyAsInt("db.batch.size", "500");
+    }
+
+    /**
+     * Convenience method for setting the number of records written to the
+     * data store in each batch, and committed in each transaction, by a bulk
+     * insert.
+     *
+     * @param value the new value for the batch size.
+     */
+    public void setDbBatchSize(int value) {
+        setPropertyAsInt("db.batch.size", value);
+    }
+
+    /**
+     * Convenience method for getting the number of whole records cached for
+     * each table. Zero turns the entity cache off.
+     *
+     * @return the value in this property list for the entity cache size.
+     */
+    public int getDbEntityCacheSize() {
+        return getPropertyAsInt("db.entity.cache.size", "500");
+    }
+
+    /**
+     * Convenience method for setting the number of whole records cached for
+     * each table. Zero turns the entity cache off.
+     *
+     * @param value the new value for the entity cache size.
+     */
+    public void setDbEntityCacheSize(int value) {
+        setPropertyAsInt("db.entity.cache.size", value);
+    }
+
+    /**
+     * Convenience method for getting whether single-field updates are
+     * buffered and written to the data store later, merged into one update
+     * per record.
+     *
+     * @return the value in this property list for the write-behind mode.
+     */
+    public boolean isDbWriteBehind() {
+        return getPropertyAsBoolean("db.write.behind", "false");
+    }
+
+    /**
+     * Convenience method for setting whether single-field updates are
+     * buffered and written to the data store later, merged into one update
+     * per record.
+     *
+     * @param value the new value for the write-behind mode.
+     */
+    public void setDbWriteBehind(boolean value) {
+        setPropertyAsBoolean("db.write.behind", value);
+    }
+
+    /**
+     * Convenience method for getting the number of milliseconds between
+     * flushes of the buffered updates in write-behind mode.
+     *
+     * @return the value in this property list for the write-behind delay.
+     */
+    public long getDbWriteBehindDelay() {
+        return getPropertyAsLong("db.write.behind.delay", "1000");
+    }
+
+    /**
+     * Convenience method for setting the number of milliseconds between
+     * flushes of the buffered updates in write-behind mode.
+     *
+     * @param value the new value for the write-behind delay.
+     */
+    public void setDbWriteBehindDelay(long value) {
+        setPropertyAsLong("db.write.behind.delay", value);
+    }
+
+    /**
+     * Convenience method for getting whether the latency of each statement
+     * run by the `Manager`s is measured.
+     *
+     * @return the value in this property list for the statement statistics
+     *         switch.
+     */
+    public boolean isDbStatementStats() {
+        return getPropertyAsBoolean("db.statement.stats", "true");
+    }
+
+    /**
+     * Convenience method for setting whether the latency of each statement
+     * run by the `Manager`s is measured.
+     *
+     * @param value the new value for the statement statistics switch.
+     */
+    public void setDbStatementStats(boolean value) {
+        setPropertyAsBoolean("db.statement.stats", value);
+    }
+
+    /**
+     * Convenience method for getting the number of milliseconds a statement
+     * may take before it is written to the slow-query log, where zero turns
+     * the slow-query log off.
+     *
+     * @return the value in this property list for the slow-query threshold.
+     */
+    public long getDbSlowQueryMillis() {
+        return getPropertyAsLong("db.slow.query.millis", "250");
+    }
+
+    /**
+     * Convenience method for setting the number of milliseconds a statement
+     * may take before it is written to the slow-query log, where zero turns
+     * the slow-query log off.
+     *
+     * @param value the new value for the slow-query threshold.
+     */
+    public void setDbSlowQueryMillis(long value) {
+        setPropertyAsLong("db.slow.query.millis", value);
+    }
+
+    /**
+     * Convenience method for getting the number of threads that run data store
+     * calls in the background, when virtual threads are not available.
+     *
+     * @return the value in this property list for the background thread count.
+     */
+    public int getDbAsyncThreads() {
+        return getPropertyAsInt("db.async.threads", "4");
+    }
+
+    /**
+     * Convenience method for setting the number of threads that run data store
+     * calls in the background, when virtual threads are not available.
+     *
+     * @param value the new value for the background thread count.
+     */
+    public void setDbAsyncThreads(int value) {
+        setPropertyAsInt("db.async.threads", value);
+    }
+
+    /**
+     * Convenience method for getting the name of the storage profile applied
+     * to the data store when it is opened.
+     *
+     * @return the value in this property list for the storage profile, or
+     *         `null` if none has been set, in which case the data store keeps
+     *         its own settings.
+     */
+    public String getDbStorageProfile() {
+        return getProperty("db.storage.profile");
+    }
+
+    /**
+     * Convenience method for setting the name of the storage profile applied
+     * to the data store when it is opened.
+     *
+     * @param value the new value for the storage profile.
+     */
+    public void setDbStorageProfile(String value) {
+        setProperty("db.storage.profile", value);
+    }
+
+    /**
+     * Convenience method for getting the folder that backups of the data store
+     * are kept in.
+     *
+     * @return the value in this property list for the backup folder.
+     */
+    public String getDbBackupFolder() {
+        return getProperty("db.backup.folder", APP_DIR + "backups"
+                + File.separator);
+    }
+
+    /**
+     * Convenience method for setting the folder that backups of the data store
+     * are kept in.
+     *
+     * @param value the new value for the backup folder.
+     */
+    public void setDbBackupFolder(String value) {
+        setProperty("db.backup.folder", value);
+    }
+
+    /**
+     * Convenience method for getting the number of backups of the data store
+     * to keep. Older backups are removed after each new backup.
+     *
+     * @return the value in this property list for the backups kept.
+     */
+    public int getDbBackupKeep() {
+        return getPropertyAsInt("db.backup.keep", "7");
+    }
+
+    /**
+     * Convenience method for setting the number of backups of the data store
+     * to keep. Older backups are removed after each new backup.
+     *
+     * @param value the new value for the backups kept.
+     */
+    public void setDbBackupKeep(int value) {
+        setPropertyAsInt("db.backup.keep", value);
+    }
+
+    /**
+     * Convenience method for getting the number of threads that parse and
+     * validate the rows of an import, where zero means one per processor.
+     *
+     * @return the value in this property list for the import thread count.
+     */
+    public int getImportThreads() {
+        return getPropertyAsInt("import.threads", "0");
+    }
+
+    /**
+     * Convenience method for setting the number of threads that parse and
+     * validate the rows of an import, where zero means one per processor.
+     *
+     * @param value the new value for the import thread count.
+     */
+    public void setImportThreads(int value) {
+        setPropertyAsInt("import.threads", value);
+    }
+
     /**
      * Convenience method for getting the application home folder.
      * 
@@ -245,6 +576,190 @@ public class AppProperties {
         setProperty("logs.home", value);
     }
     
+    /**
+     * Convenience method for getting what the log does with a message that
+     * arrives while its buffer is full: `BLOCK`, `DROP_DEBUG` or `SAMPLE`.
+     * 
+     * @return the value in this property list for the log overflow policy.
+     */
+    public String getLogOverflow() {
+        return getProperty("log.overflow", "DROP_DEBUG");
+    }
+    
+    /**
+     * Convenience method for setting what the log does with a message that
+     * arrives while its buffer is full: `BLOCK`, `DROP_DEBUG` or `SAMPLE`.
+     * 
+     * @param value the new value for the log overflow policy.
+     */
+    public void setLogOverflow(String value) {
+        setProperty("log.overflow", value);
+    }
+    
+    /**
+     * Convenience method for getting the longest time, in milliseconds, a 
+     * logged message waits before it is written to the log file.
+     * 
+     * @return the value in this property list for the log flush interval.
+     */
+    public long getLogFlushMillis() {
+        return getPropertyAsLong("log.flush.millis", "200");
+    }
+    
+    /**
+     * Convenience method for setting the longest time, in milliseconds, a 
+     * logged message waits before it is written to the log file.
+     * 
+     * @param value the new value for the log flush interval.
+     */
+    public void setLogFlushMillis(long value) {
+        setPropertyAsLong("log.flush.millis", value);
+    }
+
+    /**
+     * Convenience method for getting the size, in kilobytes, past which the
+     * log file is rolled over, where 0 means it is not rolled over by size.
+     *
+     * @return the value in this property list for the log size limit.
+     */
+    public long getLogMaxKilobytes() {
+        return getPropertyAsLong("log.max.kilobytes", "10240");
+    }
+
+    /**
+     * Convenience method for setting the size, in kilobytes, past which the
+     * log file is rolled over, where 0 means it is not rolled over by size.
+     *
+     * @param value the new value for the log size limit.
+     */
+    public void setLogMaxKilobytes(long value) {
+        setPropertyAsLong("log.max.kilobytes", value);
+    }
+
+    /**
+     * Convenience method for getting whether the log file is rolled over at
+     * the start of each day.
+     *
+     * @return the value in this property list for daily log roll over.
+     */
+    public boolean getLogRollDaily() {
+        return getPropertyAsBoolean("log.roll.daily", "true");
+    }
+
+    /**
+     * Convenience method for setting whether the log file is rolled over at
+     * the start of each day.
+     *
+     * @param value the new value for daily log roll over.
+     */
+    public void setLogRollDaily(boolean value) {
+        setPropertyAsBoolean("log.roll.daily", value);
+    }
+
+    /**
+     * Convenience method for getting the number of rolled over, compressed
+     * log files that are kept.
+     *
+     * @return the value in this property list for the log files kept.
+     */
+    public int getLogRetain() {
+        return getPropertyAsInt("log.retain", "7");
+    }
+
+    /**
+     * Convenience method for setting the number of rolled over, compressed
+     * log files that are kept.
+     *
+     * @param value the new value for the log files kept.
+     */
+    public void setLogRetain(int value) {
+        setPropertyAsInt("log.retain", value);
+    }
+
+    /**
+     * Convenience method for getting the classes and packages whose method
+     * entries and exits are traced whatever the logging level, separated by
+     * commas.
+     *
+     * @return the value in this property list for the traced classes.
+     */
+    public String getLogTraceClasses() {
+        return getProperty("log.trace.classes", "");
+    }
+
+    /**
+     * Convenience method for setting the classes and packages whose method
+     * entries and exits are traced whatever the logging level, separated by
+     * commas.
+     *
+     * @param value the new value for the traced classes.
+     */
+    public void setLogTraceClasses(String value) {
+        setProperty("log.trace.classes", value);
+    }
+
+    /**
+     * Convenience method for getting the share, from 0.0 to 1.0, of the
+     * traced method entries and exits that are written to the log file.
+     *
+     * @return the value in this property list for the trace sampling.
+     */
+    public double getLogTraceSampling() {
+        return getPropertyAsDouble("log.trace.sampling", "1.0");
+    }
+
+    /**
+     * Convenience method for setting the share, from 0.0 to 1.0, of the
+     * traced method entries and exits that are written to the log file.
+     *
+     * @param value the new value for the trace sampling.
+     */
+    public void setLogTraceSampling(double value) {
+        setPropertyAsDouble("log.trace.sampling", value);
+    }
+
+    /**
+     * Convenience method for getting the most traced method entries written
+     * to the log file in any one second, where 0 means no limit.
+     *
+     * @return the value in this property list for the trace rate.
+     */
+    public int getLogTraceRate() {
+        return getPropertyAsInt("log.trace.rate", "0");
+    }
+
+    /**
+     * Convenience method for setting the most traced method entries written
+     * to the log file in any one second, where 0 means no limit.
+     *
+     * @param value the new value for the trace rate.
+     */
+    public void setLogTraceRate(int value) {
+        setPropertyAsInt("log.trace.rate", value);
+    }
+
+    /**
+     * Convenience method for getting the number of recent method entries and
+     * exits kept in memory and written to the log file only when an error is
+     * logged, where 0 turns the flight recorder off.
+     *
+     * @return the value in this property list for the flight recorder size.
+     */
+    public int getLogFlightRecorder() {
+        return getPropertyAsInt("log.flight.recorder", "0");
+    }
+
+    /**
+     * Convenience method for setting the number of recent method entries and
+     * exits kept in memory and written to the log file only when an error is
+     * logged, where 0 turns the flight recorder off.
+     *
+     * @param value the new value for the flight recorder size.
+     */
+    public void setLogFlightRecorder(int value) {
+        setPropertyAsInt("log.flight.recorder", value);
+    }
+
     /**
      * Convenience method for getting the error report folder.
      * 
@@ -541,16 +1056,19 @@ public class AppProperties {
         }
         
         // Perform other necessary cleanup here.
-        
+        ConnectionPool.shutdownAll();
+
         
         ////////////////////////////////////////////////////////////////////////
         // KEEP AT THE END OF THIS METHOD! The lines below need to stay last. //
         ////////////////////////////////////////////////////////////////////////
         record.setMessage("Cleanup complete! We can now exit.");
         log.debug(record);
-        record.setMessage("Exiting " + PROJECT_NAME + " with the status: "
-                + status.toString() + " [" + status.toInt() + "]");
-        log.exit(record, status);
+        if ( log.isTraceEnabled(record) ) {
+            record.setMessage("Exiting " + PROJECT_NAME + " with the status: "
+                    + status.toString() + " [" + status.toInt() + "]");
+            log.exit(record, status);
+        }
         System.exit(status.toInt());
     }
     
@@ -16,9 +16,9 @@
  */
 package com.northwind.settings;
 
+import com.northwind.utils.LogContext;
 import com.northwind.utils.Logger;
 import java.util.logging.Level;
-import java.util.logging.LogRecord;
 
 /**
  * This class is used for simply calculating the application version, as this 
@@ -47,7 +47,7 @@ public class VersionCalculator {
     private static final String PROJECT_EMAIL = "sean@pekinsoft.com";
     
     private static final Logger log = Logger.getInstance();
-    private static final LogRecord record = new LogRecord(Level.FINE, 
+    private static final LogContext record = new LogContext(Level.FINE, 
             "Instantiating Logging");
     private static final AppProperties props = AppProperties.getInstance();
     
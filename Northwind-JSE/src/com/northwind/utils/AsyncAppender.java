@@ -0,0 +1,622 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the entries of the `Logger` to its file on a background thread, so
+ * that logging costs the thread doing the logging next to nothing.
+ * <p>
+ * Entries are handed over through a bounded ring buffer that takes no locks:
+ * any number of threads can add to it at once, and the single writer thread
+ * takes from it. The writer gathers the entries into a buffer and writes them
+ * to the file in one go when the buffer fills, every `flushMillis`
+ * milliseconds, and straight away for errors and for `flush`.</p>
+ * <p>
+ * When entries arrive faster than they can be written and the ring buffer
+ * fills, the `Overflow` policy decides what happens to the next entry. The
+ * number of entries dropped is written to the log once there is room
+ * again.</p>
+ * <p>
+ * The file is rolled over when it would grow past `maxBytes`, and at the
+ * first write after midnight: it is renamed with the day it was started and
+ * a sequence number, such as `application.2020-03-08.1.log`, and a new file
+ * is started. Rolled files are compressed with gzip on a thread of their own,
+ * and only the newest `retain` of them are kept. A file left by an earlier
+ * run is rolled over when the appender opens it, rather than written over.
+ * </p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public final class AsyncAppender implements AutoCloseable {
+
+    /**
+     * What to do with an entry when the ring buffer is full.
+     */
+    public enum Overflow {
+        /**
+         * Wait for room, so that no entry is ever lost.
+         */
+        BLOCK,
+        /**
+         * Drop debugging entries, and wait for room for all others.
+         */
+        DROP_DEBUG,
+        /**
+         * Keep one in every `sampleRate` debugging entries, waiting for room
+         * for those and for all others, and drop the rest.
+         */
+        SAMPLE;
+
+        /**
+         * @param name the name of a policy, in any case
+         * @return the policy, or `DROP_DEBUG` if there is no such policy
+         */
+        public static Overflow forName(String name) {
+            for ( Overflow o : values() ) {
+                if ( o.name().equalsIgnoreCase(String.valueOf(name).trim()) )
+                    return o;
+            }
+
+            return DROP_DEBUG;
+        }
+    }
+
+    /**
+     * The default number of entries the ring buffer holds.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * The default size, in bytes, past which the file is rolled over.
+     */
+    public static final long DEFAULT_MAX_BYTES = 10L * 1024 * 1024;
+
+    /**
+     * The default number of rolled files kept.
+     */
+    public static final int DEFAULT_RETAIN = 7;
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final Path file;
+    private final String prefix;
+    private final String suffix;
+    private final Pattern rolledName;
+    private final ExecutorService compressor;
+    private final int mask;
+    private final String[] texts;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sampled = new AtomicLong();
+    private final Thread writer;
+    private final Object flushLock = new Object();
+
+    // Touched by the writer thread only, but for `head`, which the threads
+    //+ appending read to tell how full the ring buffer is.
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private volatile long head;
+    private long lastWrite = System.nanoTime();
+    private long droppedReported;
+    private FileChannel channel;
+    private long size;
+    private LocalDate day;
+    private long nextDayMillis;
+
+    private volatile long written;
+    private volatile boolean urgent;
+    private volatile boolean running = true;
+    private volatile boolean failed;
+    private volatile Overflow overflow = Overflow.DROP_DEBUG;
+    private volatile long flushNanos = TimeUnit.MILLISECONDS.toNanos(200);
+    private volatile int sampleRate = 10;
+    private volatile long maxBytes = DEFAULT_MAX_BYTES;
+    private volatile boolean daily = true;
+    private volatile int retain = DEFAULT_RETAIN;
+
+    /**
+     * Opens the log file and starts the writer thread.
+     *
+     * @param file     the log file
+     * @param append   `true` to add to the end of the file, `false` to start
+     *                 afresh, rolling over what the file already holds
+     * @param capacity the most entries the ring buffer holds, rounded up to a
+     *                 power of two
+     * @throws IOException in the event the file cannot be opened
+     */
+    public AsyncAppender(Path file, boolean append, int capacity)
+            throws IOException {
+        this.file = file.toAbsolutePath();
+
+        String name = this.file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        prefix = dot > 0 ? name.substring(0, dot) : name;
+        suffix = dot > 0 ? name.substring(dot) : "";
+        rolledName = Pattern.compile(Pattern.quote(prefix)
+                + "\\.(\\d{4}-\\d{2}-\\d{2})\\.(\\d+)" + Pattern.quote(suffix)
+                + "(\\.gz)?");
+
+        compressor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "northwind-log-compress");
+            t.setDaemon(true);
+            return t;
+        });
+
+        day = LocalDate.now();
+
+        if ( !append && Files.exists(this.file) && Files.size(this.file) > 0 ) {
+            day = LocalDate.ofInstant(Files.getLastModifiedTime(this.file)
+                    .toInstant(), ZoneId.systemDefault());
+            rollOver();
+        }
+
+        open(append);
+
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        texts = new String[size];
+        sequences = new AtomicLongArray(size);
+
+        for ( int idx = 0; idx < size; idx++ ) {
+            sequences.set(idx, idx);
+        }
+
+        writer = new Thread(this::run, "northwind-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close,
+                "northwind-log-close"));
+    }
+
+    /**
+     * Hands an entry to the writer thread. Unless the ring buffer is full and
+     * the `Overflow` policy says to wait, this returns at once.
+     *
+     * @param level the `Logger` level of the entry, used to decide which
+     *              entries may be dropped
+     * @param text  the text of the entry, as it is to appear in the file
+     */
+    public void append(int level, String text) {
+        if ( !running || failed )
+            return;
+
+        boolean important = level > Logger.DEBUG;
+        int spins = 0;
+
+        while ( !offer(text) ) {
+            if ( !important ) {
+                Overflow policy = overflow;
+
+                if ( policy == Overflow.DROP_DEBUG
+                        || (policy == Overflow.SAMPLE
+                        && sampled.incrementAndGet() % sampleRate != 0) ) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+            }
+
+            if ( !running || failed || !writer.isAlive() )
+                return;
+
+            // Wait for the writer to make room.
+            LockSupport.unpark(writer);
+
+            if ( ++spins < 100 )
+                Thread.onSpinWait();
+            else
+                LockSupport.parkNanos(50_000);
+        }
+
+        if ( level >= Logger.ERROR ) {
+            urgent = true;
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * Waits until every entry appended so far has been written to the file.
+     */
+    public void flush() {
+        long target = tail.get();
+
+        synchronized ( flushLock ) {
+            urgent = true;
+            LockSupport.unpark(writer);
+
+            while ( written < target && writer.isAlive() && !failed ) {
+                try {
+                    flushLock.wait(100);
+                } catch ( InterruptedException ex ) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes every entry appended so far, then stops the writer thread and
+     * closes the file. Entries appended afterwards are ignored.
+     */
+    @Override
+    public void close() {
+        if ( !running )
+            return;
+
+        flush();
+        running = false;
+        LockSupport.unpark(writer);
+
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+
+            // Let a compression under way finish, rather than leave half a
+            //+ file behind.
+            compressor.shutdown();
+            compressor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch ( InterruptedException ex ) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return the number of entries dropped because the ring buffer was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of entries waiting to be written
+     */
+    public int getPending() {
+        return (int) Math.max(0, tail.get() - written);
+    }
+
+    /**
+     * @return what is done with an entry when the ring buffer is full
+     */
+    public Overflow getOverflow() {
+        return overflow;
+    }
+
+    /**
+     * @param overflow what to do with an entry when the ring buffer is full
+     */
+    public void setOverflow(Overflow overflow) {
+        this.overflow = overflow == null ? Overflow.DROP_DEBUG : overflow;
+    }
+
+    /**
+     * @param millis the longest an entry waits in the writer's buffer before
+     *               it is written to the file
+     */
+    public void setFlushMillis(long millis) {
+        flushNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, millis));
+    }
+
+    /**
+     * @param rate for the `SAMPLE` policy, keep one in every `rate` debugging
+     *             entries while the ring buffer is full
+     */
+    public void setSampleRate(int rate) {
+        sampleRate = Math.max(1, rate);
+    }
+
+    /**
+     * Sets when the file is rolled over, and how many rolled files are kept.
+     * The new settings take effect from the next write. As the writer only
+     * rolls the file over between writes of its buffer, a file may pass
+     * `maxBytes` by up to one buffer, 64 KB.
+     *
+     * @param maxBytes the size, in bytes, past which the file is rolled over,
+     *                 or 0 not to roll it over by size
+     * @param daily    `true` to roll the file over at the first write of each
+     *                 day
+     * @param retain   the number of rolled files to keep, newest first
+     */
+    public void setRollover(long maxBytes, boolean daily, int retain) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.daily = daily;
+        this.retain = Math.max(0, retain);
+    }
+
+    private boolean offer(String text) {
+        while ( true ) {
+            long pos = tail.get();
+            int idx = (int) pos & mask;
+            long diff = sequences.get(idx) - pos;
+
+            if ( diff == 0 ) {
+                if ( tail.compareAndSet(pos, pos + 1) ) {
+                    texts[idx] = text;
+                    sequences.set(idx, pos + 1);
+
+                    // Wake the writer early rather than let the buffer fill.
+                    if ( pos - head > mask / 2 )
+                        LockSupport.unpark(writer);
+
+                    return true;
+                }
+            } else if ( diff < 0 ) {
+                return false;
+            }
+        }
+    }
+
+    private void run() {
+        while ( running || head < tail.get() ) {
+            boolean any = false;
+            int idx = (int) head & mask;
+
+            while ( sequences.get(idx) == head + 1 ) {
+                // Encoded before the slot is freed, so that a write made to
+                //+ make room does not count this entry as written.
+                encode(texts[idx]);
+                texts[idx] = null;
+                sequences.set(idx, head + mask + 1);
+                head++;
+                any = true;
+
+                idx = (int) head & mask;
+            }
+
+            if ( failed )
+                return;
+
+            long now = System.nanoTime();
+
+            if ( buffer.position() > 0 && (urgent || !running
+                    || now - lastWrite >= flushNanos) ) {
+                urgent = false;
+                reportDropped();
+                writeOut();
+            } else if ( buffer.position() == 0 && written < head ) {
+                // Nothing was buffered, as when every entry was empty.
+                publishWritten();
+            }
+
+            if ( !any && running )
+                LockSupport.parkNanos(this, flushNanos);
+        }
+
+        try {
+            channel.close();
+        } catch ( IOException ex ) {
+            System.err.println("Could not close the log: " + ex.getMessage());
+        }
+    }
+
+    private void encode(String text) {
+        if ( text == null || text.isEmpty() )
+            return;
+
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        if ( bytes.length > buffer.remaining() )
+            writeOut();
+
+        if ( bytes.length > buffer.capacity() )
+            write(ByteBuffer.wrap(bytes));
+        else
+            buffer.put(bytes);
+    }
+
+    private void reportDropped() {
+        long count = dropped.get();
+
+        if ( count > droppedReported ) {
+            encode("WARNING: " + (count - droppedReported) + " debugging "
+                    + "messages were dropped because the log could not keep "
+                    + "up.\n");
+            droppedReported = count;
+        }
+    }
+
+    private void writeOut() {
+        buffer.flip();
+        write(buffer);
+        buffer.clear();
+        lastWrite = System.nanoTime();
+        publishWritten();
+    }
+
+    private void write(ByteBuffer bytes) {
+        rollOverIfDue(bytes.remaining());
+
+        if ( failed )
+            return;
+
+        try {
+            while ( bytes.hasRemaining() ) {
+                size += channel.write(bytes);
+            }
+        } catch ( IOException ex ) {
+            // There is nowhere left to log this but the console.
+            failed = true;
+            System.err.println("The log can no longer be written: "
+                    + ex.getMessage());
+        }
+    }
+
+    private void open(boolean append) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, append ? StandardOpenOption.APPEND
+                : StandardOpenOption.TRUNCATE_EXISTING);
+        size = channel.size();
+        nextDayMillis = LocalDate.now().plusDays(1)
+                .atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void rollOverIfDue(long incoming) {
+        long max = maxBytes;
+        boolean full = max > 0 && size > 0 && size + incoming > max;
+        boolean newDay = daily && size > 0
+                && System.currentTimeMillis() >= nextDayMillis;
+
+        if ( !full && !newDay )
+            return;
+
+        try {
+            channel.close();
+            rollOver();
+        } catch ( IOException ex ) {
+            // Carry on in the same file, rather than lose the entries.
+            System.err.println("Could not roll the log over: "
+                    + ex.getMessage());
+        }
+
+        try {
+            day = LocalDate.now();
+            open(true);
+        } catch ( IOException ex ) {
+            failed = true;
+            System.err.println("The log can no longer be written: "
+                    + ex.getMessage());
+        }
+    }
+
+    // Renames the file for the day it was started, and has it compressed.
+    private void rollOver() throws IOException {
+        Path target;
+        int seq = 1;
+
+        do {
+            target = file.resolveSibling(prefix + "." + day + "." + seq++
+                    + suffix);
+        } while ( Files.exists(target)
+                || Files.exists(target.resolveSibling(target.getFileName()
+                        + ".gz")) );
+
+        Files.move(file, target);
+        compressor.execute(this::compressAndPrune);
+    }
+
+    // Compresses every rolled file not yet compressed, including any left by
+    //+ an earlier run, then deletes all but the newest `retain` of them.
+    private void compressAndPrune() {
+        List<Path> rolled = new ArrayList<>();
+
+        try ( DirectoryStream<Path> dir = Files.newDirectoryStream(
+                file.getParent()) ) {
+            for ( Path path : dir ) {
+                if ( rolledName.matcher(path.getFileName().toString())
+                        .matches() )
+                    rolled.add(path);
+            }
+        } catch ( IOException ex ) {
+            System.err.println("Could not list the rolled logs: "
+                    + ex.getMessage());
+            return;
+        }
+
+        for ( int idx = 0; idx < rolled.size(); idx++ ) {
+            Path path = rolled.get(idx);
+
+            if ( !path.getFileName().toString().endsWith(".gz") )
+                rolled.set(idx, compress(path));
+        }
+
+        rolled.sort(Comparator.comparing(this::rolledDay)
+                .thenComparingInt(this::rolledSequence).reversed());
+
+        for ( int idx = retain; idx < rolled.size(); idx++ ) {
+            try {
+                Files.deleteIfExists(rolled.get(idx));
+            } catch ( IOException ex ) {
+                System.err.println("Could not delete the rolled log "
+                        + rolled.get(idx) + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    private Path compress(Path path) {
+        Path gz = path.resolveSibling(path.getFileName() + ".gz");
+        Path tmp = path.resolveSibling(path.getFileName() + ".gz.tmp");
+
+        try ( OutputStream out = new GZIPOutputStream(
+                Files.newOutputStream(tmp), BUFFER_BYTES) ) {
+            Files.copy(path, out);
+        } catch ( IOException ex ) {
+            System.err.println("Could not compress the rolled log " + path
+                    + ": " + ex.getMessage());
+
+            try {
+                Files.deleteIfExists(tmp);
+            } catch ( IOException e ) {
+                // Nothing more can be done; it will be tried again next time.
+            }
+
+            return path;
+        }
+
+        try {
+            Files.move(tmp, gz, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(path);
+            return gz;
+        } catch ( IOException ex ) {
+            System.err.println("Could not replace the rolled log " + path
+                    + ": " + ex.getMessage());
+            return path;
+        }
+    }
+
+    private String rolledDay(Path path) {
+        Matcher m = rolledName.matcher(path.getFileName().toString());
+        return m.matches() ? m.group(1) : "";
+    }
+
+    private int rolledSequence(Path path) {
+        Matcher m = rolledName.matcher(path.getFileName().toString());
+        return m.matches() ? Integer.parseInt(m.group(2)) : 0;
+    }
+
+    private void publishWritten() {
+        written = head;
+
+        synchronized ( flushLock ) {
+            flushLock.notifyAll();
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.utils;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the most recent method entries and exits in memory, so that the
+ * `Logger` can write out what led up to an error when one is logged, without
+ * writing every entry and exit to the log file as it happens.
+ * <p>
+ * Only the parts of each entry or exit are kept, not its text: the text is
+ * put together when the entries are dumped, which is seldom. Once the
+ * recorder is full, each new entry takes the place of the oldest.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public final class FlightRecorder {
+
+    private static final class Entry {
+
+        private final long millis;
+        private final boolean entering;
+        private final String thread;
+        private final String sourceClass;
+        private final String sourceMethod;
+        private final Object detail;
+
+        private Entry(boolean entering, String sourceClass,
+                String sourceMethod, Object detail) {
+            this.millis = System.currentTimeMillis();
+            this.entering = entering;
+            this.thread = Thread.currentThread().getName();
+            this.sourceClass = sourceClass;
+            this.sourceMethod = sourceMethod;
+            this.detail = detail;
+        }
+
+        @Override
+        public String toString() {
+            String cls = sourceClass == null ? "?"
+                    : sourceClass.substring(sourceClass.lastIndexOf('.') + 1);
+            String value = detail instanceof Object[]
+                    ? Arrays.deepToString((Object[]) detail)
+                    : String.valueOf(detail);
+
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis),
+                    ZoneId.systemDefault()).toLocalTime() + " [" + thread
+                    + "] " + (entering ? "-> " + cls + "." + sourceMethod
+                    + "( " + value + " )" : "<- " + cls + "." + sourceMethod
+                    + " :: " + value);
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * Creates a recorder that keeps the given number of the most recent
+     * entries and exits.
+     *
+     * @param capacity the number of entries and exits to keep
+     * @throws IllegalArgumentException in the event `capacity` is not
+     *                                  positive
+     */
+    public FlightRecorder(int capacity) {
+        if ( capacity <= 0 )
+            throw new IllegalArgumentException("The capacity must be "
+                    + "positive: " + capacity);
+
+        entries = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * @return the number of entries and exits the recorder keeps
+     */
+    public int getCapacity() {
+        return entries.length();
+    }
+
+    /**
+     * Records that control entered a method.
+     *
+     * @param sourceClass  the class the method belongs to
+     * @param sourceMethod the method entered
+     * @param params       the parameters passed to the method
+     */
+    public void enter(String sourceClass, String sourceMethod,
+            Object[] params) {
+        add(new Entry(true, sourceClass, sourceMethod, params));
+    }
+
+    /**
+     * Records that control passed back out of a method.
+     *
+     * @param sourceClass  the class the method belongs to
+     * @param sourceMethod the method exited
+     * @param returnValue  the value the method returned
+     */
+    public void exit(String sourceClass, String sourceMethod,
+            Object returnValue) {
+        add(new Entry(false, sourceClass, sourceMethod, returnValue));
+    }
+
+    /**
+     * Puts the recorded entries and exits into words, oldest first, and
+     * forgets them, so that the next dump only holds what came after.
+     *
+     * @return the entries and exits, one to a line, or an empty string if
+     *         nothing has been recorded since the last dump
+     */
+    public String dump() {
+        int capacity = entries.length();
+        long end = next.get();
+        StringBuilder sb = new StringBuilder();
+
+        for ( long pos = Math.max(0, end - capacity); pos < end; pos++ ) {
+            Entry entry = entries.getAndSet((int) (pos % capacity), null);
+
+            if ( entry != null )
+                sb.append(entry).append('\n');
+        }
+
+        return sb.toString();
+    }
+
+    private void add(Entry entry) {
+        entries.set((int) (next.getAndIncrement() % entries.length()), entry);
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.utils;
+
+import java.util.logging.Level;
+
+/**
+ * What a class logs with, in place of a `LogRecord` it shares between all of
+ * the threads that use it. The setters are those of a `LogRecord`, but each
+ * thread that calls them fills in a `LogEvent.Builder` of its own, so a
+ * message set on one thread is never logged by another. The `Logger` takes
+ * the context and, only if the message is to be written, builds a `LogEvent`
+ * from the calling thread's builder.
+ * <p>
+ * Each thread's builder is made the first time the thread logs through the
+ * context and reused from then on. It starts out with the level and message
+ * the context was created with, and the source class most recently set on
+ * any thread, as the source class is usually set once, when the owner of the
+ * context is created.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public final class LogContext {
+
+    private final Level level;
+    private final String message;
+    private volatile String sourceClassName;
+    private final ThreadLocal<LogEvent.Builder> builders;
+
+    /**
+     * Creates a context in the same way as a `LogRecord`.
+     *
+     * @param level   the level of the events
+     * @param message the message, until another is set
+     */
+    public LogContext(Level level, String message) {
+        this.level = level;
+        this.message = message;
+        builders = ThreadLocal.withInitial(() -> new LogEvent.Builder(
+                this.level, this.message, this.sourceClassName));
+    }
+
+    /**
+     * @return the calling thread's builder
+     */
+    public LogEvent.Builder getBuilder() {
+        return builders.get();
+    }
+
+    /**
+     * Builds an event from what the calling thread has set.
+     *
+     * @return the event
+     */
+    public LogEvent build() {
+        return builders.get().build();
+    }
+
+    /**
+     * @return the source class set on the calling thread
+     */
+    public String getSourceClassName() {
+        return builders.get().getSourceClassName();
+    }
+
+    /**
+     * Sets the source class for the calling thread, and for any thread that
+     * logs through this context for the first time hereafter.
+     *
+     * @param sourceClassName the class the events are logged from
+     */
+    public void setSourceClassName(String sourceClassName) {
+        this.sourceClassName = sourceClassName;
+        builders.get().setSourceClassName(sourceClassName);
+    }
+
+    /**
+     * @param sourceMethodName the method the calling thread logs from
+     */
+    public void setSourceMethodName(String sourceMethodName) {
+        builders.get().setSourceMethodName(sourceMethodName);
+    }
+
+    /**
+     * @param message the message the calling thread logs next
+     */
+    public void setMessage(String message) {
+        builders.get().setMessage(message);
+    }
+
+    /**
+     * @param parameters the parameters of the method the calling thread logs
+     *                   from
+     */
+    public void setParameters(Object[] parameters) {
+        builders.get().setParameters(parameters);
+    }
+
+    /**
+     * @param thrown the exception the calling thread logs about
+     */
+    public void setThrown(Throwable thrown) {
+        builders.get().setThrown(thrown);
+    }
+
+}
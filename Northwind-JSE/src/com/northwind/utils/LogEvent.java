@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.utils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.Instant;
+import java.util.logging.Level;
+
+/**
+ * One message for the `Logger`, fixed at the moment it was logged. Unlike a
+ * `LogRecord`, an event cannot be changed once it is built, so it can be
+ * handed from thread to thread without any thread seeing another's message.
+ * <p>
+ * Events are built by a `LogEvent.Builder`, which is normally reached through
+ * a `LogContext`: each thread has a builder of its own, which it fills in and
+ * reuses from one message to the next, so that building an event makes just
+ * the event itself.</p>
+ * <p>
+ * The parameters are not copied, so the array given to the builder should
+ * not be changed after the event is built.</p>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public final class LogEvent {
+
+    /**
+     * Fills in the parts of a `LogEvent`, and builds it. The setters are named
+     * as they are on `LogRecord`, and, as on a `LogRecord`, each part keeps
+     * its value from one event to the next until it is set again.
+     * <p>
+     * A builder is not safe for use by more than one thread. Each thread
+     * should have its own, which `LogContext` sees to.</p>
+     */
+    public static final class Builder {
+
+        private Level level;
+        private String sourceClassName;
+        private String sourceMethodName;
+        private String message;
+        private Object[] parameters;
+        private Throwable thrown;
+
+        /**
+         * Creates a builder with the given starting values.
+         *
+         * @param level           the level of the events
+         * @param message         the message, until another is set
+         * @param sourceClassName the source class, until another is set
+         */
+        public Builder(Level level, String message, String sourceClassName) {
+            this.level = level;
+            this.message = message;
+            this.sourceClassName = sourceClassName;
+        }
+
+        /**
+         * @param level the level of the events
+         */
+        public void setLevel(Level level) {
+            this.level = level;
+        }
+
+        /**
+         * @param sourceClassName the class the events are logged from
+         */
+        public void setSourceClassName(String sourceClassName) {
+            this.sourceClassName = sourceClassName;
+        }
+
+        /**
+         * @param sourceMethodName the method the events are logged from
+         */
+        public void setSourceMethodName(String sourceMethodName) {
+            this.sourceMethodName = sourceMethodName;
+        }
+
+        /**
+         * @param message the message of the events
+         */
+        public void setMessage(String message) {
+            this.message = message;
+        }
+
+        /**
+         * @param parameters the parameters of the method the events are
+         *                   logged from
+         */
+        public void setParameters(Object[] parameters) {
+            this.parameters = parameters;
+        }
+
+        /**
+         * @param thrown the exception the events are about
+         */
+        public void setThrown(Throwable thrown) {
+            this.thrown = thrown;
+        }
+
+        /**
+         * @return the class the events are logged from
+         */
+        public String getSourceClassName() {
+            return sourceClassName;
+        }
+
+        /**
+         * Builds an event from the values set so far, stamped with the
+         * current time and thread.
+         *
+         * @return the event
+         */
+        public LogEvent build() {
+            return new LogEvent(this);
+        }
+    }
+
+    private final long millis;
+    private final String threadName;
+    private final Level level;
+    private final String sourceClassName;
+    private final String sourceMethodName;
+    private final String message;
+    private final Object[] parameters;
+    private final Throwable thrown;
+
+    private LogEvent(Builder builder) {
+        millis = System.currentTimeMillis();
+        threadName = Thread.currentThread().getName();
+        level = builder.level;
+        sourceClassName = builder.sourceClassName;
+        sourceMethodName = builder.sourceMethodName;
+        message = builder.message;
+        parameters = builder.parameters;
+        thrown = builder.thrown;
+    }
+
+    /**
+     * @return when the event was built, in milliseconds since the epoch
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * @return when the event was built, in the local time zone
+     */
+    public LocalDateTime getTime() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis),
+                ZoneId.systemDefault());
+    }
+
+    /**
+     * @return the name of the thread the event was built on
+     */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * @return the level of the event
+     */
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @return the class the event was logged from
+     */
+    public String getSourceClassName() {
+        return sourceClassName;
+    }
+
+    /**
+     * @return the method the event was logged from
+     */
+    public String getSourceMethodName() {
+        return sourceMethodName;
+    }
+
+    /**
+     * @return the message of the event
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the parameters of the method the event was logged from, or
+     *         `null`
+     */
+    public Object[] getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return the exception the event is about, or `null`
+     */
+    public Throwable getThrown() {
+        return thrown;
+    }
+
+}
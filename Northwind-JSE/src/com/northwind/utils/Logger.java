@@ -42,9 +42,18 @@ import com.northwind.settings.AppPreferences;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 import java.util.logging.LogRecord;
 
 /**
@@ -57,7 +66,12 @@ import java.util.logging.LogRecord;
 public class Logger {
     //<editor-fold defaultstate="collapsed" desc="Public Static Constants">
     /**
-     * Debugging: lowest level of logging.
+     * Tracing: lowest level of logging, for the messages written as control
+     * enters and leaves methods.
+     */
+    public static final int TRACE = -1;
+    /**
+     * Debugging: for logging messages that help in tracking down bugs.
      */
     public static final int DEBUG = 0;
     /**
@@ -132,11 +146,34 @@ public class Logger {
     }
     
     //<editor-fold defaultstate="collapsed" desc="Private Member Fields">
-    private FileWriter log; // The file to which messages will be written.
+    private AsyncAppender appender; // Writes the messages to the file.
     private FileWriter err; // The file to which errors will be written.
     private boolean append; // Whether or not to append to existing file.
-    private int level;      // Level at which to log messages.
+    // Level at which to log messages. Volatile, so that the level checks
+    //+ need no lock and see a change of level straight away.
+    private volatile int level;
     private LogRecord record;   // Record for logging messages.
+    
+    // The classes and packages traced whatever the level, and what has been
+    //+ decided for each class so far.
+    private volatile String[] traceClasses = new String[0];
+    private final Map<String, Boolean> traced = new ConcurrentHashMap<>();
+    
+    // Of the method entries and exits that may be traced, which are written.
+    private volatile double traceSampling = 1.0;
+    private volatile int traceRate;
+    private final AtomicLong traceSecond = new AtomicLong();
+    private final AtomicInteger tracesThisSecond = new AtomicInteger();
+    
+    // Whether the last entry to each method on this thread was written, by
+    //+ class and then method, so that its exit is written, or not, along
+    //+ with it. Being kept by method rather than by depth, an entry whose
+    //+ exit is never logged, as when the method throws, is simply replaced
+    //+ by the next entry to the same method, and no other exit is affected.
+    private final ThreadLocal<Map<String, Map<String, Boolean>>> traceEntries
+            = ThreadLocal.withInitial(HashMap::new);
+    
+    private volatile FlightRecorder recorder;
     //</editor-fold>
 
     //<editor-fold defaultstate="collapsed" desc="Constructor(s)">
@@ -218,9 +255,9 @@ public class Logger {
      */
     public Logger(String path, int level, boolean append) {
         // The first thing we are going to do is to set our log field to null.
-        this.log = null;    //+ In this way, it is "initialized" even though it
-        //+ initialized to nothing (null), it will prevent some design-time 
-        //+ errors from showing up.
+        this.appender = null;   //+ In this way, it is "initialized" even though
+        //+ it is initialized to nothing (null), it will prevent some 
+        //+ design-time errors from showing up.
         
         // Set our logging level to the level provided.
         this.level = level;
@@ -232,7 +269,10 @@ public class Logger {
         //+ enclose it in a try...catch() block. We will also need to do this
         //+ anytime we use the log field.
         try {            
-            this.log = new FileWriter(path);
+            // Each run starts a fresh file, as the `FileWriter` this replaces
+            //+ did, but the last run's file is rolled over and kept.
+            this.appender = new AsyncAppender(Paths.get(path), false, 
+                    AsyncAppender.DEFAULT_CAPACITY);
         } catch (IOException ex) {
             // We are going to simply show a message box to the user explaining
             //+ that logging setup failed and then we will turn off logging.
@@ -256,24 +296,28 @@ public class Logger {
      * configuration level message without having to go through the rigamarole
      * of passing the level every time a configuration needs to be written.
      * 
-     * @param record The `LogRecord` to use for this log entry.
+     * @param event The `LogEvent` to use for this log entry.
      */
-    public void config(LogRecord record) {
+    public void config(LogEvent event) {
         // We need to try to log the message, however, we will only do so if 
         //+ logging is not turned off and level is set to config or higher.
-        if ( this.level != OFF && this.level >= CONFIG || this.level == DEBUG) {
+        if ( this.level != OFF && this.level >= CONFIG || this.level <= DEBUG) {
             // We're good to log the message to the log file.
-            try {
-                log.write(StringUtils.wrapAt("CONFIG: " + record.getMessage(),
-                        80) + "\n");
-                
-                // Now, flush the buffer to be sure the data was written.
-                log.flush();
-            } catch ( IOException ex ) {
-                // Let the user know that the message was not written.
-                String ttl = "I/O Error: Entry Not Written";
-                MessageBox.showError(ex, ttl);
-            }
+            write(CONFIG, StringUtils.wrapAt("CONFIG: " + event.getMessage(), 
+                    80) + "\n");
+        }
+    }
+    
+    /**
+     * Writes the message set on the calling thread through the given 
+     * `LogContext`, as `config(LogEvent)` does. The event is only built if the
+     * message is to be written.
+     * 
+     * @param context The `LogContext` the message was set through.
+     */
+    public void config(LogContext context) {
+        if ( this.level != OFF && this.level >= CONFIG || this.level <= DEBUG ) {
+            config(context.build());
         }
     }
     
@@ -284,16 +328,9 @@ public class Logger {
     public void close() {
         // We need to try to close the log, however, we will only do so if 
         //+ logging is not turned off.
-        if ( this.level != OFF && this.level >= CONFIG ) {
-            // We're good to log the message to the log file.
-            try {
-                log.flush(); // First, flush it to be sure all data is written.
-                log.close(); // Then close the file.
-            } catch ( IOException ex ) {
-                // Let the user know that the message was not written.
-                String ttl = "I/O Error: Entry Not Written";
-                MessageBox.showError(ex, ttl);
-            }
+        if ( appender != null ) {
+            // Write whatever is still waiting, then close the file.
+            appender.close();
         }
     }
     
@@ -470,10 +507,12 @@ public class Logger {
                 src.append(timeStamp);
                 src.append(".err\n\n");
                 
-                log.write(src.toString());
+                write(CRITICAL, src.toString());
+                dumpFlightRecorder();
                 
-                // Flush the log.
-                log.flush();
+                // The application is about to exit, so wait for the entry to
+                //+ reach the file.
+                flush();
             } catch ( IOException e ) {
                 // Let the user know that the message was not written.
                 String ttl = "I/O Error: Entry Not Written";
@@ -486,25 +525,97 @@ public class Logger {
      * If the `Logger` is currently enabled for debugging messages, then the
      * given message is written out to the log file.
      * 
-     * @param record The `LogRecord` to use for this log entry.
+     * @param event The `LogEvent` to use for this log entry.
      */
-    public void debug(LogRecord record) {
+    public void debug(LogEvent event) {
         // We need to try to log the message, however, we will only do so if 
-        //+ logging is not turned off and the level is set to debugging or
-        //+ higher.
-        if ( this.level != OFF && this.level >= DEBUG ) {
+        //+ the level is set to debugging.
+        if ( isDebugEnabled() ) {
             // We're good to log the message to the log file.
-            try {
-                log.write(StringUtils.wrapAt("DEBUG: " + record.getMessage(), 
-                        80) + "\n");
-
-                // Now, flush the buffer to be sure the data was written.
-                log.flush();
-            } catch ( IOException ex ) {
-                // Let the user know that the message was not written.
-                String ttl = "I/O Error: Entry Not Written";
-                MessageBox.showError(ex, ttl);
-            }
+            write(DEBUG, StringUtils.wrapAt("DEBUG: " + event.getMessage(), 
+                    80) + "\n");
+        }
+    }
+    
+    /**
+     * Writes the message set on the calling thread through the given 
+     * `LogContext`, as `debug(LogEvent)` does. The event is only built if the
+     * message is to be written.
+     * 
+     * @param context The `LogContext` the message was set through.
+     */
+    public void debug(LogContext context) {
+        if ( isDebugEnabled() ) {
+            debug(context.build());
+        }
+    }
+    
+    /**
+     * If the `Logger` is currently enabled for debugging messages, then the
+     * message given by the `Supplier` is written out to the log file. The
+     * message is not built at all when debugging is not enabled, so this is
+     * the method to use when building the message is costly.
+     * 
+     * @param message The `Supplier` of the message for this log entry.
+     */
+    public void debug(Supplier<String> message) {
+        if ( isDebugEnabled() ) {
+            write(DEBUG, StringUtils.wrapAt("DEBUG: " + message.get(), 80) 
+                    + "\n");
+        }
+    }
+    
+    /**
+     * If the `Logger` is currently enabled for debugging messages, then the
+     * given message is written out to the log file, with the first `{}` in it
+     * replaced by the given argument. The message is only put together when
+     * debugging is enabled.
+     * 
+     * @param pattern The message for this log entry, with a `{}` where the
+     *                argument goes.
+     * @param arg     The argument.
+     */
+    public void debug(String pattern, Object arg) {
+        if ( isDebugEnabled() ) {
+            write(DEBUG, StringUtils.wrapAt("DEBUG: " 
+                    + format(pattern, new Object[]{ arg }), 80) + "\n");
+        }
+    }
+    
+    /**
+     * If the `Logger` is currently enabled for debugging messages, then the
+     * given message is written out to the log file, with the first two `{}`s
+     * in it replaced by the given arguments, in order. The message is only put
+     * together when debugging is enabled.
+     * 
+     * @param pattern The message for this log entry, with a `{}` where each
+     *                argument goes.
+     * @param arg1    The first argument.
+     * @param arg2    The second argument.
+     */
+    public void debug(String pattern, Object arg1, Object arg2) {
+        if ( isDebugEnabled() ) {
+            write(DEBUG, StringUtils.wrapAt("DEBUG: " 
+                    + format(pattern, new Object[]{ arg1, arg2 }), 80) + "\n");
+        }
+    }
+    
+    /**
+     * If the `Logger` is currently enabled for debugging messages, then the
+     * given message is written out to the log file, with each `{}` in it
+     * replaced by the next of the given arguments. The message is only put
+     * together when debugging is enabled, though the array of arguments is
+     * made by the caller, so prefer the one and two argument versions, or
+     * `isDebugEnabled`, on busy paths.
+     * 
+     * @param pattern The message for this log entry, with a `{}` where each
+     *                argument goes.
+     * @param args    The arguments.
+     */
+    public void debug(String pattern, Object... args) {
+        if ( isDebugEnabled() ) {
+            write(DEBUG, StringUtils.wrapAt("DEBUG: " + format(pattern, args), 
+                    80) + "\n");
         }
     }
     
@@ -538,34 +649,51 @@ public class Logger {
 //    }
     
     /**
-     * As long as the `Logger` is not `OFF`, then an entry message to a method
-     * with one parameter will be written to the file, regardless of logging
-     * level.
+     * As long as tracing is enabled for the class in the `event`, then an 
+     * entry message to a method with one parameter will be written to the 
+     * file, subject to the trace sampling. If the flight recorder is on, the
+     * entry is kept there as well, whether it is written or not. Callers that
+     * go to any trouble to fill in their `LogContext` for this should check 
+     * `isTraceEnabled` first.
      * 
-     * @param record The `LogRecord` to use for this log entry.
+     * @param event The `LogEvent` to use for this log entry.
      */
-    public void enter(LogRecord record) {
-        // We need to build our source before we write to the file.
-        String src = record.getSourceClassName() + "." 
-                + record.getSourceMethodName() + "( " 
-                + record.getParameters() + " )";
+    public void enter(LogEvent event) {
+        FlightRecorder fr = this.recorder;
+        
+        if ( fr != null ) {
+            fr.enter(event.getSourceClassName(), 
+                    event.getSourceMethodName(), event.getParameters());
+        }
         
         // We need to try to log the message, however, we will only do so if 
-        //+ logging is not turned off.
-        if ( this.level != OFF ) {
+        //+ the class is traced and this entry is sampled.
+        if ( isTraced(event.getSourceClassName()) 
+                && pushTrace(event.getSourceClassName(), 
+                        event.getSourceMethodName()) ) {
+            // We need to build our source before we write to the file.
+            String src = event.getSourceClassName() + "." 
+                    + event.getSourceMethodName() + "( " 
+                    + (event.getParameters() == null ? "" 
+                    : Arrays.deepToString(event.getParameters())) + " )";
+            
             // We're good to log the message to the log file.
-            try {
-                log.write(MSG_HDR);
-                log.write(" -> " + LocalDateTime.now().toString() + "\n");
-                log.write(StringUtils.wrapAt("Entering: " + src, 80) + "\n");
-                
-                // Now, flush the buffer to be sure the data was written.
-                log.flush();
-            } catch ( IOException ex ) {
-                // Let the user know that the message was not written.
-                String ttl = "I/O Error: Entry Not Written";
-                MessageBox.showError(ex, ttl);
-            }
+            write(TRACE, MSG_HDR + " -> " + event.getTime() + " [" 
+                    + event.getThreadName() + "]\n" 
+                    + StringUtils.wrapAt("Entering: " + src, 80) + "\n");
+        }
+    }
+    
+    /**
+     * Writes the message set on the calling thread through the given 
+     * `LogContext`, as `enter(LogEvent)` does. The event is only built if the
+     * message is to be written.
+     * 
+     * @param context The `LogContext` the message was set through.
+     */
+    public void enter(LogContext context) {
+        if ( isTraceEnabled(context) ) {
+            enter(context.build());
         }
     }
     
@@ -627,20 +755,20 @@ public class Logger {
      * and engineers to be able to track down the error to a specific cause,
      * thereby allowing them to correct the application easier and quicker.</p>
      * 
-     * @param record The `LogRecord` to use for this log entry.
+     * @param event The `LogEvent` to use for this log entry.
      */
-    public void error(LogRecord record) {
+    public void error(LogEvent event) {
         // We need to create our message with the Exception and extra data that
         //+ has been provided.
         String src = "#".repeat(80) + "\n";
         src += "#".repeat(40 - (" E R R O R ".length() / 2)) + " E R R O R ";
         src += "#".repeat(39 - (" E R R O R ".length() / 2)) + "\n";
-        src += "Message: " + record.getThrown().getMessage() + "\n";
-        if ( record.getThrown().getCause() != null )
-            src += "Source: " + record.getThrown().getCause().toString() + "\n";
-        src += record.getMessage() + "\n\nStacktrace:\n";
+        src += "Message: " + event.getThrown().getMessage() + "\n";
+        if ( event.getThrown().getCause() != null )
+            src += "Source: " + event.getThrown().getCause().toString() + "\n";
+        src += event.getMessage() + "\n\nStacktrace:\n";
         
-        StackTraceElement[] stack = record.getThrown().getStackTrace();
+        StackTraceElement[] stack = event.getThrown().getStackTrace();
         
         for ( StackTraceElement element : stack ) {
             src += element.toString() + "\n";
@@ -651,7 +779,7 @@ public class Logger {
         src += "#".repeat(39 - (" E N D   O F   E R R O R ".length() / 2)) + "\n\n";
         src += " ".repeat(40 - ("USER INFORMATION".length() / 2));
         src += "USER INFORMATION"+  "\n\n";
-        src += record.getMessage() + "\n";
+        src += event.getMessage() + "\n";
         src += " ".repeat(40 - ("SYSTEM INFORMATION".length() / 2)) + "\n\n";
         src += "SYSTEM INFORMATION" + "\n\n";
         src += "OS\t\t" + System.getProperty("os.name") + "\n";
@@ -669,24 +797,27 @@ public class Logger {
         src += "JDK Module Path:\t" + System.getProperty("jdk.module.path") + "\n";
         src += "\n";
         src += "Java Library Path:\t" + System.getProperty("java.library.path") + "\n";
-        src += "\n -> " + LocalDateTime.now().toString();
+        src += "\n -> " + event.getTime() + " [" + event.getThreadName() + "]";
         
         // We need to try to log the message, however, we will only do so if 
         //+ logging is not turned off.
         if ( this.level != OFF ) {
             // We're good to log the message to the log file.
-            try {
-                log.write(MSG_HDR);
-                log.write(src);
-                log.write(MSG_FTR);
-                
-                // Now, flush the buffer to be sure the data was written.
-                log.flush();
-            } catch ( IOException e ) {
-                // Let the user know that the message was not written.
-                String ttl = "I/O Error: Entry Not Written";
-                MessageBox.showError(e, ttl);
-            }
+            write(ERROR, MSG_HDR + src + MSG_FTR);
+            dumpFlightRecorder();
+        }
+    }
+    
+    /**
+     * Writes the message set on the calling thread through the given 
+     * `LogContext`, as `error(LogEvent)` does. The event is only built if the
+     * message is to be written.
+     * 
+     * @param context The `LogContext` the message was set through.
+     */
+    public void error(LogContext context) {
+        if ( this.level != OFF ) {
+            error(context.build());
         }
     }
     
@@ -720,35 +851,55 @@ public class Logger {
 //    }
     
     /**
-     * As long as `Logging` is not `OFF`, then a message will be written to the
-     * log file whenever control passes back out of the method that has a return
-     * value, but no parameters.
+     * As long as tracing is enabled for the class in the `event`, then a 
+     * message will be written to the log file whenever control passes back 
+     * out of the method that has a return value, but no parameters. The exit
+     * is written if the last entry to the same method on the same thread was,
+     * so that sampling never splits an entry from its exit, even when other
+     * methods throw before logging theirs. If the flight recorder is on, the
+     * exit is kept there as well. Callers that go to any trouble to build the
+     * `LogContext` or `returnValue` for this should check `isTraceEnabled`
+     * first.
      * 
-     * @param record The `LogRecord` to use for this log entry.
+     * @param event The `LogEvent` to use for this log entry.
      * @param returnValue   The name of the return variable.
      */
-    public void exit(LogRecord record, Object returnValue) {
-        // We need to build up our string to print.
-        String src = record.getSourceClassName() + "." 
-                + record.getSourceMethodName() 
-                + " :: " + returnValue;
+    public void exit(LogEvent event, Object returnValue) {
+        FlightRecorder fr = this.recorder;
+        
+        if ( fr != null ) {
+            fr.exit(event.getSourceClassName(), 
+                    event.getSourceMethodName(), returnValue);
+        }
         
         // We need to try to log the message, however, we will only do so if 
-        //+ logging is not turned off.
-        if ( this.level != OFF ) {
+        //+ the matching entry was written.
+        if ( isTraced(event.getSourceClassName()) 
+                && popTrace(event.getSourceClassName(), 
+                        event.getSourceMethodName()) ) {
+            // We need to build up our string to print.
+            String src = event.getSourceClassName() + "." 
+                    + event.getSourceMethodName() 
+                    + " :: " + returnValue;
+            
             // We're good to log the message to the log file.
-            try {
-                log.write(StringUtils.wrapAt("Exiting: " + src, 80));
-                log.write("\n -> " + LocalDateTime.now().toString());
-                log.write(MSG_FTR);
-                
-                // Now, flush the buffer to be sure the data was written.
-                log.flush();
-            } catch ( IOException ex ) {
-                // Let the user know that the message was not written.
-                String ttl = "I/O Error: Entry Not Written";
-                MessageBox.showError(ex, ttl);
-            }
+            write(TRACE, StringUtils.wrapAt("Exiting: " + src, 80) + "\n -> " 
+                    + event.getTime() + " [" + event.getThreadName() + "]" 
+                    + MSG_FTR);
+        }
+    }
+    
+    /**
+     * Writes the message set on the calling thread through the given 
+     * `LogContext`, as `exit(LogEvent)` does. The event is only built if the
+     * message is to be written.
+     * 
+     * @param context The `LogContext` the message was set through.
+     * @param returnValue   The name of the return variable.
+     */
+    public void exit(LogContext context, Object returnValue) {
+        if ( isTraceEnabled(context) ) {
+            exit(context.build(), returnValue);
         }
     }
     
@@ -824,6 +975,27 @@ public class Logger {
 //        }
 //    }
     
+    /**
+     * Waits until every message logged so far has been written to the log
+     * file. Messages are otherwise written on a background thread, a short
+     * while after they are logged.
+     */
+    public void flush() {
+        if ( appender != null )
+            appender.flush();
+    }
+    
+    /**
+     * Provides the calling application with the appender that writes the
+     * messages to the log file, for tuning how it behaves when messages are
+     * logged faster than they can be written.
+     * 
+     * @return The appender, or `null` if the log file could not be opened.
+     */
+    public AsyncAppender getAppender() {
+        return this.appender;
+    }
+    
     /**
      * Provides a method for the calling application to determine the `Logger`'s
      * currently set logging level. Though not needed by a calling application,
@@ -856,23 +1028,23 @@ public class Logger {
      * The `extraData` parameter should contain information pertinent to the
      * user within the context of your application..</p>
      * 
-     * @param record The `LogRecord` to use for this log entry.
+     * @param event The `LogEvent` to use for this log entry.
      */
-    public void handledError(LogRecord record) {
+    public void handledError(LogEvent event) {
         // We need to create our message with the Exception and extra data that
         //+ has been provided.
         String src = "#".repeat(80) + "\n";
         src += "#".repeat(40 - (" E R R O R ".length() / 2)) + " E R R O R ";
         src += "#".repeat(39 - (" E R R O R ".length() / 2)) + "\n";
-        src += "Message: " + record.getThrown().getMessage() + "\n";
-        if ( record.getThrown().getCause() != null )
-            src += "Source: " + record.getThrown().getCause().toString() + "\n";
+        src += "Message: " + event.getThrown().getMessage() + "\n";
+        if ( event.getThrown().getCause() != null )
+            src += "Source: " + event.getThrown().getCause().toString() + "\n";
         src += " ".repeat(40 - ("Extra Data".length() / 2));
         src += "EXTRA DATA"+  "\n\n";
-        src += record.getMessage() + "\n";
+        src += event.getMessage() + "\n";
         src += "\nStacktrace:\n";
         
-        StackTraceElement[] stack = record.getThrown().getStackTrace();
+        StackTraceElement[] stack = event.getThrown().getStackTrace();
         
         for ( StackTraceElement element : stack ) {
             src += element.toString() + "\n";
@@ -881,24 +1053,27 @@ public class Logger {
         src += "#".repeat(40 - (" E N D   O F   E R R O R ".length() / 2));
         src += " E N D   O F   E R R O R ";
         src += "#".repeat(39 - (" E N D   O F   E R R O R ".length() / 2));
-        src += "\n -> " + LocalDateTime.now().toString();
+        src += "\n -> " + event.getTime() + " [" + event.getThreadName() + "]";
         
         // We need to try to log the message, however, we will only do so if 
         //+ logging is not turned off.
         if ( this.level != OFF ) {
             // We're good to log the message to the log file.
-            try {
-                log.write(MSG_HDR);
-                log.write(src);
-                log.write(MSG_FTR);
-                
-                // Now, flush the buffer to be sure the data was written.
-                log.flush();
-            } catch ( IOException e ) {
-                // Let the user know that the message was not written.
-                String ttl = "I/O Error: Entry Not Written";
-                MessageBox.showError(e, ttl);
-            }
+            write(ERROR, MSG_HDR + src + MSG_FTR);
+            dumpFlightRecorder();
+        }
+    }
+    
+    /**
+     * Writes the message set on the calling thread through the given 
+     * `LogContext`, as `handledError(LogEvent)` does. The event is only built
+     * if the message is to be written.
+     * 
+     * @param context The `LogContext` the message was set through.
+     */
+    public void handledError(LogContext context) {
+        if ( this.level != OFF ) {
+            handledError(context.build());
         }
     }
     
@@ -908,27 +1083,133 @@ public class Logger {
      * established (NOT in the `OFF` state) and the level must be set at `INFO`,
      * `CONFIG` or `DEBUG`.
      * 
-     * @param record The `LogRecord` to use for this log entry.
+     * @param event The `LogEvent` to use for this log entry.
      */
-    public void info(LogRecord record) {
+    public void info(LogEvent event) {
         // We need to try to log the message, however, we will only do so if 
         //+ logging is not turned off and the level is set to info or higher.
-        if ( this.level != OFF && this.level >= INFO || this.level == DEBUG ) {
+        if ( this.level != OFF && this.level >= INFO || this.level <= DEBUG ) {
             // We're good to log the message to the log file.
-            try {
-                log.write(StringUtils.wrapAt("INFO: " + record.getMessage(), 
-                        80) + "\n");
-                
-                // Now, flush the buffer to be sure the data was written.
-                log.flush();
-            } catch ( IOException ex ) {
-                // Let the user know that the message was not written.
-                String ttl = "I/O Error: Entry Not Written";
-                MessageBox.showError(ex, ttl);
-            }
+            write(INFO, StringUtils.wrapAt("INFO: " + event.getMessage(), 80) 
+                    + "\n");
         }
     }
     
+    /**
+     * Writes the message set on the calling thread through the given 
+     * `LogContext`, as `info(LogEvent)` does. The event is only built if the
+     * message is to be written.
+     * 
+     * @param context The `LogContext` the message was set through.
+     */
+    public void info(LogContext context) {
+        if ( this.level != OFF && this.level >= INFO || this.level <= DEBUG ) {
+            info(context.build());
+        }
+    }
+    
+    /**
+     * Provides a method for the calling application to check whether debugging
+     * messages, including method entry and exit messages, will be written to
+     * the log file, before going to the trouble of building them. For example:
+     * <pre>
+     * if ( log.isDebugEnabled() ) {
+     *     record.setMessage("Fetched " + rows.size() + " rows.");
+     *     log.debug(record);
+     * }
+     * </pre>
+     * <p>
+     * The check reads a single field and allocates nothing, so it costs next
+     * to nothing when debugging is not enabled.</p>
+     * 
+     * @return `true` if debugging messages are being written.
+     */
+    public boolean isDebugEnabled() {
+        return this.level <= DEBUG;
+    }
+    
+    /**
+     * Provides a method for the calling application to check whether messages
+     * of the given level will be written to the log file. Messages are written
+     * when they are at or above the level the `Logger` is set to, and logging
+     * is not `OFF`.
+     * 
+     * @param messageLevel The level of the message, i.e., `Logger.DEBUG`.
+     * @return `true` if messages of that level are being written.
+     */
+    public boolean isEnabled(int messageLevel) {
+        int current = this.level;
+        return current != OFF && messageLevel >= current;
+    }
+    
+    /**
+     * Provides a method for the calling application to check whether method
+     * entries and exits in the class of the given `context` will be traced,
+     * before going to the trouble of filling in the `context` for them. They
+     * are traced when the level is `TRACE`, when the class is one of those
+     * given to `setTraceClasses`, or when the flight recorder is on. For 
+     * example:
+     * <pre>
+     * if ( log.isTraceEnabled(record) ) {
+     *     record.setParameters(new Object[]{field, id});
+     *     log.enter(record);
+     * }
+     * </pre>
+     * 
+     * @param context The `LogContext` whose source class is to be checked.
+     * @return `true` if entries and exits in that class will be traced.
+     */
+    public boolean isTraceEnabled(LogContext context) {
+        return this.recorder != null 
+                || isTraced(context.getSourceClassName());
+    }
+    
+    /**
+     * Provides a method for the calling application to trace the method
+     * entries and exits of some classes without setting the level to `TRACE`,
+     * and so tracing them all. Each name given may be a fully qualified class
+     * name, or a package name, to trace every class in the package.
+     * 
+     * @param names The names of the classes and packages to trace, or none to
+     *              trace only when the level is `TRACE`.
+     */
+    public void setTraceClasses(String... names) {
+        this.traceClasses = names == null ? new String[0] : names.clone();
+        traced.clear();
+    }
+    
+    /**
+     * Provides a method for the calling application to write only some of 
+     * the method entries and exits that are traced, to keep tracing cheap 
+     * enough to leave on. Each entry is written with the given probability,
+     * and then only while no more than the given number have been written in
+     * the current second. An exit is written exactly when the last entry to
+     * the same method on the same thread was.
+     * 
+     * @param probability The share of entries to write, from 0.0 to 1.0.
+     * @param perSecond   The most entries to write in any one second, or 0 
+     *                    for no limit.
+     */
+    public void setTraceSampling(double probability, int perSecond) {
+        this.traceSampling = Math.max(0.0, Math.min(1.0, probability));
+        this.traceRate = Math.max(0, perSecond);
+    }
+    
+    /**
+     * Provides a method for the calling application to keep the most recent
+     * method entries and exits in memory, rather than in the log file, and
+     * have them written to the log file only when an error is logged. This
+     * keeps the context of an error at hand without writing a trace of every
+     * call. While the flight recorder is on, every method entry and exit is
+     * kept in it, whatever the level.
+     * 
+     * @param capacity The number of entries and exits to keep, or 0 to turn
+     *                 the flight recorder off.
+     */
+    public void setFlightRecorder(int capacity) {
+        this.recorder = capacity > 0 ? new FlightRecorder(capacity) : null;
+    }
+    
     /**
      * Provides a method of storing a `LogRecord` in the `Logger` for later use,
      * either in the same `Class` or `Method`, or another.
@@ -953,6 +1234,7 @@ public class Logger {
     public void setLevel(int logLevel) throws InvalidLoggingLevelException {
         // Validate the data before we set it to our field.
         switch ( logLevel ) {
+            case TRACE:
             case DEBUG:
             case CONFIG:
             case INFO:
@@ -966,6 +1248,8 @@ public class Logger {
                 this.level = OFF;
                 break;
         }
+        
+        traced.clear();
     }
     
     /**
@@ -979,24 +1263,28 @@ public class Logger {
      * were going to display. This will provide a solid base of knowledge for
      * tracking down the reason for the warning.</p>
      * 
-     * @param record The `LogRecord` to use for this log entry.
+     * @param event The `LogEvent` to use for this log entry.
      */
-    public void warning(LogRecord record) {
+    public void warning(LogEvent event) {
         // We need to try to log the message, however, we will only do so if 
         //+ logging is not turned off and the level is set to warning or higher.
-        if ( this.level != OFF && this.level >= WARN || this.level == DEBUG ) {
+        if ( this.level != OFF && this.level >= WARN || this.level <= DEBUG ) {
             // We're good to log the message to the log file.
-            try {
-                log.write(StringUtils.wrapAt("WARNING: " + record.getMessage(),
-                        80) + "\n");
-                
-                // Now, flush the buffer to be sure the data was written.
-                log.flush();
-            } catch ( IOException ex ) {
-                // Let the user know that the message was not written.
-                String ttl = "I/O Error: Entry Not Written";
-                MessageBox.showError(ex, ttl);
-            }
+            write(WARN, StringUtils.wrapAt("WARNING: " + event.getMessage(), 
+                    80) + "\n");
+        }
+    }
+    
+    /**
+     * Writes the message set on the calling thread through the given 
+     * `LogContext`, as `warning(LogEvent)` does. The event is only built if the
+     * message is to be written.
+     * 
+     * @param context The `LogContext` the message was set through.
+     */
+    public void warning(LogContext context) {
+        if ( this.level != OFF && this.level >= WARN || this.level <= DEBUG ) {
+            warning(context.build());
         }
     }
     
@@ -1106,16 +1394,133 @@ public class Logger {
             msg +=(System.getProperty("user.language"));
             msg += "\n" + ruler + "\n" + dRule + "\n" + ruler + "\n";
             
-            try {
-                log.write(msg);
-                
-                // Now, flush the buffer to be sure the data was written.
-                log.flush();
-            } catch ( IOException ex ) {
-                // Let the user know that the message was not written.
-                String ttl = "I/O Error: Entry Not Written";
-                MessageBox.showError(ex, ttl);
+            write(INFO, msg);
+        }
+    }
+    
+    // Writes out what the flight recorder holds, if it is on, after an error.
+    private void dumpFlightRecorder() {
+        FlightRecorder fr = this.recorder;
+        
+        if ( fr == null )
+            return;
+        
+        String trace = fr.dump();
+        
+        if ( !trace.isEmpty() ) {
+            write(ERROR, MSG_HDR + "Flight recorder: the last method entries "
+                    + "and exits before the error above\n" + trace + MSG_FTR);
+        }
+    }
+    
+    // Whether the entries and exits of the given class are traced at all,
+    //+ before sampling.
+    private boolean isTraced(String sourceClass) {
+        int current = this.level;
+        
+        if ( current == OFF )
+            return false;
+        if ( current == TRACE )
+            return true;
+        
+        String[] names = this.traceClasses;
+        
+        if ( names.length == 0 || sourceClass == null )
+            return false;
+        
+        Boolean ret = traced.get(sourceClass);
+        
+        if ( ret == null ) {
+            ret = Boolean.FALSE;
+            
+            for ( String name : names ) {
+                if ( sourceClass.equals(name) 
+                        || sourceClass.startsWith(name + ".") ) {
+                    ret = Boolean.TRUE;
+                    break;
+                }
             }
+            
+            traced.put(sourceClass, ret);
+        }
+        
+        return ret;
+    }
+    
+    // Whether a method entry that is traced gets written.
+    private boolean sampleTrace() {
+        double probability = this.traceSampling;
+        
+        if ( probability < 1.0 
+                && ThreadLocalRandom.current().nextDouble() >= probability )
+            return false;
+        
+        int rate = this.traceRate;
+        
+        if ( rate == 0 )
+            return true;
+        
+        long second = System.nanoTime() / 1_000_000_000L;
+        long current = traceSecond.get();
+        
+        if ( second != current && traceSecond.compareAndSet(current, second) )
+            tracesThisSecond.set(0);
+        
+        return tracesThisSecond.incrementAndGet() <= rate;
+    }
+    
+    // Samples a traced method entry and remembers whether it was written.
+    private boolean pushTrace(String sourceClass, String sourceMethod) {
+        boolean written = sampleTrace();
+        
+        traceEntries.get().computeIfAbsent(String.valueOf(sourceClass), 
+                c -> new HashMap<>()).put(String.valueOf(sourceMethod), 
+                        written);
+        
+        return written;
+    }
+    
+    // Whether the last traced entry to the method of this exit was written. 
+    //+ With no entry to match, as when tracing was turned on part way through
+    //+ a method, the exit is sampled on its own.
+    private boolean popTrace(String sourceClass, String sourceMethod) {
+        Map<String, Boolean> methods = traceEntries.get().get(
+                String.valueOf(sourceClass));
+        Boolean written = methods == null ? null 
+                : methods.remove(String.valueOf(sourceMethod));
+        
+        return written == null ? sampleTrace() : written;
+    }
+    
+    // Puts the arguments in place of the `{}`s in the pattern, in order. Any
+    //+ `{}` left over once the arguments run out is kept as it is.
+    private static String format(String pattern, Object[] args) {
+        if ( pattern == null || args == null || args.length == 0 )
+            return String.valueOf(pattern);
+        
+        StringBuilder sb = new StringBuilder(pattern.length() 
+                + 16 * args.length);
+        int from = 0;
+        int arg = 0;
+        int at;
+        
+        while ( arg < args.length && (at = pattern.indexOf("{}", from)) >= 0 ) {
+            sb.append(pattern, from, at).append(args[arg++]);
+            from = at + 2;
         }
+        
+        return sb.append(pattern, from, pattern.length()).toString();
+    }
+    
+    /**
+     * Hands a finished message to the appender, which writes it to the log
+     * file on its own thread.
+     * 
+     * @param level The level of the message.
+     * @param text  The message, as it is to appear in the log file.
+     */
+    private void write(int level, String text) {
+        if ( appender != null )
+            appender.append(level, text);
     }
 }
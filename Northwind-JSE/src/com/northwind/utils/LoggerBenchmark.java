@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2020 PekinSOFT Systems
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.northwind.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Measures what the ways of writing a debugging message cost while debugging
+ * is turned off, as it is in the field, so that the guarded forms can be
+ * shown to cost nothing. For each form it measures:
+ * <ul>
+ *  <li>the bytes allocated per call, from the allocation counter of the
+ *      thread kept by the `ThreadMXBean`; and</li>
+ *  <li>the average time per call.</li>
+ * </ul>
+ * <p>
+ * Every form is run a number of times to warm it up before it is measured.
+ * The guarded forms, and the `debug` overloads that take a pattern or a
+ * `Supplier`, should allocate 0 bytes per call. Run it from the command line,
+ * optionally with the number of calls to measure:</p>
+ * <pre>
+ * java -cp Northwind-JSE.jar com.northwind.utils.LoggerBenchmark 10000000
+ * </pre>
+ *
+ * @author Sean Carrick &lt;sean at pekinsoft dot com&gt;
+ */
+public class LoggerBenchmark {
+
+    private static final int WARM_UP = 2_000_000;
+
+    /**
+     * One call to the `Logger`, as a `Manager` would make it.
+     */
+    @FunctionalInterface
+    private interface Call {
+        void run(int idx);
+    }
+
+    /**
+     * The measurements of one way of writing a message.
+     */
+    public static final class Result {
+
+        private final String name;
+        private final double bytesPerCall;
+        private final double nanosPerCall;
+
+        private Result(String name, double bytesPerCall, double nanosPerCall) {
+            this.name = name;
+            this.bytesPerCall = bytesPerCall;
+            this.nanosPerCall = nanosPerCall;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the average number of bytes allocated by a call
+         */
+        public double getBytesPerCall() {
+            return bytesPerCall;
+        }
+
+        public double getNanosPerCall() {
+            return nanosPerCall;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-36s %8.1f bytes per call  %7.2f ns per "
+                    + "call", name, bytesPerCall, nanosPerCall);
+        }
+
+    }
+
+    private LoggerBenchmark() {
+        /* to prevent instantiation */
+    }
+
+    /**
+     * Runs the benchmark at the `CONFIG` level and prints the results.
+     *
+     * @param args the number of calls to measure, 10,000,000 if not given
+     * @throws Exception in the event the benchmark cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+        int calls = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        File dir = Files.createTempDirectory("northwind-bench").toFile();
+
+        try {
+            for ( Result result : run(new File(dir, "bench.log"), calls) ) {
+                System.out.println(result);
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+
+    /**
+     * Measures every way of writing a message, with a `Logger` of its own set
+     * to the `CONFIG` level, so that no debugging message is written.
+     *
+     * @param file  the log file of the scratch `Logger`
+     * @param calls the number of calls to measure for each way
+     * @return the measurements
+     * @throws UnsupportedOperationException if this Java runtime cannot count
+     *                                       the bytes a thread allocates
+     */
+    public static List<Result> run(File file, int calls) {
+        com.sun.management.ThreadMXBean threads = threadBean();
+        Logger log = new Logger(file.getAbsolutePath(), Logger.CONFIG);
+        LogContext record = new LogContext(Level.FINEST, "");
+        String field = "companyName";
+        String table = "customers";
+        List<Result> ret = new ArrayList<>();
+
+        record.setSourceClassName(LoggerBenchmark.class.getName());
+        record.setSourceMethodName("run");
+
+        try {
+            ret.add(measure(threads, "unguarded concatenation", calls, idx -> {
+                record.setMessage("Attempting to update the field (" + field
+                        + ") identified by " + idx + "...");
+                log.debug(record);
+            }));
+            ret.add(measure(threads, "unguarded enter with parameters", calls,
+                    idx -> {
+                        record.setParameters(new Object[]{field, idx});
+                        log.enter(record);
+                    }));
+            ret.add(measure(threads, "guarded concatenation", calls, idx -> {
+                if ( log.isDebugEnabled() ) {
+                    record.setMessage("Attempting to update the field ("
+                            + field + ") identified by " + idx + "...");
+                    log.debug(record);
+                }
+            }));
+            ret.add(measure(threads, "guarded enter with parameters", calls,
+                    idx -> {
+                        if ( log.isTraceEnabled(record) ) {
+                            record.setParameters(new Object[]{field, idx});
+                            log.enter(record);
+                        }
+                    }));
+            ret.add(measure(threads, "debug(pattern, arg)", calls,
+                    idx -> log.debug("Updating the field {}", field)));
+            ret.add(measure(threads, "debug(pattern, arg, arg)", calls,
+                    idx -> log.debug("Updating the field {} of {}", field,
+                            table)));
+            ret.add(measure(threads, "debug(Supplier)", calls,
+                    idx -> log.debug(() -> "Updating the field " + field)));
+        } finally {
+            log.close();
+        }
+
+        return ret;
+    }
+
+    private static Result measure(com.sun.management.ThreadMXBean threads,
+            String name, int calls, Call call) {
+        long id = Thread.currentThread().getId();
+
+        for ( int idx = 0; idx < WARM_UP; idx++ ) {
+            call.run(idx);
+        }
+
+        long bytes = threads.getThreadAllocatedBytes(id);
+        long start = System.nanoTime();
+
+        for ( int idx = 0; idx < calls; idx++ ) {
+            call.run(idx);
+        }
+
+        long nanos = System.nanoTime() - start;
+        bytes = threads.getThreadAllocatedBytes(id) - bytes;
+
+        return new Result(name, (double) bytes / calls, (double) nanos / calls);
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean
+                = ManagementFactory.getThreadMXBean();
+
+        if ( !(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean)
+                        .isThreadAllocatedMemorySupported() )
+            throw new UnsupportedOperationException("This Java runtime "
+                    + "cannot count the bytes allocated by a thread.");
+
+        com.sun.management.ThreadMXBean ret
+                = (com.sun.management.ThreadMXBean) bean;
+        ret.setThreadAllocatedMemoryEnabled(true);
+
+        return ret;
+    }
+
+    private static void delete(File file) throws IOException {
+        File[] children = file.listFiles();
+
+        if ( children != null ) {
+            for ( File child : children ) {
+                delete(child);
+            }
+        }
+
+        Files.deleteIfExists(file.toPath());
+    }
+
+}
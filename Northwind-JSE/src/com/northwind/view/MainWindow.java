@@ -17,7 +17,10 @@
 package com.northwind.view;
 
 import com.northwind.actions.controller.ActionSupport;
+import com.northwind.api.DataAccess;
+import com.northwind.api.DataFuture;
 import com.northwind.api.db.DbConnection;
+import com.northwind.api.db.OnlineBackup;
 import com.northwind.custmgr.model.Customer;
 import com.northwind.custmgr.view.CustomerEntryDlg;
 import com.northwind.custmgr.view.CustomerSelectionDialog;
@@ -28,6 +31,7 @@ import com.northwind.loadmgr.view.ArrivalDialog;
 import com.northwind.loadmgr.view.CashAdvanceDialog;
 import com.northwind.loadmgr.view.LoadEntryDialog;
 import com.northwind.settings.AppProperties;
+import com.northwind.utils.LogContext;
 import com.northwind.utils.Logger;
 import java.awt.Color;
 import java.awt.Component;
@@ -40,15 +44,16 @@ import java.awt.event.MouseListener;
 import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.logging.LogRecord;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.ImageIcon;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
 import javax.swing.JSeparator;
+import javax.swing.SwingUtilities;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 import javax.swing.filechooser.FileFilter;
@@ -60,9 +65,10 @@ import javax.swing.filechooser.FileFilter;
 public class MainWindow extends javax.swing.JFrame {
     
     private AppProperties props;
-    private LogRecord record;
+    private LogContext record;
     private Logger log;
     private Connection con;
+    private DataFuture<OnlineBackup.Result> backup;
     
     private ActionSupport actionSupport = new ActionSupport(this);
     
@@ -1668,6 +1674,16 @@ customersTaskPane.add(new AbstractAction() {
                 }
             }
 
+            // Hand any connection we are holding back to the pool before we
+            //+ borrow one for the newly selected data store.
+            if ( con != null ) {
+                try {
+                    con.close();
+                } catch ( SQLException ex ) {
+                    this.setStatus(ex.getMessage(), true);
+                }
+            }
+
             DbConnection connect = new DbConnection();
             String dbName = newFile.getName();
 
@@ -1678,6 +1694,7 @@ customersTaskPane.add(new AbstractAction() {
                 con = connect.reconnect(dbName);
                 this.setStatus("Data store ready for use: " + newFile.getName(), 
                         false);
+                saveMenuItem.setEnabled(true);
             } catch (DataStoreException ex) {
                 this.setStatus(ex.getMessage(), true);
                 con = null;
@@ -1703,6 +1720,16 @@ customersTaskPane.add(new AbstractAction() {
                 }
             }
 
+            // Hand any connection we are holding back to the pool before we
+            //+ borrow one for the newly selected data store.
+            if ( con != null ) {
+                try {
+                    con.close();
+                } catch ( SQLException ex ) {
+                    this.setStatus(ex.getMessage(), true);
+                }
+            }
+
             DbConnection connect = new DbConnection();
             String dbName = newFile.getName();
 
@@ -1713,6 +1740,7 @@ customersTaskPane.add(new AbstractAction() {
                 con = connect.reconnect(dbName);
                 this.setStatus("Data store ready for use: " + newFile.getName(), 
                         false);
+                saveMenuItem.setEnabled(true);
              } catch (DataStoreException ex) {
                 this.setStatus(ex.getMessage(), true);
                 con = null;
@@ -1721,7 +1749,28 @@ customersTaskPane.add(new AbstractAction() {
     }//GEN-LAST:event_openActionPerformed
 
     private void saveActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_saveActionPerformed
-        // TODO add your handling code here:
+        if ( backup != null && !backup.isDone() ) {
+            setStatus("A backup of the data store is already running.", false);
+            return;
+        }
+        
+        OnlineBackup job;
+        
+        try {
+            job = new OnlineBackup(props.getDbUrl() + props.getDbName() 
+                    + props.getDbOptions());
+        } catch ( IllegalArgumentException ex ) {
+            setStatus(ex.getMessage(), true);
+            return;
+        }
+        
+        // The backup runs in the background, and nobody is locked out of the
+        //+ data store while it does.
+        backup = DataAccess.submit(() -> job.run((step, percent) -> 
+                SwingUtilities.invokeLater(() -> setStatus(step + "... " 
+                        + percent + "%", false))));
+        backup.onEdt(result -> setStatus(result.toString(), false), 
+                ex -> setStatus(ex.getMessage(), true));
     }//GEN-LAST:event_saveActionPerformed
 
     private void editActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_editActionPerformed